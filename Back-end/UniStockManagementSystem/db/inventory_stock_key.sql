@@ -0,0 +1,41 @@
+-- Gộp các dòng tồn kho trùng khóa stock_key (kho, vật tư, sản phẩm, trạng thái, đơn hàng) để tạo được unique index
+-- mà InventoryDeltaDao cần (INSERT ... ON DUPLICATE KEY UPDATE và UPDATE ... WHERE stock_key = ?).
+--
+-- Khi khởi động, StockKeySchemaVerifier tự thêm cột sinh stock_key và unique index uk_inventory_stock_key.
+-- Chỉ khi bảng đã có dòng trùng khóa (sinh ra do find-then-insert chạy đồng thời ở bản cũ) thì ứng dụng dừng khởi động
+-- và cần chạy script này MỘT LẦN trên MySQL, khi đã dừng mọi node ứng dụng:
+--   mysql -u <user> -p <database> < db/inventory_stock_key.sql
+-- Nếu cột stock_key đã có (ứng dụng đã thêm ở lần khởi động trước) thì bỏ bước 1; nếu index đã có thì bỏ bước 3.
+--
+-- Không dùng unique index trực tiếp trên các cột gốc vì MySQL coi các giá trị NULL là khác nhau.
+-- Biểu thức phải khớp với StockKeySchemaVerifier#INVENTORY_STOCK_KEY và InventoryDeltaDao#stockKey.
+
+-- 1) Cột sinh stock_key (kho, vật tư, sản phẩm, trạng thái, đơn hàng)
+ALTER TABLE inventory
+    ADD COLUMN stock_key VARCHAR(100) AS (
+        CONCAT_WS(':', warehouse_id, COALESCE(material_id, 0), COALESCE(product_id, 0), status,
+                  CASE WHEN status = 'RESERVED' THEN COALESCE(order_id, 0) ELSE 0 END)
+    ) STORED;
+
+-- 2) Gộp các dòng trùng khóa (sinh ra do find-then-insert chạy đồng thời) vào dòng có id nhỏ nhất.
+--    Kiểm tra trước: SELECT stock_key, COUNT(*), SUM(quantity) FROM inventory GROUP BY stock_key HAVING COUNT(*) > 1;
+START TRANSACTION;
+
+UPDATE inventory i
+JOIN (SELECT stock_key, MIN(inventory_id) AS keep_id, SUM(quantity) AS total
+      FROM inventory
+      GROUP BY stock_key
+      HAVING COUNT(*) > 1) d ON i.inventory_id = d.keep_id
+SET i.quantity = d.total;
+
+DELETE i
+FROM inventory i
+JOIN (SELECT stock_key, MIN(inventory_id) AS keep_id
+      FROM inventory
+      GROUP BY stock_key
+      HAVING COUNT(*) > 1) d ON i.stock_key = d.stock_key AND i.inventory_id <> d.keep_id;
+
+COMMIT;
+
+-- 3) Unique index để ON DUPLICATE KEY UPDATE cộng dồn thay vì tạo dòng mới (ứng dụng cũng tự tạo khi khởi động)
+CREATE UNIQUE INDEX uk_inventory_stock_key ON inventory (stock_key);
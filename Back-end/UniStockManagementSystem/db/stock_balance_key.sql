@@ -0,0 +1,44 @@
+-- Gộp các dòng stock_balance trùng khóa balance_key (kho, vật tư, sản phẩm, kỳ) để tạo được unique index
+-- mà StockBalanceService cần (INSERT ... ON DUPLICATE KEY UPDATE cộng dồn nhập/xuất).
+--
+-- Khi khởi động, StockKeySchemaVerifier tự thêm cột sinh balance_key và unique index uk_stock_balance_key.
+-- Chỉ khi bảng đã có dòng trùng khóa (sinh ra do đọc-rồi-lưu chạy đồng thời ở bản cũ) thì ứng dụng dừng khởi động
+-- và cần chạy script này MỘT LẦN trên MySQL, khi đã dừng mọi node ứng dụng:
+--   mysql -u <user> -p <database> < db/stock_balance_key.sql
+-- Nếu cột balance_key đã có (ứng dụng đã thêm ở lần khởi động trước) thì bỏ bước 1; nếu index đã có thì bỏ bước 3.
+--
+-- Không dùng unique index trực tiếp trên các cột gốc vì MySQL coi các giá trị NULL là khác nhau.
+-- Biểu thức phải khớp với StockKeySchemaVerifier#STOCK_BALANCE_KEY.
+
+-- 1) Cột sinh balance_key (kho, vật tư, sản phẩm, kỳ)
+ALTER TABLE stock_balance
+    ADD COLUMN balance_key VARCHAR(100) AS (
+        CONCAT_WS(':', warehouse_id, COALESCE(material_id, 0), COALESCE(product_id, 0), period_start)
+    ) STORED;
+
+-- 2) Gộp các dòng trùng khóa vào dòng có id nhỏ nhất.
+--    Kiểm tra trước: SELECT balance_key, COUNT(*) FROM stock_balance GROUP BY balance_key HAVING COUNT(*) > 1;
+--    (Bảng chỉ là tổng hợp từ inventory_transactions; nếu nghi ngờ số liệu thì có thể xóa hết rồi để
+--     StockBalanceService#initializeIfEmpty dựng lại khi khởi động.)
+START TRANSACTION;
+
+UPDATE stock_balance b
+JOIN (SELECT balance_key, MIN(id) AS keep_id,
+             SUM(import_quantity) AS import_total, SUM(export_quantity) AS export_total
+      FROM stock_balance
+      GROUP BY balance_key
+      HAVING COUNT(*) > 1) d ON b.id = d.keep_id
+SET b.import_quantity = d.import_total,
+    b.export_quantity = d.export_total;
+
+DELETE b
+FROM stock_balance b
+JOIN (SELECT balance_key, MIN(id) AS keep_id
+      FROM stock_balance
+      GROUP BY balance_key
+      HAVING COUNT(*) > 1) d ON b.balance_key = d.balance_key AND b.id <> d.keep_id;
+
+COMMIT;
+
+-- 3) Unique index để ON DUPLICATE KEY UPDATE cộng dồn thay vì tạo dòng mới (ứng dụng cũng tự tạo khi khởi động)
+CREATE UNIQUE INDEX uk_stock_balance_key ON stock_balance (balance_key);
@@ -3,9 +3,13 @@ package vn.unistock.unistockmanagementsystem;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableCaching
+@EnableAsync
+@EnableScheduling
 public class UniStockManagementSystemApplication {
 
     public static void main(String[] args) {
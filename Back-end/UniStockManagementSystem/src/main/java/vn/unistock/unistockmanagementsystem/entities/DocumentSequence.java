@@ -0,0 +1,23 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Bộ đếm mã chứng từ theo loại (phiếu nhập, phiếu xuất, đơn hàng...).
+ * nextValue là mức cao nhất đã cấp: mỗi node app giữ riêng một lô [nextValue - blockSize, nextValue) trong bộ nhớ.
+ */
+@Entity
+@Table(name = "document_sequence")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentSequence {
+    @Id
+    @Column(name = "sequence_name", length = 50)
+    private String sequenceName;
+
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+}
@@ -0,0 +1,63 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportJobDTO;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trạng thái job import Excel chạy nền, lưu DB để request poll rơi vào node nào cũng đọc được.
+ * Node đang chạy job ghi lại trạng thái định kỳ; updatedAt cho biết node đó còn sống.
+ */
+@Entity
+@Table(name = "import_job")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportJob {
+    @Id
+    @Column(name = "job_id", length = 36)
+    private String jobId;
+
+    @Column(name = "type", length = 50, nullable = false)
+    private String type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private ImportJobDTO.Status status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "phase")
+    private ImportJobDTO.Phase phase;
+
+    @Column(name = "total_rows")
+    private long totalRows;
+
+    @Column(name = "processed_rows")
+    private long processedRows;
+
+    @Column(name = "invalid_rows")
+    private long invalidRows;
+
+    @Column(name = "imported_rows")
+    private long importedRows;
+
+    @Column(columnDefinition = "TEXT")
+    private String message;
+
+    // Các lỗi đầu tiên, mỗi lỗi một dòng
+    @Column(columnDefinition = "TEXT")
+    private String errors;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
@@ -6,7 +6,11 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "inventory")
+@Table(name = "inventory", indexes = {
+        // Thu hẹp phạm vi khóa dòng khi giữ chỗ tồn kho theo (vật tư/sản phẩm, kho)
+        @Index(name = "idx_inventory_material_warehouse_status", columnList = "material_id, warehouse_id, status"),
+        @Index(name = "idx_inventory_product_warehouse_status", columnList = "product_id, warehouse_id, status")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -14,8 +18,10 @@ import java.time.LocalDateTime;
 @Builder
 public class Inventory {
 
+    // Sequence thay cho IDENTITY để các bản ghi tồn kho mới được INSERT theo JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_seq")
+    @SequenceGenerator(name = "inventory_seq", sequenceName = "inventory_seq", allocationSize = 50)
     private Long inventoryId;
 
     @ManyToOne
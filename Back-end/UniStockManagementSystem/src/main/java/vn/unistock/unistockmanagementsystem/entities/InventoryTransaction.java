@@ -15,8 +15,11 @@ import java.time.LocalDateTime;
 @Builder
 public class InventoryTransaction {
 
+    // Dùng sequence (bảng inventory_transaction_seq trên MySQL) thay cho IDENTITY
+    // để Hibernate cấp id theo lô và gộp các câu INSERT thành JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_transaction_seq")
+    @SequenceGenerator(name = "inventory_transaction_seq", sequenceName = "inventory_transaction_seq", allocationSize = 50)
     private Long transactionId;
 
     @ManyToOne
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchIndexEntityListener;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -13,7 +14,11 @@ import java.util.List;
 @Setter
 @Data
 @Entity
-@Table(name = "materials")
+@EntityListeners(SearchIndexEntityListener.class)
+@Table(name = "materials", indexes = {
+        // ImageStorageService đếm số dòng còn dùng một ảnh trước khi xóa file
+        @Index(name = "idx_materials_image_url", columnList = "image_url")
+})
 public class Material {
 
     @Id
@@ -43,6 +48,9 @@ public class Material {
     @Column(name = "image_url")
     private String imageUrl;
 
+    @Column(name = "thumbnail_url")
+    private String thumbnailUrl;
+
     @Column(name = "low_stock_threshold")
     private Double lowStockThreshold;
 
@@ -0,0 +1,35 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Nhật ký thay đổi thông báo để các node khác đẩy tới client SSE của mình (NotificationRelay).
+ * Ghi cùng transaction với thông báo; chỉ giữ trong thời gian ngắn.
+ */
+@Entity
+@Table(name = "notification_change", indexes = {
+        @Index(name = "idx_notification_change_created", columnList = "created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "notification_id", nullable = false)
+    private Long notificationId;
+
+    // Node đã ghi thay đổi (node đó tự đẩy ngay sau commit nên bỏ qua khi đọc nhật ký)
+    @Column(name = "origin", length = 36, nullable = false)
+    private String origin;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -5,6 +5,7 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.*;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchIndexEntityListener;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -13,6 +14,7 @@ import java.util.Set;
 
 @Data
 @Entity
+@EntityListeners(SearchIndexEntityListener.class)
 @Builder
 @Getter
 @Setter
@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchIndexEntityListener;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -13,7 +14,11 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
-@Table(name = "products")
+@EntityListeners(SearchIndexEntityListener.class)
+@Table(name = "products", indexes = {
+        // ImageStorageService đếm số dòng còn dùng một ảnh trước khi xóa file
+        @Index(name = "idx_products_image_url", columnList = "image_url")
+})
 public class Product {
 
     @Id
@@ -44,6 +49,9 @@ public class Product {
     @Column(name = "image_url")
     private String imageUrl;
 
+    @Column(name = "thumbnail_url")
+    private String thumbnailUrl;
+
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<ProductMaterial> productMaterials = new ArrayList<>();
 
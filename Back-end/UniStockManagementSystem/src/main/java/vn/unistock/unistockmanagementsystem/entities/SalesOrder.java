@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchIndexEntityListener;
 
 import java.time.LocalDateTime;
 import java.util.Date;
@@ -12,6 +13,7 @@ import java.util.List;
 
 @Data
 @Entity
+@EntityListeners(SearchIndexEntityListener.class)
 @Table(name = "sales_orders")
 @EqualsAndHashCode(exclude = "details")
 @ToString(exclude = "details")
@@ -0,0 +1,40 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchDomain;
+
+import java.time.LocalDateTime;
+
+/**
+ * Nhật ký thay đổi entity có chỉ mục tìm kiếm để các node khác cập nhật chỉ mục của mình (SearchIndexRelay).
+ * Ghi cùng transaction với entity; chỉ giữ trong thời gian ngắn.
+ */
+@Entity
+@Table(name = "search_index_change", indexes = {
+        @Index(name = "idx_search_index_change_created", columnList = "created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SearchIndexChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "search_domain", length = 20, nullable = false)
+    private SearchDomain domain;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    // Node đã ghi thay đổi (node đó tự cập nhật chỉ mục ngay sau commit nên bỏ qua khi đọc nhật ký)
+    @Column(name = "origin", length = 36, nullable = false)
+    private String origin;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
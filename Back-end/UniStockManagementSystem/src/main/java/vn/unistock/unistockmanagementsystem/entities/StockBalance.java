@@ -0,0 +1,53 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Tổng nhập/xuất theo tháng của một hàng hóa tại một kho.
+ * Được cộng dồn mỗi khi ghi InventoryTransaction để báo cáo không phải quét lại toàn bộ sổ kho.
+ * Mỗi (kho, vật tư/sản phẩm, kỳ) chỉ có một dòng nhờ unique index trên cột sinh balance_key,
+ * do StockKeySchemaVerifier tạo khi khởi động (Hibernate không tạo được cột sinh).
+ */
+@Entity
+@Table(name = "stock_balance", indexes = {
+        @Index(name = "idx_stock_balance_period", columnList = "period_start"),
+        @Index(name = "idx_stock_balance_item", columnList = "warehouse_id, material_id, product_id, period_start")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockBalance {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "warehouse_id", nullable = false)
+    private Warehouse warehouse;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "material_id")
+    private Material material;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id")
+    private Product product;
+
+    // Ngày đầu tháng của kỳ
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Builder.Default
+    @Column(name = "import_quantity", nullable = false)
+    private Double importQuantity = 0.0;
+
+    @Builder.Default
+    @Column(name = "export_quantity", nullable = false)
+    private Double exportQuantity = 0.0;
+}
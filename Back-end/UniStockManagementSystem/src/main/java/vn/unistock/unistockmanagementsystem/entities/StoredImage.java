@@ -0,0 +1,37 @@
+package vn.unistock.unistockmanagementsystem.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ảnh đã lưu trên storage, định danh theo SHA-256 của nội dung:
+ * cùng một ảnh upload nhiều lần chỉ được lưu (và tạo thumbnail) một lần.
+ */
+@Entity
+@Table(name = "stored_image", indexes = {
+        @Index(name = "idx_stored_image_url", columnList = "image_url")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoredImage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "content_hash", length = 64, nullable = false, unique = true)
+    private String contentHash;
+
+    @Column(name = "image_url", nullable = false)
+    private String imageUrl;
+
+    @Column(name = "thumbnail_url")
+    private String thumbnailUrl;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -31,6 +31,9 @@ public class User {
 
     private Boolean isActive;
 
+    // Phiên bản token: tăng lên để vô hiệu hóa các JWT đã cấp trước đó
+    private Integer tokenVersion;
+
     @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     private UserDetail userDetail;
 
@@ -59,4 +62,12 @@ public class User {
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
     }
+
+    public int currentTokenVersion() {
+        return tokenVersion != null ? tokenVersion : 0;
+    }
+
+    public void revokeIssuedTokens() {
+        tokenVersion = currentTokenVersion() + 1;
+    }
 }
@@ -29,6 +29,8 @@ public class PermissionHierarchy {
                 "checkProductCode",
                 "toggleProductionStatus",
                 "importProducts",
+                "startImportProducts",
+                "getImportProductsStatus",
                 "createProduct",
                 "getAllProductTypes",
                 "getActiveUnits",
@@ -113,6 +115,8 @@ public class PermissionHierarchy {
                 "previewImport",
                 "toggleUsingStatusMaterial",
                 "importMaterials",
+                "startImportMaterials",
+                "getImportMaterialsStatus",
                 "getActiveUnits",
                 "getPartnersByType",
                 "getActiveMaterialTypes"
@@ -136,6 +140,9 @@ public class PermissionHierarchy {
         // ======================
         PERMISSION_MAP.put("viewSaleOrder", List.of(
                 "getFilteredOrders",
+                "getOrderSummaries",
+                "scrollOrders",
+                "getMaterialShortages",
                 "getOrderById",
                 "getMaterialsByProduct",
                 "getInventoryDetailsByWarehouse",
@@ -145,6 +152,9 @@ public class PermissionHierarchy {
         ));
         PERMISSION_MAP.put("manageSaleOrder", List.of(
                 "getFilteredOrders",
+                "getOrderSummaries",
+                "scrollOrders",
+                "getMaterialShortages",
                 "getOrderById",
                 "getMaterialsByProduct",
                 "getInventoryDetailsByWarehouse",
@@ -168,12 +178,15 @@ public class PermissionHierarchy {
         // ======================
         PERMISSION_MAP.put("viewPurchaseRequest", List.of(
                 "getAllPurchaseRequests",
+                "scrollPurchaseRequests",
                 "getPurchaseRequestById"
         ));
         PERMISSION_MAP.put("managePurchaseRequest", List.of(
                 "getAllPurchaseRequests",
+                "scrollPurchaseRequests",
                 "getPurchaseRequestById",
 
+                "getMaterialShortages",
                 "getPartnersByMaterial",
                 "getNextRequestCode",
                 "createManualPurchaseRequest",
@@ -225,18 +238,22 @@ public class PermissionHierarchy {
         PERMISSION_MAP.put("viewReport", List.of(
                 //Tồn kho
                 "getInventoryReport",
+                "downloadInventoryReport",
                 "getAllActiveWarehouses",
                 "getActiveProductTypes",
                 "getActiveMaterialTypes",
 
                 //Xuất nhập tồn
                 "getStockMovementReport",
+                "downloadStockMovementReport",
 
                 //Nhập kho
                 "getImportReportPaginated",
+                "downloadImportReport",
 
                 //Xuất kho
-                "getExportReport"
+                "getExportReport",
+                "downloadExportReport"
         ));
 
         // ======================
@@ -244,12 +261,14 @@ public class PermissionHierarchy {
         // ======================
         PERMISSION_MAP.put("viewReceiptNote", List.of(
                 "getAllGoodReceipts",
+                "scrollGoodReceipts",
                 "getGoodReceiptById",
                 "getIssueNoteById",
                 "getPurchaseOrderById"
         ));
         PERMISSION_MAP.put("manageReceiptNote", List.of(
                 "getAllGoodReceipts",
+                "scrollGoodReceipts",
                 "getGoodReceiptById",
                 "getIssueNoteById",
                 "getPurchaseOrderById",
@@ -274,6 +293,7 @@ public class PermissionHierarchy {
         // ======================
         PERMISSION_MAP.put("viewIssueNote", List.of(
                 "getAllIssueNotes",
+                "scrollIssueNotes",
                 "getIssueNoteById",
                 "getOrderById",
 
@@ -286,6 +306,7 @@ public class PermissionHierarchy {
         ));
         PERMISSION_MAP.put("manageIssueNote", List.of(
                 "getAllIssueNotes",
+                "scrollIssueNotes",
                 "getIssueNoteById",
                 "getOrderById",
 
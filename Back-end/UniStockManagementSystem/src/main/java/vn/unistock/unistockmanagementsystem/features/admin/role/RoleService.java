@@ -8,6 +8,7 @@ import vn.unistock.unistockmanagementsystem.entities.Role;
 import vn.unistock.unistockmanagementsystem.entities.RolePermission;
 import vn.unistock.unistockmanagementsystem.features.admin.permission.PermissionHierarchy;
 import vn.unistock.unistockmanagementsystem.features.admin.permission.PermissionRepository;
+import vn.unistock.unistockmanagementsystem.security.filter.PrincipalCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -24,13 +25,15 @@ public class RoleService {
     private RoleMapper roleMapper;
     @Autowired
     private PermissionRepository permissionRepository;
+    @Autowired
+    private PrincipalCache principalCache;
 
     public List<RoleDTO> getAllRoles() {
         return roleRepository.findAll().stream()
                 .map(roleMapper::toDTO)
                 .collect(Collectors.toList());
     }
-    @CacheEvict(value = "users", allEntries = true)
+    @CacheEvict(value = {"users", "rolePermissionMatchers"}, allEntries = true)
     public RoleDTO createRole(RoleDTO dto) {
         if (roleRepository.existsByRoleName(dto.getName())) {
             throw new IllegalArgumentException("DUPLICATE_ROLE");
@@ -69,16 +72,17 @@ public class RoleService {
         return roleMapper.toDTO(entity);
     }
 
-
+    @CacheEvict(value = {"users", "rolePermissionMatchers"}, allEntries = true)
     public RoleDTO updateRoleStatus(Long id, boolean isActive) {
         Role existingRole = roleRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy vai trò"));
 
         existingRole.setIsActive(isActive);
         existingRole = roleRepository.save(existingRole);
+        principalCache.evictAll();
         return roleMapper.toDTO(existingRole);
     }
-    @CacheEvict(value = "users", allEntries = true)
+    @CacheEvict(value = {"users", "rolePermissionMatchers"}, allEntries = true)
     public RoleDTO updateRole(Long id, RoleDTO dto) {
         Role existingRole = roleRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy vai trò"));
@@ -117,15 +121,17 @@ public class RoleService {
 
         // Lưu lại
         existingRole = roleRepository.save(existingRole);
+        principalCache.evictAll();
         return roleMapper.toDTO(existingRole);
     }
 
-
+    @CacheEvict(value = {"users", "rolePermissionMatchers"}, allEntries = true)
     public void deleteRole(Long id) {
         Role role = roleRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Vai trò không tồn tại"));
 
         roleRepository.delete(role);
+        principalCache.evictAll();
     }
 
     public Role getRoleById(Long id) {
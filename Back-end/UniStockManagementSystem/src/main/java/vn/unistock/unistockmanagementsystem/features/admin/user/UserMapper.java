@@ -20,6 +20,7 @@ public interface UserMapper {
     // 🟢 **Ánh xạ từ `UserDTO` → `User`**
     @Mapping(target = "roles", ignore = true)
     @Mapping(target = "userDetail", ignore = true) // ✅ `UserDetail` sẽ xử lý riêng
+    @Mapping(target = "tokenVersion", ignore = true) // Do server tăng để thu hồi JWT, không nhận từ DTO
     User toEntity(UserDTO dto);
 
     // 🟢 **Ánh xạ từ `UserDetail` → `UserDetailDTO` (Bao gồm fullname)**
@@ -20,6 +20,7 @@ import vn.unistock.unistockmanagementsystem.entities.User;
 import vn.unistock.unistockmanagementsystem.entities.UserDetail;
 import vn.unistock.unistockmanagementsystem.features.admin.role.RoleRepository;
 import vn.unistock.unistockmanagementsystem.features.auth.login.LoginService;
+import vn.unistock.unistockmanagementsystem.security.filter.PrincipalCache;
 
 import java.util.HashSet;
 import java.util.List;
@@ -37,6 +38,7 @@ public class UserService {
     private final UserMapper userMapper = UserMapper.INSTANCE;
     private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
     private final UserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
 
     public UserDTO createUser(UserDTO userDTO) {
         // 1) Kiểm tra email đã tồn tại chưa
@@ -121,10 +123,14 @@ public class UserService {
         // 3️⃣ Cập nhật mật khẩu nếu có thay đổi
         if (updatedUserDTO.getPassword() != null && !updatedUserDTO.getPassword().isEmpty()) {
             user.setPassword(passwordEncoder.encode(updatedUserDTO.getPassword()));
+            user.revokeIssuedTokens(); // Đổi mật khẩu => token cũ hết hiệu lực
         }
 
         // 4️⃣ Cập nhật trạng thái kích hoạt (isActive)
         user.setIsActive(updatedUserDTO.getIsActive());
+        if (!Boolean.TRUE.equals(user.getIsActive())) {
+            user.revokeIssuedTokens();
+        }
 
         // 5️⃣ Cập nhật `UserDetail` nếu có
         Optional<UserDetail> optionalUserDetail = Optional.ofNullable(user.getUserDetail());
@@ -153,6 +159,7 @@ public class UserService {
         // 6️⃣ Lưu user sau khi cập nhật
         user = userRepository.save(user);
         loginService.evictUserCache(user.getEmail());
+        principalCache.evictUser(user.getUserId());
         refreshAuthentication(user.getEmail());
         // 7️⃣ Trả về DTO (ẩn mật khẩu)
         UserDTO responseDTO = userMapper.toDTO(user);
@@ -172,9 +179,13 @@ public class UserService {
                 .orElseThrow(() -> new IllegalArgumentException("User không tồn tại"));
 
         user.setIsActive(isActive);
+        if (!Boolean.TRUE.equals(isActive)) {
+            user.revokeIssuedTokens(); // Khóa tài khoản => token cũ hết hiệu lực
+        }
         userRepository.save(user);
 
         loginService.evictUserCache(user.getEmail());
+        principalCache.evictUser(user.getUserId());
         return userMapper.toDTO(user);
     }
 
@@ -208,5 +219,6 @@ public class UserService {
     // 🟢 Xóa User theo ID
     public void deleteUser(Long id) {
         userRepository.deleteById(id);
+        principalCache.evictUser(id);
     }
 }
@@ -10,7 +10,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import vn.unistock.unistockmanagementsystem.entities.User;
 import vn.unistock.unistockmanagementsystem.features.admin.user.UserRepository;
+import vn.unistock.unistockmanagementsystem.features.auth.login.LoginService;
 import vn.unistock.unistockmanagementsystem.security.Jwt;
+import vn.unistock.unistockmanagementsystem.security.filter.PrincipalCache;
 
 import java.util.Map;
 
@@ -23,6 +25,8 @@ public class MailController {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final EphemeralService ephemeralService;
+    private final LoginService loginService;
+    private final PrincipalCache principalCache;
 
     @PostMapping("/forgot-password")
     public ResponseEntity<?> forgotPassword(@RequestBody EmailDTO request) {
@@ -96,7 +100,10 @@ public class MailController {
 
         // Đặt mật khẩu mới
         user.setPassword(passwordEncoder.encode(newPassword));
+        user.revokeIssuedTokens(); // Token cũ hết hiệu lực sau khi đặt lại mật khẩu
         userRepository.save(user);
+        loginService.evictUserCache(email);
+        principalCache.evictUser(user.getUserId());
 
         // Xoá token sau khi dùng
         ephemeralService.removeEphemeralToken(email);
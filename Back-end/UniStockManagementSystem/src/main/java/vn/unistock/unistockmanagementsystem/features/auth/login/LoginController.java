@@ -55,7 +55,7 @@ public class LoginController {
                     .map(Role::getRoleName)
                     .collect(Collectors.toList());
 
-            String token = jwtUtil.generateToken(user.getUserId(), user.getEmail(), roles);
+            String token = jwtUtil.generateToken(user.getUserId(), user.getEmail(), roles, user.currentTokenVersion());
 
             return ResponseEntity.ok(new LoginDTO(token, roles, user.getEmail()));
         } catch (Exception e) {
@@ -18,4 +18,17 @@ public interface LoginRepository extends JpaRepository<User, Long> {
       WHERE u.email = :email
     """)
     Optional<User> findByEmailFetchAll(@Param("email") String email);
+
+    @Query("""
+      SELECT u FROM User u
+        LEFT JOIN FETCH u.userDetail
+        LEFT JOIN FETCH u.roles r
+        LEFT JOIN FETCH r.rolePermissions rp
+        LEFT JOIN FETCH rp.permission
+      WHERE u.userId = :userId
+    """)
+    Optional<User> findByIdFetchAll(@Param("userId") Long userId);
+
+    @Query("SELECT COALESCE(u.tokenVersion, 0) FROM User u WHERE u.userId = :userId AND u.isActive = true")
+    Optional<Integer> findActiveTokenVersion(@Param("userId") Long userId);
 }
@@ -18,6 +18,17 @@ public class LoginService {
         return loginRepository.findByEmailFetchAll(email)
                 .orElse(null);
     }
+    // Không cache ở đây: JwtAuthenticationFilter đã cache principal qua PrincipalCache
+    public User loadUserById(Long userId) {
+        return loginRepository.findByIdFetchAll(userId)
+                .orElse(null);
+    }
+
+    // tokenVersion hiện tại của user còn hoạt động (null nếu không có/bị khóa), để PrincipalCache kiểm tra token bị thu hồi
+    public Integer loadActiveTokenVersion(Long userId) {
+        return loginRepository.findActiveTokenVersion(userId).orElse(null);
+    }
+
     @CacheEvict(value = "users", key = "#email")
     public void evictUserCache(String email) {
         // Phương thức này chỉ xóa cache, không cần thực hiện gì khác.
@@ -9,12 +9,14 @@ import vn.unistock.unistockmanagementsystem.entities.User;
 import vn.unistock.unistockmanagementsystem.entities.UserDetail;
 import vn.unistock.unistockmanagementsystem.features.admin.user.UserRepository;
 import vn.unistock.unistockmanagementsystem.features.auth.login.LoginService;
-import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
+import vn.unistock.unistockmanagementsystem.security.filter.PrincipalCache;
+import vn.unistock.unistockmanagementsystem.utils.storage.FileStorageService;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -25,7 +27,8 @@ public class ProfileService {
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
     private final LoginService loginService;
-    private final AzureBlobService azureBlobService;
+    private final FileStorageService fileStorageService;
+    private final PrincipalCache principalCache;
 
     // Lấy thông tin profile dựa trên email truyền vào
     public UserProfileDTO getProfile(String email) {
@@ -55,6 +58,7 @@ public class ProfileService {
 
         user.setUserDetail(userDetail);
         userRepository.save(user);
+        principalCache.evictUser(user.getUserId());
         return userMapper.toDTO(user);
     }
 
@@ -72,6 +76,7 @@ public class ProfileService {
 
         // Xóa cache của user sau khi cập nhật mật khẩu
         loginService.evictUserCache(email);
+        principalCache.evictUser(user.getUserId());
     }
 
     // Upload ảnh đại diện
@@ -89,7 +94,7 @@ public class ProfileService {
         }
 
         // Upload file lên Azure Blob Storage
-        String uploadedUrl = azureBlobService.uploadFile(file);
+        String uploadedUrl = fileStorageService.uploadFile(file);
 
         if (userDetail == null) {
             userDetail = new UserDetail();
@@ -98,10 +103,11 @@ public class ProfileService {
         userDetail.setProfilePicture(uploadedUrl);
         user.setUserDetail(userDetail);
         userRepository.save(user);
+        principalCache.evictUser(user.getUserId());
 
         // Xóa ảnh cũ nếu có
         if (oldAvatarUrl != null && !oldAvatarUrl.isEmpty()) {
-            azureBlobService.deleteFile(oldAvatarUrl);
+            fileStorageService.deleteFilesAsync(List.of(oldAvatarUrl));
         }
 
         return uploadedUrl;
@@ -1,10 +1,13 @@
 package vn.unistock.unistockmanagementsystem.features.user.inventory;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -69,4 +72,29 @@ public class InventoryController {
         );
     }
 
+    @GetMapping("/report/export")
+    public void downloadInventoryReport(
+            HttpServletResponse response,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) List<Long> warehouseIds,
+            @RequestParam(required = false) List<Boolean> statuses,
+            @RequestParam(required = false) Double minAvailable,
+            @RequestParam(required = false) Double maxAvailable,
+            @RequestParam(required = false) Double minReserved,
+            @RequestParam(required = false) Double maxReserved,
+            @RequestParam(required = false) Double minTotal,
+            @RequestParam(required = false) Double maxTotal,
+            @RequestParam(required = false) String itemType,
+            @RequestParam(required = false) List<Long> productTypeIds,
+            @RequestParam(required = false) List<Long> materialTypeIds
+    ) throws IOException {
+        ExcelStreamExporter.prepareResponse(response, "bao_cao_ton_kho.xlsx");
+        inventoryService.writeInventoryReport(
+                response.getOutputStream(), search, warehouseIds, statuses,
+                minAvailable, maxAvailable,
+                minReserved, maxReserved,
+                minTotal, maxTotal, itemType,
+                productTypeIds, materialTypeIds
+        );
+    }
 }
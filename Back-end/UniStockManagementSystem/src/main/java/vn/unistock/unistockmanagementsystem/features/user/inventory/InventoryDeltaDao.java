@@ -0,0 +1,179 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import vn.unistock.unistockmanagementsystem.entities.Inventory;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ghi thay đổi tồn kho bằng một câu SQL nguyên tử cho mỗi dòng, không đọc bản ghi lên trước:
+ * - add: INSERT ... ON DUPLICATE KEY UPDATE quantity = quantity + ? trên unique key stock_key
+ *   (kho, vật tư/sản phẩm, trạng thái, đơn hàng) => không còn tạo trùng dòng khi hai request chạy đồng thời.
+ * - withdraw: UPDATE quantity = quantity - ? chỉ khi còn đủ số lượng.
+ * Cả hai chạy theo JDBC batch trên cùng connection/transaction với JPA.
+ * Vì entity Inventory vẫn được sửa qua JPA ở các luồng khác trong cùng transaction, mỗi lần ghi đều
+ * flush persistence context trước và refresh các entity Inventory đang quản lý trùng khóa sau,
+ * để Hibernate không flush lại số lượng cũ đè lên thay đổi của JDBC.
+ * Cột stock_key và unique index được StockKeySchemaVerifier tạo/kiểm tra khi khởi động.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InventoryDeltaDao {
+
+    public record Delta(Long warehouseId, Long materialId, Long productId,
+                        Inventory.InventoryStatus status, Long orderId,
+                        double quantity, LocalDateTime lastUpdated) {
+
+        public static Delta material(Long warehouseId, Long materialId, Inventory.InventoryStatus status,
+                                     Long orderId, double quantity, LocalDateTime lastUpdated) {
+            return new Delta(warehouseId, materialId, null, status, orderId, quantity, lastUpdated);
+        }
+
+        public static Delta product(Long warehouseId, Long productId, Inventory.InventoryStatus status,
+                                    Long orderId, double quantity, LocalDateTime lastUpdated) {
+            return new Delta(warehouseId, null, productId, status, orderId, quantity, lastUpdated);
+        }
+
+        public Delta withStatus(Inventory.InventoryStatus newStatus) {
+            return new Delta(warehouseId, materialId, productId, newStatus, orderId, quantity, lastUpdated);
+        }
+
+        // order_id chỉ thuộc khóa với tồn kho RESERVED
+        Long keyOrderId() {
+            return status == Inventory.InventoryStatus.RESERVED ? orderId : null;
+        }
+
+        String stockKey() {
+            return InventoryDeltaDao.stockKey(warehouseId, materialId, productId, status, keyOrderId());
+        }
+    }
+
+    private static final String ADD_SQL = """
+            INSERT INTO inventory (inventory_id, warehouse_id, material_id, product_id, status, order_id, quantity, last_updated)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), last_updated = VALUES(last_updated)
+            """;
+
+    private static final String SELECT_IDS_SQL = "SELECT inventory_id FROM inventory WHERE stock_key IN (%s)";
+
+    private static final String WITHDRAW_SQL = """
+            UPDATE inventory
+            SET quantity = quantity - ?, last_updated = ?
+            WHERE stock_key = ?
+              AND quantity >= ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Cộng số lượng vào từng dòng tồn kho, tạo dòng mới nếu chưa có. */
+    public void add(List<Delta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        for (Delta delta : deltas) {
+            args.add(new Object[]{
+                    nextInventoryId(),
+                    delta.warehouseId(),
+                    delta.materialId(),
+                    delta.productId(),
+                    delta.status().name(),
+                    delta.keyOrderId(),
+                    delta.quantity(),
+                    lastUpdated(delta)
+            });
+        }
+        jdbcTemplate.batchUpdate(ADD_SQL, args);
+        refreshManagedInventories(deltas);
+    }
+
+    /**
+     * Trừ số lượng theo thứ tự các dòng; dòng không đủ tồn kho thì không bị trừ.
+     * @return mảng cùng thứ tự với deltas, true nếu dòng tương ứng đã được trừ
+     */
+    public boolean[] withdraw(List<Delta> deltas) {
+        boolean[] withdrawn = new boolean[deltas.size()];
+        if (deltas.isEmpty()) {
+            return withdrawn;
+        }
+        entityManager.flush();
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        for (Delta delta : deltas) {
+            args.add(new Object[]{
+                    delta.quantity(),
+                    lastUpdated(delta),
+                    delta.stockKey(),
+                    delta.quantity()
+            });
+        }
+        int[] updated = jdbcTemplate.batchUpdate(WITHDRAW_SQL, args);
+        refreshManagedInventories(deltas);
+        for (int i = 0; i < updated.length; i++) {
+            withdrawn[i] = updated[i] > 0;
+        }
+        return withdrawn;
+    }
+
+    // Ngày chứng từ có thể để trống (DTO không bắt buộc) => lấy thời điểm ghi
+    private static Timestamp lastUpdated(Delta delta) {
+        return Timestamp.valueOf(delta.lastUpdated() != null ? delta.lastUpdated() : LocalDateTime.now());
+    }
+
+    /**
+     * Nạp lại số lượng mới cho các entity Inventory đang được quản lý mà JDBC vừa ghi vào.
+     * getReference trả về chính entity nếu nó đang được quản lý, còn không thì chỉ là proxy chưa nạp
+     * (lần truy cập sau sẽ đọc từ DB) => chỉ refresh entity đã nạp.
+     */
+    private void refreshManagedInventories(List<Delta> deltas) {
+        Set<String> stockKeys = new LinkedHashSet<>();
+        for (Delta delta : deltas) {
+            stockKeys.add(delta.stockKey());
+        }
+        List<Long> ids = jdbcTemplate.queryForList(
+                String.format(SELECT_IDS_SQL, String.join(", ", Collections.nCopies(stockKeys.size(), "?"))),
+                Long.class, stockKeys.toArray());
+        for (Long id : ids) {
+            Inventory inventory = entityManager.getReference(Inventory.class, id);
+            if (Hibernate.isInitialized(inventory)) {
+                entityManager.refresh(inventory);
+            }
+        }
+    }
+
+    // Phải khớp với biểu thức cột sinh stock_key trong StockKeySchemaVerifier
+    private static String stockKey(Long warehouseId, Long materialId, Long productId,
+                                   Inventory.InventoryStatus status, Long orderId) {
+        return warehouseId + ":" + zeroIfNull(materialId) + ":" + zeroIfNull(productId) + ":"
+                + status.name() + ":" + zeroIfNull(orderId);
+    }
+
+    private static long zeroIfNull(Long id) {
+        return id != null ? id : 0L;
+    }
+
+    // Lấy id từ cùng bộ sinh (inventory_seq, pooled-lo) mà Hibernate dùng cho entity Inventory;
+    // nếu dòng đã tồn tại thì id này bị bỏ qua
+    private Long nextInventoryId() {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(Inventory.class);
+        return (Long) ((IdentifierGenerator) persister.getGenerator()).generate(session, null);
+    }
+}
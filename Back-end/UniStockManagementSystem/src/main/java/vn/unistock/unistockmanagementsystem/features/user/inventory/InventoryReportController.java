@@ -1,5 +1,6 @@
 package vn.unistock.unistockmanagementsystem.features.user.inventory;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -10,7 +11,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 
 @RestController
@@ -59,6 +62,42 @@ public class InventoryReportController {
         );
     }
 
+    @GetMapping("/report/export")
+    public void downloadStockMovementReport(
+            HttpServletResponse response,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String itemType,
+            @RequestParam(required = false) Boolean hasMovementOnly,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Double minBegin,
+            @RequestParam(required = false) Double maxBegin,
+            @RequestParam(required = false) Double minIn,
+            @RequestParam(required = false) Double maxIn,
+            @RequestParam(required = false) Double minOut,
+            @RequestParam(required = false) Double maxOut,
+            @RequestParam(required = false) Double minEnd,
+            @RequestParam(required = false) Double maxEnd
+    ) throws IOException {
+        validateQuantityFilters(minBegin, maxBegin, "beginQuantity");
+        validateQuantityFilters(minIn, maxIn, "inQuantity");
+        validateQuantityFilters(minOut, maxOut, "outQuantity");
+        validateQuantityFilters(minEnd, maxEnd, "endQuantity");
+
+        // Mặc định là tháng hiện tại, giống báo cáo trên màn hình
+        if (startDate == null || endDate == null) {
+            LocalDateTime now = LocalDateTime.now();
+            startDate = now.withDayOfMonth(1).withHour(0).withMinute(0);
+            endDate = now.withDayOfMonth(now.toLocalDate().lengthOfMonth()).withHour(23).withMinute(59);
+        }
+
+        ExcelStreamExporter.prepareResponse(response, "bao_cao_xuat_nhap_ton.xlsx");
+        inventoryTransactionService.writeStockMovementReport(
+                response.getOutputStream(), startDate, endDate, itemType, hasMovementOnly, search,
+                minBegin, maxBegin, minIn, maxIn, minOut, maxOut, minEnd, maxEnd
+        );
+    }
+
     private void validateQuantityFilters(Double min, Double max, String fieldName) {
         if (min != null && max != null && min > max) {
             throw new ResponseStatusException(
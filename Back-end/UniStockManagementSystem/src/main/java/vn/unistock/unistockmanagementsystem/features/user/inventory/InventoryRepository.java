@@ -1,15 +1,24 @@
 package vn.unistock.unistockmanagementsystem.features.user.inventory;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vn.unistock.unistockmanagementsystem.entities.*;
+import vn.unistock.unistockmanagementsystem.features.user.mrp.OrderMaterialQuantityDTO;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 import java.util.Optional;
 
 @Repository
@@ -128,6 +137,24 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
     """)
     Double getTotalQuantityByMaterialId(@Param("materialId") Long materialId);
 
+    // Tồn kho AVAILABLE của nhiều vật tư cùng ngưỡng tồn kho thấp, gom trong một truy vấn
+    @Query("""
+    SELECT new vn.unistock.unistockmanagementsystem.features.user.inventory.MaterialStockLevelDTO(
+        m.materialId,
+        m.materialCode,
+        m.materialName,
+        m.lowStockThreshold,
+        COALESCE(SUM(i.quantity), 0)
+    )
+    FROM Material m
+    LEFT JOIN Inventory i
+      ON i.material = m
+     AND i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.AVAILABLE
+    WHERE m.materialId IN :materialIds
+    GROUP BY m.materialId, m.materialCode, m.materialName, m.lowStockThreshold
+    """)
+    List<MaterialStockLevelDTO> findMaterialStockLevels(@Param("materialIds") Collection<Long> materialIds);
+
     // Thêm các phương thức mới để lấy bản ghi Inventory theo trạng thái
     @Query("""
     SELECT i
@@ -166,13 +193,14 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
     """)
     Double sumQuantityByProductIdAndStatus(@Param("productId") Long productId, @Param("status") Inventory.InventoryStatus status);
 
-    // Các phương thức khác cho báo cáo tồn kho
-    @Query("""
+    // Báo cáo tồn kho: lọc, gom nhóm và phân trang ngay trong DB
+    // Dùng chung cho báo cáo phân trang và file xuất
+    String INVENTORY_REPORT_QUERY = """
     SELECT new vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryReportDTO(
-        CASE WHEN m IS NOT NULL THEN m.materialCode ELSE p.productCode END,
-        CASE WHEN m IS NOT NULL THEN m.materialName ELSE p.productName END,
-        CASE WHEN m IS NOT NULL THEN m.isUsing ELSE p.isProductionActive END,
-        CASE WHEN m IS NOT NULL THEN u1.unitName ELSE u2.unitName END,
+        COALESCE(m.materialCode, p.productCode),
+        COALESCE(m.materialName, p.productName),
+        COALESCE(m.isUsing, p.isProductionActive),
+        COALESCE(u1.unitName, u2.unitName),
         SUM(CASE WHEN i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.AVAILABLE THEN i.quantity ELSE 0 END),
         SUM(CASE WHEN i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.RESERVED THEN i.quantity ELSE 0 END),
         SUM(i.quantity),
@@ -180,35 +208,96 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
         w.warehouseName,
         w.warehouseId,
         CASE WHEN m IS NOT NULL THEN 'MATERIAL' ELSE 'PRODUCT' END,
-        CASE WHEN p IS NOT NULL THEN p.productType.typeId ELSE NULL END,
-        CASE WHEN m IS NOT NULL THEN m.materialType.materialTypeId ELSE NULL END
+        p.productType.typeId,
+        m.materialType.materialTypeId
     )
     FROM Inventory i
+    JOIN i.warehouse w
     LEFT JOIN i.material m
     LEFT JOIN i.product p
     LEFT JOIN m.unit u1
     LEFT JOIN p.unit u2
-    JOIN i.warehouse w
-    GROUP BY 
-        CASE WHEN m IS NOT NULL THEN m.materialCode ELSE p.productCode END,
-        CASE WHEN m IS NOT NULL THEN m.materialName ELSE p.productName END,
-        CASE WHEN m IS NOT NULL THEN m.isUsing ELSE p.isProductionActive END,
-        CASE WHEN m IS NOT NULL THEN u1.unitName ELSE u2.unitName END,
-        w.warehouseCode,
-        w.warehouseName,
-        w.warehouseId,
-        CASE WHEN m IS NOT NULL THEN 'MATERIAL' ELSE 'PRODUCT' END,
-        CASE WHEN p IS NOT NULL THEN p.productType.typeId ELSE NULL END,
-        CASE WHEN m IS NOT NULL THEN m.materialType.materialTypeId ELSE NULL END
+    WHERE (:search IS NULL
+           OR LOWER(COALESCE(m.materialCode, p.productCode)) LIKE LOWER(CONCAT('%', :search, '%'))
+           OR LOWER(COALESCE(m.materialName, p.productName)) LIKE LOWER(CONCAT('%', :search, '%')))
+      AND (:warehouseIds IS NULL OR w.warehouseId IN :warehouseIds)
+      AND (:statuses IS NULL OR COALESCE(m.isUsing, p.isProductionActive) IN :statuses)
+      AND (:itemType IS NULL
+           OR (:itemType = 'MATERIAL' AND m IS NOT NULL)
+           OR (:itemType = 'PRODUCT' AND m IS NULL))
+      AND (:productTypeIds IS NULL OR p IS NULL OR p.productType.typeId IN :productTypeIds)
+      AND (:materialTypeIds IS NULL OR m IS NULL OR m.materialType.materialTypeId IN :materialTypeIds)
+    GROUP BY w.warehouseId, w.warehouseCode, w.warehouseName,
+             m.materialId, m.materialCode, m.materialName, m.isUsing, u1.unitName, m.materialType.materialTypeId,
+             p.productId, p.productCode, p.productName, p.isProductionActive, u2.unitName, p.productType.typeId
+    HAVING (:minAvailable IS NULL OR SUM(CASE WHEN i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.AVAILABLE THEN i.quantity ELSE 0 END) >= :minAvailable)
+       AND (:maxAvailable IS NULL OR SUM(CASE WHEN i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.AVAILABLE THEN i.quantity ELSE 0 END) <= :maxAvailable)
+       AND (:minReserved IS NULL OR SUM(CASE WHEN i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.RESERVED THEN i.quantity ELSE 0 END) >= :minReserved)
+       AND (:maxReserved IS NULL OR SUM(CASE WHEN i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.RESERVED THEN i.quantity ELSE 0 END) <= :maxReserved)
+       AND (:minTotal IS NULL OR SUM(i.quantity) >= :minTotal)
+       AND (:maxTotal IS NULL OR SUM(i.quantity) <= :maxTotal)
+    ORDER BY w.warehouseId, COALESCE(m.materialCode, p.productCode)
+    """;
+
+    @Query(value = INVENTORY_REPORT_QUERY,
+            countQuery = """
+    SELECT COUNT(*)
+    FROM (
+        SELECT w.warehouseId AS warehouseId
+        FROM Inventory i
+        JOIN i.warehouse w
+        LEFT JOIN i.material m
+        LEFT JOIN i.product p
+        WHERE (:search IS NULL
+               OR LOWER(COALESCE(m.materialCode, p.productCode)) LIKE LOWER(CONCAT('%', :search, '%'))
+               OR LOWER(COALESCE(m.materialName, p.productName)) LIKE LOWER(CONCAT('%', :search, '%')))
+          AND (:warehouseIds IS NULL OR w.warehouseId IN :warehouseIds)
+          AND (:statuses IS NULL OR COALESCE(m.isUsing, p.isProductionActive) IN :statuses)
+          AND (:itemType IS NULL
+               OR (:itemType = 'MATERIAL' AND m IS NOT NULL)
+               OR (:itemType = 'PRODUCT' AND m IS NULL))
+          AND (:productTypeIds IS NULL OR p IS NULL OR p.productType.typeId IN :productTypeIds)
+          AND (:materialTypeIds IS NULL OR m IS NULL OR m.materialType.materialTypeId IN :materialTypeIds)
+        GROUP BY w.warehouseId, m.materialId, p.productId
+        HAVING (:minAvailable IS NULL OR SUM(CASE WHEN i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.AVAILABLE THEN i.quantity ELSE 0 END) >= :minAvailable)
+           AND (:maxAvailable IS NULL OR SUM(CASE WHEN i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.AVAILABLE THEN i.quantity ELSE 0 END) <= :maxAvailable)
+           AND (:minReserved IS NULL OR SUM(CASE WHEN i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.RESERVED THEN i.quantity ELSE 0 END) >= :minReserved)
+           AND (:maxReserved IS NULL OR SUM(CASE WHEN i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.RESERVED THEN i.quantity ELSE 0 END) <= :maxReserved)
+           AND (:minTotal IS NULL OR SUM(i.quantity) >= :minTotal)
+           AND (:maxTotal IS NULL OR SUM(i.quantity) <= :maxTotal)
+    ) grouped
     """)
-    List<InventoryReportDTO> getInventoryReportRaw();
-
-    default Page<InventoryReportDTO> getInventoryReport(Pageable pageable) {
-        List<InventoryReportDTO> all = getInventoryReportRaw();
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), all.size());
-        return new PageImpl<>(all.subList(start, end), pageable, all.size());
-    }
+    Page<InventoryReportDTO> findInventoryReport(
+            @Param("search") String search,
+            @Param("warehouseIds") List<Long> warehouseIds,
+            @Param("statuses") List<Boolean> statuses,
+            @Param("minAvailable") Double minAvailable,
+            @Param("maxAvailable") Double maxAvailable,
+            @Param("minReserved") Double minReserved,
+            @Param("maxReserved") Double maxReserved,
+            @Param("minTotal") Double minTotal,
+            @Param("maxTotal") Double maxTotal,
+            @Param("itemType") String itemType,
+            @Param("productTypeIds") List<Long> productTypeIds,
+            @Param("materialTypeIds") List<Long> materialTypeIds,
+            Pageable pageable);
+
+    // Cùng bộ lọc như findInventoryReport nhưng đọc dần từng dòng để xuất Excel
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = ExcelStreamExporter.STREAM_FETCH_SIZE))
+    @Query(INVENTORY_REPORT_QUERY)
+    Stream<InventoryReportDTO> streamInventoryReport(
+            @Param("search") String search,
+            @Param("warehouseIds") List<Long> warehouseIds,
+            @Param("statuses") List<Boolean> statuses,
+            @Param("minAvailable") Double minAvailable,
+            @Param("maxAvailable") Double maxAvailable,
+            @Param("minReserved") Double minReserved,
+            @Param("maxReserved") Double maxReserved,
+            @Param("minTotal") Double minTotal,
+            @Param("maxTotal") Double maxTotal,
+            @Param("itemType") String itemType,
+            @Param("productTypeIds") List<Long> productTypeIds,
+            @Param("materialTypeIds") List<Long> materialTypeIds);
 
     // tổng số lượng tồn kho - kho phế liệu
     @Query("""
@@ -235,5 +324,73 @@ AND i.warehouse.warehouseName NOT LIKE '%phế liệu%'
     @Query("SELECT COUNT(i) > 0 FROM Inventory i WHERE i.warehouse.warehouseId = :warehouseId AND i.quantity > 0")
     boolean existsStockInWarehouse(@Param("warehouseId") Long warehouseId);
 
+    // Các truy vấn khóa dòng (SELECT ... FOR UPDATE) dùng cho InventoryReservationService:
+    // chỉ khóa tồn kho của đúng vật tư/sản phẩm (và kho) đang được giữ chỗ
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+    SELECT i
+    FROM Inventory i
+    WHERE i.material.materialId = :materialId
+      AND (:warehouseId IS NULL OR i.warehouse.warehouseId = :warehouseId)
+      AND i.status = :status
+      AND i.quantity > 0
+    ORDER BY i.inventoryId
+    """)
+    List<Inventory> lockMaterialInventories(@Param("materialId") Long materialId,
+                                            @Param("warehouseId") Long warehouseId,
+                                            @Param("status") Inventory.InventoryStatus status);
 
-}
\ No newline at end of file
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+    SELECT i
+    FROM Inventory i
+    WHERE i.product.productId = :productId
+      AND (:warehouseId IS NULL OR i.warehouse.warehouseId = :warehouseId)
+      AND i.status = :status
+      AND i.quantity > 0
+    ORDER BY i.inventoryId
+    """)
+    List<Inventory> lockProductInventories(@Param("productId") Long productId,
+                                           @Param("warehouseId") Long warehouseId,
+                                           @Param("status") Inventory.InventoryStatus status);
+
+    // Tồn kho RESERVED của một đơn hàng, cộng gộp theo (kho, vật tư/sản phẩm) để trả về AVAILABLE
+    @Query("""
+    SELECT new vn.unistock.unistockmanagementsystem.features.user.inventory.ReservedStockDTO(
+        w.warehouseId,
+        m.materialId,
+        p.productId,
+        SUM(i.quantity)
+    )
+    FROM Inventory i
+    JOIN i.warehouse w
+    LEFT JOIN i.material m
+    LEFT JOIN i.product p
+    WHERE i.salesOrder.orderId = :orderId
+      AND i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.RESERVED
+      AND i.quantity > 0
+    GROUP BY w.warehouseId, m.materialId, p.productId
+    """)
+    List<ReservedStockDTO> sumReservedByOrder(@Param("orderId") Long orderId);
+
+    // Vật tư RESERVED của nhiều đơn, gộp theo (đơn, vật tư) - phần giữ chỗ chỉ bù cho đúng đơn đó
+    @Query("""
+    SELECT new vn.unistock.unistockmanagementsystem.features.user.mrp.OrderMaterialQuantityDTO(
+        i.salesOrder.orderId, i.material.materialId, SUM(i.quantity))
+    FROM Inventory i
+    WHERE i.salesOrder.orderId IN :orderIds
+      AND i.material IS NOT NULL
+      AND i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.RESERVED
+      AND i.quantity > 0
+    GROUP BY i.salesOrder.orderId, i.material.materialId
+    """)
+    List<OrderMaterialQuantityDTO> sumReservedMaterialsByOrders(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying(flushAutomatically = true)
+    @Query("""
+    DELETE FROM Inventory i
+    WHERE i.salesOrder.orderId = :orderId
+      AND i.status = vn.unistock.unistockmanagementsystem.entities.Inventory.InventoryStatus.RESERVED
+    """)
+    int deleteReservedByOrder(@Param("orderId") Long orderId);
+}
@@ -0,0 +1,102 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vn.unistock.unistockmanagementsystem.entities.Inventory;
+import vn.unistock.unistockmanagementsystem.entities.SalesOrder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chuyển tồn kho AVAILABLE sang RESERVED cho một đơn hàng, và trả lại khi đơn hàng bị hủy/hoàn thành.
+ * Các dòng AVAILABLE của đúng (vật tư/sản phẩm, kho) bị khóa bằng SELECT ... FOR UPDATE
+ * đến hết transaction của caller => hai đơn giữ chỗ cùng mặt hàng chạy tuần tự,
+ * còn các mặt hàng khác nhau vẫn chạy song song.
+ * Caller nên xử lý các mặt hàng theo thứ tự id tăng dần để tránh deadlock.
+ */
+@Service
+@RequiredArgsConstructor
+public class InventoryReservationService {
+    private static final Logger logger = LoggerFactory.getLogger(InventoryReservationService.class);
+
+    private final InventoryRepository inventoryRepository;
+    private final InventoryDeltaDao inventoryDeltaDao;
+
+    /**
+     * Giữ chỗ vật tư; warehouseId = null => lấy lần lượt từ mọi kho.
+     * @return số lượng còn thiếu (0 nếu giữ chỗ đủ)
+     */
+    @Transactional
+    public double reserveMaterial(Long materialId, Long warehouseId, double quantity, SalesOrder salesOrder) {
+        List<Inventory> available = inventoryRepository.lockMaterialInventories(
+                materialId, warehouseId, Inventory.InventoryStatus.AVAILABLE);
+        return reserve(available, quantity, salesOrder, true);
+    }
+
+    /**
+     * Giữ chỗ sản phẩm; warehouseId = null => lấy lần lượt từ mọi kho.
+     * @return số lượng còn thiếu (0 nếu giữ chỗ đủ)
+     */
+    @Transactional
+    public double reserveProduct(Long productId, Long warehouseId, double quantity, SalesOrder salesOrder) {
+        List<Inventory> available = inventoryRepository.lockProductInventories(
+                productId, warehouseId, Inventory.InventoryStatus.AVAILABLE);
+        return reserve(available, quantity, salesOrder, false);
+    }
+
+    /**
+     * Trả toàn bộ tồn kho RESERVED của đơn hàng về AVAILABLE theo từng kho:
+     * một query cộng gộp, một batch upsert và một câu DELETE, không phụ thuộc số dòng của đơn hàng.
+     * Chỉ chạm vào dòng có order_id của đơn này, không quét giữ chỗ của đơn khác.
+     * Được gọi khi hủy đơn và khi phiếu xuất làm đơn hoàn thành: lúc đó phiếu xuất đã trừ phần RESERVED dùng tới,
+     * phần giữ chỗ còn lại (ví dụ hàng được xuất từ kho khác hoặc từ AVAILABLE) được trả hết về AVAILABLE.
+     * @return số dòng RESERVED đã xóa
+     */
+    @Transactional
+    public int releaseOrderReservations(Long orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<InventoryDeltaDao.Delta> releases = inventoryRepository.sumReservedByOrder(orderId).stream()
+                .map(reserved -> new InventoryDeltaDao.Delta(reserved.getWarehouseId(), reserved.getMaterialId(),
+                        reserved.getProductId(), Inventory.InventoryStatus.AVAILABLE, null,
+                        reserved.getQuantity(), now))
+                .toList();
+        inventoryDeltaDao.add(releases);
+        int deleted = inventoryRepository.deleteReservedByOrder(orderId);
+        logger.debug("Released {} reserved stock lines ({} rows) of SalesOrder {}", releases.size(), deleted, orderId);
+        return deleted;
+    }
+
+    private double reserve(List<Inventory> lockedAvailable, double quantity, SalesOrder salesOrder, boolean isMaterial) {
+        double remaining = quantity;
+        List<InventoryDeltaDao.Delta> reservations = new ArrayList<>();
+        for (Inventory available : lockedAvailable) {
+            if (remaining <= 0) break;
+
+            double toUse = Math.min(available.getQuantity(), remaining);
+            available.setQuantity(available.getQuantity() - toUse);
+            if (available.getQuantity() == 0) {
+                inventoryRepository.delete(available);
+            }
+
+            // Dòng RESERVED của đơn hàng được cộng bằng upsert nguyên tử, không cần đọc/khóa trước
+            Long warehouseId = available.getWarehouse().getWarehouseId();
+            reservations.add(isMaterial
+                    ? InventoryDeltaDao.Delta.material(warehouseId, available.getMaterial().getMaterialId(),
+                            Inventory.InventoryStatus.RESERVED, salesOrder.getOrderId(), toUse, LocalDateTime.now())
+                    : InventoryDeltaDao.Delta.product(warehouseId, available.getProduct().getProductId(),
+                            Inventory.InventoryStatus.RESERVED, salesOrder.getOrderId(), toUse, LocalDateTime.now()));
+            remaining -= toUse;
+        }
+        inventoryDeltaDao.add(reservations);
+
+        if (remaining > 0) {
+            logger.debug("Reservation for SalesOrder {} is short by {}", salesOrder.getOrderId(), remaining);
+        }
+        return remaining;
+    }
+}
@@ -0,0 +1,42 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * inventory và inventory_transaction trước đây dùng AUTO_INCREMENT; bảng sequence mới tạo bắt đầu từ 1
+ * nên cần đẩy next_val vượt qua id lớn nhất hiện có trước khi ghi bản ghi mới.
+ * Chạy sau khi Hibernate cập nhật schema (DependsOn entityManagerFactory).
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class InventorySequenceAligner {
+    private static final Logger logger = LoggerFactory.getLogger(InventorySequenceAligner.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void align() {
+        align("inventory", "inventory_id", "inventory_seq");
+        align("inventory_transaction", "transaction_id", "inventory_transaction_seq");
+    }
+
+    private void align(String table, String idColumn, String sequenceTable) {
+        Long maxId = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(" + idColumn + "), 0) FROM " + table, Long.class);
+        if (maxId == null || maxId == 0) {
+            return;
+        }
+        int updated = jdbcTemplate.update(
+                "UPDATE " + sequenceTable + " SET next_val = ? WHERE next_val <= ?", maxId + 1, maxId);
+        if (updated > 0) {
+            logger.info("Moved {} past existing {} id {}", sequenceTable, table, maxId);
+        }
+    }
+}
@@ -2,18 +2,34 @@ package vn.unistock.unistockmanagementsystem.features.user.inventory;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import vn.unistock.unistockmanagementsystem.entities.User;
 import vn.unistock.unistockmanagementsystem.features.admin.user.UserDTO;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class InventoryService {
+    private static final List<ExcelStreamExporter.Column<InventoryReportDTO>> INVENTORY_REPORT_COLUMNS = List.of(
+            ExcelStreamExporter.column("Mã kho", InventoryReportDTO::getWarehouseCode),
+            ExcelStreamExporter.column("Tên kho", InventoryReportDTO::getWarehouseName),
+            ExcelStreamExporter.column("Loại hàng", r -> itemTypeLabel(r.getItemType())),
+            ExcelStreamExporter.column("Mã hàng", InventoryReportDTO::getItemCode),
+            ExcelStreamExporter.column("Tên hàng", InventoryReportDTO::getItemName),
+            ExcelStreamExporter.column("Đơn vị", InventoryReportDTO::getUnitName),
+            ExcelStreamExporter.column("Trạng thái", r -> Boolean.TRUE.equals(r.getIsActive()) ? "Đang sử dụng" : "Ngừng sử dụng"),
+            ExcelStreamExporter.column("SL tồn kho thực tế", InventoryReportDTO::getTotalQuantity),
+            ExcelStreamExporter.column("SL đang giữ chỗ", InventoryReportDTO::getReservedQuantity),
+            ExcelStreamExporter.column("SL có sẵn", InventoryReportDTO::getAvailableQuantity));
+
     private final InventoryRepository inventoryRepository;
 
     public List<InventoryByWarehouseDTO> findInventoryByAll(Long productId, Long materialId) {
@@ -60,44 +76,57 @@ public class InventoryService {
             List<Long> materialTypeIds
     ) {
         Pageable pageable = PageRequest.of(page, size);
-        List<InventoryReportDTO> all = inventoryRepository.getInventoryReportRaw();
+        return inventoryRepository.findInventoryReport(
+                (search == null || search.isBlank()) ? null : search.trim(),
+                emptyToNull(warehouseIds),
+                emptyToNull(statuses),
+                minAvailable, maxAvailable,
+                minReserved, maxReserved,
+                minTotal, maxTotal,
+                (itemType == null || itemType.isBlank()) ? null : itemType.trim().toUpperCase(),
+                emptyToNull(productTypeIds),
+                emptyToNull(materialTypeIds),
+                pageable
+        );
+    }
+
+    // Xuất báo cáo tồn kho theo cùng bộ lọc, ghi thẳng ra output stream
+    @Transactional(readOnly = true)
+    public void writeInventoryReport(
+            OutputStream out,
+            String search,
+            List<Long> warehouseIds,
+            List<Boolean> statuses,
+            Double minAvailable,
+            Double maxAvailable,
+            Double minReserved,
+            Double maxReserved,
+            Double minTotal,
+            Double maxTotal,
+            String itemType,
+            List<Long> productTypeIds,
+            List<Long> materialTypeIds
+    ) throws IOException {
+        try (Stream<InventoryReportDTO> rows = inventoryRepository.streamInventoryReport(
+                (search == null || search.isBlank()) ? null : search.trim(),
+                emptyToNull(warehouseIds),
+                emptyToNull(statuses),
+                minAvailable, maxAvailable,
+                minReserved, maxReserved,
+                minTotal, maxTotal,
+                (itemType == null || itemType.isBlank()) ? null : itemType.trim().toUpperCase(),
+                emptyToNull(productTypeIds),
+                emptyToNull(materialTypeIds))) {
+            ExcelStreamExporter.write(out, "Tồn kho", INVENTORY_REPORT_COLUMNS, rows);
+        }
+    }
 
-        List<InventoryReportDTO> filtered = all.stream()
-                .filter(dto -> search == null || dto.getItemCode().toLowerCase().contains(search.toLowerCase())
-                        || dto.getItemName().toLowerCase().contains(search.toLowerCase()))
-                .filter(dto -> warehouseIds == null || warehouseIds.isEmpty() || warehouseIds.contains(dto.getWarehouseId()))
-                .filter(dto -> statuses == null || statuses.isEmpty() || statuses.contains(dto.getIsActive()))
-                .filter(dto -> minAvailable == null || dto.getAvailableQuantity() >= minAvailable)
-                .filter(dto -> maxAvailable == null || dto.getAvailableQuantity() <= maxAvailable)
-                .filter(dto -> minReserved == null || dto.getReservedQuantity() >= minReserved)
-                .filter(dto -> maxReserved == null || dto.getReservedQuantity() <= maxReserved)
-                .filter(dto -> minTotal == null || dto.getTotalQuantity() >= minTotal)
-                .filter(dto -> maxTotal == null || dto.getTotalQuantity() <= maxTotal)
-                .filter(dto -> itemType == null || itemType.isEmpty() || itemType.equalsIgnoreCase(dto.getItemType()))
-                // Ép buộc lọc theo itemType nếu có truyền vào
-                .filter(dto -> {
-                    if (itemType != null && !itemType.isEmpty()) {
-                        return itemType.equalsIgnoreCase(dto.getItemType());
-                    }
-                    return true;
-                })
-                .filter(dto -> {
-                    if ("PRODUCT".equalsIgnoreCase(dto.getItemType())) {
-                        return productTypeIds == null || productTypeIds.isEmpty() || productTypeIds.contains(dto.getProductTypeId());
-                    }
-                    return true;
-                })
-                .filter(dto -> {
-                    if ("MATERIAL".equalsIgnoreCase(dto.getItemType())) {
-                        return materialTypeIds == null || materialTypeIds.isEmpty() || materialTypeIds.contains(dto.getMaterialTypeId());
-                    }
-                    return true;
-                })
-                .toList();
+    static String itemTypeLabel(String itemType) {
+        return "MATERIAL".equals(itemType) ? "Vật tư" : "PRODUCT".equals(itemType) ? "Sản phẩm" : itemType;
+    }
 
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), filtered.size());
-        return new PageImpl<>(filtered.subList(start, end), pageable, filtered.size());
+    private static <T> List<T> emptyToNull(List<T> values) {
+        return (values == null || values.isEmpty()) ? null : values;
     }
 
 }
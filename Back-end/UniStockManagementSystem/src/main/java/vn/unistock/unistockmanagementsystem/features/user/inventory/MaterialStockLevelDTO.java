@@ -0,0 +1,14 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class MaterialStockLevelDTO {
+    private Long materialId;
+    private String materialCode;
+    private String materialName;
+    private Double lowStockThreshold;
+    private Double availableQuantity;
+}
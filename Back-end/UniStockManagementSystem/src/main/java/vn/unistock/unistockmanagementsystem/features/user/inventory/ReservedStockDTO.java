@@ -0,0 +1,13 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ReservedStockDTO {
+    private Long warehouseId;
+    private Long materialId;
+    private Long productId;
+    private Double quantity;
+}
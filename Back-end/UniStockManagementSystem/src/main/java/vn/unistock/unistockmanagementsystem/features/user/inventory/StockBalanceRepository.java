@@ -0,0 +1,9 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import vn.unistock.unistockmanagementsystem.entities.StockBalance;
+
+@Repository
+public interface StockBalanceRepository extends JpaRepository<StockBalance, Long> {
+}
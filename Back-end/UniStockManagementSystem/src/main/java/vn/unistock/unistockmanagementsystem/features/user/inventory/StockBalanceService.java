@@ -0,0 +1,141 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vn.unistock.unistockmanagementsystem.entities.InventoryTransaction;
+import vn.unistock.unistockmanagementsystem.entities.StockBalance;
+import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
+import vn.unistock.unistockmanagementsystem.features.user.products.ProductsRepository;
+import vn.unistock.unistockmanagementsystem.features.user.warehouse.WarehouseRepository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+@RequiredArgsConstructor
+public class StockBalanceService {
+    private static final Logger logger = LoggerFactory.getLogger(StockBalanceService.class);
+
+    private final StockBalanceRepository stockBalanceRepository;
+    private final InventoryTransactionRepository transactionRepository;
+    private final WarehouseRepository warehouseRepository;
+    private final MaterialsRepository materialRepository;
+    private final ProductsRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private record BucketKey(Long warehouseId, Long materialId, Long productId, LocalDate periodStart) {}
+
+    // Thứ tự khóa cố định để hai phiếu ghi cùng các bucket không khóa dòng chéo nhau (deadlock)
+    private static final Comparator<BucketKey> BUCKET_ORDER = Comparator
+            .comparing(BucketKey::warehouseId)
+            .thenComparing(BucketKey::materialId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(BucketKey::productId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(BucketKey::periodStart);
+
+    // Cộng dồn nguyên tử trên unique key balance_key (kho, vật tư, sản phẩm, kỳ), xem StockKeySchemaVerifier
+    private static final String UPSERT_SQL = """
+            INSERT INTO stock_balance (warehouse_id, material_id, product_id, period_start, import_quantity, export_quantity)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE import_quantity = import_quantity + VALUES(import_quantity),
+                                    export_quantity = export_quantity + VALUES(export_quantity)
+            """;
+
+    /**
+     * Cộng giao dịch vừa ghi vào tổng nhập/xuất của tháng tương ứng.
+     * Phải được gọi trong cùng transaction với việc lưu InventoryTransaction.
+     */
+    public void record(InventoryTransaction transaction) {
+        recordAll(List.of(transaction));
+    }
+
+    /**
+     * Như record() nhưng cho cả phiếu: gộp theo bucket trong bộ nhớ rồi cộng vào DB bằng một batch
+     * INSERT ... ON DUPLICATE KEY UPDATE, không đọc bucket lên trước => hai phiếu ghi đồng thời
+     * không làm mất phần cộng của nhau và không tạo trùng bucket.
+     */
+    public void recordAll(Collection<InventoryTransaction> transactions) {
+        Map<BucketKey, double[]> totals = new TreeMap<>(BUCKET_ORDER);
+        for (InventoryTransaction transaction : transactions) {
+            if (transaction.getTransactionDate() == null
+                    || (transaction.getMaterial() == null && transaction.getProduct() == null)) {
+                continue;
+            }
+            BucketKey key = new BucketKey(
+                    transaction.getWarehouse().getWarehouseId(),
+                    transaction.getMaterial() != null ? transaction.getMaterial().getMaterialId() : null,
+                    transaction.getProduct() != null ? transaction.getProduct().getProductId() : null,
+                    periodStartOf(transaction));
+            double[] total = totals.computeIfAbsent(key, k -> new double[2]);
+            if (transaction.getTransactionType() == InventoryTransaction.TransactionType.IMPORT) {
+                total[0] += transaction.getQuantity();
+            } else {
+                total[1] += transaction.getQuantity();
+            }
+        }
+        if (totals.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> args = new ArrayList<>(totals.size());
+        totals.forEach((key, total) -> args.add(new Object[]{
+                key.warehouseId(),
+                key.materialId(),
+                key.productId(),
+                Date.valueOf(key.periodStart()),
+                total[0],
+                total[1]
+        }));
+        jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+    }
+
+    private static LocalDate periodStartOf(InventoryTransaction transaction) {
+        return transaction.getTransactionDate().toLocalDate().withDayOfMonth(1);
+    }
+
+    // Dựng lại toàn bộ bảng từ sổ kho (dùng khi khởi tạo hoặc khi dữ liệu bị lệch)
+    @Transactional
+    public int rebuild() {
+        stockBalanceRepository.deleteAllInBatch();
+
+        List<StockBalance> balances = new ArrayList<>();
+        for (Map<String, Object> row : transactionRepository.summarizeByMonth()) {
+            Long warehouseId = (Long) row.get("warehouseId");
+            Long productId = (Long) row.get("productId");
+            Long materialId = (Long) row.get("materialId");
+            int year = ((Number) row.get("year")).intValue();
+            int month = ((Number) row.get("month")).intValue();
+
+            balances.add(StockBalance.builder()
+                    .warehouse(warehouseRepository.getReferenceById(warehouseId))
+                    .material(materialId != null ? materialRepository.getReferenceById(materialId) : null)
+                    .product(productId != null ? productRepository.getReferenceById(productId) : null)
+                    .periodStart(LocalDate.of(year, month, 1))
+                    .importQuantity(((Number) row.get("importTotal")).doubleValue())
+                    .exportQuantity(((Number) row.get("exportTotal")).doubleValue())
+                    .build());
+        }
+        stockBalanceRepository.saveAll(balances);
+        logger.info("Rebuilt {} stock balance rows from inventory transactions", balances.size());
+        return balances.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initializeIfEmpty() {
+        if (stockBalanceRepository.count() == 0 && transactionRepository.count() > 0) {
+            rebuild();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Các câu ghi cộng dồn nguyên tử (INSERT ... ON DUPLICATE KEY UPDATE) cần một cột khóa sinh và unique index trên nó;
+ * Hibernate (ddl-auto: update) không tạo được cột sinh nên bước này tự tạo khi khởi động:
+ * - Thiếu cột: thêm cột sinh (STORED).
+ * - Thiếu unique index: tạo nếu dữ liệu không trùng khóa; có dòng trùng thì dừng khởi động và chỉ tới script
+ *   trong db/ để gộp (việc gộp sửa số lượng tồn kho nên phải chạy tay khi đã dừng mọi node).
+ * Nhiều node khởi động cùng lúc: node chậm hơn gặp lỗi trùng cột/index thì kiểm tra lại rồi bỏ qua.
+ * Chạy sau khi Hibernate cập nhật schema (DependsOn entityManagerFactory).
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class StockKeySchemaVerifier {
+    private static final Logger logger = LoggerFactory.getLogger(StockKeySchemaVerifier.class);
+
+    // Phải khớp với InventoryDeltaDao#stockKey; order_id chỉ tính cho tồn kho RESERVED
+    static final String INVENTORY_STOCK_KEY = """
+            CONCAT_WS(':', warehouse_id, COALESCE(material_id, 0), COALESCE(product_id, 0), status,
+                      CASE WHEN status = 'RESERVED' THEN COALESCE(order_id, 0) ELSE 0 END)""";
+
+    // Phải khớp với StockBalanceService (kho, vật tư, sản phẩm, kỳ)
+    static final String STOCK_BALANCE_KEY = """
+            CONCAT_WS(':', warehouse_id, COALESCE(material_id, 0), COALESCE(product_id, 0), period_start)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void verify() {
+        ensureUniqueKey("inventory", "stock_key", INVENTORY_STOCK_KEY, "uk_inventory_stock_key",
+                "db/inventory_stock_key.sql");
+        ensureUniqueKey("stock_balance", "balance_key", STOCK_BALANCE_KEY, "uk_stock_balance_key",
+                "db/stock_balance_key.sql");
+    }
+
+    private void ensureUniqueKey(String table, String column, String expression, String indexName, String mergeScript) {
+        if (!columnExists(table, column)) {
+            try {
+                jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN " + column
+                        + " VARCHAR(100) AS (" + expression + ") STORED");
+                logger.info("Added generated column {}.{}", table, column);
+            } catch (DataAccessException e) {
+                if (!columnExists(table, column)) {
+                    throw e;
+                }
+            }
+        }
+        if (uniqueIndexExists(table, column)) {
+            return;
+        }
+        Long duplicates = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM (SELECT " + column + " FROM " + table
+                        + " GROUP BY " + column + " HAVING COUNT(*) > 1) d", Long.class);
+        if (duplicates != null && duplicates > 0) {
+            throw new IllegalStateException("Bảng " + table + " có " + duplicates + " khóa " + column
+                    + " bị trùng, chạy " + mergeScript + " để gộp các dòng trùng rồi khởi động lại");
+        }
+        try {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX " + indexName + " ON " + table + " (" + column + ")");
+            logger.info("Created unique index {} on {}.{}", indexName, table, column);
+        } catch (DataAccessException e) {
+            if (!uniqueIndexExists(table, column)) {
+                throw e;
+            }
+        }
+    }
+
+    private boolean columnExists(String table, String column) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, identifier(metaData, table), identifier(metaData, column))) {
+                return columns.next();
+            }
+        }));
+    }
+
+    private boolean uniqueIndexExists(String table, String column) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, identifier(metaData, table), true, false)) {
+                while (indexes.next()) {
+                    if (column.equalsIgnoreCase(indexes.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }));
+    }
+
+    // Tên bảng/cột trong metadata theo cách DB lưu định danh không đặt trong dấu nháy
+    private static String identifier(DatabaseMetaData metaData, String name) throws SQLException {
+        return metaData.storesUpperCaseIdentifiers() ? name.toUpperCase() : name;
+    }
+}
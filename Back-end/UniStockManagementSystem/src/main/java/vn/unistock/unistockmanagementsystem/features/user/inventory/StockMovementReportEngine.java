@@ -0,0 +1,229 @@
+package vn.unistock.unistockmanagementsystem.features.user.inventory;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Báo cáo xuất nhập tồn tính hoàn toàn trong DB: tồn đầu lấy từ stock_balance + giao dịch từ đầu tháng,
+ * phát sinh trong kỳ gom cùng lượt quét inventory_transaction, rồi join với mã/tên/đơn vị của sản phẩm và vật tư.
+ * Chỉ các dòng của trang được yêu cầu mới được đọc lên.
+ */
+@Repository
+public class StockMovementReportEngine {
+
+    // Tồn đầu (stock_balance trước tháng + giao dịch từ đầu tháng đến startDate) và phát sinh trong kỳ, gom theo hàng hóa
+    private static final String SUMMARY_SQL = """
+            SELECT s.is_material, s.item_id,
+                   SUM(s.begin_part) AS begin_qty, SUM(s.in_part) AS in_qty, SUM(s.out_part) AS out_qty
+            FROM (
+                SELECT CASE WHEN b.product_id IS NOT NULL THEN 0 ELSE 1 END AS is_material,
+                       COALESCE(b.product_id, b.material_id) AS item_id,
+                       b.import_quantity - b.export_quantity AS begin_part,
+                       0 AS in_part,
+                       0 AS out_part
+                FROM stock_balance b
+                WHERE b.period_start < :periodStart
+                UNION ALL
+                SELECT CASE WHEN t.product_id IS NOT NULL THEN 0 ELSE 1 END,
+                       COALESCE(t.product_id, t.material_id),
+                       CASE WHEN t.transaction_date >= :startDate THEN 0
+                            WHEN t.transaction_type = 'IMPORT' THEN t.quantity
+                            ELSE -t.quantity END,
+                       CASE WHEN t.transaction_date >= :startDate AND t.transaction_type = 'IMPORT' THEN t.quantity ELSE 0 END,
+                       CASE WHEN t.transaction_date >= :startDate AND t.transaction_type = 'EXPORT' THEN t.quantity ELSE 0 END
+                FROM inventory_transaction t
+                WHERE t.transaction_date >= :periodStartTime
+                  AND t.transaction_date <= :endDate
+                  AND (t.product_id IS NOT NULL OR t.material_id IS NOT NULL)
+            ) s
+            GROUP BY s.is_material, s.item_id
+            """;
+
+    // Chỉ lấy mã, tên, đơn vị của sản phẩm / vật tư
+    private static final String ITEMS_SQL = """
+            SELECT 0 AS is_material, p.product_id AS item_id,
+                   p.product_code AS item_code, p.product_name AS item_name, u.unit_name AS item_unit
+            FROM products p
+            JOIN units u ON u.unit_id = p.unit_id
+            WHERE %s
+            UNION ALL
+            SELECT 1, m.material_id, m.material_code, m.material_name, u.unit_name
+            FROM materials m
+            JOIN units u ON u.unit_id = m.unit_id
+            WHERE %s
+            """;
+
+    private static final String REPORT_SQL = """
+            SELECT i.is_material, i.item_id, i.item_code, i.item_name, i.item_unit,
+                   COALESCE(s.begin_qty, 0) AS begin_qty,
+                   COALESCE(s.in_qty, 0) AS in_qty,
+                   COALESCE(s.out_qty, 0) AS out_qty
+            FROM (""" + ITEMS_SQL + """
+            ) i
+            LEFT JOIN (""" + SUMMARY_SQL + """
+            ) s ON s.is_material = i.is_material AND s.item_id = i.item_id
+            """;
+
+    private static final RowMapper<StockMovementReportDTO> ROW_MAPPER = (rs, rowNum) -> {
+        double begin = rs.getDouble("begin_qty");
+        double in = rs.getDouble("in_qty");
+        double out = rs.getDouble("out_qty");
+        return new StockMovementReportDTO(
+                rs.getString("item_code"),
+                rs.getString("item_name"),
+                rs.getString("item_unit"),
+                rs.getInt("is_material") == 1 ? "MATERIAL" : "PRODUCT",
+                begin, in, out, begin + in - out
+        );
+    };
+
+    private static final String ORDER_BY = " ORDER BY is_material, item_id";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    // Template riêng cho xuất file: fetch size kiểu streaming, không ảnh hưởng các query khác
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+
+    public StockMovementReportEngine(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getJdbcTemplate().getDataSource());
+        streaming.setFetchSize(Integer.parseInt(ExcelStreamExporter.STREAM_FETCH_SIZE));
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(streaming);
+    }
+
+    // Phần FROM ... WHERE của báo cáo và tham số tương ứng
+    private record ReportQuery(String from, MapSqlParameterSource params) {}
+
+    public Page<StockMovementReportDTO> getStockMovement(
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            String itemType,
+            Boolean hasMovementOnly,
+            String search,
+            Double minBegin,
+            Double maxBegin,
+            Double minIn,
+            Double maxIn,
+            Double minOut,
+            Double maxOut,
+            Double minEnd,
+            Double maxEnd,
+            Pageable pageable) {
+
+        ReportQuery query = buildReportQuery(startDate, endDate, itemType, hasMovementOnly, search,
+                minBegin, maxBegin, minIn, maxIn, minOut, maxOut, minEnd, maxEnd);
+        MapSqlParameterSource params = query.params();
+
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + query.from(), params, Long.class);
+        if (total == null || total == 0 || pageable.getOffset() >= total) {
+            return new PageImpl<>(List.of(), pageable, total == null ? 0 : total);
+        }
+
+        params.addValue("limit", pageable.getPageSize())
+                .addValue("offset", pageable.getOffset());
+        List<StockMovementReportDTO> content = jdbcTemplate.query(
+                "SELECT * FROM " + query.from() + ORDER_BY + " LIMIT :limit OFFSET :offset",
+                params, ROW_MAPPER);
+
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Toàn bộ báo cáo (không phân trang, cùng thứ tự) để xuất file, đọc dần từng dòng.
+     * Caller phải đóng Stream và gọi trong transaction để giữ connection.
+     */
+    public Stream<StockMovementReportDTO> streamStockMovement(
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            String itemType,
+            Boolean hasMovementOnly,
+            String search,
+            Double minBegin,
+            Double maxBegin,
+            Double minIn,
+            Double maxIn,
+            Double minOut,
+            Double maxOut,
+            Double minEnd,
+            Double maxEnd) {
+
+        ReportQuery query = buildReportQuery(startDate, endDate, itemType, hasMovementOnly, search,
+                minBegin, maxBegin, minIn, maxIn, minOut, maxOut, minEnd, maxEnd);
+        return streamingJdbcTemplate.queryForStream("SELECT * FROM " + query.from() + ORDER_BY, query.params(), ROW_MAPPER);
+    }
+
+    private ReportQuery buildReportQuery(
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            String itemType,
+            Boolean hasMovementOnly,
+            String search,
+            Double minBegin,
+            Double maxBegin,
+            Double minIn,
+            Double maxIn,
+            Double minOut,
+            Double maxOut,
+            Double minEnd,
+            Double maxEnd) {
+
+        LocalDate periodStart = startDate.toLocalDate().withDayOfMonth(1);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("periodStart", periodStart)
+                .addValue("periodStartTime", Timestamp.valueOf(periodStart.atStartOfDay()))
+                .addValue("startDate", Timestamp.valueOf(startDate))
+                .addValue("endDate", Timestamp.valueOf(endDate));
+
+        // Điều kiện trên từng nhánh sản phẩm / vật tư
+        String productWhere = "1 = 1";
+        String materialWhere = "1 = 1";
+        if ("MATERIAL".equalsIgnoreCase(itemType)) {
+            productWhere = "1 = 0";
+        } else if ("PRODUCT".equalsIgnoreCase(itemType)) {
+            materialWhere = "1 = 0";
+        }
+        if (search != null && !search.isEmpty()) {
+            params.addValue("search", "%" + search + "%");
+            productWhere += " AND (p.product_code LIKE :search OR p.product_name LIKE :search)";
+            materialWhere += " AND (m.material_code LIKE :search OR m.material_name LIKE :search)";
+        }
+
+        // Điều kiện trên số lượng đã tính
+        List<String> filters = new ArrayList<>();
+        if (Boolean.TRUE.equals(hasMovementOnly)) {
+            filters.add("(in_qty > 0 OR out_qty > 0)");
+        }
+        addRange(filters, params, "begin_qty", "minBegin", minBegin, "maxBegin", maxBegin);
+        addRange(filters, params, "in_qty", "minIn", minIn, "maxIn", maxIn);
+        addRange(filters, params, "out_qty", "minOut", minOut, "maxOut", maxOut);
+        addRange(filters, params, "(begin_qty + in_qty - out_qty)", "minEnd", minEnd, "maxEnd", maxEnd);
+        String where = filters.isEmpty() ? "" : " WHERE " + String.join(" AND ", filters);
+
+        return new ReportQuery("(" + REPORT_SQL.formatted(productWhere, materialWhere) + ") r" + where, params);
+    }
+
+    private void addRange(List<String> filters, MapSqlParameterSource params, String column,
+                          String minName, Double min, String maxName, Double max) {
+        if (min != null) {
+            filters.add(column + " >= :" + minName);
+            params.addValue(minName, min);
+        }
+        if (max != null) {
+            filters.add(column + " <= :" + maxName);
+            params.addValue(maxName, max);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package vn.unistock.unistockmanagementsystem.features.user.issueNote;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -13,8 +14,12 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 import vn.unistock.unistockmanagementsystem.entities.User;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.PaperEvidenceUploadResultDTO;
 import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
+import vn.unistock.unistockmanagementsystem.utils.pagination.CursorPage;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
@@ -53,6 +58,25 @@ public class IssueNoteController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * API lấy danh sách phiếu xuất kho theo cursor (không đếm tổng trừ khi withTotal=true).
+     * GET /api/unistock/user/issuenote/scroll?size=10&cursor={nextCursor của trang trước}
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<IssueNoteDTO>> scrollIssueNotes(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) List<String> categories
+    ) {
+        return ResponseEntity.ok(issueNoteService.scrollIssueNotesFiltered(
+                cursor, size, withTotal, search, startDate, endDate, categories
+        ));
+    }
+
     /**
      * API tạo mới một phiếu xuất kho.
      * POST /api/unistock/user/issuenote
@@ -86,7 +110,7 @@ public class IssueNoteController {
     }
 
     /**
-     * API lấy mã phiếu xuất kho kế tiếp.
+     * API lấy mã phiếu xuất kho kế tiếp (chỉ xem trước, mã thật được cấp khi lưu phiếu).
      * GET /api/unistock/user/issuenote/nextcode
      */
     @GetMapping("/nextcode")
@@ -117,8 +141,10 @@ public class IssueNoteController {
         User currentUser = userDetails.getUser();
 
         try {
-            List<String> fileUrls = issueNoteService.uploadPaperEvidence(noteId, noteType, files, currentUser);
-            return ResponseEntity.ok().body(fileUrls);
+            PaperEvidenceUploadResultDTO result = issueNoteService.uploadPaperEvidence(noteId, noteType, files, currentUser);
+            // 207 khi có file lỗi: các file còn lại vẫn đã được lưu, chi tiết trong failedFiles
+            return ResponseEntity.status(result.getFailedFiles().isEmpty() ? HttpStatus.OK : HttpStatus.MULTI_STATUS)
+                    .body(result);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to upload files: " + e.getMessage());
@@ -148,6 +174,24 @@ public class IssueNoteController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/report/export")
+    public void downloadExportReport(
+            HttpServletResponse response,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String itemType,
+            @RequestParam(required = false) Double minQuantity,
+            @RequestParam(required = false) Double maxQuantity,
+            @RequestParam(required = false) List<String> categories,
+            @RequestParam(required = false) List<Long> warehouseIds
+    ) throws IOException {
+        ExcelStreamExporter.prepareResponse(response, "bao_cao_xuat_kho.xlsx");
+        issueNoteService.writeExportReport(
+                response.getOutputStream(), search, startDate, endDate, itemType, minQuantity, maxQuantity, categories, warehouseIds
+        );
+    }
+
     @GetMapping("/receive-outsource/pending-in-progress")
     public ResponseEntity<List<ReceiveOutsourceDTO>> getPendingOrInProgressReceiveOutsource() {
         List<ReceiveOutsourceDTO> result = issueNoteService.getPendingOrInProgressReceiveOutsource();
@@ -1,17 +1,25 @@
 package vn.unistock.unistockmanagementsystem.features.user.issueNote;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import vn.unistock.unistockmanagementsystem.entities.GoodIssueDetail;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface IssueNoteDetailRepository extends JpaRepository<GoodIssueDetail, Long> {
-    @Query("""
+    // Dùng chung cho báo cáo phân trang và file xuất.
+    // Khi có search, ginIds/materialIds/productIds là kết quả tìm mã/tên từ SearchIndexService;
+    // từ khóa quá ngắn hoặc khớp quá nhiều id thì các danh sách id là null và lọc bằng LIKE với likeSearch
+    String EXPORT_REPORT_QUERY = """
 SELECT new vn.unistock.unistockmanagementsystem.features.user.issueNote.IssueNoteReportDTO(
     n.ginCode,
     n.category,
@@ -32,11 +40,14 @@ LEFT JOIN d.product p
 LEFT JOIN d.unit u
 WHERE
     (:search IS NULL OR 
-        LOWER(n.ginCode) LIKE LOWER(CONCAT('%', :search, '%')) OR 
-        LOWER(m.materialCode) LIKE LOWER(CONCAT('%', :search, '%')) OR 
-        LOWER(m.materialName) LIKE LOWER(CONCAT('%', :search, '%')) OR 
-        LOWER(p.productCode) LIKE LOWER(CONCAT('%', :search, '%')) OR 
-        LOWER(p.productName) LIKE LOWER(CONCAT('%', :search, '%'))
+        n.ginId IN :ginIds OR 
+        m.materialId IN :materialIds OR 
+        p.productId IN :productIds OR
+        LOWER(n.ginCode) LIKE LOWER(CONCAT('%', :likeSearch, '%')) OR
+        LOWER(m.materialCode) LIKE LOWER(CONCAT('%', :likeSearch, '%')) OR
+        LOWER(m.materialName) LIKE LOWER(CONCAT('%', :likeSearch, '%')) OR
+        LOWER(p.productCode) LIKE LOWER(CONCAT('%', :likeSearch, '%')) OR
+        LOWER(p.productName) LIKE LOWER(CONCAT('%', :likeSearch, '%'))
     )
     AND (:startDate IS NULL OR n.issueDate >= :startDate)
     AND (:endDate IS NULL OR n.issueDate <= :endDate)
@@ -49,9 +60,15 @@ WHERE
     AND (COALESCE(:categories, NULL) IS NULL OR n.category IN :categories)
     AND (COALESCE(:warehouseIds, NULL) IS NULL OR w.warehouseId IN :warehouseIds)
 ORDER BY n.issueDate DESC
-""")
+""";
+
+    @Query(EXPORT_REPORT_QUERY)
     Page<IssueNoteReportDTO> getFilteredExportReport(
             @org.springframework.lang.Nullable String search,
+            @org.springframework.lang.Nullable List<Long> ginIds,
+            @org.springframework.lang.Nullable List<Long> materialIds,
+            @org.springframework.lang.Nullable List<Long> productIds,
+            @org.springframework.lang.Nullable String likeSearch,
             @org.springframework.lang.Nullable java.time.LocalDateTime startDate,
             @org.springframework.lang.Nullable java.time.LocalDateTime endDate,
             @org.springframework.lang.Nullable String itemType,
@@ -61,4 +78,22 @@ ORDER BY n.issueDate DESC
             @org.springframework.lang.Nullable List<Long> warehouseIds,
             Pageable pageable
     );
+
+    // Cùng bộ lọc như getFilteredExportReport nhưng đọc dần từng dòng để xuất Excel
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = ExcelStreamExporter.STREAM_FETCH_SIZE))
+    @Query(EXPORT_REPORT_QUERY)
+    Stream<IssueNoteReportDTO> streamFilteredExportReport(
+            @org.springframework.lang.Nullable String search,
+            @org.springframework.lang.Nullable List<Long> ginIds,
+            @org.springframework.lang.Nullable List<Long> materialIds,
+            @org.springframework.lang.Nullable List<Long> productIds,
+            @org.springframework.lang.Nullable String likeSearch,
+            @org.springframework.lang.Nullable java.time.LocalDateTime startDate,
+            @org.springframework.lang.Nullable java.time.LocalDateTime endDate,
+            @org.springframework.lang.Nullable String itemType,
+            @org.springframework.lang.Nullable Double minQuantity,
+            @org.springframework.lang.Nullable Double maxQuantity,
+            @org.springframework.lang.Nullable List<String> categories,
+            @org.springframework.lang.Nullable List<Long> warehouseIds
+    );
 }
\ No newline at end of file
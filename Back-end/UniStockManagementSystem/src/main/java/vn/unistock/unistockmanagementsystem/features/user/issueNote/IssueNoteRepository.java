@@ -13,10 +13,8 @@ import java.util.List;
 
 @Repository
 public interface IssueNoteRepository extends JpaRepository<GoodIssueNote, Long> {
-    @Query("SELECT MAX(gin.ginId) FROM GoodIssueNote gin")
-    Long findMaxIssueNoteId();
-
-    @Query("""
+    // Dùng chung cho danh sách phân trang và cuộn keyset
+    String FILTER_QUERY = """
     SELECT gin FROM GoodIssueNote gin
     WHERE 
       (:search IS NULL OR :search = '' 
@@ -26,7 +24,9 @@ public interface IssueNoteRepository extends JpaRepository<GoodIssueNote, Long>
       AND (:startDate IS NULL OR gin.issueDate >= :startDate)
       AND (:endDate IS NULL OR gin.issueDate <= :endDate)
       AND (:categories IS NULL OR gin.category IN :categories)
-""")
+""";
+
+    @Query(FILTER_QUERY)
     Page<GoodIssueNote> searchFilteredIssueNotes(
             @Param("search") String search,
             @Param("startDate") LocalDateTime startDate,
@@ -35,4 +35,14 @@ public interface IssueNoteRepository extends JpaRepository<GoodIssueNote, Long>
             Pageable pageable
     );
 
+    // Trang kế tiếp theo keyset: chỉ các phiếu có id nhỏ hơn afterId, không chạy COUNT
+    @Query(FILTER_QUERY + "  AND (:afterId IS NULL OR gin.ginId < :afterId)")
+    List<GoodIssueNote> scrollFilteredIssueNotes(
+            @Param("search") String search,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("categories") List<String> categories,
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
 }
\ No newline at end of file
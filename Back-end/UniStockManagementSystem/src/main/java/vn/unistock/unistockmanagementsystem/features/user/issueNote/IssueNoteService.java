@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -16,46 +17,83 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 import vn.unistock.unistockmanagementsystem.entities.*;
-import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryDeltaDao;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryReservationService;
 import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryTransactionRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.StockBalanceService;
 import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
-import vn.unistock.unistockmanagementsystem.features.user.notification.NotificationService;
+import vn.unistock.unistockmanagementsystem.features.user.notification.MaterialStockChangedEvent;
 import vn.unistock.unistockmanagementsystem.features.user.products.ProductsRepository;
 import vn.unistock.unistockmanagementsystem.features.user.receiptnote.PaperEvidenceRepository;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.PaperEvidenceService;
+import vn.unistock.unistockmanagementsystem.features.user.receiptnote.PaperEvidenceUploadResultDTO;
 import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrdersRepository;
 import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
 import vn.unistock.unistockmanagementsystem.features.user.warehouse.WarehouseRepository;
 import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
-import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
-
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
+import vn.unistock.unistockmanagementsystem.utils.pagination.CursorPage;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchDomain;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchIndexService;
+import vn.unistock.unistockmanagementsystem.utils.sequence.DocumentCodeService;
+import vn.unistock.unistockmanagementsystem.utils.sequence.DocumentType;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class IssueNoteService {
     private static final Logger logger = LoggerFactory.getLogger(IssueNoteService.class);
 
+    private static final List<ExcelStreamExporter.Column<IssueNoteReportDTO>> EXPORT_REPORT_COLUMNS = List.of(
+            ExcelStreamExporter.column("Mã phiếu xuất", IssueNoteReportDTO::getGinCode),
+            ExcelStreamExporter.column("Ngày xuất", IssueNoteReportDTO::getIssueDate),
+            ExcelStreamExporter.column("Phân loại xuất", IssueNoteReportDTO::getCategory),
+            ExcelStreamExporter.column("Kho xuất", IssueNoteReportDTO::getWarehouseName),
+            ExcelStreamExporter.column("Mã hàng", r -> r.getMaterialCode() != null ? r.getMaterialCode() : r.getProductCode()),
+            ExcelStreamExporter.column("Tên hàng", r -> r.getMaterialName() != null ? r.getMaterialName() : r.getProductName()),
+            ExcelStreamExporter.column("Đơn vị", IssueNoteReportDTO::getUnitName),
+            ExcelStreamExporter.column("Số lượng", IssueNoteReportDTO::getQuantity));
+
     @Autowired
-    private NotificationService notificationService;
+    private ApplicationEventPublisher eventPublisher;
 
     @Autowired
     private IssueNoteRepository issueNoteRepository;
 
+    @Autowired
+    private DocumentCodeService documentCodeService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     @Autowired
     private IssueNoteDetailRepository issueNoteDetailRepository;
 
     @Autowired
-    private InventoryRepository inventoryRepository;
+    private InventoryReservationService inventoryReservationService;
+
+    @Autowired
+    private InventoryDeltaDao inventoryDeltaDao;
 
     @Autowired
     private InventoryTransactionRepository inventoryTransactionRepository;
 
+    @Autowired
+    private StockBalanceService stockBalanceService;
+
     @Autowired
     private WarehouseRepository warehouseRepository;
 
@@ -72,7 +110,7 @@ public class IssueNoteService {
     private PaperEvidenceRepository paperEvidenceRepository;
 
     @Autowired
-    private AzureBlobService azureBlobService;
+    private PaperEvidenceService paperEvidenceService;
 
     @Autowired
     private IssueNoteMapper issueNoteMapper;
@@ -92,6 +130,25 @@ public class IssueNoteService {
         return notes.map(issueNoteMapper::toDTO);
     }
 
+    // Phân trang keyset cho danh sách phiếu xuất: cursor là ginId cuối của trang trước
+    public CursorPage<IssueNoteDTO> scrollIssueNotesFiltered(
+            String cursor, int size, boolean withTotal,
+            String search, LocalDate startDate, LocalDate endDate, List<String> categories
+    ) {
+        LocalDateTime startDateTime = (startDate != null) ? startDate.atStartOfDay() : null;
+        LocalDateTime endDateTime = (endDate != null) ? endDate.atTime(23, 59, 59) : null;
+
+        List<GoodIssueNote> rows = issueNoteRepository.scrollFilteredIssueNotes(
+                search, startDateTime, endDateTime, categories,
+                CursorPage.decodeCursor(cursor), CursorPage.seek(size, "ginId")
+        );
+        Long total = withTotal
+                ? issueNoteRepository.searchFilteredIssueNotes(
+                        search, startDateTime, endDateTime, categories, PageRequest.of(0, 1)).getTotalElements()
+                : null;
+        return CursorPage.of(rows, size, GoodIssueNote::getGinId, issueNoteMapper::toDTO, total);
+    }
+
     public Page<IssueNoteDTO> getAllIssueNotesFiltered(
             int page, int size, String search, LocalDate startDate, LocalDate endDate, List<String> categories
     ) {
@@ -117,7 +174,7 @@ public class IssueNoteService {
             User currentUser = userDetails.getUser();
 
             GoodIssueNote issueNote = GoodIssueNote.builder()
-                    .ginCode(issueNoteDto.getGinCode())
+                    .ginCode(documentCodeService.nextCode(DocumentType.ISSUE_NOTE))
                     .description(issueNoteDto.getDescription())
                     .category(issueNoteDto.getCategory())
                     .issueDate(issueNoteDto.getIssueDate())
@@ -146,15 +203,52 @@ public class IssueNoteService {
 
             issueNote = issueNoteRepository.save(issueNote);
 
+            // Nạp sẵn kho, đơn vị, vật tư và sản phẩm của cả phiếu bằng vài truy vấn IN
+            Set<Long> warehouseIds = new HashSet<>();
+            Set<Long> unitIds = new HashSet<>();
+            Set<Long> materialIds = new HashSet<>();
+            Set<Long> productIds = new HashSet<>();
             for (IssueNoteDetailDTO detailDto : issueNoteDto.getDetails()) {
-                logger.info("⏳ Processing export detail: {}", detailDto);
-
                 if (detailDto.getWarehouseId() == null) {
                     throw new RuntimeException("warehouseId is required");
                 }
+                warehouseIds.add(detailDto.getWarehouseId());
+                if (detailDto.getUnitId() != null) {
+                    unitIds.add(detailDto.getUnitId());
+                }
+                if (detailDto.getMaterialId() != null) {
+                    materialIds.add(detailDto.getMaterialId());
+                } else if (detailDto.getProductId() != null) {
+                    productIds.add(detailDto.getProductId());
+                }
+            }
+            Set<Long> exportedMaterialIds = new LinkedHashSet<>(materialIds);
+            if ("Gia công".equals(issueNoteDto.getCategory()) && issueNoteDto.getExpectedReturns() != null) {
+                for (IssueNoteDetailDTO expectedReturn : issueNoteDto.getExpectedReturns()) {
+                    if (expectedReturn.getMaterialId() != null) {
+                        materialIds.add(expectedReturn.getMaterialId());
+                    }
+                    if (expectedReturn.getUnitId() != null) {
+                        unitIds.add(expectedReturn.getUnitId());
+                    }
+                }
+            }
 
-                Warehouse warehouse = warehouseRepository.findById(detailDto.getWarehouseId())
-                        .orElseThrow(() -> new RuntimeException("Warehouse not found with ID: " + detailDto.getWarehouseId()));
+            Map<Long, Warehouse> warehouses = warehouseRepository.findAllById(warehouseIds).stream()
+                    .collect(Collectors.toMap(Warehouse::getWarehouseId, w -> w));
+            Map<Long, Unit> units = unitRepository.findAllById(unitIds).stream()
+                    .collect(Collectors.toMap(Unit::getUnitId, u -> u));
+            Map<Long, Material> materials = materialRepository.findAllById(materialIds).stream()
+                    .collect(Collectors.toMap(Material::getMaterialId, m -> m));
+            Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                    .collect(Collectors.toMap(Product::getProductId, p -> p));
+
+            List<InventoryDeltaDao.Delta> withdrawals = new ArrayList<>();
+            List<InventoryTransaction> transactions = new ArrayList<>();
+            for (IssueNoteDetailDTO detailDto : issueNoteDto.getDetails()) {
+                logger.debug("⏳ Processing export detail: {}", detailDto);
+
+                Warehouse warehouse = require(warehouses, detailDto.getWarehouseId(), "Warehouse");
 
                 GoodIssueDetail detail = GoodIssueDetail.builder()
                         .warehouse(warehouse)
@@ -163,29 +257,23 @@ public class IssueNoteService {
                         .build();
 
                 if (detailDto.getUnitId() != null) {
-                    Unit unit = unitRepository.findById(detailDto.getUnitId())
-                            .orElseThrow(() -> new RuntimeException("Unit not found with ID: " + detailDto.getUnitId()));
-                    detail.setUnit(unit);
+                    detail.setUnit(require(units, detailDto.getUnitId(), "Unit"));
                 }
 
                 if (detailDto.getMaterialId() != null) {
-                    Material material = materialRepository.findById(detailDto.getMaterialId())
-                            .orElseThrow(() -> new RuntimeException("Material not found with ID: " + detailDto.getMaterialId()));
+                    Material material = require(materials, detailDto.getMaterialId(), "Material");
                     detail.setMaterial(material);
                     if (detail.getUnit() == null) {
                         detail.setUnit(material.getUnit());
                     }
-                    updateInventoryAndTransactionForExport(warehouse, material, null, detailDto.getQuantity(), issueNote, hasSalesOrder);
-                    // ✅ Thêm dòng này để kiểm tra tồn kho thấp
-                    notificationService.checkLowStock(material.getMaterialId());
+                    transactions.add(exportFromInventory(withdrawals, warehouse, material, null, detailDto.getQuantity(), issueNote, hasSalesOrder));
                 } else if (detailDto.getProductId() != null) {
-                    Product product = productRepository.findById(detailDto.getProductId())
-                            .orElseThrow(() -> new RuntimeException("Product not found with ID: " + detailDto.getProductId()));
+                    Product product = require(products, detailDto.getProductId(), "Product");
                     detail.setProduct(product);
                     if (detail.getUnit() == null) {
                         detail.setUnit(product.getUnit());
                     }
-                    updateInventoryAndTransactionForExport(warehouse, null, product, detailDto.getQuantity(), issueNote, hasSalesOrder);
+                    transactions.add(exportFromInventory(withdrawals, warehouse, null, product, detailDto.getQuantity(), issueNote, hasSalesOrder));
                 } else {
                     throw new RuntimeException("Phải có thông tin về vật tư hoặc sản phẩm để xuất kho");
                 }
@@ -193,6 +281,15 @@ public class IssueNoteService {
                 issueNote.getDetails().add(detail);
             }
 
+            // Trừ tồn kho bằng UPDATE có điều kiện theo lô; giao dịch được ghi theo JDBC batch khi flush
+            withdrawFromInventory(withdrawals);
+            inventoryTransactionRepository.saveAll(transactions);
+            stockBalanceService.recordAll(transactions);
+            logger.info("Posted {} export transactions for issue note {}", transactions.size(), issueNote.getGinCode());
+
+            // ✅ Kiểm tra tồn kho thấp cho các vật tư đã xuất: chạy bất đồng bộ sau khi phiếu commit
+            eventPublisher.publishEvent(MaterialStockChangedEvent.issued(exportedMaterialIds));
+
             issueNoteDetailRepository.saveAll(issueNote.getDetails());
 
             if (hasSalesOrder) {
@@ -268,58 +365,8 @@ public class IssueNoteService {
                     if (allProductsFulfilled) {
                         salesOrder.setStatus(SalesOrder.OrderStatus.COMPLETED);
                         logger.debug("SalesOrder ID {} updated to COMPLETED (all products fulfilled)", salesOrder.getOrderId());
-                        List<SalesOrderDetail> orderDetails = salesOrder.getDetails();
-                        for (SalesOrderDetail detail : orderDetails) {
-                            Product product = detail.getProduct();
-                            double quantityToRelease = detail.getQuantity();
-                            List<Inventory> reservedInventories = inventoryRepository.findByProductIdAndStatus(
-                                    product.getProductId(), Inventory.InventoryStatus.RESERVED);
-                            Map<Long, Double> warehouseQuantities = new HashMap<>();
-                            for (Inventory inventory : reservedInventories) {
-                                if (quantityToRelease <= 0) break;
-                                double quantityInInventory = inventory.getQuantity();
-                                double quantityToReleaseFromThis = Math.min(quantityInInventory, quantityToRelease);
-                                Long warehouseId = inventory.getWarehouse().getWarehouseId();
-                                warehouseQuantities.merge(warehouseId, quantityToReleaseFromThis, Double::sum);
-                                quantityToRelease -= quantityToReleaseFromThis;
-                            }
-                            for (Map.Entry<Long, Double> entry : warehouseQuantities.entrySet()) {
-                                Long warehouseId = entry.getKey();
-                                double releasedQuantity = entry.getValue();
-                                Warehouse warehouse = reservedInventories.stream()
-                                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                                        .findFirst()
-                                        .map(Inventory::getWarehouse)
-                                        .orElseThrow(() -> new RuntimeException("Warehouse not found for warehouseId: " + warehouseId));
-                                Inventory availableInventory = inventoryRepository.findByWarehouseAndProductAndStatus(
-                                                warehouse, product, Inventory.InventoryStatus.AVAILABLE)
-                                        .orElse(null);
-                                if (availableInventory == null) {
-                                    availableInventory = Inventory.builder()
-                                            .warehouse(warehouse)
-                                            .product(product)
-                                            .status(Inventory.InventoryStatus.AVAILABLE)
-                                            .quantity(0.0)
-                                            .build();
-                                }
-                                availableInventory.setQuantity(availableInventory.getQuantity() + releasedQuantity);
-                                availableInventory.setLastUpdated(LocalDateTime.now());
-                                availableInventory.setSalesOrder(null);
-                                inventoryRepository.save(availableInventory);
-                                logger.debug("Updated Inventory for Product ID {} in Warehouse ID {}: Added {} to AVAILABLE, salesOrder removed",
-                                        product.getProductId(), warehouseId, releasedQuantity);
-                                List<Inventory> reservedToDelete = reservedInventories.stream()
-                                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                                        .toList();
-                                inventoryRepository.deleteAll(reservedToDelete);
-                                logger.debug("Deleted {} RESERVED Inventory records for Product ID {} in Warehouse ID {}",
-                                        reservedToDelete.size(), product.getProductId(), warehouseId);
-                            }
-                            if (quantityToRelease > 0) {
-                                logger.warn("Insufficient RESERVED inventory for Product ID {}: {} units remaining",
-                                        product.getProductId(), quantityToRelease);
-                            }
-                        }
+                        // Đơn đã xuất đủ: phần giữ chỗ còn lại của đơn được trả về AVAILABLE
+                        inventoryReservationService.releaseOrderReservations(salesOrder.getOrderId());
                     } else if (isFirstIssuance) {
                         salesOrder.setStatus(SalesOrder.OrderStatus.PARTIALLY_ISSUED);
                         logger.debug("SalesOrder ID {} updated to PARTIALLY_ISSUED (first issuance)", salesOrder.getOrderId());
@@ -345,16 +392,14 @@ public class IssueNoteService {
                             throw new RuntimeException("MaterialId is required for expected return");
                         }
 
-                        Material material = materialRepository.findById(expectedReturn.getMaterialId())
-                                .orElseThrow(() -> new RuntimeException("Material not found with ID: " + expectedReturn.getMaterialId()));
+                        Material material = require(materials, expectedReturn.getMaterialId(), "Material");
 
                         ReceiveOutsourceMaterial rom = new ReceiveOutsourceMaterial();
                         rom.setReceiveOutsource(outsource);
                         rom.setMaterial(material);
                         rom.setQuantity(expectedReturn.getQuantity());
                         rom.setUnit(expectedReturn.getUnitId() != null
-                                ? unitRepository.findById(expectedReturn.getUnitId())
-                                .orElseThrow(() -> new RuntimeException("Unit not found with ID: " + expectedReturn.getUnitId()))
+                                ? require(units, expectedReturn.getUnitId(), "Unit")
                                 : material.getUnit());
                         outsourceMaterials.add(rom);
                     }
@@ -372,113 +417,87 @@ public class IssueNoteService {
         }
     }
 
-    private void updateInventoryAndTransactionForExport(Warehouse warehouse, Material material, Product product, Double quantity, GoodIssueNote issueNote, boolean hasSalesOrder) {
-        Inventory inventory = null;
-        SalesOrder salesOrder = hasSalesOrder ? issueNote.getSalesOrder() : null;
-
-        if (material != null) {
-            Inventory.InventoryStatus status = hasSalesOrder ? Inventory.InventoryStatus.RESERVED : Inventory.InventoryStatus.AVAILABLE;
-
-            if (hasSalesOrder) {
-                inventory = inventoryRepository.findByWarehouseAndMaterialAndStatusAndSalesOrder(warehouse, material, Inventory.InventoryStatus.RESERVED, salesOrder)
-                        .filter(i -> i.getQuantity() >= quantity)
-                        .orElse(null);
-                logger.debug("Material [{}] - Warehouse [{}]: Tried RESERVED with SalesOrder [{}], found inventory = {}",
-                        material.getMaterialId(), warehouse.getWarehouseId(), salesOrder != null ? salesOrder.getOrderId() : "null",
-                        inventory != null ? inventory.getQuantity() : "null");
-            }
-
-            if (inventory == null) {
-                inventory = inventoryRepository.findByWarehouseAndMaterialAndStatus(warehouse, material, Inventory.InventoryStatus.AVAILABLE)
-                        .orElseThrow(() -> new RuntimeException("Không tìm thấy tồn kho AVAILABLE cho vật tư có ID: " + material.getMaterialId()));
-                status = Inventory.InventoryStatus.AVAILABLE;
-                logger.debug("Material [{}] - Warehouse [{}]: Fell back to AVAILABLE", material.getMaterialId(), warehouse.getWarehouseId());
-            }
-
-            if (inventory.getQuantity() < quantity) {
-                throw new RuntimeException("Không đủ số lượng tồn kho " + status + " cho vật tư có ID: " + material.getMaterialId());
-            }
-
-            inventory.setQuantity(inventory.getQuantity() - quantity);
-            inventory.setLastUpdated(issueNote.getIssueDate());
-            if (status == Inventory.InventoryStatus.RESERVED && hasSalesOrder) {
-                inventory.setSalesOrder(salesOrder);
-            }
-            inventoryRepository.save(inventory);
-            logger.debug("Material [{}] - Warehouse [{}]: New inventory quantity = {}", material.getMaterialId(), warehouse.getWarehouseId(), inventory.getQuantity());
-
-            InventoryTransaction transaction = InventoryTransaction.builder()
-                    .warehouse(warehouse)
-                    .material(material)
-                    .transactionType(InventoryTransaction.TransactionType.EXPORT)
-                    .quantity(quantity)
-                    .goodIssueNote(issueNote)
-                    .transactionDate(issueNote.getIssueDate())
-                    .referenceType(InventoryTransaction.NoteType.GOOD_ISSUE_NOTE)
-                    .build();
-            inventoryTransactionRepository.save(transaction);
-            logger.info("Created export transaction for material ID {}", material.getMaterialId());
+    private static <T> T require(Map<Long, T> loaded, Long id, String label) {
+        T value = loaded.get(id);
+        if (value == null) {
+            throw new RuntimeException(label + " not found with ID: " + id);
         }
+        return value;
+    }
 
-        if (product != null) {
-            Inventory.InventoryStatus status = hasSalesOrder ? Inventory.InventoryStatus.RESERVED : Inventory.InventoryStatus.AVAILABLE;
+    /**
+     * Thêm dòng trừ tồn kho (RESERVED của đơn hàng nếu phiếu gắn đơn hàng, ngược lại AVAILABLE) vào withdrawals
+     * và trả về giao dịch xuất tương ứng; việc ghi xuống DB do withdrawFromInventory thực hiện theo lô.
+     */
+    private InventoryTransaction exportFromInventory(List<InventoryDeltaDao.Delta> withdrawals, Warehouse warehouse, Material material, Product product,
+                                                     Double quantity, GoodIssueNote issueNote, boolean hasSalesOrder) {
+        Long orderId = hasSalesOrder ? issueNote.getSalesOrder().getOrderId() : null;
+        Inventory.InventoryStatus status = hasSalesOrder ? Inventory.InventoryStatus.RESERVED : Inventory.InventoryStatus.AVAILABLE;
+
+        withdrawals.add(material != null
+                ? InventoryDeltaDao.Delta.material(warehouse.getWarehouseId(), material.getMaterialId(), status, orderId,
+                        quantity, issueNote.getIssueDate())
+                : InventoryDeltaDao.Delta.product(warehouse.getWarehouseId(), product.getProductId(), status, orderId,
+                        quantity, LocalDateTime.now()));
+
+        return InventoryTransaction.builder()
+                .warehouse(warehouse)
+                .material(material)
+                .product(product)
+                .transactionType(InventoryTransaction.TransactionType.EXPORT)
+                .quantity(quantity)
+                .goodIssueNote(issueNote)
+                .transactionDate(issueNote.getIssueDate())
+                .referenceType(InventoryTransaction.NoteType.GOOD_ISSUE_NOTE)
+                .build();
+    }
 
-            if (hasSalesOrder) {
-                inventory = inventoryRepository.findByWarehouseAndProductAndStatusAndSalesOrder(warehouse, product, Inventory.InventoryStatus.RESERVED, salesOrder)
-                        .filter(i -> i.getQuantity() >= quantity)
-                        .orElse(null);
-                logger.debug("Product [{}] - Warehouse [{}]: Tried RESERVED with SalesOrder [{}], found inventory = {}",
-                        product.getProductId(), warehouse.getWarehouseId(), salesOrder != null ? salesOrder.getOrderId() : "null",
-                        inventory != null ? inventory.getQuantity() : "null");
+    /**
+     * Trừ tồn kho theo lô: dòng RESERVED không đủ số lượng thì chuyển sang trừ AVAILABLE;
+     * AVAILABLE cũng không đủ => lỗi, transaction bị rollback cùng các dòng đã trừ.
+     */
+    private void withdrawFromInventory(List<InventoryDeltaDao.Delta> withdrawals) {
+        boolean[] withdrawn = inventoryDeltaDao.withdraw(withdrawals);
+
+        List<InventoryDeltaDao.Delta> fallbacks = new ArrayList<>();
+        for (int i = 0; i < withdrawals.size(); i++) {
+            InventoryDeltaDao.Delta withdrawal = withdrawals.get(i);
+            if (withdrawn[i]) {
+                continue;
             }
-
-            if (inventory == null) {
-                inventory = inventoryRepository.findByWarehouseAndProductAndStatus(warehouse, product, Inventory.InventoryStatus.AVAILABLE)
-                        .orElseThrow(() -> new RuntimeException("Không tìm thấy tồn kho AVAILABLE cho sản phẩm có ID: " + product.getProductId()));
-                status = Inventory.InventoryStatus.AVAILABLE;
-                logger.debug("Product [{}] - Warehouse [{}]: Fell back to AVAILABLE", product.getProductId(), warehouse.getWarehouseId());
-            }
-
-            if (inventory.getQuantity() < quantity) {
-                throw new RuntimeException("Không đủ số lượng tồn kho " + status + " cho sản phẩm có ID: " + product.getProductId());
+            if (withdrawal.status() != Inventory.InventoryStatus.RESERVED) {
+                throw new RuntimeException("Không đủ số lượng tồn kho AVAILABLE cho " + itemLabel(withdrawal));
             }
+            logger.debug("{} - Warehouse [{}]: RESERVED of SalesOrder [{}] is short, falling back to AVAILABLE",
+                    itemLabel(withdrawal), withdrawal.warehouseId(), withdrawal.orderId());
+            fallbacks.add(withdrawal.withStatus(Inventory.InventoryStatus.AVAILABLE));
+        }
 
-            inventory.setQuantity(inventory.getQuantity() - quantity);
-            inventory.setLastUpdated(LocalDateTime.now());
-            if (status == Inventory.InventoryStatus.RESERVED && hasSalesOrder) {
-                inventory.setSalesOrder(salesOrder);
+        boolean[] fallbackWithdrawn = inventoryDeltaDao.withdraw(fallbacks);
+        for (int i = 0; i < fallbacks.size(); i++) {
+            if (!fallbackWithdrawn[i]) {
+                throw new RuntimeException("Không đủ số lượng tồn kho AVAILABLE cho " + itemLabel(fallbacks.get(i)));
             }
-            inventoryRepository.save(inventory);
-            logger.debug("Product [{}] - Warehouse [{}]: New inventory quantity = {}", product.getProductId(), warehouse.getWarehouseId(), inventory.getQuantity());
-
-            InventoryTransaction transaction = InventoryTransaction.builder()
-                    .warehouse(warehouse)
-                    .product(product)
-                    .transactionType(InventoryTransaction.TransactionType.EXPORT)
-                    .quantity(quantity)
-                    .goodIssueNote(issueNote)
-                    .transactionDate(issueNote.getIssueDate())
-                    .referenceType(InventoryTransaction.NoteType.GOOD_ISSUE_NOTE)
-                    .build();
-            inventoryTransactionRepository.save(transaction);
-            logger.info("Created export transaction for product ID {}", product.getProductId());
         }
     }
 
-    @Transactional
+    private static String itemLabel(InventoryDeltaDao.Delta delta) {
+        return delta.materialId() != null
+                ? "vật tư có ID: " + delta.materialId()
+                : "sản phẩm có ID: " + delta.productId();
+    }
+
+    // Mã dự kiến cho form thêm mới; mã thật được cấp trong createGoodIssue
     public String getNextIssueCode() {
         try {
-            Long maxId = issueNoteRepository.findMaxIssueNoteId();
-            Long nextId = (maxId != null) ? (maxId + 1) : 1;
-            return String.format("XK%05d", nextId);
+            return documentCodeService.previewCode(DocumentType.ISSUE_NOTE);
         } catch (Exception e) {
             logger.error("Error generating next issue note code", e);
             throw new RuntimeException("Không thể tạo mã phiếu xuất mới: " + e.getMessage(), e);
         }
     }
 
-    @Transactional
-    public List<String> uploadPaperEvidence(Long noteId, String noteType, List<MultipartFile> files, User currentUser) {
+    public PaperEvidenceUploadResultDTO uploadPaperEvidence(Long noteId, String noteType, List<MultipartFile> files, User currentUser) {
         logger.info("Uploading {} files for issue note ID: {}, type: {}", files.size(), noteId, noteType);
 
         if ("GOOD_ISSUE_NOTE".equals(noteType)) {
@@ -486,26 +505,7 @@ public class IssueNoteService {
                     .orElseThrow(() -> new RuntimeException("Phiếu xuất không tìm thấy với ID: " + noteId));
         }
 
-        List<String> fileUrls = new ArrayList<>();
-        try {
-            for (MultipartFile file : files) {
-                if (!file.isEmpty()) {
-                    String fileUrl = azureBlobService.uploadFile(file);
-                    PaperEvidence evidence = PaperEvidence.builder()
-                            .noteId(noteId)
-                            .noteType(PaperEvidence.NoteType.valueOf(noteType))
-                            .paperUrl(fileUrl)
-                            .build();
-                    paperEvidenceRepository.save(evidence);
-                    fileUrls.add(fileUrl);
-                    logger.info("Successfully uploaded file: {} for note ID: {}", file.getOriginalFilename(), noteId);
-                }
-            }
-            return fileUrls;
-        } catch (Exception e) {
-            logger.error("Error uploading files", e);
-            throw new RuntimeException("Failed to upload files: " + e.getMessage(), e);
-        }
+        return paperEvidenceService.upload(noteId, PaperEvidence.NoteType.valueOf(noteType), files);
     }
 
     public IssueNoteDTO getIssueNoteById(Long issueNoteId) {
@@ -550,11 +550,79 @@ public class IssueNoteService {
         LocalDateTime startDateTime = (startDate != null) ? startDate.atStartOfDay() : null;
         LocalDateTime endDateTime = (endDate != null) ? endDate.atTime(23, 59, 59) : null;
 
+        String searchTerm = (search != null && !search.isBlank()) ? search : null;
+        ReportSearch reportSearch = reportSearch(searchTerm);
+        if (reportSearch.isNone()) {
+            return Page.empty(pageable);
+        }
+
         return issueNoteDetailRepository.getFilteredExportReport(
-                search, startDateTime, endDateTime, itemType, minQuantity, maxQuantity, categories, warehouseIds, pageable
+                searchTerm,
+                reportSearch.ginIds(),
+                reportSearch.materialIds(),
+                reportSearch.productIds(),
+                reportSearch.likeSearch(),
+                startDateTime, endDateTime, itemType, minQuantity, maxQuantity, categories, warehouseIds, pageable
         );
     }
 
+    // Xuất báo cáo xuất kho theo cùng bộ lọc, ghi thẳng ra output stream
+    @Transactional(readOnly = true)
+    public void writeExportReport(
+            OutputStream out,
+            String search,
+            LocalDate startDate,
+            LocalDate endDate,
+            String itemType,
+            Double minQuantity,
+            Double maxQuantity,
+            List<String> categories,
+            List<Long> warehouseIds
+    ) throws IOException {
+        LocalDateTime startDateTime = (startDate != null) ? startDate.atStartOfDay() : null;
+        LocalDateTime endDateTime = (endDate != null) ? endDate.atTime(23, 59, 59) : null;
+
+        String searchTerm = (search != null && !search.isBlank()) ? search : null;
+        ReportSearch reportSearch = reportSearch(searchTerm);
+        if (reportSearch.isNone()) {
+            // Vẫn trả file có dòng tiêu đề
+            ExcelStreamExporter.write(out, "Xuất kho", EXPORT_REPORT_COLUMNS, Stream.empty());
+            return;
+        }
+
+        try (Stream<IssueNoteReportDTO> rows = issueNoteDetailRepository.streamFilteredExportReport(
+                searchTerm,
+                reportSearch.ginIds(),
+                reportSearch.materialIds(),
+                reportSearch.productIds(),
+                reportSearch.likeSearch(),
+                startDateTime, endDateTime, itemType, minQuantity, maxQuantity, categories, warehouseIds)) {
+            ExcelStreamExporter.write(out, "Xuất kho", EXPORT_REPORT_COLUMNS, rows);
+        }
+    }
+
+    // Bộ lọc search của báo cáo xuất kho: khớp mã phiếu, mã/tên vật tư hoặc mã/tên sản phẩm
+    private record ReportSearch(List<Long> ginIds, List<Long> materialIds, List<Long> productIds, String likeSearch) {
+        boolean isNone() {
+            return ginIds != null && ginIds.isEmpty()
+                    && materialIds != null && materialIds.isEmpty()
+                    && productIds != null && productIds.isEmpty();
+        }
+    }
+
+    private ReportSearch reportSearch(String searchTerm) {
+        SearchIndexService.Match gins = searchIndexService.match(SearchDomain.ISSUE_NOTE, searchTerm);
+        SearchIndexService.Match materials = searchIndexService.match(SearchDomain.MATERIAL, searchTerm);
+        SearchIndexService.Match products = searchIndexService.match(SearchDomain.PRODUCT, searchTerm);
+        // Các điều kiện nối bằng OR nên một danh mục phải lọc bằng LIKE thì lọc LIKE cho cả ba
+        String likeSearch = gins.likeTerm() != null ? gins.likeTerm()
+                : materials.likeTerm() != null ? materials.likeTerm() : products.likeTerm();
+        if (likeSearch != null) {
+            return new ReportSearch(null, null, null, likeSearch);
+        }
+        return new ReportSearch(gins.ids(), materials.ids(), products.ids(), null);
+    }
+
     @Transactional(readOnly = true)
     public List<ReceiveOutsourceDTO> getPendingOrInProgressReceiveOutsource() {
         List<ReceiveOutsource> outsources = receiveOutsourceRepository.findByStatusIn(
@@ -1,21 +1,33 @@
 package vn.unistock.unistockmanagementsystem.features.user.materialType;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vn.unistock.unistockmanagementsystem.entities.MaterialType;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface MaterialTypeRepository extends JpaRepository<MaterialType, Long> {
     boolean existsByNameAndMaterialTypeIdNot(String name, Long materialTypeId);
+    // Kết quả nằm trong query cache của Hibernate, tự vô hiệu khi bảng thay đổi
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     List<MaterialType> findAllByStatusTrue(); // Đổi từ findAllByUsingTrue
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<MaterialType> findByNameIgnoreCase(String name);
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT m FROM MaterialType m WHERE LOWER(m.name) IN :names")
+    List<MaterialType> findByLowerNameIn(@Param("names") Collection<String> names);
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<MaterialType> findByName(String name);
     Page<MaterialType> findAll(Pageable pageable);
     boolean existsByNameIgnoreCase(String name);
@@ -2,6 +2,8 @@ package vn.unistock.unistockmanagementsystem.features.user.materialType;
 
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -27,6 +29,8 @@ public class MaterialTypeService {
         return materialTypes.map(materialTypeMapper::toDTO);
     }
 
+    // Danh sách dùng cho mọi form chọn danh mục vật tư; bị xóa khi thêm/sửa/đổi trạng thái
+    @Cacheable("activeMaterialTypes")
     public List<MaterialTypeDTO> getActiveMaterialTypes() {
         return materialTypeRepository.findAllByStatusTrue().stream()
                 .map(materialTypeMapper::toDTO)
@@ -40,6 +44,7 @@ public class MaterialTypeService {
     }
 
     @Transactional
+    @CacheEvict(value = "activeMaterialTypes", allEntries = true)
     public MaterialTypeDTO createMaterialType(MaterialTypeDTO dto) {
         // Chuẩn hóa name
         String normalizedName = dto.getName().trim();
@@ -60,6 +65,7 @@ public class MaterialTypeService {
     }
 
     @Transactional
+    @CacheEvict(value = "activeMaterialTypes", allEntries = true)
     public MaterialTypeDTO updateMaterialType(Long id, MaterialTypeDTO dto) {
         MaterialType materialType = materialTypeRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Không tìm thấy danh mục vật tư"));
@@ -83,6 +89,7 @@ public class MaterialTypeService {
     }
 
     @Transactional
+    @CacheEvict(value = "activeMaterialTypes", allEntries = true)
     public MaterialTypeDTO toggleStatus(Long id, boolean status) {
         MaterialType materialType = materialTypeRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Không tìm thấy danh mục vật tư"));
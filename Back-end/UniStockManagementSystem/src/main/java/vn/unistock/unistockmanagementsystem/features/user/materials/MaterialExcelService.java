@@ -1,22 +1,48 @@
 package vn.unistock.unistockmanagementsystem.features.user.materials;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddressList;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import vn.unistock.unistockmanagementsystem.entities.*;
 import vn.unistock.unistockmanagementsystem.features.user.materialType.MaterialTypeRepository;
 import vn.unistock.unistockmanagementsystem.features.user.partner.PartnerRepository;
 import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportJobDTO;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportJobService;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportProgress;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportReferenceLookup;
+import vn.unistock.unistockmanagementsystem.utils.excel.StreamingSheetReader;
 
 import java.io.*;
-import java.text.Normalizer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class MaterialExcelService {
+    public static final String IMPORT_JOB_TYPE = "MATERIAL";
+
+    private static final int IMPORT_BATCH_SIZE = 500;
+
+    private static final List<ExcelStreamExporter.Column<MaterialExportDTO>> EXPORT_COLUMNS = List.of(
+            ExcelStreamExporter.column("Mã vật tư", MaterialExportDTO::getMaterialCode),
+            ExcelStreamExporter.column("Tên vật tư", MaterialExportDTO::getMaterialName),
+            ExcelStreamExporter.column("Đơn vị", MaterialExportDTO::getUnitName),
+            ExcelStreamExporter.column("Danh mục", MaterialExportDTO::getTypeName),
+            ExcelStreamExporter.column("Tên nhà cung cấp", MaterialExportDTO::getPartnerName),
+            ExcelStreamExporter.column("Mô tả", MaterialExportDTO::getDescription));
+
     @Autowired
     private UnitRepository unitRepository;
 
@@ -29,187 +55,262 @@ public class MaterialExcelService {
     @Autowired
     private PartnerRepository partnerRepository;
 
-    private String normalize(String input) {
-        if (input == null) return null;
-        return Normalizer.normalize(input.trim(), Normalizer.Form.NFC);
-    }
+    @Autowired
+    private ImportJobService importJobService;
 
-    public List<MaterialPreviewDTO> previewImportMaterials(MultipartFile file) throws IOException {
-        List<MaterialPreviewDTO> result = new ArrayList<>();
-        Workbook workbook = new XSSFWorkbook(file.getInputStream());
-        Sheet sheet = workbook.getSheetAt(0);
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
-        Map<String, Integer> codeToRowMap = new HashMap<>();
-        List<Partner> allSuppliers = partnerRepository.findAllSuppliers();
+    @PersistenceContext
+    private EntityManager entityManager;
 
-        System.out.println("🔍 Danh sách nhà cung cấp (DB):");
-        for (Partner p : allSuppliers) {
-            System.out.println(" - " + p.getPartnerName());
+    public List<MaterialPreviewDTO> previewImportMaterials(MultipartFile file) throws IOException {
+        Path path = StreamingSheetReader.copyToTempFile(file);
+        try {
+            List<MaterialPreviewDTO> result = new ArrayList<>();
+            validateMaterials(path, resolveReferences(path), ImportProgress.NONE, result::add);
+            return result;
+        } finally {
+            Files.deleteIfExists(path);
         }
+    }
 
-        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
-
-            MaterialPreviewDTO dto = new MaterialPreviewDTO();
-            dto.setRowIndex(i + 1);
-            dto.setValid(true);
+    public String importMaterials(MultipartFile file) throws IOException {
+        Path path = StreamingSheetReader.copyToTempFile(file);
+        try {
+            return importMaterials(path, resolveReferences(path), ImportProgress.NONE);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
 
-            String code = getCellValue(row.getCell(0));
-            String name = getCellValue(row.getCell(1));
-            String unitName = getCellValue(row.getCell(2));
-            String typeName = getCellValue(row.getCell(3));
-            String partnerName = getCellValue(row.getCell(4));
-            String description = getCellValue(row.getCell(5));
+    // File lớn: kiểm tra rồi import ở luồng nền, client theo dõi qua jobId
+    public ImportJobDTO startImportJob(MultipartFile file) throws IOException {
+        return importJobService.submit(IMPORT_JOB_TYPE, file, (path, progress) -> {
+            MaterialReferences refs = resolveReferences(path);
+            long[] invalidRows = {0};
+            validateMaterials(path, refs, progress, dto -> {
+                if (!dto.isValid()) invalidRows[0]++;
+            });
+            if (invalidRows[0] > 0) {
+                throw new IllegalArgumentException("File chứa " + invalidRows[0] + " dòng không hợp lệ, không thể import.");
+            }
+            return importMaterials(path, refs, progress);
+        });
+    }
 
-            dto.setMaterialCode(code);
-            dto.setMaterialName(name);
-            dto.setUnitName(unitName);
-            dto.setMaterialTypeName(typeName);
-            dto.setPartnerName(partnerName);
-            dto.setDescription(description);
+    // Tham chiếu của cả file, tra một lần trước khi kiểm tra/import; khóa map là ImportReferenceLookup.key
+    private record MaterialReferences(Set<String> existingCodes, Map<String, Unit> units,
+                                      Map<String, MaterialType> types, Map<String, Partner> suppliers) {}
+
+    // Lượt đọc đầu chỉ gom mã/tên trong file, sau đó tra DB bằng vài câu IN thay vì query cho từng dòng
+    // (trước đây mỗi dòng còn tải lại toàn bộ nhà cung cấp)
+    private MaterialReferences resolveReferences(Path path) throws IOException {
+        Set<String> codes = new HashSet<>();
+        Set<String> unitNames = new HashSet<>();
+        Set<String> typeNames = new HashSet<>();
+        Set<String> partnerNames = new HashSet<>();
+        StreamingSheetReader.read(path.toFile(), (rowNum, cells) -> {
+            if (rowNum == 0) return;
+            ImportReferenceLookup.addCandidates(codes, getCellValue(cells, 0), false);
+            ImportReferenceLookup.addCandidates(unitNames, getCellValue(cells, 2), true);
+            ImportReferenceLookup.addCandidates(typeNames, getCellValue(cells, 3), true);
+            ImportReferenceLookup.addCandidates(partnerNames, getCellValue(cells, 4), true);
+        });
+
+        Set<String> existingCodes = ImportReferenceLookup.findIn(codes, materialsRepository::findMaterialCodesIn).stream()
+                .map(ImportReferenceLookup::key)
+                .collect(Collectors.toSet());
+        Map<String, Unit> units = ImportReferenceLookup.index(
+                ImportReferenceLookup.findIn(unitNames, unitRepository::findByLowerUnitNameIn), Unit::getUnitName);
+        Map<String, MaterialType> types = ImportReferenceLookup.index(
+                ImportReferenceLookup.findIn(typeNames, materialTypeRepository::findByLowerNameIn), MaterialType::getName);
+        Map<String, Partner> suppliers = ImportReferenceLookup.index(
+                ImportReferenceLookup.findIn(partnerNames, partnerRepository::findSuppliersByLowerNameIn), Partner::getPartnerName);
+        return new MaterialReferences(existingCodes, units, types, suppliers);
+    }
 
-            List<String> errors = new ArrayList<>();
+    // Đọc từng dòng bằng SAX, dòng nào kiểm tra xong thì đẩy ra sink ngay
+    private void validateMaterials(Path path, MaterialReferences refs, ImportProgress progress,
+                                   Consumer<MaterialPreviewDTO> sink) throws IOException {
+        progress.startPhase(ImportJobDTO.Phase.VALIDATING);
+        Map<String, Integer> codeToRowMap = new HashMap<>();
 
-            if (code == null || code.isEmpty()) {
-                errors.add("Mã vật tư không được để trống");
-                dto.setValid(false);
-            } else {
-                String trimmedCode = code.trim();
-                if (codeToRowMap.containsKey(trimmedCode)) {
-                    errors.add("Mã vật tư trùng với dòng số " + codeToRowMap.get(trimmedCode));
-                    dto.setValid(false);
-                } else {
-                    codeToRowMap.put(trimmedCode, dto.getRowIndex());
-                }
-                if (materialsRepository.existsByMaterialCode(trimmedCode)) {
-                    errors.add("Mã vật tư đã tồn tại trong hệ thống");
-                    dto.setValid(false);
-                }
+        StreamingSheetReader.read(path.toFile(), new StreamingSheetReader.RowListener() {
+            @Override
+            public void onDimension(int lastRowNumber) {
+                progress.setTotalRows(lastRowNumber);
             }
 
-            if (name == null || name.isEmpty()) {
-                errors.add("Tên vật tư không được để trống");
-                dto.setValid(false);
-            }
+            @Override
+            public void onRow(int rowNum, List<String> cells) {
+                if (rowNum == 0 || isBlankRow(cells)) return;
 
-            Optional<Unit> unit = Optional.empty();
-            if (unitName == null || unitName.isEmpty()) {
-                errors.add("Đơn vị không được để trống");
-                dto.setValid(false);
-            } else {
-                unit = unitRepository.findByUnitNameIgnoreCase(unitName.trim());
-                if (unit.isEmpty()) {
-                    errors.add("Đơn vị không tồn tại trong hệ thống");
-                    dto.setValid(false);
+                MaterialPreviewDTO dto = validateMaterialRow(rowNum, cells, refs, codeToRowMap);
+                progress.rowProcessed();
+                if (!dto.isValid()) {
+                    progress.rowInvalid(dto.getRowIndex(), dto.getErrorMessage());
                 }
+                sink.accept(dto);
             }
+        });
+    }
 
-            Optional<MaterialType> type = Optional.empty();
-            if (typeName == null || typeName.isEmpty()) {
-                errors.add("Danh mục không được để trống");
+    private MaterialPreviewDTO validateMaterialRow(int rowNum, List<String> cells, MaterialReferences refs,
+                                                   Map<String, Integer> codeToRowMap) {
+        MaterialPreviewDTO dto = new MaterialPreviewDTO();
+        dto.setRowIndex(rowNum + 1);
+        dto.setValid(true);
+
+        String code = getCellValue(cells, 0);
+        String name = getCellValue(cells, 1);
+        String unitName = getCellValue(cells, 2);
+        String typeName = getCellValue(cells, 3);
+        String partnerName = getCellValue(cells, 4);
+        String description = getCellValue(cells, 5);
+
+        dto.setMaterialCode(code);
+        dto.setMaterialName(name);
+        dto.setUnitName(unitName);
+        dto.setMaterialTypeName(typeName);
+        dto.setPartnerName(partnerName);
+        dto.setDescription(description);
+
+        List<String> errors = new ArrayList<>();
+
+        if (code == null || code.isEmpty()) {
+            errors.add("Mã vật tư không được để trống");
+            dto.setValid(false);
+        } else {
+            String codeKey = ImportReferenceLookup.key(code);
+            if (codeToRowMap.containsKey(codeKey)) {
+                errors.add("Mã vật tư trùng với dòng số " + codeToRowMap.get(codeKey));
                 dto.setValid(false);
             } else {
-                type = materialTypeRepository.findByNameIgnoreCase(typeName.trim());
-                if (type.isEmpty()) {
-                    errors.add("Danh mục không tồn tại trong hệ thống");
-                    dto.setValid(false);
-                }
+                codeToRowMap.put(codeKey, dto.getRowIndex());
             }
-
-            Optional<Partner> partner = Optional.empty();
-            if (partnerName == null || partnerName.isEmpty()) {
-                errors.add("Tên nhà cung cấp không được để trống");
+            if (refs.existingCodes().contains(codeKey)) {
+                errors.add("Mã vật tư đã tồn tại trong hệ thống");
                 dto.setValid(false);
-            } else {
-                String normalizedPartnerName = normalize(partnerName);
-                System.out.println("📦 Tìm nhà cung cấp cho dòng " + dto.getRowIndex() + ": " + normalizedPartnerName);
-                partner = allSuppliers.stream()
-                        .filter(p -> normalize(p.getPartnerName()).equalsIgnoreCase(normalizedPartnerName))
-                        .findFirst();
-                if (partner.isEmpty()) {
-                    errors.add("Nhà cung cấp không tồn tại hoặc không đúng loại");
-                    dto.setValid(false);
-                }
             }
-
-            if (!errors.isEmpty()) {
-                dto.setErrorMessage(String.join("; ", errors));
-            }
-
-            result.add(dto);
         }
 
-        workbook.close();
-        return result;
-    }
-
-    public String importMaterials(MultipartFile file) throws IOException {
-        Workbook workbook = new XSSFWorkbook(file.getInputStream());
-        Sheet sheet = workbook.getSheetAt(0);
-        List<Material> materials = new ArrayList<>();
+        if (name == null || name.isEmpty()) {
+            errors.add("Tên vật tư không được để trống");
+            dto.setValid(false);
+        }
 
-        Set<String> processedCodes = new HashSet<>();
+        if (unitName == null || unitName.isEmpty()) {
+            errors.add("Đơn vị không được để trống");
+            dto.setValid(false);
+        } else if (!refs.units().containsKey(ImportReferenceLookup.key(unitName))) {
+            errors.add("Đơn vị không tồn tại trong hệ thống");
+            dto.setValid(false);
+        }
 
-        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
+        if (typeName == null || typeName.isEmpty()) {
+            errors.add("Danh mục không được để trống");
+            dto.setValid(false);
+        } else if (!refs.types().containsKey(ImportReferenceLookup.key(typeName))) {
+            errors.add("Danh mục không tồn tại trong hệ thống");
+            dto.setValid(false);
+        }
 
-            String code = getCellValue(row.getCell(0));
-            String name = getCellValue(row.getCell(1));
-            String unitName = getCellValue(row.getCell(2));
-            String typeName = getCellValue(row.getCell(3));
-            String partnerName = getCellValue(row.getCell(4));
-            String description = getCellValue(row.getCell(5));
+        if (partnerName == null || partnerName.isEmpty()) {
+            errors.add("Tên nhà cung cấp không được để trống");
+            dto.setValid(false);
+        } else if (!refs.suppliers().containsKey(ImportReferenceLookup.key(partnerName))) {
+            errors.add("Nhà cung cấp không tồn tại hoặc không đúng loại");
+            dto.setValid(false);
+        }
 
+        if (!errors.isEmpty()) {
+            dto.setErrorMessage(String.join("; ", errors));
+        }
+        return dto;
+    }
 
-            if (code == null || code.trim().isEmpty() || name == null || name.trim().isEmpty()) {
-                continue;
-            }
-            if (processedCodes.contains(code.trim())) {
-                continue;
-            }
-            if (materialsRepository.existsByMaterialCode(code.trim())) {
-                continue;
-            }
+    // Một transaction cho cả file; cứ IMPORT_BATCH_SIZE dòng thì flush + clear để persistence context không phình
+    private String importMaterials(Path path, MaterialReferences refs, ImportProgress progress) throws IOException {
+        progress.startPhase(ImportJobDTO.Phase.IMPORTING);
+        try {
+            long imported = transactionTemplate.execute(status -> {
+                List<Material> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                Set<String> processedCodes = new HashSet<>();
+                long[] saved = {0};
+                try {
+                    StreamingSheetReader.read(path.toFile(), (rowNum, cells) -> {
+                        if (rowNum == 0) return;
+                        progress.rowProcessed();
+
+                        Material material = toMaterial(cells, refs, processedCodes);
+                        if (material == null) return;
+                        batch.add(material);
+                        processedCodes.add(ImportReferenceLookup.key(material.getMaterialCode()));
+                        if (batch.size() >= IMPORT_BATCH_SIZE) {
+                            saved[0] += saveBatch(batch);
+                            progress.setImportedRows(saved[0]);
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                saved[0] += saveBatch(batch);
+                progress.setImportedRows(saved[0]);
+                return saved[0];
+            });
+            return "Import thành công " + imported + " vật tư.";
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-            Optional<Unit> unit = unitRepository.findByUnitNameIgnoreCase(unitName.trim());
-            if (unit.isEmpty()) {
-                continue;
-            }
+    private Material toMaterial(List<String> cells, MaterialReferences refs, Set<String> processedCodes) {
+        String code = getCellValue(cells, 0);
+        String name = getCellValue(cells, 1);
+        String unitName = getCellValue(cells, 2);
+        String typeName = getCellValue(cells, 3);
+        String partnerName = getCellValue(cells, 4);
+        String description = getCellValue(cells, 5);
 
-            Optional<MaterialType> type = materialTypeRepository.findByNameIgnoreCase(typeName.trim());
-            if (type.isEmpty()) {
-                continue;
-            }
+        if (code == null || code.trim().isEmpty() || name == null || name.trim().isEmpty()) {
+            return null;
+        }
+        String codeKey = ImportReferenceLookup.key(code);
+        if (processedCodes.contains(codeKey) || refs.existingCodes().contains(codeKey)) {
+            return null;
+        }
 
-            Optional<Partner> partner = partnerRepository.findAllSuppliers()
-                    .stream()
-                    .filter(p -> normalize(p.getPartnerName()).equalsIgnoreCase(normalize(partnerName.trim())))
-                    .findFirst();
-            if (partner.isEmpty()) {
-                continue;
-            }
+        Unit unit = refs.units().get(ImportReferenceLookup.key(unitName));
+        MaterialType type = refs.types().get(ImportReferenceLookup.key(typeName));
+        Partner partner = refs.suppliers().get(ImportReferenceLookup.key(partnerName));
+        if (unit == null || type == null || partner == null) {
+            return null;
+        }
 
-            Material material = new Material();
-            material.setMaterialCode(code.trim());
-            material.setMaterialName(name.trim());
-            material.setDescription(description);
-            material.setUnit(unit.get());
-            material.setMaterialType(type.get());
+        Material material = new Material();
+        material.setMaterialCode(code.trim());
+        material.setMaterialName(name.trim());
+        material.setDescription(description);
+        // Entity tra trước nằm ngoài persistence context (đã clear sau mỗi lô) => dùng reference theo id
+        material.setUnit(entityManager.getReference(Unit.class, unit.getUnitId()));
+        material.setMaterialType(entityManager.getReference(MaterialType.class, type.getMaterialTypeId()));
 
-            MaterialPartner materialPartner = new MaterialPartner();
-            materialPartner.setMaterial(material);
-            materialPartner.setPartner(partner.get());
+        MaterialPartner materialPartner = new MaterialPartner();
+        materialPartner.setMaterial(material);
+        materialPartner.setPartner(entityManager.getReference(Partner.class, partner.getPartnerId()));
 
-            material.getMaterialPartners().add(materialPartner);
-            materials.add(material);
-            processedCodes.add(code.trim());
-        }
+        material.getMaterialPartners().add(materialPartner);
+        return material;
+    }
 
-        workbook.close();
-        materialsRepository.saveAll(materials);
-        return "Import thành công " + materials.size() + " vật tư.";
+    private int saveBatch(List<Material> batch) {
+        int size = batch.size();
+        materialsRepository.saveAll(batch);
+        entityManager.flush();
+        entityManager.clear();
+        batch.clear();
+        return size;
     }
 
     public ByteArrayInputStream generateMaterialImportTemplate() throws IOException {
@@ -275,42 +376,19 @@ public class MaterialExcelService {
         }
     }
 
-    public ByteArrayInputStream exportMaterialsToExcel() throws IOException {
-        List<Material> materials = materialsRepository.findAll();
-
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            Sheet sheet = workbook.createSheet("Materials");
-
-            Row header = sheet.createRow(0);
-            header.createCell(0).setCellValue("Mã vật tư");
-            header.createCell(1).setCellValue("Tên vật tư");
-            header.createCell(2).setCellValue("Đơn vị");
-            header.createCell(3).setCellValue("Danh mục");
-            header.createCell(4).setCellValue("Tên nhà cung cấp");
-            header.createCell(5).setCellValue("Mô tả");
-
-            int rowIdx = 1;
-            for (Material m : materials) {
-                Row row = sheet.createRow(rowIdx++);
-                row.createCell(0).setCellValue(m.getMaterialCode());
-                row.createCell(1).setCellValue(m.getMaterialName());
-                row.createCell(2).setCellValue(m.getUnit().getUnitName());
-                row.createCell(3).setCellValue(m.getMaterialType().getName());
-
-                String partnerName = m.getMaterialPartners().stream()
-                        .findFirst().map(mp -> mp.getPartner().getPartnerName()).orElse("");
-                row.createCell(4).setCellValue(partnerName);
-                row.createCell(5).setCellValue(m.getDescription() != null ? m.getDescription() : "");
-            }
-
-            workbook.write(out);
-            return new ByteArrayInputStream(out.toByteArray());
+    // Dữ liệu đi thẳng từ query sang response, không giữ cả workbook/mảng byte trên heap
+    @Transactional(readOnly = true)
+    public void exportMaterials(OutputStream out) throws IOException {
+        try (Stream<MaterialExportDTO> rows = materialsRepository.streamAllForExport()) {
+            ExcelStreamExporter.write(out, "Materials", EXPORT_COLUMNS, rows);
         }
     }
 
-    private String getCellValue(Cell cell) {
-        if (cell == null) return null;
-        cell.setCellType(CellType.STRING);
-        return cell.getStringCellValue().trim();
+    private static boolean isBlankRow(List<String> cells) {
+        return cells.stream().allMatch(value -> value == null || value.isEmpty());
+    }
+
+    private static String getCellValue(List<String> cells, int column) {
+        return column < cells.size() ? cells.get(column) : null;
     }
 }
\ No newline at end of file
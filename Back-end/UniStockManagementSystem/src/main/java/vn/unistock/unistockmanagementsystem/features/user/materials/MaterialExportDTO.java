@@ -0,0 +1,16 @@
+package vn.unistock.unistockmanagementsystem.features.user.materials;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Một dòng của file xuất danh sách vật tư
+@Data
+@AllArgsConstructor
+public class MaterialExportDTO {
+    private String materialCode;
+    private String materialName;
+    private String unitName;
+    private String typeName;
+    private String partnerName;
+    private String description;
+}
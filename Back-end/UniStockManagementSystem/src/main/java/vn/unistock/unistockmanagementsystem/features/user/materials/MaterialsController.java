@@ -1,5 +1,6 @@
 package vn.unistock.unistockmanagementsystem.features.user.materials;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -9,6 +10,9 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportJobDTO;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportJobService;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -23,6 +27,7 @@ import java.util.Map;
 public class MaterialsController {
     private final MaterialsService materialsService;
     private final MaterialExcelService materialExcelService;
+    private final ImportJobService importJobService;
 
     // 🟢 API lấy tất cả nguyên liệu
     @GetMapping
@@ -166,6 +171,18 @@ public class MaterialsController {
         }
     }
 
+    // 🟢 API import file lớn ở luồng nền, trả về jobId để theo dõi tiến độ
+    @PostMapping(value = "/import-jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportJobDTO> startImportMaterials(@RequestParam("file") MultipartFile file) throws IOException {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(materialExcelService.startImportJob(file));
+    }
+
+    // 🟢 API xem tiến độ job import
+    @GetMapping("/import-jobs/{jobId}")
+    public ResponseEntity<ImportJobDTO> getImportMaterialsStatus(@PathVariable String jobId) {
+        return ResponseEntity.ok(importJobService.get(MaterialExcelService.IMPORT_JOB_TYPE, jobId));
+    }
+
     // 🟢 API tải template import
     @GetMapping("/template")
     public ResponseEntity<byte[]> downloadTemplate() {
@@ -188,20 +205,8 @@ public class MaterialsController {
 
     // 🟢 API xuất danh sách nguyên liệu ra Excel
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportMaterials() {
-        try {
-            ByteArrayInputStream stream = materialExcelService.exportMaterialsToExcel();
-            byte[] content = stream.readAllBytes();
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.add("Content-Disposition", "attachment; filename=danh_sach_vat_tu.xlsx");
-
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(content);
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
-        }
+    public void exportMaterials(HttpServletResponse response) throws IOException {
+        ExcelStreamExporter.prepareResponse(response, "danh_sach_vat_tu.xlsx");
+        materialExcelService.exportMaterials(response.getOutputStream());
     }
 }
\ No newline at end of file
@@ -26,6 +26,7 @@ public class MaterialsDTO {
 
     private String description;
     private String imageUrl;
+    private String thumbnailUrl;
     private Boolean isUsing;
     private MultipartFile image;
     private List<Long> supplierIds;
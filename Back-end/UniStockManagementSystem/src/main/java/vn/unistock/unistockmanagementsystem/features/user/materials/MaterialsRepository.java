@@ -1,19 +1,28 @@
 package vn.unistock.unistockmanagementsystem.features.user.materials;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vn.unistock.unistockmanagementsystem.entities.Material;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface MaterialsRepository extends JpaRepository<Material, Long> {
     boolean existsByMaterialCode(String materialCode);
+
+    @Query("SELECT m.materialCode FROM Material m WHERE m.materialCode IN :codes")
+    List<String> findMaterialCodesIn(@Param("codes") Collection<String> codes);
     boolean existsByMaterialCodeAndMaterialIdNot(String materialCode, Long materialId);
     Page<Material> findAll(Pageable pageable);
 
@@ -26,23 +35,35 @@ public interface MaterialsRepository extends JpaRepository<Material, Long> {
     @Query("SELECT m FROM Material m WHERE m.isUsing = true")
     List<Material> findAllByIsUsingTrue();
 
-    @Query("SELECT m FROM Material m WHERE :search IS NULL OR m.materialCode LIKE %:search% OR m.materialName LIKE %:search%")
-    List<Material> findByCodeOrName(@Param("search") String search);
-
+    // materialIds: kết quả tìm mã/tên từ SearchIndexService (null = không lọc); likeSearch: từ khóa quá ngắn hoặc khớp quá nhiều id để lọc qua chỉ mục
     @Query("""
     SELECT m FROM Material m
-    WHERE (:search IS NULL OR
-           LOWER(m.materialCode) LIKE LOWER(CONCAT('%', :search, '%'))
-           OR LOWER(m.materialName) LIKE LOWER(CONCAT('%', :search, '%')))
+    WHERE (:materialIds IS NULL OR m.materialId IN :materialIds)
+      AND (:likeSearch IS NULL
+           OR LOWER(m.materialCode) LIKE LOWER(CONCAT('%', :likeSearch, '%'))
+           OR LOWER(m.materialName) LIKE LOWER(CONCAT('%', :likeSearch, '%')))
       AND (:statuses IS NULL OR m.isUsing IN :statuses)
       AND (:materialTypeIds IS NULL OR m.materialType.materialTypeId IN :materialTypeIds)
 """)
     Page<Material> searchMaterials(
-            @Param("search") String search,
+            @Param("materialIds") List<Long> materialIds,
+            @Param("likeSearch") String likeSearch,
             @Param("statuses") List<Boolean> statuses,
             @Param("materialTypeIds") List<Long> materialTypeIds,
             Pageable pageable
     );
 
-
-}
\ No newline at end of file
+    // Đọc dần từng dòng để xuất Excel; nhà cung cấp lấy bằng subquery để không phải truy vấn thêm khi đang stream
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = ExcelStreamExporter.STREAM_FETCH_SIZE))
+    @Query("""
+    SELECT new vn.unistock.unistockmanagementsystem.features.user.materials.MaterialExportDTO(
+        m.materialCode, m.materialName, u.unitName, t.name,
+        (SELECT MIN(pa.partnerName) FROM MaterialPartner mp JOIN mp.partner pa WHERE mp.material = m),
+        m.description)
+    FROM Material m
+    LEFT JOIN m.unit u
+    LEFT JOIN m.materialType t
+    ORDER BY m.materialId
+    """)
+    Stream<MaterialExportDTO> streamAllForExport();
+}
@@ -3,6 +3,7 @@ package vn.unistock.unistockmanagementsystem.features.user.materials;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -11,15 +12,19 @@ import org.springframework.web.multipart.MultipartFile;
 import vn.unistock.unistockmanagementsystem.entities.Material;
 import vn.unistock.unistockmanagementsystem.entities.MaterialPartner;
 import vn.unistock.unistockmanagementsystem.entities.Partner;
+import vn.unistock.unistockmanagementsystem.entities.StoredImage;
 import vn.unistock.unistockmanagementsystem.features.user.materialType.MaterialTypeRepository;
-import vn.unistock.unistockmanagementsystem.features.user.notification.NotificationService;
+import vn.unistock.unistockmanagementsystem.features.user.notification.MaterialStockChangedEvent;
 import vn.unistock.unistockmanagementsystem.features.user.partner.PartnerRepository;
 import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
-import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchDomain;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchIndexService;
+import vn.unistock.unistockmanagementsystem.utils.storage.ImageStorageService;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,15 +35,21 @@ public class MaterialsService {
     private final UnitRepository unitRepository;
     private final MaterialTypeRepository materialTypeRepository;
     private final MaterialsMapper materialsMapper;
-    private final AzureBlobService azureBlobService;
+    private final ImageStorageService imageStorageService;
     private final MaterialPartnerRepository materialPartnerRepository;
     private final PartnerRepository partnerRepository;
-    private final NotificationService notificationService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SearchIndexService searchIndexService;
 
     // 🟢 Lấy tất cả nguyên liệu có phân trang
     public Page<MaterialsDTO> getAllMaterials(int page, int size, String search, List<Boolean> statuses, List<Long> typeIds) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<Material> pageEntity = materialsRepository.searchMaterials(search, statuses, typeIds, pageable);
+        SearchIndexService.Match match = searchIndexService.match(SearchDomain.MATERIAL, search);
+        if (match.isNone()) {
+            return Page.empty(pageable);
+        }
+        Page<Material> pageEntity = materialsRepository.searchMaterials(
+                match.ids(), match.likeTerm(), statuses, typeIds, pageable);
         return pageEntity.map(materialsMapper::toDTO);
     }
 
@@ -80,8 +91,9 @@ public class MaterialsService {
                 throw new IllegalArgumentException("File ảnh không được rỗng!");
             }
             try {
-                String imageUrl = azureBlobService.uploadFile(image);
-                material.setImageUrl(imageUrl);
+                StoredImage storedImage = imageStorageService.store(image);
+                material.setImageUrl(storedImage.getImageUrl());
+                material.setThumbnailUrl(storedImage.getThumbnailUrl());
             } catch (Exception e) {
                 throw new IOException("Không thể upload ảnh: " + e.getMessage(), e);
             }
@@ -169,16 +181,14 @@ public class MaterialsService {
             material.setIsUsing(updatedMaterial.getIsUsing());
         }
 
+        String oldImageUrl = material.getImageUrl();
         if (newImage != null && !newImage.isEmpty()) {
             try {
                 log.info("Uploading new image: {}", newImage.getOriginalFilename());
-                if (material.getImageUrl() != null) {
-                    log.info("Deleting old image: {}", material.getImageUrl());
-                    azureBlobService.deleteFile(material.getImageUrl());
-                }
-                String newImageUrl = azureBlobService.uploadFile(newImage);
-                log.info("Uploaded new image URL: {}", newImageUrl);
-                material.setImageUrl(newImageUrl);
+                StoredImage storedImage = imageStorageService.store(newImage);
+                log.info("Uploaded new image URL: {}", storedImage.getImageUrl());
+                material.setImageUrl(storedImage.getImageUrl());
+                material.setThumbnailUrl(storedImage.getThumbnailUrl());
             } catch (Exception e) {
                 log.error("Failed to upload new image: {}", e.getMessage(), e);
                 throw new IOException("Không thể upload ảnh mới: " + e.getMessage(), e);
@@ -201,8 +211,12 @@ public class MaterialsService {
 
         Material savedMaterial = materialsRepository.save(material);
         log.info("Updated material with imageUrl: {}", savedMaterial.getImageUrl());
-        notificationService.clearLowStockNotificationIfRecovered(savedMaterial.getMaterialId());
-        notificationService.checkLowStock(savedMaterial.getMaterialId());
+        // Ảnh cũ có thể đang dùng chung với item khác => chỉ xóa khi không còn ai dùng
+        if (oldImageUrl != null && !oldImageUrl.equals(savedMaterial.getImageUrl())) {
+            imageStorageService.release(oldImageUrl);
+        }
+        // Ngưỡng tồn kho thấp có thể đã đổi => đánh giá lại cảnh báo sau khi commit
+        eventPublisher.publishEvent(MaterialStockChangedEvent.thresholdChanged(Set.of(savedMaterial.getMaterialId())));
         return materialsMapper.toDTO(savedMaterial);
     }
 
@@ -0,0 +1,30 @@
+package vn.unistock.unistockmanagementsystem.features.user.mrp;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Cache "productBom" có TTL ngắn riêng (các cache khác dùng spec chung 30 phút):
+ * node sửa sản phẩm xóa định mức sau commit, còn các node khác chỉ thấy định mức mới khi hết TTL.
+ */
+@Configuration
+public class BomCacheConfig {
+
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> bomCacheCustomizer(
+            @Value("${mrp.bom-cache.ttl:PT1M}") Duration ttl,
+            @Value("${mrp.bom-cache.max-size:1000}") long maxSize) {
+        return cacheManager -> cacheManager.registerCustomCache(MaterialRequirementService.BOM_CACHE,
+                Caffeine.newBuilder()
+                        .maximumSize(maxSize)
+                        .expireAfterWrite(ttl)
+                        .recordStats()
+                        .build());
+    }
+}
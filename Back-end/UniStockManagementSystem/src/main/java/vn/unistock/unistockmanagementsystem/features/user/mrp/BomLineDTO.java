@@ -0,0 +1,13 @@
+package vn.unistock.unistockmanagementsystem.features.user.mrp;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Một dòng định mức: 1 sản phẩm cần quantity vật tư materialId
+@Data
+@AllArgsConstructor
+public class BomLineDTO {
+    private Long productId;
+    private Long materialId;
+    private Integer quantity;
+}
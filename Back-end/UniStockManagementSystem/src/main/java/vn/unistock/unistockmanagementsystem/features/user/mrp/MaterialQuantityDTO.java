@@ -0,0 +1,11 @@
+package vn.unistock.unistockmanagementsystem.features.user.mrp;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class MaterialQuantityDTO {
+    private Long materialId;
+    private Long quantity;
+}
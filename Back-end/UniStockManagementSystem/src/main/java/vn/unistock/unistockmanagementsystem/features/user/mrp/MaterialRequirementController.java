@@ -0,0 +1,26 @@
+package vn.unistock.unistockmanagementsystem.features.user.mrp;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/unistock/user/mrp")
+@RequiredArgsConstructor
+public class MaterialRequirementController {
+
+    private final MaterialRequirementService materialRequirementService;
+
+    /**
+     * Vật tư còn thiếu của các đơn hàng sau khi trừ tồn kho và đơn mua đang mở.
+     * POST /api/unistock/user/mrp/shortages, body: [orderId, ...] (bỏ trống = mọi đơn chưa đóng).
+     * Dùng POST vì danh sách có thể lên tới hàng trăm đơn.
+     */
+    @PostMapping("/shortages")
+    public ResponseEntity<List<MaterialShortageDTO>> getMaterialShortages(
+            @RequestBody(required = false) List<Long> orderIds) {
+        return ResponseEntity.ok(materialRequirementService.getMaterialShortages(orderIds));
+    }
+}
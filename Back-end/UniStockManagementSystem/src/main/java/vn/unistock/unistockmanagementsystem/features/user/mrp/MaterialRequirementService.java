@@ -0,0 +1,174 @@
+package vn.unistock.unistockmanagementsystem.features.user.mrp;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.unistock.unistockmanagementsystem.entities.PurchaseOrder;
+import vn.unistock.unistockmanagementsystem.entities.SalesOrder;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.MaterialStockLevelDTO;
+import vn.unistock.unistockmanagementsystem.features.user.products.ProductBomChangedEvent;
+import vn.unistock.unistockmanagementsystem.features.user.products.ProductMaterialsRepository;
+import vn.unistock.unistockmanagementsystem.features.user.purchaseOrder.PurchaseOrderDetailRepository;
+import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrdersRepository;
+import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SalesOrderMaterialRepository;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Tính nhu cầu vật tư (MRP) cho nhiều đơn hàng cùng lúc.
+ * - Bung định mức: số lượng đặt của từng (đơn, sản phẩm) x định mức của sản phẩm. Định mức chỉ có một cấp
+ *   (ProductMaterial) và được cache theo sản phẩm trong "productBom": node sửa sản phẩm xóa cache sau khi commit,
+ *   node khác thấy định mức mới khi hết TTL ngắn của cache (mrp.bom-cache.ttl, xem BomCacheConfig).
+ * - Trừ phần đã xuất sản xuất và phần tồn kho đang giữ chỗ cho chính đơn đó.
+ * - Phần còn lại của mọi đơn được bù bằng tồn kho AVAILABLE và số lượng chờ nhận của đơn mua đang mở.
+ * Số truy vấn không phụ thuộc số đơn: mỗi loại dữ liệu được gom trong một truy vấn IN.
+ */
+@Service
+@RequiredArgsConstructor
+public class MaterialRequirementService {
+    public static final String BOM_CACHE = "productBom";
+
+    private static final List<SalesOrder.OrderStatus> CLOSED_ORDER_STATUSES =
+            List.of(SalesOrder.OrderStatus.CANCELLED, SalesOrder.OrderStatus.COMPLETED);
+    private static final List<PurchaseOrder.OrderStatus> OPEN_PURCHASE_ORDER_STATUSES =
+            List.of(PurchaseOrder.OrderStatus.PENDING, PurchaseOrder.OrderStatus.IN_PROGRESS);
+
+    private final SaleOrdersRepository saleOrdersRepository;
+    private final SalesOrderMaterialRepository salesOrderMaterialRepository;
+    private final ProductMaterialsRepository productMaterialsRepository;
+    private final InventoryRepository inventoryRepository;
+    private final PurchaseOrderDetailRepository purchaseOrderDetailRepository;
+    private final CacheManager cacheManager;
+
+    // Xóa sau commit: xóa trước commit thì request MRP chạy xen giữa có thể nạp lại định mức cũ vào cache
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBomChanged(ProductBomChangedEvent event) {
+        Cache cache = cacheManager.getCache(BOM_CACHE);
+        if (cache != null) {
+            cache.evict(event.productId());
+        }
+    }
+
+    // (đơn, vật tư)
+    private record OrderMaterialKey(Long orderId, Long materialId) {}
+
+    /**
+     * Danh sách vật tư còn thiếu của các đơn, thiếu nhiều nhất trước.
+     * orderIds null/rỗng = mọi đơn chưa hủy/chưa hoàn thành; đơn đã đóng trong orderIds bị bỏ qua.
+     */
+    @Transactional(readOnly = true)
+    public List<MaterialShortageDTO> getMaterialShortages(Collection<Long> orderIds) {
+        List<Long> planningOrderIds = saleOrdersRepository.findPlanningOrderIds(
+                orderIds != null && !orderIds.isEmpty() ? orderIds : null, CLOSED_ORDER_STATUSES);
+        if (planningOrderIds.isEmpty()) {
+            return List.of();
+        }
+
+        // Nhu cầu gộp theo (đơn, vật tư)
+        List<OrderProductDemandDTO> demands = saleOrdersRepository.sumProductDemandByOrders(planningOrderIds);
+        Map<Long, List<BomLineDTO>> boms = loadBoms(demands.stream()
+                .map(OrderProductDemandDTO::getProductId)
+                .collect(Collectors.toSet()));
+        Map<OrderMaterialKey, Double> gross = new HashMap<>();
+        for (OrderProductDemandDTO demand : demands) {
+            for (BomLineDTO line : boms.getOrDefault(demand.getProductId(), List.of())) {
+                gross.merge(new OrderMaterialKey(demand.getOrderId(), line.getMaterialId()),
+                        (double) demand.getQuantity() * line.getQuantity(), Double::sum);
+            }
+        }
+        if (gross.isEmpty()) {
+            return List.of();
+        }
+
+        Map<OrderMaterialKey, Double> issued = toOrderMaterialMap(
+                salesOrderMaterialRepository.sumIssuedByOrders(planningOrderIds));
+        Map<OrderMaterialKey, Double> reserved = toOrderMaterialMap(
+                inventoryRepository.sumReservedMaterialsByOrders(planningOrderIds));
+
+        // Giữ chỗ của đơn nào chỉ bù cho nhu cầu của đơn đó
+        Map<Long, double[]> requiredAndReserved = new HashMap<>();
+        gross.forEach((key, quantity) -> {
+            double outstanding = Math.max(0, quantity - issued.getOrDefault(key, 0.0));
+            double covered = Math.min(outstanding, reserved.getOrDefault(key, 0.0));
+            double[] totals = requiredAndReserved.computeIfAbsent(key.materialId(), id -> new double[2]);
+            totals[0] += outstanding;
+            totals[1] += covered;
+        });
+
+        Set<Long> materialIds = requiredAndReserved.keySet();
+        Map<Long, MaterialStockLevelDTO> stockLevels = inventoryRepository.findMaterialStockLevels(materialIds).stream()
+                .collect(Collectors.toMap(MaterialStockLevelDTO::getMaterialId, level -> level));
+        Map<Long, Long> onOrder = purchaseOrderDetailRepository
+                .sumOpenQuantityByMaterials(materialIds, OPEN_PURCHASE_ORDER_STATUSES).stream()
+                .collect(Collectors.toMap(MaterialQuantityDTO::getMaterialId, MaterialQuantityDTO::getQuantity));
+
+        List<MaterialShortageDTO> shortages = new ArrayList<>();
+        requiredAndReserved.forEach((materialId, totals) -> {
+            MaterialStockLevelDTO level = stockLevels.get(materialId);
+            double available = level != null && level.getAvailableQuantity() != null ? level.getAvailableQuantity() : 0.0;
+            double incoming = onOrder.getOrDefault(materialId, 0L);
+            double shortage = totals[0] - totals[1] - available - incoming;
+            if (shortage <= 0) {
+                return;
+            }
+            MaterialShortageDTO dto = new MaterialShortageDTO();
+            dto.setMaterialId(materialId);
+            if (level != null) {
+                dto.setMaterialCode(level.getMaterialCode());
+                dto.setMaterialName(level.getMaterialName());
+            }
+            dto.setRequiredQuantity(totals[0]);
+            dto.setReservedQuantity(totals[1]);
+            dto.setAvailableQuantity(available);
+            dto.setOnOrderQuantity(incoming);
+            dto.setShortageQuantity(shortage);
+            shortages.add(dto);
+        });
+        shortages.sort(Comparator.comparing(MaterialShortageDTO::getShortageQuantity).reversed()
+                .thenComparing(MaterialShortageDTO::getMaterialId));
+        return shortages;
+    }
+
+    // Định mức theo sản phẩm: lấy từ cache, các sản phẩm chưa có được nạp chung một truy vấn
+    @SuppressWarnings("unchecked")
+    private Map<Long, List<BomLineDTO>> loadBoms(Set<Long> productIds) {
+        Cache cache = cacheManager.getCache(BOM_CACHE);
+        Map<Long, List<BomLineDTO>> boms = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long productId : productIds) {
+            List<BomLineDTO> lines = cache != null ? cache.get(productId, List.class) : null;
+            if (lines != null) {
+                boms.put(productId, lines);
+            } else {
+                missing.add(productId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Long, List<BomLineDTO>> loaded = productMaterialsRepository.findBomLinesByProductIds(missing).stream()
+                    .collect(Collectors.groupingBy(BomLineDTO::getProductId));
+            for (Long productId : missing) {
+                // Cache cả định mức rỗng để sản phẩm không có vật tư không bị truy vấn lại
+                List<BomLineDTO> lines = List.copyOf(loaded.getOrDefault(productId, List.of()));
+                if (cache != null) {
+                    cache.put(productId, lines);
+                }
+                boms.put(productId, lines);
+            }
+        }
+        return boms;
+    }
+
+    private Map<OrderMaterialKey, Double> toOrderMaterialMap(List<OrderMaterialQuantityDTO> rows) {
+        Map<OrderMaterialKey, Double> result = new HashMap<>();
+        for (OrderMaterialQuantityDTO row : rows) {
+            result.merge(new OrderMaterialKey(row.getOrderId(), row.getMaterialId()), row.getQuantity(), Double::sum);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,19 @@
+package vn.unistock.unistockmanagementsystem.features.user.mrp;
+
+import lombok.Data;
+
+@Data
+public class MaterialShortageDTO {
+    private Long materialId;
+    private String materialCode;
+    private String materialName;
+    // Nhu cầu còn lại của các đơn (định mức x số lượng đặt, trừ phần đã xuất sản xuất)
+    private Double requiredQuantity;
+    // Phần nhu cầu đã có tồn kho RESERVED cho chính đơn đó
+    private Double reservedQuantity;
+    // Tồn kho AVAILABLE trên mọi kho
+    private Double availableQuantity;
+    // Số lượng còn chờ nhận của các đơn mua chưa hoàn thành
+    private Double onOrderQuantity;
+    private Double shortageQuantity;
+}
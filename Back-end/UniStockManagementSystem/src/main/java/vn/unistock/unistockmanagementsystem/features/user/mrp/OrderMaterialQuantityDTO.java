@@ -0,0 +1,22 @@
+package vn.unistock.unistockmanagementsystem.features.user.mrp;
+
+import lombok.Data;
+
+// Số lượng vật tư gắn với một đơn hàng (đã xuất sản xuất hoặc đang giữ chỗ)
+@Data
+public class OrderMaterialQuantityDTO {
+    private Long orderId;
+    private Long materialId;
+    private Double quantity;
+
+    public OrderMaterialQuantityDTO(Long orderId, Long materialId, Double quantity) {
+        this.orderId = orderId;
+        this.materialId = materialId;
+        this.quantity = quantity;
+    }
+
+    // SUM trên cột int trả về Long
+    public OrderMaterialQuantityDTO(Long orderId, Long materialId, Long quantity) {
+        this(orderId, materialId, quantity != null ? quantity.doubleValue() : 0.0);
+    }
+}
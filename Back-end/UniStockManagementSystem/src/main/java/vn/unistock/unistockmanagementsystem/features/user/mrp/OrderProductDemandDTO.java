@@ -0,0 +1,13 @@
+package vn.unistock.unistockmanagementsystem.features.user.mrp;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Tổng số lượng một sản phẩm trong một đơn hàng
+@Data
+@AllArgsConstructor
+public class OrderProductDemandDTO {
+    private Long orderId;
+    private Long productId;
+    private Long quantity;
+}
@@ -0,0 +1,102 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.unistock.unistockmanagementsystem.entities.Notification;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.MaterialStockLevelDTO;
+import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Đánh giá tồn kho thấp cho cả tập vật tư vừa thay đổi, thay cho checkLowStock/clearLowStockNotificationIfRecovered từng vật tư:
+ * - Tổng AVAILABLE và ngưỡng của mọi vật tư lấy bằng một truy vấn gom nhóm.
+ * - Giữ nguyên phép so sánh cũ: xuất kho tạo/cập nhật thông báo LOW_STOCK khi AVAILABLE <= ngưỡng,
+ *   nhập kho chỉ đánh dấu đã đọc khi AVAILABLE >= ngưỡng, sửa vật tư làm cả hai (xem MaterialStockChangedEvent).
+ * Chạy bất đồng bộ sau khi phiếu nhập/xuất commit nên không cộng vào thời gian xử lý phiếu.
+ */
+@Component
+@RequiredArgsConstructor
+public class LowStockEvaluator {
+    private static final Logger logger = LoggerFactory.getLogger(LowStockEvaluator.class);
+
+    private final InventoryRepository inventoryRepository;
+    private final MaterialsRepository materialRepository;
+    private final NotificationRepository notificationRepository;
+    private final NotificationService notificationService;
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onMaterialStockChanged(MaterialStockChangedEvent event) {
+        evaluate(event.materialIds(), event.raiseAlerts(), event.clearRecovered());
+    }
+
+    @Transactional
+    public void evaluate(Collection<Long> materialIds, boolean raiseAlerts, boolean clearRecovered) {
+        if (materialIds.isEmpty()) {
+            return;
+        }
+        List<MaterialStockLevelDTO> levels = inventoryRepository.findMaterialStockLevels(materialIds);
+        Map<Long, List<Notification>> unread = notificationRepository
+                .findByMaterialMaterialIdInAndTypeAndIsReadFalse(materialIds, Notification.NotificationType.LOW_STOCK)
+                .stream()
+                .collect(Collectors.groupingBy(n -> n.getMaterial().getMaterialId()));
+
+        List<Notification> changed = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (MaterialStockLevelDTO level : levels) {
+            Double threshold = level.getLowStockThreshold();
+            if (threshold == null) {
+                continue;
+            }
+            List<Notification> existing = unread.getOrDefault(level.getMaterialId(), List.of());
+
+            double available = level.getAvailableQuantity();
+
+            if (raiseAlerts && threshold > 0 && available <= threshold) {
+                String message = String.format("Vật tư %s (Mã: %s) có tồn kho thấp: %s/%s",
+                        level.getMaterialName(),
+                        level.getMaterialCode(),
+                        level.getAvailableQuantity(),
+                        threshold);
+                if (existing.isEmpty()) {
+                    changed.add(Notification.builder()
+                            .message(message)
+                            .type(Notification.NotificationType.LOW_STOCK)
+                            .material(materialRepository.getReferenceById(level.getMaterialId()))
+                            .isRead(false)
+                            .createdAt(now)
+                            .build());
+                } else {
+                    Notification notification = existing.get(0);
+                    notification.setMessage(message);
+                    notification.setCreatedAt(now);
+                    changed.add(notification);
+                }
+            } else if (clearRecovered && available >= threshold) {
+                // Đã về lại ngưỡng => các thông báo chưa đọc không còn đúng
+                for (Notification notification : existing) {
+                    notification.setIsRead(true);
+                    changed.add(notification);
+                }
+            }
+        }
+
+        notificationService.saveAll(changed);
+        logger.debug("Evaluated low stock for {} materials, {} notifications changed", levels.size(), changed.size());
+    }
+}
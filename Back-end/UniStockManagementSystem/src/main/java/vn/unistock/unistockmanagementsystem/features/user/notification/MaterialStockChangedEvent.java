@@ -0,0 +1,31 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import java.util.Set;
+
+/**
+ * Phát ra khi tồn kho (hoặc ngưỡng tồn kho thấp) của các vật tư thay đổi;
+ * LowStockEvaluator xử lý sau khi transaction commit.
+ * Giữ đúng hành vi cũ theo từng luồng:
+ * - raiseAlerts: tạo/cập nhật cảnh báo khi AVAILABLE <= ngưỡng (ngưỡng > 0).
+ * - clearRecovered: đánh dấu đã đọc khi AVAILABLE >= ngưỡng.
+ */
+public record MaterialStockChangedEvent(Set<Long> materialIds, boolean raiseAlerts, boolean clearRecovered) {
+    public MaterialStockChangedEvent {
+        materialIds = Set.copyOf(materialIds);
+    }
+
+    // Xuất kho: chỉ có thể làm tồn kho giảm => chỉ cảnh báo
+    public static MaterialStockChangedEvent issued(Set<Long> materialIds) {
+        return new MaterialStockChangedEvent(materialIds, true, false);
+    }
+
+    // Nhập kho: chỉ có thể làm tồn kho tăng => chỉ gỡ cảnh báo
+    public static MaterialStockChangedEvent received(Set<Long> materialIds) {
+        return new MaterialStockChangedEvent(materialIds, false, true);
+    }
+
+    // Sửa ngưỡng: gỡ cảnh báo cũ rồi đánh giá lại
+    public static MaterialStockChangedEvent thresholdChanged(Set<Long> materialIds) {
+        return new MaterialStockChangedEvent(materialIds, true, true);
+    }
+}
@@ -2,8 +2,10 @@ package vn.unistock.unistockmanagementsystem.features.user.notification;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -14,12 +16,19 @@ import java.util.List;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final NotificationStream notificationStream;
 
     @GetMapping("/unread")
     public ResponseEntity<List<NotificationDTO>> getUnreadNotifications() {
         return ResponseEntity.ok(notificationService.getUnreadNotifications());
     }
 
+    // Kênh SSE thay cho poll /unread: snapshot khi kết nối, sau đó chỉ nhận các thay đổi (upsert/read)
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamNotifications(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return notificationStream.subscribe(lastEventId, notificationService::getUnreadNotifications);
+    }
+
     @PostMapping("/{id}/read")
     public ResponseEntity<Void> markAsRead(@PathVariable Long id) {
         notificationService.markNotificationAsRead(id);
@@ -0,0 +1,94 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.unistock.unistockmanagementsystem.entities.NotificationChange;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Chuyển thay đổi thông báo giữa các node: phiên SSE chỉ nằm trên node mà trình duyệt kết nối tới,
+ * còn thông báo có thể được tạo/đọc trên node khác.
+ * - NotificationService ghi mỗi thay đổi vào bảng notification_change cùng transaction, kèm id của node ghi.
+ * - Mỗi node đọc nhật ký sau mỗi relay-interval và đẩy các thay đổi của node khác tới phiên của mình
+ *   => client trên node khác nhận thay đổi chậm nhất khoảng relay-interval.
+ * Đọc lại cả cửa sổ relay-lookback (bù lệch giờ giữa các node và transaction commit muộn), bỏ các dòng đã đẩy.
+ */
+@Component
+public class NotificationRelay {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationRelay.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Duration lookback;
+    private final Duration retention;
+    private final NotificationChangeRepository changeRepository;
+    private final NotificationRepository notificationRepository;
+    private final NotificationMapper notificationMapper;
+    private final NotificationStream notificationStream;
+
+    // Dòng nhật ký đã đẩy trong cửa sổ đọc hiện tại (id -> createdAt)
+    private final Map<Long, LocalDateTime> relayed = new HashMap<>();
+
+    public NotificationRelay(@Value("${notification.stream.relay-lookback:PT30S}") Duration lookback,
+                             @Value("${notification.stream.relay-retention:PT10M}") Duration retention,
+                             NotificationChangeRepository changeRepository,
+                             NotificationRepository notificationRepository,
+                             NotificationMapper notificationMapper,
+                             NotificationStream notificationStream) {
+        this.lookback = lookback;
+        this.retention = retention;
+        this.changeRepository = changeRepository;
+        this.notificationRepository = notificationRepository;
+        this.notificationMapper = notificationMapper;
+        this.notificationStream = notificationStream;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Scheduled(fixedDelayString = "${notification.stream.relay-interval:PT2S}")
+    public synchronized void relay() {
+        LocalDateTime since = LocalDateTime.now().minus(lookback);
+        List<NotificationChange> changes;
+        try {
+            changes = changeRepository.findByCreatedAtAfterOrderByIdAsc(since);
+        } catch (RuntimeException e) {
+            logger.warn("Could not read notification changes: {}", e.getMessage());
+            return;
+        }
+        relayed.values().removeIf(createdAt -> !createdAt.isAfter(since));
+
+        List<Long> notificationIds = changes.stream()
+                .filter(change -> !nodeId.equals(change.getOrigin()))
+                .filter(change -> relayed.putIfAbsent(change.getId(), change.getCreatedAt()) == null)
+                .map(NotificationChange::getNotificationId)
+                .distinct()
+                .toList();
+        if (notificationIds.isEmpty()) {
+            return;
+        }
+        // Đọc trạng thái hiện tại: nhiều thay đổi của cùng thông báo chỉ cần đẩy bản mới nhất
+        List<NotificationDTO> notifications = notificationRepository.findAllById(notificationIds).stream()
+                .map(notificationMapper::toDTO)
+                .toList();
+        notificationStream.publishAll(notifications);
+    }
+
+    @Scheduled(fixedDelayString = "${notification.stream.relay-retention:PT10M}")
+    public void deleteExpired() {
+        try {
+            changeRepository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+        } catch (RuntimeException e) {
+            logger.warn("Could not clean up notification changes: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Kênh Server-Sent Events đẩy thay đổi thông báo tới client, thay cho việc poll /notification/unread.
+ * - Mỗi phiên (tab trình duyệt) có một SseEmitter riêng; mọi thay đổi được gửi tới tất cả phiên.
+ * - Các sự kiện gần nhất được giữ trong bộ đệm có giới hạn, đánh số tăng dần; khi trình duyệt tự kết nối lại
+ *   với header Last-Event-ID thì chỉ nhận phần còn thiếu. Nếu đã trôi khỏi bộ đệm (hoặc kết nối lần đầu)
+ *   thì nhận snapshot danh sách chưa đọc (một truy vấn cho mỗi lần kết nối, không phải mỗi lần poll).
+ * Đánh số, ghi bộ đệm và xếp sự kiện vào hàng đợi của từng phiên chạy trong cùng lock (không chặn) để mỗi phiên
+ * nhận sự kiện đúng thứ tự, không sót. Việc ghi ra socket chạy trên pool riêng, mỗi phiên tối đa một luồng một lúc,
+ * nên một client chậm/treo chỉ làm chậm phiên của chính nó, không chặn thread đang commit hay heartbeat.
+ * Ghi socket là blocking nên một client treo giữ luồng của nó tới khi socket báo lỗi; để các phiên khác không phải chờ:
+ * - Pool không có hàng đợi, nở tới send-max-threads luồng; phiên không còn luồng để gửi thì bị đóng ngay.
+ * - Phiên có lần ghi kéo dài quá write-timeout bị gỡ khỏi danh sách (kiểm tra cùng nhịp heartbeat),
+ *   không nhận thêm sự kiện; emitter được đóng khi lần ghi đó kết thúc.
+ * - Phiên để dồn quá max-pending sự kiện chưa gửi bị đóng.
+ * Phiên bị đóng thì trình duyệt kết nối lại và được phát bù theo Last-Event-ID.
+ * Phiên chỉ tồn tại trên node mà trình duyệt kết nối tới; thay đổi từ node khác tới qua NotificationRelay.
+ */
+@Component
+public class NotificationStream {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationStream.class);
+
+    static final String SNAPSHOT = "snapshot";
+    static final String UPSERT = "upsert";
+    static final String READ = "read";
+
+    private record StreamEvent(long id, String name, Object data) {}
+
+    private static final StreamEvent HEARTBEAT = new StreamEvent(0, null, null);
+
+    private final int replaySize;
+    private final long timeoutMillis;
+    private final int maxPending;
+    private final long writeTimeoutMillis;
+    private final ThreadPoolExecutor sendExecutor;
+    private final Deque<StreamEvent> replayBuffer = new ArrayDeque<>();
+    private final Map<String, Session> sessions = new LinkedHashMap<>();
+    private long lastEventId;
+
+    public NotificationStream(@Value("${notification.stream.replay-size:256}") int replaySize,
+                              @Value("${notification.stream.timeout:PT30M}") Duration timeout,
+                              @Value("${notification.stream.max-pending:512}") int maxPending,
+                              @Value("${notification.stream.send-threads:4}") int sendThreads,
+                              @Value("${notification.stream.send-max-threads:32}") int sendMaxThreads,
+                              @Value("${notification.stream.write-timeout:PT10S}") Duration writeTimeout) {
+        this.replaySize = replaySize;
+        this.timeoutMillis = timeout.toMillis();
+        this.maxPending = maxPending;
+        this.writeTimeoutMillis = writeTimeout.toMillis();
+        AtomicInteger threadCount = new AtomicInteger();
+        // SynchronousQueue: lượt gửi nhận luồng ngay hoặc bị từ chối, không xếp sau các phiên đang treo
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(sendThreads, Math.max(sendThreads, sendMaxThreads),
+                60L, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "notification-stream-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.sendExecutor = executor;
+    }
+
+    /**
+     * Mở phiên mới. lastSeenEventId lấy từ header Last-Event-ID (null khi kết nối lần đầu);
+     * snapshot chỉ được nạp khi không thể phát lại từ bộ đệm và được nạp ngoài lock,
+     * các sự kiện phát ra trong lúc nạp được gửi bù ngay sau snapshot (client cập nhật theo notificationId nên nhận trùng không sao).
+     */
+    public SseEmitter subscribe(Long lastSeenEventId, Supplier<List<NotificationDTO>> snapshot) {
+        String sessionId = UUID.randomUUID().toString();
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Session session = new Session(sessionId, emitter);
+        emitter.onCompletion(session::close);
+        emitter.onTimeout(session::close);
+        emitter.onError(e -> session.close());
+
+        boolean replayable;
+        long snapshotEventId;
+        synchronized (this) {
+            replayable = canReplayFrom(lastSeenEventId);
+            snapshotEventId = lastEventId;
+        }
+        List<NotificationDTO> unread = replayable ? null : snapshot.get();
+
+        synchronized (this) {
+            long replayAfter = lastSeenEventId != null && replayable ? lastSeenEventId : snapshotEventId;
+            if (unread != null) {
+                session.enqueue(new StreamEvent(snapshotEventId, SNAPSHOT, unread));
+            }
+            for (StreamEvent event : replayBuffer) {
+                if (event.id() > replayAfter) {
+                    session.enqueue(event);
+                }
+            }
+            sessions.put(sessionId, session);
+        }
+        logger.debug("Notification stream session {} opened (lastSeenEventId={})", sessionId, lastSeenEventId);
+        return emitter;
+    }
+
+    // Chỉ đẩy sau khi transaction ghi thông báo đã commit
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onNotificationsChanged(NotificationsChangedEvent event) {
+        publishAll(event.notifications());
+    }
+
+    void publishAll(List<NotificationDTO> notifications) {
+        for (NotificationDTO notification : notifications) {
+            publish(Boolean.TRUE.equals(notification.getIsRead()) ? READ : UPSERT, notification);
+        }
+    }
+
+    // Giữ kết nối qua proxy/load balancer và dọn các phiên đã đóng phía client (lỗi khi gửi => đóng phiên)
+    // hoặc đang treo ở một lần ghi quá write-timeout
+    @Scheduled(fixedDelayString = "${notification.stream.heartbeat:PT25S}")
+    public void heartbeat() {
+        List<Session> targets;
+        synchronized (this) {
+            targets = List.copyOf(sessions.values());
+        }
+        long now = System.currentTimeMillis();
+        for (Session session : targets) {
+            if (session.isWriteStalled(now)) {
+                session.abandon();
+            } else {
+                session.enqueue(HEARTBEAT);
+            }
+        }
+    }
+
+    // Chỉ xếp hàng dưới lock, không ghi socket => publisher không bao giờ chờ client
+    synchronized void publish(String name, Object data) {
+        StreamEvent event = new StreamEvent(++lastEventId, name, data);
+        replayBuffer.addLast(event);
+        while (replayBuffer.size() > replaySize) {
+            replayBuffer.removeFirst();
+        }
+        // Bản sao vì phiên dồn quá nhiều tự gỡ khỏi sessions ngay trong enqueue
+        for (Session session : List.copyOf(sessions.values())) {
+            session.enqueue(event);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+
+    // Phát lại được khi mọi sự kiện sau lastSeenEventId vẫn còn trong bộ đệm
+    private boolean canReplayFrom(Long lastSeenEventId) {
+        if (lastSeenEventId == null || lastSeenEventId > lastEventId) {
+            return false;
+        }
+        long oldestBuffered = replayBuffer.isEmpty() ? lastEventId + 1 : replayBuffer.peekFirst().id();
+        return lastSeenEventId >= oldestBuffered - 1;
+    }
+
+    private synchronized void remove(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    private static void send(SseEmitter emitter, StreamEvent event) throws IOException {
+        if (event == HEARTBEAT) {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+            return;
+        }
+        emitter.send(SseEmitter.event()
+                .id(String.valueOf(event.id()))
+                .name(event.name())
+                .data(event.data(), MediaType.APPLICATION_JSON));
+    }
+
+    // Hàng đợi gửi của một phiên; draining bảo đảm chỉ một luồng ghi vào emitter tại một thời điểm
+    private final class Session {
+        private final String id;
+        private final SseEmitter emitter;
+        private final Queue<StreamEvent> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+        // Đóng emitter khi luồng gửi kết thúc (phiên dồn quá nhiều hoặc ghi quá lâu)
+        private volatile boolean overflowed;
+        // Thời điểm bắt đầu lần ghi đang chạy, 0 khi không ghi
+        private volatile long writingSince;
+
+        private Session(String id, SseEmitter emitter) {
+            this.id = id;
+            this.emitter = emitter;
+        }
+
+        void enqueue(StreamEvent event) {
+            if (closed) {
+                return;
+            }
+            if (pendingCount.incrementAndGet() > maxPending) {
+                logger.debug("Notification stream session {} is too slow, closing", id);
+                abandon();
+                // emitter được đóng trên luồng gửi để publisher không phải chờ socket
+                scheduleDrain();
+                return;
+            }
+            pending.add(event);
+            scheduleDrain();
+        }
+
+        boolean isWriteStalled(long now) {
+            long since = writingSince;
+            return since > 0 && now - since > writeTimeoutMillis;
+        }
+
+        void abandon() {
+            overflowed = true;
+            close();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sendExecutor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Hết luồng gửi (nhiều client đang treo) => đóng phiên này thay vì chờ;
+                    // không có luồng nào đang ghi vào emitter nên complete() không phải chờ socket
+                    logger.debug("No send thread for notification stream session {}, closing", id);
+                    draining.set(false);
+                    close();
+                    emitter.complete();
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                StreamEvent event;
+                while (!closed && (event = pending.poll()) != null) {
+                    pendingCount.decrementAndGet();
+                    writingSince = System.currentTimeMillis();
+                    send(emitter, event);
+                    writingSince = 0;
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Dropping notification stream session {}: {}", id, e.getMessage());
+                close();
+            } finally {
+                writingSince = 0;
+                draining.set(false);
+            }
+            if (overflowed) {
+                emitter.complete();
+                return;
+            }
+            // Sự kiện được xếp vào sau lần poll cuối nhưng trước khi nhả cờ draining
+            if (!closed && !pending.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        void close() {
+            closed = true;
+            pending.clear();
+            remove(id);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package vn.unistock.unistockmanagementsystem.features.user.notification;
+
+import java.util.List;
+
+/**
+ * Phát ra khi thông báo được tạo, cập nhật hoặc đánh dấu đã đọc;
+ * NotificationStream đẩy tới client sau khi transaction commit.
+ */
+public record NotificationsChangedEvent(List<NotificationDTO> notifications) {
+    public NotificationsChangedEvent {
+        notifications = List.copyOf(notifications);
+    }
+}
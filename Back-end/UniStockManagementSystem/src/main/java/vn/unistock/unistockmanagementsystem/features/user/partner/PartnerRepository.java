@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import vn.unistock.unistockmanagementsystem.entities.Partner;
 import vn.unistock.unistockmanagementsystem.entities.PartnerType;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +28,10 @@ public interface PartnerRepository extends JpaRepository<Partner, Long> {
     @Query("SELECT p FROM Partner p JOIN p.partnerTypes pt WHERE pt.partnerType.typeId = 2")
     List<Partner> findAllSuppliers();
 
+    // Tên nhà cung cấp trong DB có thể lẫn khoảng trắng đầu/cuối (so khớp cũ trim cả hai phía)
+    @Query("SELECT DISTINCT p FROM Partner p JOIN p.partnerTypes pt WHERE pt.partnerType.typeId = 2 AND LOWER(TRIM(p.partnerName)) IN :names")
+    List<Partner> findSuppliersByLowerNameIn(@Param("names") Collection<String> names);
+
     @Query("""
     SELECT COUNT(p) > 0
     FROM Partner p
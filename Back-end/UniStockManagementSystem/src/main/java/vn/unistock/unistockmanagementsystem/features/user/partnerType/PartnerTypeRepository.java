@@ -1,6 +1,9 @@
 package vn.unistock.unistockmanagementsystem.features.user.partnerType;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import vn.unistock.unistockmanagementsystem.entities.MaterialType;
 import vn.unistock.unistockmanagementsystem.entities.PartnerType;
 
@@ -11,5 +14,7 @@ public interface PartnerTypeRepository extends JpaRepository<PartnerType, Long>
 
     boolean existsByTypeName(String typeName);
 
+    // Kết quả nằm trong query cache của Hibernate, tự vô hiệu khi bảng thay đổi
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<PartnerType> findByTypeCode(String typeCode);
 }
\ No newline at end of file
@@ -1,20 +1,32 @@
 package vn.unistock.unistockmanagementsystem.features.user.productTypes;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import vn.unistock.unistockmanagementsystem.entities.ProductType;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ProductTypeRepository extends JpaRepository<ProductType, Long> {
     boolean existsByTypeNameIgnoreCase(String typeName);
+    // Kết quả nằm trong query cache của Hibernate, tự vô hiệu khi bảng thay đổi
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<ProductType> findByTypeName(String typeName);
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     List<ProductType> findAllByStatusTrue();
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<ProductType> findByTypeNameIgnoreCase(String typeName);
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT t FROM ProductType t WHERE LOWER(t.typeName) IN :names")
+    List<ProductType> findByLowerTypeNameIn(@Param("names") Collection<String> names);
     boolean existsByTypeNameIgnoreCaseAndTypeIdNot(String typeName, Long typeId);
     @Query("""
     SELECT p FROM ProductType p
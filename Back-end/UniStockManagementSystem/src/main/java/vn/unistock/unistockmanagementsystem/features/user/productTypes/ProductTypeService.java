@@ -1,6 +1,8 @@
 package vn.unistock.unistockmanagementsystem.features.user.productTypes;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -24,6 +26,7 @@ public class ProductTypeService {
     }
 
 
+    @CacheEvict(value = "activeProductTypes", allEntries = true)
     public ProductTypeDTO toggleStatus(Long typeId, Boolean newStatus) {
         ProductType productType = productTypeRepository.findById(typeId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy dòng sản phẩm với ID: " + typeId));
@@ -32,6 +35,7 @@ public class ProductTypeService {
         return productTypeMapper.toDTO(productType);
     }
 
+    @CacheEvict(value = "activeProductTypes", allEntries = true)
     public ProductTypeDTO createProductType(ProductTypeDTO productTypeDTO) {
         // Chuẩn hóa typeName
         String normalizedTypeName = productTypeDTO.getTypeName().trim();
@@ -50,6 +54,7 @@ public class ProductTypeService {
         return productTypeMapper.toDTO(savedProductType);
     }
 
+    @CacheEvict(value = "activeProductTypes", allEntries = true)
     public ProductTypeDTO updateProductType(Long typeId, ProductTypeDTO productTypeDTO) {
         ProductType productType = productTypeRepository.findById(typeId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy dòng sản phẩm với ID: " + typeId));
@@ -72,6 +77,8 @@ public class ProductTypeService {
         return productTypeMapper.toDTO(updatedProductType);
     }
 
+    // Danh sách dùng cho mọi form chọn dòng sản phẩm; bị xóa khi thêm/sửa/đổi trạng thái
+    @Cacheable("activeProductTypes")
     public List<ProductTypeDTO> getActiveProductTypes() {
         return productTypeRepository.findAllByStatusTrue()
                 .stream()
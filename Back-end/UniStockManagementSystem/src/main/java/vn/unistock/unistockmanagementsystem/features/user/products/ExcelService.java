@@ -1,24 +1,48 @@
 package vn.unistock.unistockmanagementsystem.features.user.products;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddressList;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import vn.unistock.unistockmanagementsystem.entities.Product;
 import vn.unistock.unistockmanagementsystem.entities.ProductType;
 import vn.unistock.unistockmanagementsystem.entities.Unit;
 import vn.unistock.unistockmanagementsystem.features.user.productTypes.ProductTypeRepository;
 import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportJobDTO;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportJobService;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportProgress;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportReferenceLookup;
+import vn.unistock.unistockmanagementsystem.utils.excel.StreamingSheetReader;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ExcelService {
+    public static final String IMPORT_JOB_TYPE = "PRODUCT";
+
+    private static final int IMPORT_BATCH_SIZE = 500;
+
+    private static final List<ExcelStreamExporter.Column<ProductExportDTO>> EXPORT_COLUMNS = List.of(
+            ExcelStreamExporter.column("Mã sản phẩm", ProductExportDTO::getProductCode),
+            ExcelStreamExporter.column("Tên sản phẩm", ProductExportDTO::getProductName),
+            ExcelStreamExporter.column("Đơn vị", ProductExportDTO::getUnitName),
+            ExcelStreamExporter.column("Dòng sản phẩm", ProductExportDTO::getTypeName),
+            ExcelStreamExporter.column("Mô tả", ProductExportDTO::getDescription));
 
     @Autowired
     private ProductsRepository productsRepository;
@@ -29,30 +53,20 @@ public class ExcelService {
     @Autowired
     private ProductTypeRepository productTypeRepository;
 
-    public ByteArrayInputStream exportProductsToExcel() throws IOException {
-        List<Product> products = productsRepository.findAll();
+    @Autowired
+    private ImportJobService importJobService;
 
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            Sheet sheet = workbook.createSheet("Products");
-            Row header = sheet.createRow(0);
-            header.createCell(0).setCellValue("Mã sản phẩm");
-            header.createCell(1).setCellValue("Tên sản phẩm");
-            header.createCell(2).setCellValue("Đơn vị");
-            header.createCell(3).setCellValue("Dòng sản phẩm");
-            header.createCell(4).setCellValue("Mô tả");
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
-            int rowIdx = 1;
-            for (Product product : products) {
-                Row row = sheet.createRow(rowIdx++);
-                row.createCell(0).setCellValue(product.getProductCode());
-                row.createCell(1).setCellValue(product.getProductName());
-                row.createCell(2).setCellValue(product.getUnit().getUnitName());
-                row.createCell(3).setCellValue(product.getProductType().getTypeName());
-                row.createCell(4).setCellValue(product.getDescription() != null ? product.getDescription() : "");
-            }
+    @PersistenceContext
+    private EntityManager entityManager;
 
-            workbook.write(out);
-            return new ByteArrayInputStream(out.toByteArray());
+    // Dữ liệu đi thẳng từ query sang response, không giữ cả workbook/mảng byte trên heap
+    @Transactional(readOnly = true)
+    public void exportProducts(OutputStream out) throws IOException {
+        try (Stream<ProductExportDTO> rows = productsRepository.streamAllForExport()) {
+            ExcelStreamExporter.write(out, "Products", EXPORT_COLUMNS, rows);
         }
     }
 
@@ -99,129 +113,231 @@ public class ExcelService {
     }
 
     public List<ProductPreviewDTO> previewImportProducts(MultipartFile file) throws IOException {
-        List<ProductPreviewDTO> result = new ArrayList<>();
-        Map<String, Integer> codeToRowMap = new HashMap<>(); // để kiểm tra trùng mã trong file
-        Workbook workbook = new XSSFWorkbook(file.getInputStream());
-        Sheet sheet = workbook.getSheetAt(0);
+        Path path = StreamingSheetReader.copyToTempFile(file);
+        try {
+            List<ProductPreviewDTO> result = new ArrayList<>();
+            validateProducts(path, resolveReferences(path), ImportProgress.NONE, result::add);
+            return result;
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
 
-        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
+    public String importProducts(MultipartFile file) throws IOException {
+        Path path = StreamingSheetReader.copyToTempFile(file);
+        try {
+            return importProducts(path, resolveReferences(path), ImportProgress.NONE);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
 
-            ProductPreviewDTO dto = new ProductPreviewDTO();
-            dto.setRowIndex(i + 1); // Excel bắt đầu từ 1
-            dto.setValid(true);
+    // File lớn: kiểm tra rồi import ở luồng nền, client theo dõi qua jobId
+    public ImportJobDTO startImportJob(MultipartFile file) throws IOException {
+        return importJobService.submit(IMPORT_JOB_TYPE, file, (path, progress) -> {
+            ProductReferences refs = resolveReferences(path);
+            long[] invalidRows = {0};
+            validateProducts(path, refs, progress, dto -> {
+                if (!dto.isValid()) invalidRows[0]++;
+            });
+            if (invalidRows[0] > 0) {
+                throw new IllegalArgumentException("File chứa " + invalidRows[0] + " dòng không hợp lệ, không thể import.");
+            }
+            return importProducts(path, refs, progress);
+        });
+    }
 
-            String code = getCellValue(row.getCell(0));
-            String name = getCellValue(row.getCell(1));
-            String unitName = getCellValue(row.getCell(2));
-            String typeName = getCellValue(row.getCell(3));
-            String description = getCellValue(row.getCell(4));
+    // Tham chiếu của cả file, tra một lần trước khi kiểm tra/import; khóa map là ImportReferenceLookup.key
+    private record ProductReferences(Set<String> existingCodes, Map<String, Unit> units, Map<String, ProductType> types) {}
+
+    // Lượt đọc đầu chỉ gom mã/tên trong file, sau đó tra DB bằng vài câu IN thay vì 3 query cho mỗi dòng
+    private ProductReferences resolveReferences(Path path) throws IOException {
+        Set<String> codes = new HashSet<>();
+        Set<String> unitNames = new HashSet<>();
+        Set<String> typeNames = new HashSet<>();
+        StreamingSheetReader.read(path.toFile(), (rowNum, cells) -> {
+            if (rowNum == 0) return;
+            ImportReferenceLookup.addCandidates(codes, getCellValue(cells, 0), false);
+            ImportReferenceLookup.addCandidates(unitNames, getCellValue(cells, 2), true);
+            ImportReferenceLookup.addCandidates(typeNames, getCellValue(cells, 3), true);
+        });
+
+        Set<String> existingCodes = ImportReferenceLookup.findIn(codes, productsRepository::findProductCodesIn).stream()
+                .map(ImportReferenceLookup::key)
+                .collect(Collectors.toSet());
+        Map<String, Unit> units = ImportReferenceLookup.index(
+                ImportReferenceLookup.findIn(unitNames, unitRepository::findByLowerUnitNameIn), Unit::getUnitName);
+        Map<String, ProductType> types = ImportReferenceLookup.index(
+                ImportReferenceLookup.findIn(typeNames, productTypeRepository::findByLowerTypeNameIn), ProductType::getTypeName);
+        return new ProductReferences(existingCodes, units, types);
+    }
 
-            dto.setProductCode(code);
-            dto.setProductName(name);
-            dto.setUnitName(unitName);
-            dto.setProductTypeName(typeName);
-            dto.setDescription(description);
+    // Đọc từng dòng bằng SAX, dòng nào kiểm tra xong thì đẩy ra sink ngay
+    private void validateProducts(Path path, ProductReferences refs, ImportProgress progress,
+                                  Consumer<ProductPreviewDTO> sink) throws IOException {
+        progress.startPhase(ImportJobDTO.Phase.VALIDATING);
+        Map<String, Integer> codeToRowMap = new HashMap<>(); // để kiểm tra trùng mã trong file
 
-            List<String> errors = new ArrayList<>();
+        StreamingSheetReader.read(path.toFile(), new StreamingSheetReader.RowListener() {
+            @Override
+            public void onDimension(int lastRowNumber) {
+                progress.setTotalRows(lastRowNumber);
+            }
 
-            if (code == null || code.trim().isEmpty()) {
-                errors.add("Mã sản phẩm không được để trống");
-                dto.setValid(false);
-            } else {
-                String trimmedCode = code.trim();
-
-                // Kiểm tra trùng trong file Excel
-                if (codeToRowMap.containsKey(trimmedCode)) {
-                    errors.add("Mã sản phẩm trùng với dòng số " + codeToRowMap.get(trimmedCode));
-                    dto.setValid(false);
-                } else {
-                    codeToRowMap.put(trimmedCode, dto.getRowIndex());
-                }
+            @Override
+            public void onRow(int rowNum, List<String> cells) {
+                if (rowNum == 0 || isBlankRow(cells)) return;
 
-                // Kiểm tra đã tồn tại trong hệ thống
-                if (productsRepository.existsByProductCode(trimmedCode)) {
-                    errors.add("Mã sản phẩm đã tồn tại trong hệ thống");
-                    dto.setValid(false);
+                ProductPreviewDTO dto = validateProductRow(rowNum, cells, refs, codeToRowMap);
+                progress.rowProcessed();
+                if (!dto.isValid()) {
+                    progress.rowInvalid(dto.getRowIndex(), dto.getErrorMessage());
                 }
+                sink.accept(dto);
             }
+        });
+    }
 
-            if (name == null || name.trim().isEmpty()) {
-                errors.add("Tên sản phẩm không được để trống");
+    private ProductPreviewDTO validateProductRow(int rowNum, List<String> cells, ProductReferences refs,
+                                                 Map<String, Integer> codeToRowMap) {
+        ProductPreviewDTO dto = new ProductPreviewDTO();
+        dto.setRowIndex(rowNum + 1); // Excel bắt đầu từ 1
+        dto.setValid(true);
+
+        String code = getCellValue(cells, 0);
+        String name = getCellValue(cells, 1);
+        String unitName = getCellValue(cells, 2);
+        String typeName = getCellValue(cells, 3);
+        String description = getCellValue(cells, 4);
+
+        dto.setProductCode(code);
+        dto.setProductName(name);
+        dto.setUnitName(unitName);
+        dto.setProductTypeName(typeName);
+        dto.setDescription(description);
+
+        List<String> errors = new ArrayList<>();
+
+        if (code == null || code.trim().isEmpty()) {
+            errors.add("Mã sản phẩm không được để trống");
+            dto.setValid(false);
+        } else {
+            String codeKey = ImportReferenceLookup.key(code);
+
+            // Kiểm tra trùng trong file Excel
+            if (codeToRowMap.containsKey(codeKey)) {
+                errors.add("Mã sản phẩm trùng với dòng số " + codeToRowMap.get(codeKey));
                 dto.setValid(false);
+            } else {
+                codeToRowMap.put(codeKey, dto.getRowIndex());
             }
 
-            if (unitName == null || unitName.trim().isEmpty()) {
-                errors.add("Đơn vị không được để trống");
-                dto.setValid(false);
-            } else if (!unitRepository.existsByUnitNameIgnoreCase(unitName.trim())) {
-                errors.add("Đơn vị không tồn tại trong hệ thống");
+            // Kiểm tra đã tồn tại trong hệ thống
+            if (refs.existingCodes().contains(codeKey)) {
+                errors.add("Mã sản phẩm đã tồn tại trong hệ thống");
                 dto.setValid(false);
             }
+        }
 
-            if (typeName == null || typeName.trim().isEmpty()) {
-                errors.add("Dòng sản phẩm không được để trống");
-                dto.setValid(false);
-            } else if (!productTypeRepository.existsByTypeNameIgnoreCase(typeName.trim())) {
-                errors.add("Dòng sản phẩm không tồn tại trong hệ thống");
-                dto.setValid(false);
-            }
+        if (name == null || name.trim().isEmpty()) {
+            errors.add("Tên sản phẩm không được để trống");
+            dto.setValid(false);
+        }
 
-            if (!errors.isEmpty()) {
-                dto.setErrorMessage(String.join("; ", errors));
-            }
+        if (unitName == null || unitName.trim().isEmpty()) {
+            errors.add("Đơn vị không được để trống");
+            dto.setValid(false);
+        } else if (!refs.units().containsKey(ImportReferenceLookup.key(unitName))) {
+            errors.add("Đơn vị không tồn tại trong hệ thống");
+            dto.setValid(false);
+        }
 
-            result.add(dto);
+        if (typeName == null || typeName.trim().isEmpty()) {
+            errors.add("Dòng sản phẩm không được để trống");
+            dto.setValid(false);
+        } else if (!refs.types().containsKey(ImportReferenceLookup.key(typeName))) {
+            errors.add("Dòng sản phẩm không tồn tại trong hệ thống");
+            dto.setValid(false);
         }
 
-        workbook.close();
-        return result;
+        if (!errors.isEmpty()) {
+            dto.setErrorMessage(String.join("; ", errors));
+        }
+        return dto;
     }
 
+    // Một transaction cho cả file; cứ IMPORT_BATCH_SIZE dòng thì flush + clear để persistence context không phình
+    private String importProducts(Path path, ProductReferences refs, ImportProgress progress) throws IOException {
+        progress.startPhase(ImportJobDTO.Phase.IMPORTING);
+        try {
+            long imported = transactionTemplate.execute(status -> {
+                List<Product> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                long[] saved = {0};
+                try {
+                    StreamingSheetReader.read(path.toFile(), (rowNum, cells) -> {
+                        if (rowNum == 0) return;
+                        progress.rowProcessed();
+
+                        Product product = toProduct(cells, refs);
+                        if (product == null) return;
+                        batch.add(product);
+                        if (batch.size() >= IMPORT_BATCH_SIZE) {
+                            saved[0] += saveBatch(batch);
+                            progress.setImportedRows(saved[0]);
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                saved[0] += saveBatch(batch);
+                progress.setImportedRows(saved[0]);
+                return saved[0];
+            });
+            return "Import thành công " + imported + " sản phẩm.";
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-    public String importProducts(MultipartFile file) throws IOException {
-        Workbook workbook = new XSSFWorkbook(file.getInputStream());
-        Sheet sheet = workbook.getSheetAt(0);
-        List<Product> products = new ArrayList<>();
-
-        for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-            Row row = sheet.getRow(i);
-            if (row == null) continue;
-
-            String code = getCellValue(row.getCell(0));
-            String name = getCellValue(row.getCell(1));
-            String unitName = getCellValue(row.getCell(2));
-            String typeName = getCellValue(row.getCell(3));
-            String description = getCellValue(row.getCell(4));
-
-            if (code == null || code.trim().isEmpty() || name == null || name.trim().isEmpty()) continue;
+    private Product toProduct(List<String> cells, ProductReferences refs) {
+        String code = getCellValue(cells, 0);
+        String name = getCellValue(cells, 1);
+        String unitName = getCellValue(cells, 2);
+        String typeName = getCellValue(cells, 3);
+        String description = getCellValue(cells, 4);
 
-            Optional<Unit> unit = unitRepository.findByUnitName(unitName.trim());
-            Optional<ProductType> type = productTypeRepository.findByTypeName(typeName.trim());
+        if (code == null || code.trim().isEmpty() || name == null || name.trim().isEmpty()) return null;
 
-            if (unit.isEmpty() || type.isEmpty()) continue;
+        Unit unit = refs.units().get(ImportReferenceLookup.key(unitName));
+        ProductType type = refs.types().get(ImportReferenceLookup.key(typeName));
 
-            Product product = new Product();
-            product.setProductCode(code.trim());
-            product.setProductName(name.trim());
-            product.setDescription(description);
-            product.setUnit(unit.get());
-            product.setProductType(type.get());
+        if (unit == null || type == null) return null;
 
-            products.add(product);
-        }
+        Product product = new Product();
+        product.setProductCode(code.trim());
+        product.setProductName(name.trim());
+        product.setDescription(description);
+        // Entity tra trước nằm ngoài persistence context (đã clear sau mỗi lô) => dùng reference theo id
+        product.setUnit(entityManager.getReference(Unit.class, unit.getUnitId()));
+        product.setProductType(entityManager.getReference(ProductType.class, type.getTypeId()));
+        return product;
+    }
 
-        workbook.close();
-        productsRepository.saveAll(products);
-        return "Import thành công " + products.size() + " sản phẩm.";
+    private int saveBatch(List<Product> batch) {
+        int size = batch.size();
+        productsRepository.saveAll(batch);
+        entityManager.flush();
+        entityManager.clear();
+        batch.clear();
+        return size;
     }
 
-    private String getCellValue(Cell cell) {
-        if (cell == null) return null;
-        cell.setCellType(CellType.STRING);
-        return cell.getStringCellValue().trim();
+    private static boolean isBlankRow(List<String> cells) {
+        return cells.stream().allMatch(value -> value == null || value.isEmpty());
     }
 
+    private static String getCellValue(List<String> cells, int column) {
+        return column < cells.size() ? cells.get(column) : null;
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,8 @@
+package vn.unistock.unistockmanagementsystem.features.user.products;
+
+/**
+ * Phát ra khi định mức (ProductMaterial) của sản phẩm có thể đã đổi;
+ * MaterialRequirementService xóa định mức đã cache của sản phẩm sau khi transaction commit.
+ */
+public record ProductBomChangedEvent(Long productId) {
+}
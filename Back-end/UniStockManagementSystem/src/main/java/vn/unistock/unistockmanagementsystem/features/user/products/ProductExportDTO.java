@@ -0,0 +1,15 @@
+package vn.unistock.unistockmanagementsystem.features.user.products;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Một dòng của file xuất danh sách sản phẩm
+@Data
+@AllArgsConstructor
+public class ProductExportDTO {
+    private String productCode;
+    private String productName;
+    private String unitName;
+    private String typeName;
+    private String description;
+}
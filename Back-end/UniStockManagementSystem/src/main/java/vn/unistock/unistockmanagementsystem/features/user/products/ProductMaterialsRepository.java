@@ -9,7 +9,9 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import vn.unistock.unistockmanagementsystem.entities.ProductMaterial;
+import vn.unistock.unistockmanagementsystem.features.user.mrp.BomLineDTO;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,4 +33,13 @@ public interface ProductMaterialsRepository extends JpaRepository<ProductMateria
             "JOIN SalesOrderDetail sod ON sod.product = p " +
             "WHERE sod.salesOrder.orderId = :saleOrderId")
     List<ProductMaterial> findBySaleOrderId(@Param("saleOrderId") Long saleOrderId);
-}
\ No newline at end of file
+
+    // Định mức của nhiều sản phẩm trong một truy vấn (dùng cho MRP)
+    @Query("""
+    SELECT new vn.unistock.unistockmanagementsystem.features.user.mrp.BomLineDTO(
+        pm.product.productId, pm.material.materialId, pm.quantity)
+    FROM ProductMaterial pm
+    WHERE pm.product.productId IN :productIds
+    """)
+    List<BomLineDTO> findBomLinesByProductIds(@Param("productIds") Collection<Long> productIds);
+}
@@ -2,6 +2,7 @@ package vn.unistock.unistockmanagementsystem.features.user.products;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -14,6 +15,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import vn.unistock.unistockmanagementsystem.entities.Product;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportJobDTO;
+import vn.unistock.unistockmanagementsystem.utils.excel.ImportJobService;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -28,6 +32,7 @@ import java.util.Map;
 public class ProductsController {
     private final ProductsService productsService;
     private final ExcelService excelService;
+    private final ImportJobService importJobService;
 
     @GetMapping
     public ResponseEntity<Page<ProductsDTO>> getProducts(
@@ -82,6 +87,17 @@ public class ProductsController {
         }
     }
 
+    // File lớn: import chạy nền, trả về jobId để theo dõi tiến độ
+    @PostMapping(value = "/import-jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportJobDTO> startImportProducts(@RequestParam("file") MultipartFile file) throws IOException {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(excelService.startImportJob(file));
+    }
+
+    @GetMapping("/import-jobs/{jobId}")
+    public ResponseEntity<ImportJobDTO> getImportProductsStatus(@PathVariable String jobId) {
+        return ResponseEntity.ok(importJobService.get(ExcelService.IMPORT_JOB_TYPE, jobId));
+    }
+
     @PatchMapping("/{id}/toggle-production")
     public ResponseEntity<ProductsDTO> toggleProductionStatus(@PathVariable Long id) {
         return ResponseEntity.ok(productsService.toggleProductionStatus(id));
@@ -188,22 +204,9 @@ public class ProductsController {
     }
 
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportProducts() {
-        try {
-            ByteArrayInputStream stream = excelService.exportProductsToExcel();
-            byte[] content = stream.readAllBytes();
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.add("Content-Disposition", "attachment; filename=products_export.xlsx");
-
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(content);
-        } catch (IOException e) {
-            log.error("❌ Lỗi khi export danh sách sản phẩm:", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
-        }
+    public void exportProducts(HttpServletResponse response) throws IOException {
+        ExcelStreamExporter.prepareResponse(response, "products_export.xlsx");
+        excelService.exportProducts(response.getOutputStream());
     }
 
     //Lay dinh muc vat cho san pham
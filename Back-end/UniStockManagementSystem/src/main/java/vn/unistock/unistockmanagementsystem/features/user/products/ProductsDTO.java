@@ -18,6 +18,7 @@ public class ProductsDTO {
     private String typeName;
     private Boolean isProductionActive;
     private String imageUrl;
+    private String thumbnailUrl;
     private MultipartFile image; // Dùng cho upload file
     private List<ProductMaterialsDTO> materials; // Danh sách định mức vật tư
 }
\ No newline at end of file
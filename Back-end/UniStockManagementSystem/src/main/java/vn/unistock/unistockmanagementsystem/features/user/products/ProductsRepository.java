@@ -1,38 +1,59 @@
 package vn.unistock.unistockmanagementsystem.features.user.products;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vn.unistock.unistockmanagementsystem.entities.Product;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 @Repository
 public interface ProductsRepository extends JpaRepository<Product, Long> {
     boolean existsByProductCode(String productCode);
     boolean existsByProductCodeAndProductIdNot(String productCode, Long productId);
+
+    @Query("SELECT p.productCode FROM Product p WHERE p.productCode IN :codes")
+    List<String> findProductCodesIn(@Param("codes") Collection<String> codes);
     Page<Product> findAll(Pageable pageable);
     Optional<Product> findByProductCode(String productCode);
     Page<Product> findByIsProductionActiveTrue(Pageable pageable);
-    @Query("SELECT p FROM Product p WHERE :search IS NULL OR p.productCode LIKE %:search% OR p.productName LIKE %:search%")
-    List<Product> findByCodeOrName(@Param("search") String search);
 
+    // productIds: kết quả tìm mã/tên từ SearchIndexService (null = không lọc); likeSearch: từ khóa quá ngắn hoặc khớp quá nhiều id để lọc qua chỉ mục
     @Query("""
         SELECT p FROM Product p
-        WHERE (:search IS NULL OR
-               lower(p.productCode) LIKE lower(concat('%', :search, '%')) OR
-               lower(p.productName) LIKE lower(concat('%', :search, '%')))
+        WHERE (:productIds IS NULL OR p.productId IN :productIds)
+          AND (:likeSearch IS NULL
+               OR LOWER(p.productCode) LIKE LOWER(CONCAT('%', :likeSearch, '%'))
+               OR LOWER(p.productName) LIKE LOWER(CONCAT('%', :likeSearch, '%')))
           AND (:statuses IS NULL OR p.isProductionActive IN :statuses)
           AND (:typeIds IS NULL OR p.productType.typeId IN :typeIds)
     """)
-    Page<Product> searchProducts(@Param("search") String search,
+    Page<Product> searchProducts(@Param("productIds") List<Long> productIds,
+                                 @Param("likeSearch") String likeSearch,
                                  @Param("statuses") List<Boolean> statuses,
                                  @Param("typeIds") List<Long> typeIds,
                                  Pageable pageable);
 
+    // Đọc dần từng dòng để xuất Excel, không nạp cả bảng lên heap
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = ExcelStreamExporter.STREAM_FETCH_SIZE))
+    @Query("""
+    SELECT new vn.unistock.unistockmanagementsystem.features.user.products.ProductExportDTO(
+        p.productCode, p.productName, u.unitName, t.typeName, p.description)
+    FROM Product p
+    LEFT JOIN p.unit u
+    LEFT JOIN p.productType t
+    ORDER BY p.productId
+    """)
+    Stream<ProductExportDTO> streamAllForExport();
 }
@@ -2,6 +2,7 @@ package vn.unistock.unistockmanagementsystem.features.user.products;
 
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -13,7 +14,10 @@ import vn.unistock.unistockmanagementsystem.entities.Product;
 import vn.unistock.unistockmanagementsystem.entities.ProductMaterial;
 import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
 import vn.unistock.unistockmanagementsystem.features.user.productTypes.ProductTypeRepository;
-import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
+import vn.unistock.unistockmanagementsystem.entities.StoredImage;
+import vn.unistock.unistockmanagementsystem.utils.storage.ImageStorageService;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchDomain;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchIndexService;
 import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
 import lombok.extern.slf4j.Slf4j;
 
@@ -33,7 +37,9 @@ public class ProductsService {
     private final ProductMaterialsRepository productMaterialsRepository;
     private final ProductsMapper productsMapper = ProductsMapper.INSTANCE;
     private final ProductMaterialsMapper productMaterialsMapper;
-    private final AzureBlobService azureBlobService;
+    private final ImageStorageService imageStorageService;
+    private final SearchIndexService searchIndexService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public Page<ProductsDTO> getAllProducts(int page, int size,
                                          String search,
@@ -45,8 +51,12 @@ public class ProductsService {
 
         Pageable pageable = PageRequest.of(page, size);
 
+        SearchIndexService.Match match = searchIndexService.match(SearchDomain.PRODUCT, search);
+        if (match.isNone()) {
+            return Page.empty(pageable);
+        }
         Page<Product> pageEntity = productsRepository
-                .searchProducts(search, statuses, typeIds, pageable);
+                .searchProducts(match.ids(), match.likeTerm(), statuses, typeIds, pageable);
 
         return pageEntity.map(productsMapper::toDTO);
     }
@@ -62,8 +72,9 @@ public class ProductsService {
         product.setIsProductionActive(dto.getIsProductionActive() != null ? dto.getIsProductionActive() : true);
 
         if (dto.getImage() != null && !dto.getImage().isEmpty()) {
-            String imageUrl = azureBlobService.uploadFile(dto.getImage());
-            product.setImageUrl(imageUrl);
+            StoredImage image = imageStorageService.store(dto.getImage());
+            product.setImageUrl(image.getImageUrl());
+            product.setThumbnailUrl(image.getThumbnailUrl());
         }
 
         if (dto.getUnitId() != null) {
@@ -108,6 +119,8 @@ public class ProductsService {
      public ProductsDTO updateProduct(Long id, ProductsDTO updatedProduct, MultipartFile newImage, boolean deleteImage) throws IOException {
         Product product = productsRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm"));
+        // Định mức có thể đổi => xóa định mức đã cache của sản phẩm sau khi commit
+        eventPublisher.publishEvent(new ProductBomChangedEvent(id));
 
         if (!product.getProductCode().equals(updatedProduct.getProductCode()) &&
                 productsRepository.existsByProductCode(updatedProduct.getProductCode())) {
@@ -129,17 +142,18 @@ public class ProductsService {
                     .orElseThrow(() -> new IllegalArgumentException("Loại sản phẩm không tồn tại!")));
         }
 
+         String oldImageUrl = product.getImageUrl();
          if (deleteImage) {
-             if (product.getImageUrl() != null) {
-                 azureBlobService.deleteFile(product.getImageUrl());
-                 product.setImageUrl(null);
-             }
+             product.setImageUrl(null);
+             product.setThumbnailUrl(null);
          } else if (newImage != null && !newImage.isEmpty()) {
-             if (product.getImageUrl() != null) {
-                 azureBlobService.deleteFile(product.getImageUrl());
-             }
-             String newImageUrl = azureBlobService.uploadFile(newImage);
-             product.setImageUrl(newImageUrl);
+             StoredImage image = imageStorageService.store(newImage);
+             product.setImageUrl(image.getImageUrl());
+             product.setThumbnailUrl(image.getThumbnailUrl());
+         }
+         // Ảnh cũ có thể đang dùng chung với item khác => chỉ xóa khi không còn ai dùng
+         if (oldImageUrl != null && !oldImageUrl.equals(product.getImageUrl())) {
+             imageStorageService.release(oldImageUrl);
          }
 
         List<ProductMaterial> productMaterials = product.getProductMaterials();
@@ -3,12 +3,28 @@ package vn.unistock.unistockmanagementsystem.features.user.purchaseOrder;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import vn.unistock.unistockmanagementsystem.entities.PurchaseOrder;
 import vn.unistock.unistockmanagementsystem.entities.PurchaseOrderDetail;
+import vn.unistock.unistockmanagementsystem.features.user.mrp.MaterialQuantityDTO;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface PurchaseOrderDetailRepository extends JpaRepository<PurchaseOrderDetail, Long> {
     @Query("SELECT pod FROM PurchaseOrderDetail pod JOIN FETCH pod.material m LEFT JOIN FETCH m.unit WHERE pod.purchaseOrder.poId = :poId")
     List<PurchaseOrderDetail> findByPurchaseOrderPoId(@Param("poId") Long poId);
+
+    // Số lượng còn chờ nhận của các đơn mua chưa hoàn thành, theo vật tư
+    @Query("""
+    SELECT new vn.unistock.unistockmanagementsystem.features.user.mrp.MaterialQuantityDTO(
+        pod.material.materialId, SUM(pod.remainingQuantity))
+    FROM PurchaseOrderDetail pod
+    WHERE pod.material.materialId IN :materialIds
+      AND pod.remainingQuantity > 0
+      AND pod.purchaseOrder.status IN :openStatuses
+    GROUP BY pod.material.materialId
+    """)
+    List<MaterialQuantityDTO> sumOpenQuantityByMaterials(@Param("materialIds") Collection<Long> materialIds,
+                                                         @Param("openStatuses") Collection<PurchaseOrder.OrderStatus> openStatuses);
 }
 
@@ -18,6 +18,8 @@ import vn.unistock.unistockmanagementsystem.features.user.partner.PartnerReposit
 import vn.unistock.unistockmanagementsystem.features.user.purchaseRequests.PurchaseRequestService;
 import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrdersDTO;
 import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrdersMapper;
+import vn.unistock.unistockmanagementsystem.utils.sequence.DocumentCodeService;
+import vn.unistock.unistockmanagementsystem.utils.sequence.DocumentType;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -42,6 +44,7 @@ public class PurchaseOrderService {
 
     private final PartnerRepository partnerRepository;
     private final MaterialsRepository materialRepository;
+    private final DocumentCodeService documentCodeService;
     @Autowired
     private PurchaseRequestService purchaseRequestService;
 
@@ -166,7 +169,7 @@ public class PurchaseOrderService {
             PurchaseOrder order = new PurchaseOrder();
             order.setPartner(supplier);
             order.setOrderDate(LocalDateTime.now());
-            order.setPoCode(generatePurchaseOrderCode(supplier));
+            order.setPoCode(documentCodeService.nextCode(DocumentType.PURCHASE_ORDER));
 
             if (request.getPurchaseRequestId() != null) {
                 PurchaseRequest purchaseRequest = new PurchaseRequest();
@@ -208,36 +211,6 @@ public class PurchaseOrderService {
         return result;
     }
 
-    /**
-     * Tạo mã purchase order
-     */
-    private String generatePurchaseOrderCode(Partner supplier) {
-        String prefix = "MH";
-
-        // Tìm mã đơn hàng lớn nhất trong hệ thống
-        String maxPoCodeQuery = "SELECT MAX(p.poCode) FROM PurchaseOrder p WHERE p.poCode LIKE :prefix";
-        String maxPoCode = entityManager.createQuery(maxPoCodeQuery, String.class)
-                .setParameter("prefix", prefix + "%")
-                .getSingleResult();
-
-        int nextNumber = 1;
-        if (maxPoCode != null) {
-            // Trích xuất số từ mã đơn hàng lớn nhất
-            try {
-                String numberStr = maxPoCode.substring(prefix.length());
-                nextNumber = Integer.parseInt(numberStr) + 1;
-            } catch (Exception e) {
-                // Nếu có lỗi trong quá trình parse, sử dụng giá trị mặc định là 1
-                nextNumber = 1;
-            }
-        }
-
-        // Format số thành chuỗi có độ dài 5 ký tự, thêm số 0 vào đầu nếu cần
-        String numberStr = String.format("%05d", nextNumber);
-
-        return prefix + numberStr;
-    }
-
     public SaleOrdersDTO getSaleOrderFromPurchaseOrder(Long poId) {
         SalesOrder salesOrder = purchaseOrderRepository
                 .findSalesOrderByPurchaseOrderId(poId)
@@ -9,6 +9,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import vn.unistock.unistockmanagementsystem.entities.PurchaseRequest;
+import vn.unistock.unistockmanagementsystem.utils.pagination.CursorPage;
 
 import java.time.LocalDate;
 import java.util.HashMap;
@@ -42,6 +43,21 @@ public class PurchaseRequestController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<PurchaseRequestDTO>> scrollPurchaseRequests(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) List<PurchaseRequest.RequestStatus> statuses
+    ) {
+        return ResponseEntity.ok(purchaseRequestService.scrollFilteredPurchaseRequests(
+                cursor, size, withTotal, search, startDate, endDate, statuses
+        ));
+    }
+
     @GetMapping("/next-code")
     public ResponseEntity<String> getNextRequestCode() {
         String nextCode = purchaseRequestService.getNextRequestCode();
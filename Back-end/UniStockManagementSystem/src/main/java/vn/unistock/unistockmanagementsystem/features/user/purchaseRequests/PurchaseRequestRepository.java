@@ -8,13 +8,11 @@ import org.springframework.data.repository.query.Param;
 import vn.unistock.unistockmanagementsystem.entities.PurchaseRequest;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface PurchaseRequestRepository extends JpaRepository<PurchaseRequest, Long> {
-    @Query("SELECT MAX(pr.purchaseRequestId) FROM PurchaseRequest pr")
-    Long findMaxPurchaseRequestId();
-
     boolean existsBySalesOrder_OrderId(Long orderId);
 
     @Query("SELECT pr FROM PurchaseRequest pr LEFT JOIN FETCH pr.purchaseRequestDetails WHERE pr.purchaseRequestId = :id")
@@ -23,6 +21,20 @@ public interface PurchaseRequestRepository extends JpaRepository<PurchaseRequest
     List<PurchaseRequest> findAllBySalesOrder_OrderId(Long orderId);
 
     @Query("""
+    SELECT new vn.unistock.unistockmanagementsystem.features.user.purchaseRequests.PurchaseRequestStatusCountDTO(
+        pr.salesOrder.orderId,
+        COUNT(pr),
+        SUM(CASE WHEN pr.status = vn.unistock.unistockmanagementsystem.entities.PurchaseRequest.RequestStatus.REJECTED THEN 1 ELSE 0 END),
+        SUM(CASE WHEN pr.status = vn.unistock.unistockmanagementsystem.entities.PurchaseRequest.RequestStatus.CONFIRMED THEN 1 ELSE 0 END)
+    )
+    FROM PurchaseRequest pr
+    WHERE pr.salesOrder.orderId IN :orderIds
+    GROUP BY pr.salesOrder.orderId
+    """)
+    List<PurchaseRequestStatusCountDTO> countStatusesBySalesOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    // Dùng chung cho danh sách phân trang và cuộn keyset
+    String FILTER_QUERY = """
     SELECT pr FROM PurchaseRequest pr
     WHERE 
       (:search IS NULL OR :search = '' 
@@ -32,7 +44,9 @@ public interface PurchaseRequestRepository extends JpaRepository<PurchaseRequest
       AND (:startDate IS NULL OR FUNCTION('DATE', pr.createdDate) >= :startDate)
       AND (:endDate IS NULL OR FUNCTION('DATE', pr.createdDate) <= :endDate)
       AND (:statuses IS NULL OR pr.status IN :statuses)
-""")
+""";
+
+    @Query(FILTER_QUERY)
     Page<PurchaseRequest> searchFilteredPurchaseRequests(
             @Param("search") String search,
             @Param("startDate") LocalDate startDate,
@@ -41,4 +55,15 @@ public interface PurchaseRequestRepository extends JpaRepository<PurchaseRequest
             Pageable pageable
     );
 
+    // Trang kế tiếp theo keyset: chỉ các yêu cầu có id nhỏ hơn afterId, không chạy COUNT
+    @Query(FILTER_QUERY + "  AND (:afterId IS NULL OR pr.purchaseRequestId < :afterId)")
+    List<PurchaseRequest> scrollFilteredPurchaseRequests(
+            @Param("search") String search,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            @Param("statuses") List<PurchaseRequest.RequestStatus> statuses,
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
+
 }
\ No newline at end of file
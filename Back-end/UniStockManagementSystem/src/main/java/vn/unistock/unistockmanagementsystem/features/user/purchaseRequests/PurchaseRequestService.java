@@ -14,11 +14,16 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.server.ResponseStatusException;
 import vn.unistock.unistockmanagementsystem.entities.*;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryDeltaDao;
 import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryReservationService;
 import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
 import vn.unistock.unistockmanagementsystem.features.user.partner.PartnerRepository;
 import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrdersRepository;
 import vn.unistock.unistockmanagementsystem.features.user.saleOrders.UsedMaterialWarehouseDTO;
+import vn.unistock.unistockmanagementsystem.utils.pagination.CursorPage;
+import vn.unistock.unistockmanagementsystem.utils.sequence.DocumentCodeService;
+import vn.unistock.unistockmanagementsystem.utils.sequence.DocumentType;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -34,8 +39,11 @@ public class PurchaseRequestService {
     private final PartnerRepository partnerRepository;
     private final SaleOrdersRepository saleOrdersRepository;
     private final InventoryRepository inventoryRepository;
+    private final InventoryDeltaDao inventoryDeltaDao;
+    private final InventoryReservationService inventoryReservationService;
     private final PurchaseRequestMapper purchaseRequestMapper;
     private final PurchaseRequestDetailMapper purchaseRequestDetailMapper;
+    private final DocumentCodeService documentCodeService;
 
 
     public Page<PurchaseRequestDTO> getAllPurchaseRequests(Pageable pageable) {
@@ -63,7 +71,7 @@ public class PurchaseRequestService {
     public PurchaseRequestDTO createManualPurchaseRequest(PurchaseRequestDTO dto) {
         // Khởi tạo request chính
         PurchaseRequest purchaseRequest = new PurchaseRequest();
-        purchaseRequest.setPurchaseRequestCode(dto.getPurchaseRequestCode());
+        purchaseRequest.setPurchaseRequestCode(documentCodeService.nextCode(DocumentType.PURCHASE_REQUEST));
         purchaseRequest.setNotes(dto.getNotes());
         purchaseRequest.setStatus(PurchaseRequest.RequestStatus.PENDING);
         purchaseRequest.setRejectionReason(null);
@@ -111,52 +119,21 @@ public class PurchaseRequestService {
 
 
 
+    // Giữ chỗ qua InventoryReservationService (khóa dòng theo từng mặt hàng);
+    // duyệt theo (id mặt hàng, id kho) tăng dần để các transaction luôn khóa cùng thứ tự, tránh deadlock
     private void reserveMaterialsFromWarehouses(List<UsedMaterialWarehouseDTO> usedMaterials,
                                                 SalesOrder salesOrder) {
 
         if (CollectionUtils.isEmpty(usedMaterials)) return;
 
-        for (UsedMaterialWarehouseDTO entry : usedMaterials) {
-            double quantityToReserve = entry.getQuantity();
-            List<Inventory> availableInventories = inventoryRepository
-                    .findByMaterialIdAndStatus(entry.getMaterialId(), Inventory.InventoryStatus.AVAILABLE)
-                    .stream()
-                    .filter(inv -> inv.getWarehouse().getWarehouseId().equals(entry.getWarehouseId()))
-                    .sorted(Comparator.comparing(Inventory::getInventoryId))
-                    .toList();
-
-            for (Inventory available : availableInventories) {
-                if (quantityToReserve <= 0) break;
-
-                double toUse = Math.min(available.getQuantity(), quantityToReserve);
-                available.setQuantity(available.getQuantity() - toUse);
-                if (available.getQuantity() == 0) inventoryRepository.delete(available);
-                else inventoryRepository.save(available);
-
-                Inventory reserved = inventoryRepository
-                        .findByMaterial_MaterialIdAndWarehouse_WarehouseIdAndStatusAndSalesOrder(
-                                entry.getMaterialId(),
-                                entry.getWarehouseId(),
-                                Inventory.InventoryStatus.RESERVED,
-                                salesOrder)
-                        .orElseGet(() -> {
-                            Inventory inv = new Inventory();
-                            inv.setMaterial(available.getMaterial());
-                            inv.setWarehouse(available.getWarehouse());
-                            inv.setStatus(Inventory.InventoryStatus.RESERVED);
-                            inv.setQuantity(0.0);
-                            inv.setSalesOrder(salesOrder);
-                            return inv;
-                        });
-
-                reserved.setQuantity(reserved.getQuantity() + toUse);
-                reserved.setLastUpdated(LocalDateTime.now());
-                inventoryRepository.save(reserved);
-
-                quantityToReserve -= toUse;
-            }
-
-
+        List<UsedMaterialWarehouseDTO> ordered = usedMaterials.stream()
+                .filter(entry -> entry.getWarehouseId() != null)
+                .sorted(Comparator.comparing(UsedMaterialWarehouseDTO::getMaterialId)
+                        .thenComparing(UsedMaterialWarehouseDTO::getWarehouseId))
+                .toList();
+        for (UsedMaterialWarehouseDTO entry : ordered) {
+            inventoryReservationService.reserveMaterial(
+                    entry.getMaterialId(), entry.getWarehouseId(), entry.getQuantity(), salesOrder);
         }
     }
 
@@ -165,53 +142,16 @@ public class PurchaseRequestService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "SalesOrder is required for reserving materials");
         }
 
-        for (PurchaseRequestDetailDTO detailDto : detailDTOs) {
-            if (detailDto.getQuantity() <= 0) continue;
-
-            Material material = materialRepository.findById(detailDto.getMaterialId())
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy vật tư với ID: " + detailDto.getMaterialId()));
-
-            double quantityToReserve = detailDto.getQuantity();
-            List<Inventory> availableInventories = inventoryRepository.findByMaterialIdAndStatus(
-                    material.getMaterialId(), Inventory.InventoryStatus.AVAILABLE);
-            availableInventories.sort(Comparator.comparing(Inventory::getInventoryId));
-
-            for (Inventory available : availableInventories) {
-                if (quantityToReserve <= 0) break;
-
-                double availableQty = available.getQuantity();
-                double toUse = Math.min(availableQty, quantityToReserve);
-
-                available.setQuantity(availableQty - toUse);
-                if (available.getQuantity() == 0) {
-                    inventoryRepository.delete(available);
-                } else {
-                    inventoryRepository.save(available);
-                }
-
-                Inventory reserved = inventoryRepository.findByMaterial_MaterialIdAndWarehouse_WarehouseIdAndStatusAndSalesOrder(
-                        material.getMaterialId(),
-                        available.getWarehouse().getWarehouseId(),
-                        Inventory.InventoryStatus.RESERVED,
-                        salesOrder
-                ).orElseGet(() -> {
-                    Inventory newReserved = new Inventory();
-                    newReserved.setMaterial(material);
-                    newReserved.setWarehouse(available.getWarehouse());
-                    newReserved.setStatus(Inventory.InventoryStatus.RESERVED);
-                    newReserved.setQuantity(0.0);
-                    newReserved.setSalesOrder(salesOrder);
-                    return newReserved;
-                });
-
-                reserved.setQuantity(reserved.getQuantity() + toUse);
-                reserved.setLastUpdated(LocalDateTime.now());
-                inventoryRepository.save(reserved);
-
-                quantityToReserve -= toUse;
+        List<PurchaseRequestDetailDTO> ordered = detailDTOs.stream()
+                .filter(detailDto -> detailDto.getQuantity() > 0)
+                .sorted(Comparator.comparing(PurchaseRequestDetailDTO::getMaterialId))
+                .toList();
+        for (PurchaseRequestDetailDTO detailDto : ordered) {
+            if (!materialRepository.existsById(detailDto.getMaterialId())) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy vật tư với ID: " + detailDto.getMaterialId());
             }
-
-
+            inventoryReservationService.reserveMaterial(
+                    detailDto.getMaterialId(), null, detailDto.getQuantity(), salesOrder);
         }
     }
 
@@ -222,54 +162,16 @@ public class PurchaseRequestService {
 
         if (usedProducts == null || usedProducts.isEmpty()) return;
 
-        for (UsedProductWarehouseDTO entry : usedProducts) {
-            Long productId = entry.getProductId();
-            Long warehouseId = entry.getWarehouseId();
-            double requiredQuantity = entry.getQuantity();
-
-            List<Inventory> availableInventories = inventoryRepository.findByProductIdAndStatus(productId, Inventory.InventoryStatus.AVAILABLE)
-                    .stream()
-                    .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                    .sorted(Comparator.comparing(Inventory::getInventoryId))
-                    .collect(Collectors.toList());
-
-            for (Inventory inventory : availableInventories) {
-                if (requiredQuantity <= 0) break;
-
-                double availableQty = inventory.getQuantity();
-                double toUse = Math.min(availableQty, requiredQuantity);
-
-                inventory.setQuantity(availableQty - toUse);
-                if (inventory.getQuantity() == 0) {
-                    inventoryRepository.delete(inventory);
-                } else {
-                    inventoryRepository.save(inventory);
-                }
-
-                Inventory reserved = inventoryRepository.findByProduct_ProductIdAndWarehouse_WarehouseIdAndStatusAndSalesOrder(
-                        productId,
-                        warehouseId,
-                        Inventory.InventoryStatus.RESERVED,
-                        salesOrder
-                ).orElseGet(() -> {
-                    Inventory newReserved = new Inventory();
-                    newReserved.setProduct(inventory.getProduct());
-                    newReserved.setWarehouse(inventory.getWarehouse());
-                    newReserved.setStatus(Inventory.InventoryStatus.RESERVED);
-                    newReserved.setQuantity(0.0);
-                    newReserved.setSalesOrder(salesOrder);
-                    return newReserved;
-                });
-
-                reserved.setQuantity(reserved.getQuantity() + toUse);
-                reserved.setLastUpdated(LocalDateTime.now());
-                inventoryRepository.save(reserved);
-
-                requiredQuantity -= toUse;
-            }
-
-            if (requiredQuantity > 0) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không đủ số lượng tại kho " + warehouseId + " cho sản phẩm " + productId);
+        List<UsedProductWarehouseDTO> ordered = usedProducts.stream()
+                .sorted(Comparator.comparing(UsedProductWarehouseDTO::getProductId)
+                        .thenComparing(UsedProductWarehouseDTO::getWarehouseId, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+        for (UsedProductWarehouseDTO entry : ordered) {
+            double missing = entry.getWarehouseId() == null ? entry.getQuantity()
+                    : inventoryReservationService.reserveProduct(
+                            entry.getProductId(), entry.getWarehouseId(), entry.getQuantity(), salesOrder);
+            if (missing > 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không đủ số lượng tại kho " + entry.getWarehouseId() + " cho sản phẩm " + entry.getProductId());
             }
         }
     }
@@ -316,29 +218,10 @@ public class PurchaseRequestService {
                     Long warehouseId = entry.getKey();
                     double releasedQuantity = entry.getValue();
 
-                    Warehouse warehouse = reservedInventories.stream()
-                            .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                            .findFirst()
-                            .map(Inventory::getWarehouse)
-                            .orElseThrow(() -> new RuntimeException("Warehouse not found for warehouseId: " + warehouseId));
-
-                    // Find or create AVAILABLE inventory
-                    Inventory availableInventory = inventoryRepository.findByWarehouseAndMaterialAndStatus(
-                                    warehouse, material, Inventory.InventoryStatus.AVAILABLE)
-                            .orElse(null);
-
-                    if (availableInventory == null) {
-                        availableInventory = Inventory.builder()
-                                .warehouse(warehouse)
-                                .material(material)
-                                .status(Inventory.InventoryStatus.AVAILABLE)
-                                .quantity(0.0)
-                                .build();
-                    }
-                    availableInventory.setQuantity(availableInventory.getQuantity() + releasedQuantity);
-                    availableInventory.setLastUpdated(LocalDateTime.now());
-                    availableInventory.setSalesOrder(null);
-                    inventoryRepository.save(availableInventory);
+                    // Cộng trả về AVAILABLE bằng upsert nguyên tử thay cho find-then-insert
+                    inventoryDeltaDao.add(List.of(InventoryDeltaDao.Delta.material(
+                            warehouseId, material.getMaterialId(), Inventory.InventoryStatus.AVAILABLE, null,
+                            releasedQuantity, LocalDateTime.now())));
 
                     // Delete RESERVED records for this warehouse
                     List<Inventory> reservedToDelete = reservedInventories.stream()
@@ -384,29 +267,10 @@ public class PurchaseRequestService {
                         Long warehouseId = entry.getKey();
                         double releasedQuantity = entry.getValue();
 
-                        Warehouse warehouse = reservedInventories.stream()
-                                .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                                .findFirst()
-                                .map(Inventory::getWarehouse)
-                                .orElseThrow(() -> new RuntimeException("Warehouse not found for warehouseId: " + warehouseId));
-
-                        // Find or create AVAILABLE inventory
-                        Inventory availableInventory = inventoryRepository.findByWarehouseAndProductAndStatus(
-                                        warehouse, product, Inventory.InventoryStatus.AVAILABLE)
-                                .orElse(null);
-
-                        if (availableInventory == null) {
-                            availableInventory = Inventory.builder()
-                                    .warehouse(warehouse)
-                                    .product(product)
-                                    .status(Inventory.InventoryStatus.AVAILABLE)
-                                    .quantity(0.0)
-                                    .build();
-                        }
-                        availableInventory.setQuantity(availableInventory.getQuantity() + releasedQuantity);
-                        availableInventory.setLastUpdated(LocalDateTime.now());
-                        availableInventory.setSalesOrder(null);
-                        inventoryRepository.save(availableInventory);
+                        // Cộng trả về AVAILABLE bằng upsert nguyên tử thay cho find-then-insert
+                        inventoryDeltaDao.add(List.of(InventoryDeltaDao.Delta.product(
+                                warehouseId, product.getProductId(), Inventory.InventoryStatus.AVAILABLE, null,
+                                releasedQuantity, LocalDateTime.now())));
 
                         // Delete RESERVED records for this warehouse
                         List<Inventory> reservedToDelete = reservedInventories.stream()
@@ -448,12 +312,10 @@ public class PurchaseRequestService {
         return purchaseRequestMapper.toDTO(request);
     }
 
-    @Transactional
+    // Mã dự kiến cho form thêm mới; mã thật được cấp trong createManualPurchaseRequest
     public String getNextRequestCode() {
         try {
-            Long maxId = purchaseRequestRepository.findMaxPurchaseRequestId();
-            Long nextId = (maxId != null) ? (maxId + 1) : 1;
-            return String.format("YC%05d", nextId);
+            return documentCodeService.previewCode(DocumentType.PURCHASE_REQUEST);
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Không thể tạo mã yêu cầu mới: " + e.getMessage(), e);
         }
@@ -565,5 +427,26 @@ public class PurchaseRequestService {
         return filtered.map(purchaseRequestMapper::toDTO);
     }
 
+    // Phân trang keyset cho danh sách yêu cầu mua: cursor là purchaseRequestId cuối của trang trước
+    public CursorPage<PurchaseRequestDTO> scrollFilteredPurchaseRequests(
+            String cursor,
+            int size,
+            boolean withTotal,
+            String search,
+            LocalDate startDate,
+            LocalDate endDate,
+            List<PurchaseRequest.RequestStatus> statuses
+    ) {
+        List<PurchaseRequest> rows = purchaseRequestRepository.scrollFilteredPurchaseRequests(
+                search, startDate, endDate, statuses,
+                CursorPage.decodeCursor(cursor), CursorPage.seek(size, "purchaseRequestId")
+        );
+        Long total = withTotal
+                ? purchaseRequestRepository.searchFilteredPurchaseRequests(
+                        search, startDate, endDate, statuses, PageRequest.of(0, 1)).getTotalElements()
+                : null;
+        return CursorPage.of(rows, size, PurchaseRequest::getPurchaseRequestId, purchaseRequestMapper::toDTO, total);
+    }
+
 
 }
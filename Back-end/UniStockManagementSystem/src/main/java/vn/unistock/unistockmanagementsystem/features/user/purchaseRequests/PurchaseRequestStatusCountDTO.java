@@ -0,0 +1,14 @@
+package vn.unistock.unistockmanagementsystem.features.user.purchaseRequests;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Số yêu cầu mua của một đơn hàng theo trạng thái, dùng để tính nhãn trạng thái đơn hàng
+@Data
+@AllArgsConstructor
+public class PurchaseRequestStatusCountDTO {
+    private Long orderId;
+    private Long total;
+    private Long rejected;
+    private Long confirmed;
+}
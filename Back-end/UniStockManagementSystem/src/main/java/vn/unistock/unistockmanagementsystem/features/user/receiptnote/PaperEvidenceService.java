@@ -0,0 +1,112 @@
+package vn.unistock.unistockmanagementsystem.features.user.receiptnote;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import vn.unistock.unistockmanagementsystem.entities.PaperEvidence;
+import vn.unistock.unistockmanagementsystem.utils.storage.FileStorageService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Upload chứng từ giấy (ảnh scan) cho phiếu nhập/xuất:
+ * - Các file được upload song song trên một thread pool giới hạn (storage.upload.concurrency),
+ *   request chỉ chờ file chậm nhất thay vì tổng thời gian của mọi file.
+ * - Các dòng PaperEvidence của file thành công được lưu bằng một lần saveAll.
+ * - File lỗi không làm hỏng cả lô, được trả về từng file trong failedFiles.
+ * Không chạy trong transaction để không giữ connection DB trong lúc chờ upload.
+ */
+@Service
+public class PaperEvidenceService {
+    private static final Logger logger = LoggerFactory.getLogger(PaperEvidenceService.class);
+
+    private final PaperEvidenceRepository paperEvidenceRepository;
+    private final FileStorageService fileStorageService;
+    private final ExecutorService uploadExecutor;
+
+    private record UploadOutcome(MultipartFile file, String fileUrl, Throwable error) {}
+
+    public PaperEvidenceService(PaperEvidenceRepository paperEvidenceRepository,
+                                FileStorageService fileStorageService,
+                                @Value("${storage.upload.concurrency:4}") int concurrency) {
+        this.paperEvidenceRepository = paperEvidenceRepository;
+        this.fileStorageService = fileStorageService;
+        AtomicInteger threadCount = new AtomicInteger();
+        // Hàng đợi không giới hạn nhưng số luồng cố định => số upload đồng thời tới storage luôn bị chặn trên
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "paper-evidence-upload-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.uploadExecutor = executor;
+    }
+
+    public PaperEvidenceUploadResultDTO upload(Long noteId, PaperEvidence.NoteType noteType, List<MultipartFile> files) {
+        List<CompletableFuture<UploadOutcome>> uploads = files.stream()
+                .filter(file -> !file.isEmpty())
+                .map(file -> CompletableFuture.supplyAsync(() -> uploadOne(file), uploadExecutor))
+                .toList();
+        CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new)).join();
+
+        List<PaperEvidence> evidences = new ArrayList<>();
+        List<String> fileUrls = new ArrayList<>();
+        List<PaperEvidenceUploadResultDTO.FailedFile> failedFiles = new ArrayList<>();
+        for (CompletableFuture<UploadOutcome> upload : uploads) {
+            UploadOutcome outcome = upload.join();
+            if (outcome.error() != null) {
+                logger.warn("Failed to upload file {} for note ID {}: {}",
+                        outcome.file().getOriginalFilename(), noteId, outcome.error().getMessage());
+                failedFiles.add(new PaperEvidenceUploadResultDTO.FailedFile(
+                        outcome.file().getOriginalFilename(), outcome.error().getMessage()));
+                continue;
+            }
+            evidences.add(PaperEvidence.builder()
+                    .noteId(noteId)
+                    .noteType(noteType)
+                    .paperUrl(outcome.fileUrl())
+                    .build());
+            fileUrls.add(outcome.fileUrl());
+        }
+
+        try {
+            paperEvidenceRepository.saveAll(evidences);
+        } catch (RuntimeException e) {
+            // Không lưu được => dọn các file đã upload để không để lại file mồ côi trên storage
+            fileStorageService.deleteFilesAsync(fileUrls);
+            throw e;
+        }
+
+        logger.info("Uploaded {}/{} files for note ID: {}, type: {}",
+                fileUrls.size(), uploads.size(), noteId, noteType);
+        return PaperEvidenceUploadResultDTO.builder()
+                .noteId(noteId)
+                .fileUrls(fileUrls)
+                .failedFiles(failedFiles)
+                .build();
+    }
+
+    private UploadOutcome uploadOne(MultipartFile file) {
+        try {
+            return new UploadOutcome(file, fileStorageService.uploadFile(file), null);
+        } catch (Exception e) {
+            return new UploadOutcome(file, null, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+    }
+}
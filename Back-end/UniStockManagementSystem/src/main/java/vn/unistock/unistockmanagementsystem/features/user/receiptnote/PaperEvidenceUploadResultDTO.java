@@ -0,0 +1,25 @@
+package vn.unistock.unistockmanagementsystem.features.user.receiptnote;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaperEvidenceUploadResultDTO {
+    private Long noteId;
+    private List<String> fileUrls;
+    private List<FailedFile> failedFiles;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FailedFile {
+        private String fileName;
+        private String error;
+    }
+}
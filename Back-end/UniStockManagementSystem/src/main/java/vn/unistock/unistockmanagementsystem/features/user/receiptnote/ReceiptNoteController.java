@@ -1,6 +1,7 @@
 package vn.unistock.unistockmanagementsystem.features.user.receiptnote;
 
 import com.azure.core.annotation.Get;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -17,7 +18,10 @@ import vn.unistock.unistockmanagementsystem.entities.User;
 import vn.unistock.unistockmanagementsystem.features.user.purchaseOrder.PurchaseOrderDTO;
 import vn.unistock.unistockmanagementsystem.features.user.purchaseRequests.PurchaseRequestDTO;
 import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
+import vn.unistock.unistockmanagementsystem.utils.pagination.CursorPage;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +50,19 @@ public class ReceiptNoteController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<ReceiptNoteDTO>> scrollGoodReceipts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) List<String> categories,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate
+    ) {
+        return ResponseEntity.ok(receiptNoteService.scrollReceiptNotes(cursor, size, withTotal, search, categories, startDate, endDate));
+    }
+
     @PostMapping
     public ResponseEntity<ReceiptNoteDTO> createGoodReceipt(@RequestBody ReceiptNoteDTO grnDto) {
         return ResponseEntity.ok(receiptNoteService.createGoodReceipt(grnDto));
@@ -82,8 +99,10 @@ public class ReceiptNoteController {
         User currentUser = userDetails.getUser();
 
         try {
-            List<String> fileUrls = receiptNoteService.uploadPaperEvidence(noteId, noteType, files, currentUser);
-            return ResponseEntity.ok().body(fileUrls);
+            PaperEvidenceUploadResultDTO result = receiptNoteService.uploadPaperEvidence(noteId, noteType, files, currentUser);
+            // 207 khi có file lỗi: các file còn lại vẫn đã được lưu, chi tiết trong failedFiles
+            return ResponseEntity.status(result.getFailedFiles().isEmpty() ? HttpStatus.OK : HttpStatus.MULTI_STATUS)
+                    .body(result);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to upload files: " + e.getMessage());
@@ -113,4 +132,22 @@ public class ReceiptNoteController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/report/export")
+    public void downloadImportReport(
+            HttpServletResponse response,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String itemType,
+            @RequestParam(required = false) List<Long> warehouseIds,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) List<String> categories,
+            @RequestParam(required = false) Double minQuantity,
+            @RequestParam(required = false) Double maxQuantity
+    ) throws IOException {
+        ExcelStreamExporter.prepareResponse(response, "bao_cao_nhap_kho.xlsx");
+        receiptNoteService.writeImportReport(
+                response.getOutputStream(), search, itemType, warehouseIds, startDate, endDate, categories, minQuantity, maxQuantity
+        );
+    }
+
 }
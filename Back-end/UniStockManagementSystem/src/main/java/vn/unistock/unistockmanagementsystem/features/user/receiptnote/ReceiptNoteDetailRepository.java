@@ -1,21 +1,27 @@
 package vn.unistock.unistockmanagementsystem.features.user.receiptnote;
 
 import jakarta.annotation.Nullable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import vn.unistock.unistockmanagementsystem.entities.GoodReceiptDetail;
 import vn.unistock.unistockmanagementsystem.entities.GoodReceiptNote;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ReceiptNoteDetailRepository extends JpaRepository<GoodReceiptDetail, Long> {
-    @Query("""
+    // Dùng chung cho báo cáo phân trang và file xuất
+    String IMPORT_REPORT_QUERY = """
 SELECT new vn.unistock.unistockmanagementsystem.features.user.receiptnote.ReceiptNoteDetailViewDTO(
     d.grnDetailsId,
     n.grnId,
@@ -66,7 +72,9 @@ WHERE
     AND (COALESCE(:categories, NULL) IS NULL OR n.category IN :categories)
     AND (COALESCE(:warehouseIds, NULL) IS NULL OR w.warehouseId IN :warehouseIds)
 ORDER BY n.receiptDate DESC
-""")
+""";
+
+    @Query(IMPORT_REPORT_QUERY)
 
     Page<ReceiptNoteDetailViewDTO> getFilteredImportReport(
             @Nullable String search,
@@ -80,4 +88,18 @@ ORDER BY n.receiptDate DESC
             Pageable pageable
     );
 
+    // Cùng bộ lọc như getFilteredImportReport nhưng đọc dần từng dòng để xuất Excel
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = ExcelStreamExporter.STREAM_FETCH_SIZE))
+    @Query(IMPORT_REPORT_QUERY)
+    Stream<ReceiptNoteDetailViewDTO> streamFilteredImportReport(
+            @Nullable String search,
+            @Nullable LocalDateTime startDate,
+            @Nullable LocalDateTime endDate,
+            @Nullable String itemType,
+            @Nullable Double minQuantity,
+            @Nullable Double maxQuantity,
+            @Nullable List<String> categories,
+            @Nullable List<Long> warehouseIds
+    );
+
 }
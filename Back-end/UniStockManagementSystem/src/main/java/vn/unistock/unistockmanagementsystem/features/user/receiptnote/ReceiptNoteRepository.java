@@ -13,14 +13,14 @@ import java.util.List;
 
 @Repository
 public interface ReceiptNoteRepository extends JpaRepository<GoodReceiptNote, Long> {
-    @Query("SELECT MAX(grn.grnId) FROM GoodReceiptNote grn")
-    Long findMaxGoodReceiptNoteId();
-
-    @Query("SELECT grn FROM GoodReceiptNote grn " +
+    // Dùng chung cho danh sách phân trang và cuộn keyset
+    String FILTER_QUERY = "SELECT grn FROM GoodReceiptNote grn " +
             "WHERE (:search IS NULL OR grn.grnCode LIKE %:search% OR grn.description LIKE %:search%) " +
             "AND (:categories IS NULL OR grn.category IN :categories) " +
             "AND (:start IS NULL OR grn.receiptDate >= :start) " +
-            "AND (:end IS NULL OR grn.receiptDate <= :end)")
+            "AND (:end IS NULL OR grn.receiptDate <= :end)";
+
+    @Query(FILTER_QUERY)
     Page<GoodReceiptNote> findByFilters(
             @Param("search") String search,
             @Param("categories") List<String> categories,
@@ -28,4 +28,15 @@ public interface ReceiptNoteRepository extends JpaRepository<GoodReceiptNote, Lo
             @Param("end") LocalDateTime end,
             Pageable pageable
     );
+
+    // Trang kế tiếp theo keyset: chỉ các phiếu có id nhỏ hơn afterId, không chạy COUNT
+    @Query(FILTER_QUERY + " AND (:afterId IS NULL OR grn.grnId < :afterId)")
+    List<GoodReceiptNote> scrollByFilters(
+            @Param("search") String search,
+            @Param("categories") List<String> categories,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
 }
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
@@ -14,11 +15,12 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 import vn.unistock.unistockmanagementsystem.entities.*;
 import vn.unistock.unistockmanagementsystem.features.admin.user.UserRepository;
-import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryDeltaDao;
 import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryTransactionRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.StockBalanceService;
 import vn.unistock.unistockmanagementsystem.features.user.issueNote.ReceiveOutsourceRepository;
 import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
-import vn.unistock.unistockmanagementsystem.features.user.notification.NotificationService;
+import vn.unistock.unistockmanagementsystem.features.user.notification.MaterialStockChangedEvent;
 import vn.unistock.unistockmanagementsystem.features.user.products.ProductsRepository;
 import vn.unistock.unistockmanagementsystem.features.user.purchaseOrder.PurchaseOrderDTO;
 import vn.unistock.unistockmanagementsystem.features.user.purchaseOrder.PurchaseOrderDetailRepository;
@@ -28,28 +30,49 @@ import vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrdersS
 import vn.unistock.unistockmanagementsystem.features.user.units.UnitRepository;
 import vn.unistock.unistockmanagementsystem.features.user.warehouse.WarehouseRepository;
 import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
-import vn.unistock.unistockmanagementsystem.utils.storage.AzureBlobService;
+import vn.unistock.unistockmanagementsystem.utils.excel.ExcelStreamExporter;
+import vn.unistock.unistockmanagementsystem.utils.pagination.CursorPage;
+import vn.unistock.unistockmanagementsystem.utils.sequence.DocumentCodeService;
+import vn.unistock.unistockmanagementsystem.utils.sequence.DocumentType;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class ReceiptNoteService {
     private static final Logger logger = LoggerFactory.getLogger(ReceiptNoteService.class);
 
+    private static final List<ExcelStreamExporter.Column<ReceiptNoteDetailViewDTO>> IMPORT_REPORT_COLUMNS = List.of(
+            ExcelStreamExporter.column("Mã phiếu nhập", ReceiptNoteDetailViewDTO::getGrnCode),
+            ExcelStreamExporter.column("Ngày nhập", ReceiptNoteDetailViewDTO::getReceiptDate),
+            ExcelStreamExporter.column("Phân loại nhập", ReceiptNoteDetailViewDTO::getCategory),
+            ExcelStreamExporter.column("Kho nhập", ReceiptNoteDetailViewDTO::getWarehouseName),
+            ExcelStreamExporter.column("Mã hàng", r -> r.getMaterialCode() != null ? r.getMaterialCode() : r.getProductCode()),
+            ExcelStreamExporter.column("Tên hàng", r -> r.getMaterialName() != null ? r.getMaterialName() : r.getProductName()),
+            ExcelStreamExporter.column("Đơn vị", ReceiptNoteDetailViewDTO::getUnitName),
+            ExcelStreamExporter.column("Số lượng", ReceiptNoteDetailViewDTO::getQuantity));
+
     @Autowired private ReceiptNoteDetailRepository goodReceiptDetailRepository;
-    @Autowired private InventoryRepository inventoryRepository;
+    @Autowired private InventoryDeltaDao inventoryDeltaDao;
     @Autowired private InventoryTransactionRepository inventoryTransactionRepository;
     @Autowired private WarehouseRepository warehouseRepository;
     @Autowired private MaterialsRepository materialRepository;
     @Autowired private ProductsRepository productRepository;
     @Autowired private ReceiptNoteRepository receiptNoteRepository;
+    @Autowired private DocumentCodeService documentCodeService;
     @Autowired private ReceiptNoteMapper receiptNoteMapper;
     @Autowired private PaperEvidenceRepository paperEvidenceRepository;
-    @Autowired private AzureBlobService azureBlobService;
+    @Autowired private PaperEvidenceService paperEvidenceService;
     @Autowired private UnitRepository unitRepository;
     @Autowired private PurchaseOrderRepository purchaseOrderRepository;
     @Autowired private PurchaseOrderService purchaseOrderService;
@@ -61,7 +84,9 @@ public class ReceiptNoteService {
     @Autowired
     private SaleOrdersService saleOrdersService;
     @Autowired
-    private NotificationService notificationService;
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private StockBalanceService stockBalanceService;
 
     public Page<ReceiptNoteDTO> getAllReceiptNote(int page, int size, String search, List<String> categories, String startDate, String endDate) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "grnId"));
@@ -78,6 +103,21 @@ public class ReceiptNoteService {
         return notes.map(receiptNoteMapper::toDTO);
     }
 
+    // Phân trang keyset cho danh sách phiếu nhập: cursor là grnId cuối của trang trước
+    public CursorPage<ReceiptNoteDTO> scrollReceiptNotes(String cursor, int size, boolean withTotal, String search,
+                                                         List<String> categories, String startDate, String endDate) {
+        LocalDateTime start = startDate != null && !startDate.isBlank() ? LocalDateTime.parse(startDate + "T00:00:00") : null;
+        LocalDateTime end = endDate != null && !endDate.isBlank() ? LocalDateTime.parse(endDate + "T23:59:59") : null;
+
+        List<GoodReceiptNote> rows = receiptNoteRepository.scrollByFilters(
+                search, categories, start, end, CursorPage.decodeCursor(cursor), CursorPage.seek(size, "grnId")
+        );
+        Long total = withTotal
+                ? receiptNoteRepository.findByFilters(search, categories, start, end, PageRequest.of(0, 1)).getTotalElements()
+                : null;
+        return CursorPage.of(rows, size, GoodReceiptNote::getGrnId, receiptNoteMapper::toDTO, total);
+    }
+
     public ReceiptNoteDTO getAllReceiptNoteById(Long receiptNoteId) {
         GoodReceiptNote note = receiptNoteRepository.findById(receiptNoteId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy phiếu nhập với ID: " + receiptNoteId));
@@ -120,7 +160,7 @@ public class ReceiptNoteService {
 
             // Khởi tạo GoodReceiptNote
             GoodReceiptNote grn = GoodReceiptNote.builder()
-                    .grnCode(grnDto.getGrnCode())
+                    .grnCode(documentCodeService.nextCode(DocumentType.RECEIPT_NOTE))
                     .description(grnDto.getDescription())
                     .category(grnDto.getCategory())
                     .receiptDate(grnDto.getReceiptDate())
@@ -172,16 +212,51 @@ public class ReceiptNoteService {
             grn = receiptNoteRepository.save(grn);
             List<GoodReceiptDetail> details = new ArrayList<>();
 
-            // Xử lý chi tiết phiếu nhập
+            // Nạp sẵn kho, đơn vị, vật tư, sản phẩm và chi tiết đơn mua của cả phiếu
+            Set<Long> warehouseIds = new HashSet<>();
+            Set<Long> unitIds = new HashSet<>();
+            Set<Long> materialIds = new LinkedHashSet<>();
+            Set<Long> productIds = new HashSet<>();
             for (ReceiptNoteDetailDTO detailDto : grnDto.getDetails()) {
-                logger.info("⏳ Processing detail: {}", detailDto);
-
-                // Validate warehouse
                 if (detailDto.getWarehouseId() == null) {
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "warehouseId is required");
                 }
-                Warehouse warehouse = warehouseRepository.findById(detailDto.getWarehouseId())
-                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Warehouse not found with ID: " + detailDto.getWarehouseId()));
+                warehouseIds.add(detailDto.getWarehouseId());
+                if (detailDto.getUnitId() != null) {
+                    unitIds.add(detailDto.getUnitId());
+                }
+                if (detailDto.getMaterialId() != null) {
+                    materialIds.add(detailDto.getMaterialId());
+                } else if (detailDto.getProductId() != null) {
+                    productIds.add(detailDto.getProductId());
+                }
+            }
+
+            Map<Long, Warehouse> warehouses = warehouseRepository.findAllById(warehouseIds).stream()
+                    .collect(Collectors.toMap(Warehouse::getWarehouseId, w -> w));
+            Map<Long, Unit> units = unitRepository.findAllById(unitIds).stream()
+                    .collect(Collectors.toMap(Unit::getUnitId, u -> u));
+            Map<Long, Material> materials = materialRepository.findAllById(materialIds).stream()
+                    .collect(Collectors.toMap(Material::getMaterialId, m -> m));
+            Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                    .collect(Collectors.toMap(Product::getProductId, p -> p));
+
+            List<PurchaseOrderDetail> poDetails = List.of();
+            if ("Vật tư mua bán".equals(grnDto.getCategory()) && linkedPurchaseOrder != null) {
+                poDetails = purchaseOrderDetailRepository.findByPurchaseOrderPoId(grnDto.getPoId());
+                if (poDetails.isEmpty()) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không tìm thấy chi tiết đơn mua cho ID: " + grnDto.getPoId());
+                }
+            }
+
+            List<InventoryDeltaDao.Delta> inventoryDeltas = new ArrayList<>();
+            List<InventoryTransaction> transactions = new ArrayList<>();
+
+            // Xử lý chi tiết phiếu nhập
+            for (ReceiptNoteDetailDTO detailDto : grnDto.getDetails()) {
+                logger.debug("⏳ Processing detail: {}", detailDto);
+
+                Warehouse warehouse = require(warehouses, detailDto.getWarehouseId(), "Warehouse");
 
                 // Khởi tạo GoodReceiptDetail
                 GoodReceiptDetail detail = GoodReceiptDetail.builder()
@@ -192,33 +267,24 @@ public class ReceiptNoteService {
 
                 // Xử lý unit
                 if (detailDto.getUnitId() != null) {
-                    Unit unit = unitRepository.findById(detailDto.getUnitId())
-                            .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unit not found with ID: " + detailDto.getUnitId()));
-                    detail.setUnit(unit);
+                    detail.setUnit(require(units, detailDto.getUnitId(), "Unit"));
                 }
 
                 // Xử lý material hoặc product
                 if (detailDto.getMaterialId() != null) {
-                    Material material = materialRepository.findById(detailDto.getMaterialId())
-                            .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Material not found with ID: " + detailDto.getMaterialId()));
+                    Material material = require(materials, detailDto.getMaterialId(), "Material");
                     detail.setMaterial(material);
                     if (detail.getUnit() == null) detail.setUnit(material.getUnit());
-                    updateInventoryAndTransaction(warehouse, material, null, detailDto.getQuantity(), hasSaleOrder, saleOrderCompleted, linkedSaleOrder, grn);
-
-                    notificationService.clearLowStockNotificationIfRecovered(material.getMaterialId());
+                    transactions.add(receiveIntoInventory(inventoryDeltas, warehouse, material, null,
+                            detailDto.getQuantity(), hasSaleOrder, saleOrderCompleted, linkedSaleOrder, grn));
 
                     // Xử lý Vật tư mua bán
                     if ("Vật tư mua bán".equals(grnDto.getCategory()) && linkedPurchaseOrder != null) {
-                        List<PurchaseOrderDetail> poDetails = purchaseOrderDetailRepository.findByPurchaseOrderPoId(grnDto.getPoId());
-                        if (poDetails.isEmpty()) {
-                            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không tìm thấy chi tiết đơn mua cho ID: " + grnDto.getPoId());
-                        }
                         PurchaseOrderDetail pod = poDetails.stream()
                                 .filter(d -> d.getMaterial().getMaterialId().equals(detailDto.getMaterialId()))
                                 .findFirst()
                                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không tìm thấy dòng đơn hàng ứng với vật tư ID: " + detailDto.getMaterialId()));
                         pod.setReceivedQuantity(pod.getReceivedQuantity() + detailDto.getQuantity().intValue());
-                        purchaseOrderDetailRepository.save(pod);
                     }
 
                     // Xử lý Hàng hóa gia công
@@ -230,31 +296,34 @@ public class ReceiptNoteService {
                         double newReceived = (materialDetail.getReceivedQuantity() != null ? materialDetail.getReceivedQuantity() : 0) + detailDto.getQuantity();
                         materialDetail.setReceivedQuantity(newReceived);
                         materialDetail.setRemainingQuantity(materialDetail.getQuantity() - newReceived);
-                        receiveOutsourceRepository.save(linkedOutsource);
                     }
 
                 } else if (detailDto.getProductId() != null) {
-                    Product product = productRepository.findById(detailDto.getProductId())
-                            .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Product not found with ID: " + detailDto.getProductId()));
+                    Product product = require(products, detailDto.getProductId(), "Product");
                     detail.setProduct(product);
                     if (detail.getUnit() == null) detail.setUnit(product.getUnit());
-                    updateInventoryAndTransaction(warehouse, null, product, detailDto.getQuantity(), hasSaleOrder, saleOrderCompleted, linkedSaleOrder, grn);
+                    transactions.add(receiveIntoInventory(inventoryDeltas, warehouse, null, product,
+                            detailDto.getQuantity(), hasSaleOrder, saleOrderCompleted, linkedSaleOrder, grn));
                 } else {
                     throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chi tiết phiếu phải có sản phẩm hoặc vật tư");
                 }
                 details.add(detail);
             }
 
-            // Lưu chi tiết phiếu nhập
+            // Cộng tồn kho bằng upsert nguyên tử theo lô; sổ kho và chi tiết phiếu ghi theo lô,
+            // dòng đơn mua là entity đang được quản lý nên được UPDATE theo batch khi flush
+            inventoryDeltaDao.add(inventoryDeltas);
+            inventoryTransactionRepository.saveAll(transactions);
+            stockBalanceService.recordAll(transactions);
             goodReceiptDetailRepository.saveAll(details);
+            logger.info("Posted {} import transactions for receipt note {}", transactions.size(), grn.getGrnCode());
+
+            // Gỡ cảnh báo tồn kho thấp của các vật tư đã nhập: chạy bất đồng bộ sau khi phiếu commit
+            eventPublisher.publishEvent(MaterialStockChangedEvent.received(materialIds));
 
             // Cập nhật trạng thái PurchaseOrder hoặc ReceiveOutsource
             if (grnDto.getPoId() != null) {
                 if ("Vật tư mua bán".equals(grnDto.getCategory()) && linkedPurchaseOrder != null) {
-                    List<PurchaseOrderDetail> poDetails = purchaseOrderDetailRepository.findByPurchaseOrderPoId(grnDto.getPoId());
-                    if (poDetails.isEmpty()) {
-                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không tìm thấy chi tiết đơn mua cho ID: " + grnDto.getPoId());
-                    }
                     boolean allReceived = poDetails.stream()
                             .allMatch(detail -> detail.getOrderedQuantity() - detail.getReceivedQuantity() <= 0);
                     linkedPurchaseOrder.setStatus(allReceived ? PurchaseOrder.OrderStatus.COMPLETED : PurchaseOrder.OrderStatus.IN_PROGRESS);
@@ -274,7 +343,20 @@ public class ReceiptNoteService {
         }
     }
 
-    private void updateInventoryAndTransaction(
+    private static <T> T require(Map<Long, T> loaded, Long id, String label) {
+        T value = loaded.get(id);
+        if (value == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, label + " not found with ID: " + id);
+        }
+        return value;
+    }
+
+    /**
+     * Thêm dòng cộng tồn kho (AVAILABLE, hoặc RESERVED cho đơn hàng chưa xuất đủ vật tư) vào inventoryDeltas
+     * và trả về giao dịch nhập tương ứng; việc ghi xuống DB do caller thực hiện theo lô.
+     */
+    private InventoryTransaction receiveIntoInventory(
+            List<InventoryDeltaDao.Delta> inventoryDeltas,
             Warehouse warehouse,
             Material material,
             Product product,
@@ -283,95 +365,44 @@ public class ReceiptNoteService {
             boolean saleOrderCompleted,
             SalesOrder linkedSaleOrder,
             GoodReceiptNote grn) {
-        Inventory inventory;
-
-        if (material != null) {
-            Inventory.InventoryStatus status;
-            SalesOrder salesOrder = null;
+        Inventory.InventoryStatus status = Inventory.InventoryStatus.AVAILABLE;
+        Long orderId = null;
 
-            if (hasSaleOrder) {
-                if (saleOrderCompleted) {
-                    status = Inventory.InventoryStatus.AVAILABLE;
-                } else {
-                    status = Inventory.InventoryStatus.RESERVED;
-                    salesOrder = linkedSaleOrder;
-                }
-            } else {
-                status = Inventory.InventoryStatus.AVAILABLE;
-            }
-
-            inventory = inventoryRepository.findByWarehouseAndMaterialAndStatusAndSalesOrder(warehouse, material, status, salesOrder)
-                    .orElse(null);
-
-            if (inventory == null) {
-                inventory = Inventory.builder()
-                        .warehouse(warehouse)
-                        .material(material)
-                        .status(status)
-                        .salesOrder(salesOrder)
-                        .quantity(0.0)
-                        .build();
-            }
-
-            inventory.setQuantity(inventory.getQuantity() + quantity);
-            inventory.setLastUpdated(grn.getReceiptDate());
-            inventoryRepository.save(inventory);
-
-            inventoryTransactionRepository.save(InventoryTransaction.builder()
-                    .warehouse(warehouse)
-                    .material(material)
-                    .transactionType(InventoryTransaction.TransactionType.IMPORT)
-                    .quantity(quantity)
-                    .goodReceiptNote(grn)
-                    .transactionDate(grn.getReceiptDate())
-                    .referenceType(InventoryTransaction.NoteType.GOOD_RECEIPT_NOTE)
-                    .build());
+        // Vật tư mua cho đơn hàng chưa xuất đủ => giữ chỗ (RESERVED) cho đơn hàng đó
+        if (material != null && hasSaleOrder && !saleOrderCompleted) {
+            status = Inventory.InventoryStatus.RESERVED;
+            orderId = linkedSaleOrder.getOrderId();
         }
 
-        if (product != null) {
-            Inventory.InventoryStatus status = Inventory.InventoryStatus.AVAILABLE;
-
-            inventory = inventoryRepository.findByWarehouseAndProductAndStatus(warehouse, product, status)
-                    .orElse(null);
-            if (inventory == null) {
-                inventory = Inventory.builder()
-                        .warehouse(warehouse)
-                        .product(product)
-                        .status(status)
-                        .quantity(0.0)
-                        .build();
-            }
-
-            inventory.setQuantity(inventory.getQuantity() + quantity);
-            inventory.setLastUpdated(LocalDateTime.now());
-            inventoryRepository.save(inventory);
-
-            inventoryTransactionRepository.save(InventoryTransaction.builder()
-                    .warehouse(warehouse)
-                    .product(product)
-                    .transactionType(InventoryTransaction.TransactionType.IMPORT)
-                    .quantity(quantity)
-                    .goodReceiptNote(grn)
-                    .transactionDate(grn.getReceiptDate())
-                    .referenceType(InventoryTransaction.NoteType.GOOD_RECEIPT_NOTE)
-                    .build());
-        }
+        inventoryDeltas.add(material != null
+                ? InventoryDeltaDao.Delta.material(warehouse.getWarehouseId(), material.getMaterialId(), status, orderId,
+                        quantity, grn.getReceiptDate())
+                : InventoryDeltaDao.Delta.product(warehouse.getWarehouseId(), product.getProductId(), status, orderId,
+                        quantity, LocalDateTime.now()));
+
+        return InventoryTransaction.builder()
+                .warehouse(warehouse)
+                .material(material)
+                .product(product)
+                .transactionType(InventoryTransaction.TransactionType.IMPORT)
+                .quantity(quantity)
+                .goodReceiptNote(grn)
+                .transactionDate(grn.getReceiptDate())
+                .referenceType(InventoryTransaction.NoteType.GOOD_RECEIPT_NOTE)
+                .build();
     }
 
-    @Transactional
+    // Mã dự kiến cho form thêm mới; mã thật được cấp trong createGoodReceipt
     public String getNextReceiptCode() {
         try {
-            Long maxId = receiptNoteRepository.findMaxGoodReceiptNoteId();
-            Long nextId = (maxId != null) ? (maxId + 1) : 1;
-            return String.format("NK%05d", nextId);
+            return documentCodeService.previewCode(DocumentType.RECEIPT_NOTE);
         } catch (Exception e) {
             logger.error("Error generating next receipt note code", e);
             throw new RuntimeException("Không thể tạo mã phiếu nhập mới: " + e.getMessage(), e);
         }
     }
 
-    @Transactional
-    public List<String> uploadPaperEvidence(Long noteId, String noteType, List<MultipartFile> files, User currentUser) {
+    public PaperEvidenceUploadResultDTO uploadPaperEvidence(Long noteId, String noteType, List<MultipartFile> files, User currentUser) {
         logger.info("Uploading {} files for note ID: {}, type: {}", files.size(), noteId, noteType);
 
         if (noteType.equals("GOOD_RECEIPT_NOTE")) {
@@ -379,31 +410,7 @@ public class ReceiptNoteService {
                     .orElseThrow(() -> new RuntimeException("Receipt Note not found with ID: " + noteId));
         }
 
-        List<String> fileUrls = new ArrayList<>();
-
-        try {
-            for (MultipartFile file : files) {
-                if (!file.isEmpty()) {
-                    String fileUrl = azureBlobService.uploadFile(file);
-
-                    PaperEvidence evidence = PaperEvidence.builder()
-                            .noteId(noteId)
-                            .noteType(PaperEvidence.NoteType.valueOf(noteType))
-                            .paperUrl(fileUrl)
-                            .build();
-
-                    paperEvidenceRepository.save(evidence);
-                    fileUrls.add(fileUrl);
-
-                    logger.info("Successfully uploaded file: {} for note ID: {}", file.getOriginalFilename(), noteId);
-                }
-            }
-
-            return fileUrls;
-        } catch (Exception e) {
-            logger.error("Error uploading files", e);
-            throw new RuntimeException("Failed to upload files: " + e.getMessage(), e);
-        }
+        return paperEvidenceService.upload(noteId, PaperEvidence.NoteType.valueOf(noteType), files);
     }
 
     public Page<ReceiptNoteDetailViewDTO> getImportReportPaginated(
@@ -419,13 +426,11 @@ public class ReceiptNoteService {
             Double maxQuantity
     ) {
         Pageable pageable = PageRequest.of(page, size);
-        LocalDateTime start = (startDateStr != null && !startDateStr.isBlank()) ? LocalDateTime.parse(startDateStr + "T00:00:00") : null;
-        LocalDateTime end = (endDateStr != null && !endDateStr.isBlank()) ? LocalDateTime.parse(endDateStr + "T23:59:59") : null;
 
         return detailRepository.getFilteredImportReport(
                 search,
-                start,
-                end,
+                startOfDay(startDateStr),
+                endOfDay(endDateStr),
                 itemType,
                 minQuantity,
                 maxQuantity,
@@ -434,4 +439,32 @@ public class ReceiptNoteService {
                 pageable
         );
     }
+
+    // Xuất báo cáo nhập kho theo cùng bộ lọc, ghi thẳng ra output stream
+    @Transactional(readOnly = true)
+    public void writeImportReport(
+            OutputStream out,
+            String search,
+            String itemType,
+            List<Long> warehouseIds,
+            String startDateStr,
+            String endDateStr,
+            List<String> categories,
+            Double minQuantity,
+            Double maxQuantity
+    ) throws IOException {
+        try (Stream<ReceiptNoteDetailViewDTO> rows = detailRepository.streamFilteredImportReport(
+                search, startOfDay(startDateStr), endOfDay(endDateStr), itemType,
+                minQuantity, maxQuantity, categories, warehouseIds)) {
+            ExcelStreamExporter.write(out, "Nhập kho", IMPORT_REPORT_COLUMNS, rows);
+        }
+    }
+
+    private static LocalDateTime startOfDay(String date) {
+        return (date != null && !date.isBlank()) ? LocalDateTime.parse(date + "T00:00:00") : null;
+    }
+
+    private static LocalDateTime endOfDay(String date) {
+        return (date != null && !date.isBlank()) ? LocalDateTime.parse(date + "T23:59:59") : null;
+    }
 }
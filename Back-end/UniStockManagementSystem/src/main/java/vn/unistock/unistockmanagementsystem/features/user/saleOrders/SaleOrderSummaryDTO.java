@@ -0,0 +1,31 @@
+package vn.unistock.unistockmanagementsystem.features.user.saleOrders;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import vn.unistock.unistockmanagementsystem.entities.SalesOrder;
+
+import java.util.Date;
+
+// Một dòng trong danh sách đơn hàng: chỉ các cột bảng hiển thị, không kèm chi tiết/vật tư
+@Getter
+@Setter
+@NoArgsConstructor
+public class SaleOrderSummaryDTO {
+    private Long orderId;
+    private String orderCode;
+    private String partnerName;
+    private Date orderDate;
+    private SalesOrder.OrderStatus status;
+    private String purchaseRequestStatus;
+    private String statusLabel;
+
+    public SaleOrderSummaryDTO(Long orderId, String orderCode, String partnerName, Date orderDate,
+                               SalesOrder.OrderStatus status) {
+        this.orderId = orderId;
+        this.orderCode = orderCode;
+        this.partnerName = partnerName;
+        this.orderDate = orderDate;
+        this.status = status;
+    }
+}
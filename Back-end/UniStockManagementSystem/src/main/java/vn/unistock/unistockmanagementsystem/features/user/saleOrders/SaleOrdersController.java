@@ -7,6 +7,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import vn.unistock.unistockmanagementsystem.entities.SalesOrder;
+import vn.unistock.unistockmanagementsystem.utils.pagination.CursorPage;
 
 import java.util.Date;
 import java.util.List;
@@ -31,6 +32,31 @@ public class SaleOrdersController {
         return ResponseEntity.ok(saleOrdersService.getFilteredOrders(orderCode, partnerName, statuses, startDate, endDate, page, size));
     }
 
+    @GetMapping("/summary")
+    public ResponseEntity<Page<SaleOrderSummaryDTO>> getOrderSummaries(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String orderCode,
+            @RequestParam(required = false) String partnerName,
+            @RequestParam(required = false) List<SalesOrder.OrderStatus> statuses,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date endDate) {
+        return ResponseEntity.ok(saleOrdersService.getOrderSummaries(orderCode, partnerName, statuses, startDate, endDate, page, size));
+    }
+
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<SaleOrderSummaryDTO>> scrollOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            @RequestParam(required = false) String orderCode,
+            @RequestParam(required = false) String partnerName,
+            @RequestParam(required = false) List<SalesOrder.OrderStatus> statuses,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date endDate) {
+        return ResponseEntity.ok(saleOrdersService.scrollOrderSummaries(cursor, size, withTotal, orderCode, partnerName, statuses, startDate, endDate));
+    }
+
     @GetMapping("/next-code")
     public ResponseEntity<String> getNextOrderCode() {
         String nextCode = saleOrdersService.getNextOrderCode();
@@ -6,27 +6,103 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import vn.unistock.unistockmanagementsystem.entities.SalesOrder;
+import vn.unistock.unistockmanagementsystem.features.user.mrp.OrderProductDemandDTO;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
 public interface SaleOrdersRepository extends JpaRepository<SalesOrder, Long> {
 
-    @Query("SELECT COALESCE(MAX(s.orderId), 0) FROM SalesOrder s")
-    Long findMaxOrderId();
-
+    // orderIds/partnerIds: kết quả tìm mã đơn/tên khách hàng từ SearchIndexService (null = không lọc);
+    // likeOrderCode/likePartnerName: từ khóa quá ngắn hoặc khớp quá nhiều id để lọc qua chỉ mục, lọc bằng LIKE
     @Query("SELECT s FROM SalesOrder s " +
-            "WHERE (:orderCode IS NULL OR LOWER(s.orderCode) LIKE LOWER(CONCAT('%', :orderCode, '%'))) " +
-            "AND (:partnerName IS NULL OR LOWER(s.partner.partnerName) LIKE LOWER(CONCAT('%', :partnerName, '%'))) " +
+            "WHERE (:orderIds IS NULL OR s.orderId IN :orderIds) " +
+            "AND (:partnerIds IS NULL OR s.partner.partnerId IN :partnerIds) " +
+            "AND (:likeOrderCode IS NULL OR LOWER(s.orderCode) LIKE LOWER(CONCAT('%', :likeOrderCode, '%'))) " +
+            "AND (:likePartnerName IS NULL OR LOWER(s.partner.partnerName) LIKE LOWER(CONCAT('%', :likePartnerName, '%'))) " +
             "AND (:statuses IS NULL OR s.status IN :statuses) " +
             "AND (:startDate IS NULL OR s.orderDate >= :startDate) " +
             "AND (:endDate IS NULL OR s.orderDate <= :endDate)")
     Page<SalesOrder> findByFilters(
-            @Param("orderCode") String orderCode,
-            @Param("partnerName") String partnerName,
+            @Param("orderIds") List<Long> orderIds,
+            @Param("partnerIds") List<Long> partnerIds,
+            @Param("likeOrderCode") String likeOrderCode,
+            @Param("likePartnerName") String likePartnerName,
+            @Param("statuses") List<SalesOrder.OrderStatus> statuses,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate,
+            Pageable pageable);
+
+    // Danh sách đơn hàng: chỉ lấy các cột bảng hiển thị, không nạp partner/chi tiết/vật tư.
+    // Dùng chung cho danh sách phân trang và cuộn keyset
+    String SUMMARY_QUERY = """
+            SELECT new vn.unistock.unistockmanagementsystem.features.user.saleOrders.SaleOrderSummaryDTO(
+                s.orderId, s.orderCode, p.partnerName, s.orderDate, s.status)
+            FROM SalesOrder s
+            JOIN s.partner p
+            WHERE (:orderIds IS NULL OR s.orderId IN :orderIds)
+              AND (:partnerIds IS NULL OR p.partnerId IN :partnerIds)
+              AND (:likeOrderCode IS NULL OR LOWER(s.orderCode) LIKE LOWER(CONCAT('%', :likeOrderCode, '%')))
+              AND (:likePartnerName IS NULL OR LOWER(p.partnerName) LIKE LOWER(CONCAT('%', :likePartnerName, '%')))
+              AND (:statuses IS NULL OR s.status IN :statuses)
+              AND (:startDate IS NULL OR s.orderDate >= :startDate)
+              AND (:endDate IS NULL OR s.orderDate <= :endDate)
+            """;
+
+    @Query(value = SUMMARY_QUERY,
+            countQuery = """
+            SELECT COUNT(s)
+            FROM SalesOrder s
+            JOIN s.partner p
+            WHERE (:orderIds IS NULL OR s.orderId IN :orderIds)
+              AND (:partnerIds IS NULL OR p.partnerId IN :partnerIds)
+              AND (:likeOrderCode IS NULL OR LOWER(s.orderCode) LIKE LOWER(CONCAT('%', :likeOrderCode, '%')))
+              AND (:likePartnerName IS NULL OR LOWER(p.partnerName) LIKE LOWER(CONCAT('%', :likePartnerName, '%')))
+              AND (:statuses IS NULL OR s.status IN :statuses)
+              AND (:startDate IS NULL OR s.orderDate >= :startDate)
+              AND (:endDate IS NULL OR s.orderDate <= :endDate)
+            """)
+    Page<SaleOrderSummaryDTO> findSummariesByFilters(
+            @Param("orderIds") List<Long> orderIds,
+            @Param("partnerIds") List<Long> partnerIds,
+            @Param("likeOrderCode") String likeOrderCode,
+            @Param("likePartnerName") String likePartnerName,
             @Param("statuses") List<SalesOrder.OrderStatus> statuses,
             @Param("startDate") Date startDate,
             @Param("endDate") Date endDate,
             Pageable pageable);
-}
\ No newline at end of file
+
+    // Trang kế tiếp theo keyset: chỉ các đơn có id nhỏ hơn afterId, không chạy COUNT
+    @Query(SUMMARY_QUERY + "  AND (:afterId IS NULL OR s.orderId < :afterId)")
+    List<SaleOrderSummaryDTO> scrollSummariesByFilters(
+            @Param("orderIds") List<Long> orderIds,
+            @Param("partnerIds") List<Long> partnerIds,
+            @Param("likeOrderCode") String likeOrderCode,
+            @Param("likePartnerName") String likePartnerName,
+            @Param("statuses") List<SalesOrder.OrderStatus> statuses,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    // Đơn cần lập kế hoạch vật tư: orderIds null = mọi đơn chưa đóng
+    @Query("""
+    SELECT s.orderId FROM SalesOrder s
+    WHERE (:orderIds IS NULL OR s.orderId IN :orderIds)
+      AND s.status NOT IN :closedStatuses
+    """)
+    List<Long> findPlanningOrderIds(@Param("orderIds") Collection<Long> orderIds,
+                                    @Param("closedStatuses") Collection<SalesOrder.OrderStatus> closedStatuses);
+
+    // Số lượng đặt của từng sản phẩm trong các đơn, gộp theo (đơn, sản phẩm)
+    @Query("""
+    SELECT new vn.unistock.unistockmanagementsystem.features.user.mrp.OrderProductDemandDTO(
+        d.salesOrder.orderId, d.product.productId, SUM(d.quantity))
+    FROM SalesOrderDetail d
+    WHERE d.salesOrder.orderId IN :orderIds
+    GROUP BY d.salesOrder.orderId, d.product.productId
+    """)
+    List<OrderProductDemandDTO> sumProductDemandByOrders(@Param("orderIds") Collection<Long> orderIds);
+}
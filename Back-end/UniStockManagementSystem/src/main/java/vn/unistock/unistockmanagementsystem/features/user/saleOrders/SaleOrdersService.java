@@ -11,16 +11,21 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 import vn.unistock.unistockmanagementsystem.entities.*;
-import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryRepository;
+import vn.unistock.unistockmanagementsystem.features.user.inventory.InventoryReservationService;
 import vn.unistock.unistockmanagementsystem.features.user.materials.MaterialsRepository;
 import vn.unistock.unistockmanagementsystem.features.user.partner.PartnerRepository;
 import vn.unistock.unistockmanagementsystem.features.user.products.ProductsRepository;
 import vn.unistock.unistockmanagementsystem.features.user.purchaseRequests.PurchaseRequestDetailDTO;
 import vn.unistock.unistockmanagementsystem.features.user.purchaseRequests.PurchaseRequestRepository;
 import vn.unistock.unistockmanagementsystem.features.user.purchaseRequests.PurchaseRequestService;
+import vn.unistock.unistockmanagementsystem.features.user.purchaseRequests.PurchaseRequestStatusCountDTO;
 import vn.unistock.unistockmanagementsystem.security.filter.CustomUserDetails;
+import vn.unistock.unistockmanagementsystem.utils.pagination.CursorPage;
+import vn.unistock.unistockmanagementsystem.utils.sequence.DocumentCodeService;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchDomain;
+import vn.unistock.unistockmanagementsystem.utils.search.SearchIndexService;
+import vn.unistock.unistockmanagementsystem.utils.sequence.DocumentType;
 
-import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -36,9 +41,11 @@ public class SaleOrdersService {
     private final PartnerRepository partnerRepository;
     private final ProductsRepository productsRepository;
     private final PurchaseRequestRepository purchaseRequestRepository;
-    private final InventoryRepository inventoryRepository;
+    private final InventoryReservationService inventoryReservationService;
     private final PurchaseRequestService purchaseRequestService;
     private final MaterialsRepository materialsRepository;
+    private final DocumentCodeService documentCodeService;
+    private final SearchIndexService searchIndexService;
 
     public SaleOrdersService(SaleOrdersRepository saleOrdersRepository,
                              SalesOrderMaterialRepository salesOrderMaterialRepository,
@@ -46,18 +53,22 @@ public class SaleOrdersService {
                              PartnerRepository partnerRepository,
                              ProductsRepository productsRepository,
                              PurchaseRequestRepository purchaseRequestRepository,
-                             InventoryRepository inventoryRepository,
+                             InventoryReservationService inventoryReservationService,
                              PurchaseRequestService purchaseRequestService,
-                             MaterialsRepository materialsRepository) {
+                             MaterialsRepository materialsRepository,
+                             DocumentCodeService documentCodeService,
+                             SearchIndexService searchIndexService) {
         this.saleOrdersRepository = saleOrdersRepository;
         this.salesOrderMaterialRepository = salesOrderMaterialRepository;
         this.saleOrdersMapper = saleOrdersMapper;
         this.partnerRepository = partnerRepository;
         this.productsRepository = productsRepository;
         this.purchaseRequestRepository = purchaseRequestRepository;
-        this.inventoryRepository = inventoryRepository;
+        this.inventoryReservationService = inventoryReservationService;
         this.purchaseRequestService = purchaseRequestService;
         this.materialsRepository = materialsRepository;
+        this.documentCodeService = documentCodeService;
+        this.searchIndexService = searchIndexService;
     }
 
     public Page<SaleOrdersDTO> getFilteredOrders(
@@ -72,71 +83,164 @@ public class SaleOrdersService {
 
         List<SalesOrder.OrderStatus> filterStatuses = statuses != null && !statuses.isEmpty() ? statuses : null;
 
+        SearchIndexService.Match orderMatch = searchIndexService.match(SearchDomain.SALES_ORDER, orderCode);
+        SearchIndexService.Match partnerMatch = searchIndexService.match(SearchDomain.PARTNER, partnerName);
+        if (orderMatch.isNone() || partnerMatch.isNone()) {
+            return Page.empty(pageable);
+        }
         Page<SalesOrder> salesOrderPage = saleOrdersRepository.findByFilters(
-                orderCode != null && !orderCode.isBlank() ? orderCode : null,
-                partnerName != null && !partnerName.isBlank() ? partnerName : null,
+                orderMatch.ids(),
+                partnerMatch.ids(),
+                orderMatch.likeTerm(),
+                partnerMatch.likeTerm(),
                 filterStatuses,
                 startDate,
                 endDate,
                 pageable);
 
+        // Trạng thái yêu cầu mua của cả trang được nạp bằng một query gộp thay vì mỗi đơn một query
+        Map<Long, PurchaseRequestStatusCountDTO> requestCounts = loadPurchaseRequestCounts(salesOrderPage.getContent().stream()
+                .filter(saleOrder -> saleOrder.getStatus() == SalesOrder.OrderStatus.PROCESSING)
+                .map(SalesOrder::getOrderId)
+                .toList());
+
         return salesOrderPage.map(saleOrder -> {
             SaleOrdersDTO dto = saleOrdersMapper.toDTO(saleOrder);
-            enrichStatusLabel(dto, saleOrder);
+            StatusLabel label = resolveStatusLabel(saleOrder.getStatus(), requestCounts.get(saleOrder.getOrderId()));
+            dto.setPurchaseRequestStatus(label.purchaseRequestStatus());
+            dto.setStatusLabel(label.statusLabel());
             return dto;
         });
     }
 
+    /**
+     * Đường đọc cho bảng danh sách đơn hàng: một query projection cho các cột hiển thị
+     * và một query gộp trạng thái yêu cầu mua cho cả trang, không nạp chi tiết/vật tư của từng đơn.
+     */
+    @Transactional(readOnly = true)
+    public Page<SaleOrderSummaryDTO> getOrderSummaries(
+            String orderCode,
+            String partnerName,
+            List<SalesOrder.OrderStatus> statuses,
+            Date startDate,
+            Date endDate,
+            int page,
+            int size) {
+        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "orderId"));
+
+        SearchIndexService.Match orderMatch = searchIndexService.match(SearchDomain.SALES_ORDER, orderCode);
+        SearchIndexService.Match partnerMatch = searchIndexService.match(SearchDomain.PARTNER, partnerName);
+        if (orderMatch.isNone() || partnerMatch.isNone()) {
+            return Page.empty(pageable);
+        }
+        Page<SaleOrderSummaryDTO> summaries = saleOrdersRepository.findSummariesByFilters(
+                orderMatch.ids(),
+                partnerMatch.ids(),
+                orderMatch.likeTerm(),
+                partnerMatch.likeTerm(),
+                statuses != null && !statuses.isEmpty() ? statuses : null,
+                startDate,
+                endDate,
+                pageable);
+
+        applyStatusLabels(summaries.getContent());
+        return summaries;
+    }
+
+    // Phân trang keyset cho danh sách đơn hàng: cursor là orderId cuối của trang trước
+    public CursorPage<SaleOrderSummaryDTO> scrollOrderSummaries(
+            String cursor,
+            int size,
+            boolean withTotal,
+            String orderCode,
+            String partnerName,
+            List<SalesOrder.OrderStatus> statuses,
+            Date startDate,
+            Date endDate) {
+        Long after = CursorPage.decodeCursor(cursor);
+        Pageable seek = CursorPage.seek(size, "orderId");
+        SearchIndexService.Match orderMatch = searchIndexService.match(SearchDomain.SALES_ORDER, orderCode);
+        SearchIndexService.Match partnerMatch = searchIndexService.match(SearchDomain.PARTNER, partnerName);
+        if (orderMatch.isNone() || partnerMatch.isNone()) {
+            return CursorPage.of(List.<SaleOrderSummaryDTO>of(), size, SaleOrderSummaryDTO::getOrderId,
+                    summary -> summary, withTotal ? 0L : null);
+        }
+        List<SalesOrder.OrderStatus> statusFilter = statuses != null && !statuses.isEmpty() ? statuses : null;
+
+        List<SaleOrderSummaryDTO> rows = saleOrdersRepository.scrollSummariesByFilters(
+                orderMatch.ids(), partnerMatch.ids(), orderMatch.likeTerm(), partnerMatch.likeTerm(),
+                statusFilter, startDate, endDate, after, seek);
+        Long total = withTotal
+                ? saleOrdersRepository.findSummariesByFilters(
+                        orderMatch.ids(), partnerMatch.ids(), orderMatch.likeTerm(), partnerMatch.likeTerm(),
+                        statusFilter, startDate, endDate, PageRequest.of(0, 1)).getTotalElements()
+                : null;
+
+        CursorPage<SaleOrderSummaryDTO> result =
+                CursorPage.of(rows, size, SaleOrderSummaryDTO::getOrderId, summary -> summary, total);
+        applyStatusLabels(result.getContent());
+        return result;
+    }
+
+    // Gắn nhãn trạng thái cho cả trang bằng một truy vấn đếm yêu cầu mua
+    private void applyStatusLabels(List<SaleOrderSummaryDTO> summaries) {
+        Map<Long, PurchaseRequestStatusCountDTO> requestCounts = loadPurchaseRequestCounts(summaries.stream()
+                .filter(summary -> summary.getStatus() == SalesOrder.OrderStatus.PROCESSING)
+                .map(SaleOrderSummaryDTO::getOrderId)
+                .toList());
+
+        for (SaleOrderSummaryDTO summary : summaries) {
+            StatusLabel label = resolveStatusLabel(summary.getStatus(), requestCounts.get(summary.getOrderId()));
+            summary.setPurchaseRequestStatus(label.purchaseRequestStatus());
+            summary.setStatusLabel(label.statusLabel());
+        }
+    }
+
+    // Mã dự kiến cho form thêm mới; mã thật được cấp trong createSaleOrder
     public String getNextOrderCode() {
-        Long maxId = saleOrdersRepository.findMaxOrderId();
-        Long nextId = (maxId != null ? maxId : 0L) + 1;
-        return String.format("ĐH%05d", nextId);
+        return documentCodeService.previewCode(DocumentType.SALES_ORDER);
     }
 
     public SaleOrdersDTO getOrderById(Long orderId) {
         SalesOrder saleOrder = saleOrdersRepository.findById(orderId)
                 .orElseThrow(() -> new IllegalArgumentException("Order not found with ID: " + orderId));
         SaleOrdersDTO dto = saleOrdersMapper.toDTO(saleOrder);
-        enrichStatusLabel(dto, saleOrder);
+        StatusLabel label = resolveStatusLabel(saleOrder.getStatus(),
+                loadPurchaseRequestCounts(List.of(orderId)).get(orderId));
+        dto.setPurchaseRequestStatus(label.purchaseRequestStatus());
+        dto.setStatusLabel(label.statusLabel());
         return dto;
     }
 
-    private void enrichStatusLabel(SaleOrdersDTO dto, SalesOrder saleOrder) {
-        List<PurchaseRequest> requests = purchaseRequestRepository.findAllBySalesOrder_OrderId(saleOrder.getOrderId());
+    private record StatusLabel(String purchaseRequestStatus, String statusLabel) {}
 
-        SalesOrder.OrderStatus orderStatus = saleOrder.getStatus();
+    // Chỉ đơn PROCESSING cần biết trạng thái yêu cầu mua nên chỉ nạp cho các đơn đó
+    private Map<Long, PurchaseRequestStatusCountDTO> loadPurchaseRequestCounts(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Map.of();
+        }
+        return purchaseRequestRepository.countStatusesBySalesOrderIds(orderIds).stream()
+                .collect(Collectors.toMap(PurchaseRequestStatusCountDTO::getOrderId, counts -> counts));
+    }
 
+    private StatusLabel resolveStatusLabel(SalesOrder.OrderStatus orderStatus, PurchaseRequestStatusCountDTO requestCounts) {
         if (orderStatus == SalesOrder.OrderStatus.PROCESSING) {
-            if (requests.isEmpty()) {
-                dto.setPurchaseRequestStatus("NONE");
-                dto.setStatusLabel("Chưa có yêu cầu");
-            } else {
-                boolean allCancelled = requests.stream()
-                        .allMatch(r -> r.getStatus() == PurchaseRequest.RequestStatus.REJECTED);
-                boolean anyConfirmed = requests.stream()
-                        .anyMatch(r -> r.getStatus() == PurchaseRequest.RequestStatus.CONFIRMED);
-
-                if (anyConfirmed) {
-                    dto.setPurchaseRequestStatus("CONFIRMED");
-                    dto.setStatusLabel("Yêu cầu đã được duyệt");
-                } else if (allCancelled) {
-                    dto.setPurchaseRequestStatus("CANCELLED");
-                    dto.setStatusLabel("Yêu cầu bị từ chối");
-                } else {
-                    dto.setPurchaseRequestStatus("PENDING");
-                    dto.setStatusLabel("Đang chờ yêu cầu được duyệt");
-                }
+            if (requestCounts == null || requestCounts.getTotal() == 0) {
+                return new StatusLabel("NONE", "Chưa có yêu cầu");
+            }
+            if (requestCounts.getConfirmed() > 0) {
+                return new StatusLabel("CONFIRMED", "Yêu cầu đã được duyệt");
+            }
+            if (requestCounts.getRejected().equals(requestCounts.getTotal())) {
+                return new StatusLabel("CANCELLED", "Yêu cầu bị từ chối");
             }
+            return new StatusLabel("PENDING", "Đang chờ yêu cầu được duyệt");
         } else if (orderStatus == SalesOrder.OrderStatus.PREPARING_MATERIAL) {
-            dto.setPurchaseRequestStatus("CONFIRMED");
-            dto.setStatusLabel("Đang chuẩn bị vật tư");
+            return new StatusLabel("CONFIRMED", "Đang chuẩn bị vật tư");
         } else if (orderStatus == SalesOrder.OrderStatus.CANCELLED) {
-            dto.setPurchaseRequestStatus("CANCELLED");
-            dto.setStatusLabel("Đã hủy");
-        } else {
-            dto.setPurchaseRequestStatus("UNKNOWN");
-            dto.setStatusLabel("Không rõ trạng thái");
+            return new StatusLabel("CANCELLED", "Đã hủy");
         }
+        return new StatusLabel("UNKNOWN", "Không rõ trạng thái");
     }
 
     @Transactional
@@ -147,127 +251,8 @@ public class SaleOrdersService {
         order.setStatus(SalesOrder.OrderStatus.CANCELLED);
         order.setRejectionReason(rejectionReason);
 
-        // Release RESERVED inventory for products
-        List<SalesOrderDetail> details = order.getDetails();
-        for (SalesOrderDetail detail : details) {
-            Product product = detail.getProduct();
-            double quantityToRelease = detail.getQuantity();
-
-            List<Inventory> reservedInventories = inventoryRepository.findByProductIdAndStatus(
-                    product.getProductId(), Inventory.InventoryStatus.RESERVED);
-
-            Map<Long, Double> warehouseQuantities = new HashMap<>();
-            for (Inventory inventory : reservedInventories) {
-                if (quantityToRelease <= 0) break;
-
-                double quantityInInventory = inventory.getQuantity();
-                double quantityToReleaseFromThis = Math.min(quantityInInventory, quantityToRelease);
-
-                Long warehouseId = inventory.getWarehouse().getWarehouseId();
-                warehouseQuantities.merge(warehouseId, quantityToReleaseFromThis, Double::sum);
-
-                quantityToRelease -= quantityToReleaseFromThis;
-            }
-
-            for (Map.Entry<Long, Double> entry : warehouseQuantities.entrySet()) {
-                Long warehouseId = entry.getKey();
-                double releasedQuantity = entry.getValue();
-
-                Warehouse warehouse = reservedInventories.stream()
-                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                        .findFirst()
-                        .map(Inventory::getWarehouse)
-                        .orElseThrow(() -> new RuntimeException("Warehouse not found for warehouseId: " + warehouseId));
-
-                Inventory availableInventory = inventoryRepository.findByWarehouseAndProductAndStatus(
-                                warehouse, product, Inventory.InventoryStatus.AVAILABLE)
-                        .orElse(null);
-
-                if (availableInventory == null) {
-                    availableInventory = Inventory.builder()
-                            .warehouse(warehouse)
-                            .product(product)
-                            .status(Inventory.InventoryStatus.AVAILABLE)
-                            .quantity(0.0)
-                            .build();
-                }
-                availableInventory.setQuantity(availableInventory.getQuantity() + releasedQuantity);
-                availableInventory.setLastUpdated(LocalDateTime.now());
-                availableInventory.setSalesOrder(null);
-                inventoryRepository.save(availableInventory);
-
-                List<Inventory> reservedToDelete = reservedInventories.stream()
-                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                        .toList();
-                inventoryRepository.deleteAll(reservedToDelete);
-            }
-
-            if (quantityToRelease > 0) {
-                System.err.println("Insufficient RESERVED inventory for productId " + product.getProductId() +
-                        ": " + quantityToRelease + " units remaining");
-            }
-        }
-
-        // Release RESERVED inventory for materials
-        List<SalesOrderMaterial> materials = order.getMaterials();
-        for (SalesOrderMaterial material : materials) {
-            Material mat = material.getMaterial();
-            double quantityToRelease = material.getRequiredQuantity();
-
-            List<Inventory> reservedInventories = inventoryRepository.findByMaterialIdAndStatus(
-                    mat.getMaterialId(), Inventory.InventoryStatus.RESERVED);
-
-            Map<Long, Double> warehouseQuantities = new HashMap<>();
-            for (Inventory inventory : reservedInventories) {
-                if (quantityToRelease <= 0) break;
-
-                double quantityInInventory = inventory.getQuantity();
-                double quantityToReleaseFromThis = Math.min(quantityInInventory, quantityToRelease);
-
-                Long warehouseId = inventory.getWarehouse().getWarehouseId();
-                warehouseQuantities.merge(warehouseId, quantityToReleaseFromThis, Double::sum);
-
-                quantityToRelease -= quantityToReleaseFromThis;
-            }
-
-            for (Map.Entry<Long, Double> entry : warehouseQuantities.entrySet()) {
-                Long warehouseId = entry.getKey();
-                double releasedQuantity = entry.getValue();
-
-                Warehouse warehouse = reservedInventories.stream()
-                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                        .findFirst()
-                        .map(Inventory::getWarehouse)
-                        .orElseThrow(() -> new RuntimeException("Warehouse not found for warehouseId: " + warehouseId));
-
-                Inventory availableInventory = inventoryRepository.findByWarehouseAndMaterialAndStatus(
-                                warehouse, mat, Inventory.InventoryStatus.AVAILABLE)
-                        .orElse(null);
-
-                if (availableInventory == null) {
-                    availableInventory = Inventory.builder()
-                            .warehouse(warehouse)
-                            .material(mat)
-                            .status(Inventory.InventoryStatus.AVAILABLE)
-                            .quantity(0.0)
-                            .build();
-                }
-                availableInventory.setQuantity(availableInventory.getQuantity() + releasedQuantity);
-                availableInventory.setLastUpdated(LocalDateTime.now());
-                availableInventory.setSalesOrder(null);
-                inventoryRepository.save(availableInventory);
-
-                List<Inventory> reservedToDelete = reservedInventories.stream()
-                        .filter(inv -> inv.getWarehouse().getWarehouseId().equals(warehouseId))
-                        .toList();
-                inventoryRepository.deleteAll(reservedToDelete);
-            }
-
-            if (quantityToRelease > 0) {
-                System.err.println("Insufficient RESERVED inventory for materialId " + mat.getMaterialId() +
-                        ": " + quantityToRelease + " units remaining");
-            }
-        }
+        // Trả toàn bộ tồn kho đã giữ chỗ của đơn (sản phẩm và vật tư) về AVAILABLE
+        inventoryReservationService.releaseOrderReservations(orderId);
 
         // Cancel related purchase requests
         List<PurchaseRequest> requests = purchaseRequestRepository.findAllBySalesOrder_OrderId(orderId);
@@ -307,6 +292,7 @@ public class SaleOrdersService {
         }
 
         SalesOrder order = saleOrdersMapper.toEntity(dto, materialsRepository);
+        order.setOrderCode(documentCodeService.nextCode(DocumentType.SALES_ORDER));
         order.setPartner(partner);
         order.setCreatedByUser(currentUser);
 
@@ -1,8 +1,12 @@
 package vn.unistock.unistockmanagementsystem.features.user.saleOrders;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vn.unistock.unistockmanagementsystem.entities.SalesOrderMaterial;
+import vn.unistock.unistockmanagementsystem.features.user.mrp.OrderMaterialQuantityDTO;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,4 +14,15 @@ public interface SalesOrderMaterialRepository extends JpaRepository<SalesOrderMa
     Optional<SalesOrderMaterial> findBySalesOrderOrderIdAndMaterialMaterialId(Long orderId, Long materialId);
     List<SalesOrderMaterial> findBySalesOrderOrderId(Long orderId);
     void deleteBySalesOrderOrderId(Long orderId);
+
+    // Vật tư đã xuất cho sản xuất của các đơn
+    @Query("""
+    SELECT new vn.unistock.unistockmanagementsystem.features.user.mrp.OrderMaterialQuantityDTO(
+        som.salesOrder.orderId, som.material.materialId, SUM(som.receivedQuantity))
+    FROM SalesOrderMaterial som
+    WHERE som.salesOrder.orderId IN :orderIds
+      AND som.receivedQuantity > 0
+    GROUP BY som.salesOrder.orderId, som.material.materialId
+    """)
+    List<OrderMaterialQuantityDTO> sumIssuedByOrders(@Param("orderIds") Collection<Long> orderIds);
 }
\ No newline at end of file
@@ -1,13 +1,27 @@
 package vn.unistock.unistockmanagementsystem.features.user.units;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import vn.unistock.unistockmanagementsystem.entities.Unit;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UnitRepository extends JpaRepository<Unit, Long> {
     boolean existsByUnitNameIgnoreCase(String unitName);
+    // Kết quả nằm trong query cache của Hibernate, tự vô hiệu khi bảng thay đổi
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<Unit> findByUnitName(String unitName);
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<Unit> findByUnitNameIgnoreCase(String unitName);
+
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT u FROM Unit u WHERE LOWER(u.unitName) IN :names")
+    List<Unit> findByLowerUnitNameIn(@Param("names") Collection<String> names);
     boolean existsByUnitNameIgnoreCaseAndUnitIdNot(String unitName, Long unitId);
 }
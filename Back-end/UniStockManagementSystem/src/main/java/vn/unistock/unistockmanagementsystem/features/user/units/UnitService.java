@@ -1,6 +1,8 @@
 package vn.unistock.unistockmanagementsystem.features.user.units;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -20,6 +22,7 @@ public class UnitService {
         return units.map(unitMapper::toDTO);
     }
 
+    @CacheEvict(value = "activeUnits", allEntries = true)
     public UnitDTO toggleStatus(Long unitId, Boolean newStatus) {
         Unit unit = unitRepository.findById(unitId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn vị tính với ID: " + unitId));
@@ -28,6 +31,7 @@ public class UnitService {
         return unitMapper.toDTO(unit);
     }
 
+    @CacheEvict(value = "activeUnits", allEntries = true)
     public UnitDTO createUnit(UnitDTO unitDTO) {
         unitRepository.findByUnitNameIgnoreCase(unitDTO.getUnitName())
                 .ifPresent(existingUnit -> {
@@ -40,6 +44,8 @@ public class UnitService {
         return unitMapper.toDTO(savedUnit);
     }
 
+    // Danh sách dùng cho mọi form chọn đơn vị; bị xóa khi thêm/sửa/đổi trạng thái đơn vị
+    @Cacheable("activeUnits")
     public List<UnitDTO> getActiveUnits() {
         return unitRepository.findAll().stream()
                 .filter(Unit::getStatus)
@@ -48,6 +54,7 @@ public class UnitService {
     }
 
     @Transactional
+    @CacheEvict(value = "activeUnits", allEntries = true)
     public UnitDTO updateUnit(Long unitId, UnitDTO unitDTO) {
         System.out.println("Received unitDTO: unitId=" + unitDTO.getUnitId() + ", unitName=" + unitDTO.getUnitName() + ", status=" + unitDTO.getStatus());
 
@@ -1,9 +1,12 @@
 package vn.unistock.unistockmanagementsystem.features.user.warehouse;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vn.unistock.unistockmanagementsystem.entities.Warehouse;
@@ -14,10 +17,13 @@ import java.util.List;
 public interface WarehouseRepository extends JpaRepository<Warehouse, Long> {
     boolean existsByWarehouseName(String warehouseName);
     Page<Warehouse> findAll(Pageable pageable);
+    // Kết quả nằm trong query cache của Hibernate, tự vô hiệu khi bảng thay đổi
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     List<Warehouse> findAllByIsActive(Boolean isActive);
     boolean existsByWarehouseCode(String warehouseCode);
     boolean existsByWarehouseCodeAndWarehouseIdNot(String warehouseCode, Long warehouseId);
 
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Warehouse findByWarehouseId(Long warehouseId);
 
     @Query("SELECT w FROM Warehouse w WHERE " +
@@ -2,6 +2,8 @@ package vn.unistock.unistockmanagementsystem.features.user.warehouse;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -21,6 +23,7 @@ public class WarehouseService {
     @Autowired
     private final InventoryRepository inventoryRepository;
 
+    @CacheEvict(value = "activeWarehouses", allEntries = true)
     public Warehouse addWarehouse(WarehouseDTO warehouseDTO) {
         if (warehouseRepository.existsByWarehouseName(warehouseDTO.getWarehouseName()))
             throw new RuntimeException("Tên kho đã tồn tại");
@@ -40,6 +43,8 @@ public class WarehouseService {
         return warehousePage;
     }
 
+    // Gọi ở mỗi lần mở form; bị xóa khi thêm/sửa/đổi trạng thái kho
+    @Cacheable("activeWarehouses")
     public List<Warehouse> getAllActiveWarehouses() {
         return warehouseRepository.findAllByIsActive(true);
     }
@@ -48,6 +53,7 @@ public class WarehouseService {
         return warehouseRepository.findById(id).orElseThrow(() -> new RuntimeException("Không tìm thấy kho với ID được cung cấp"));
     }
 
+    @CacheEvict(value = "activeWarehouses", allEntries = true)
     public Warehouse updateWarehouse(Long id, WarehouseDTO warehouseDTO) {
         Warehouse warehouse = getWarehouseById(id);
 
@@ -82,6 +88,7 @@ public class WarehouseService {
     }
 
 
+    @CacheEvict(value = "activeWarehouses", allEntries = true)
     public Warehouse updateWarehouseStatus(Long id, Boolean isActive) {
         Warehouse warehouse = getWarehouseById(id);
         if (!isActive) {
@@ -21,12 +21,13 @@ public class Jwt {
     /**
      * Tạo JWT token, với subject = email, và lưu userId, roles vào claim.
      */
-    public String generateToken(Long userId, String email, List<String> roles) {
+    public String generateToken(Long userId, String email, List<String> roles, int tokenVersion) {
         return Jwts.builder()
                 .setSubject("User Info")
                 .claim("email", email)// Subject = email
                 .claim("userId", userId) // Lưu userId trong claim
                 .claim("roles", roles)   // Lưu danh sách roles
+                .claim("tokenVersion", tokenVersion) // Phiên bản token của user
                 .setIssuedAt(new Date()) // Thời điểm phát hành
                 .setExpiration(new Date(System.currentTimeMillis() + JWT_EXPIRATION_TIME))
                 .signWith(SignatureAlgorithm.HS256, JWT_SECRET_KEY)
@@ -71,6 +72,14 @@ public class Jwt {
         return extractClaims(token).get("roles", List.class);
     }
 
+    /**
+     * Lấy phiên bản token từ claims (token cũ không có claim này => 0).
+     */
+    public int extractTokenVersion(Claims claims) {
+        Integer tokenVersion = claims.get("tokenVersion", Integer.class);
+        return tokenVersion != null ? tokenVersion : 0;
+    }
+
     /**
      * Kiểm tra token đã hết hạn chưa.
      */
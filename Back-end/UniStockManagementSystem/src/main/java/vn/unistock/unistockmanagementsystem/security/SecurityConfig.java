@@ -19,6 +19,7 @@ import org.springframework.web.filter.CorsFilter;
 
 import vn.unistock.unistockmanagementsystem.security.filter.DynamicAuthorizationFilter;
 import vn.unistock.unistockmanagementsystem.security.filter.JwtAuthenticationFilter;
+import vn.unistock.unistockmanagementsystem.utils.storage.LocalFileStorageService;
 
 import java.util.List;
 
@@ -45,8 +46,12 @@ public class SecurityConfig {
                                 "/api/unistock/auth/forgot-password",
                                 "/api/unistock/auth/verify-otp",
                                 "/api/unistock/auth/reset-password",
-                                "/api/unistock/user/notification/unread")
+                                "/api/unistock/user/notification/unread",
+                                "/api/unistock/user/notification/stream",
+                                "/actuator/health")
                         .permitAll()
+                        // File do LocalFileStorageService phục vụ (storage.type=local), tương đương URL blob công khai
+                        .requestMatchers(LocalFileStorageService.URL_PREFIX + "**").permitAll()
                         .anyRequest().authenticated())
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
                 .addFilterAfter(dynamicAuthorizationFilter, UsernamePasswordAuthenticationFilter.class);
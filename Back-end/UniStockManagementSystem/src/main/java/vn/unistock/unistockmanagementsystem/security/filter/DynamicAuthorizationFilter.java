@@ -9,9 +9,12 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
-import vn.unistock.unistockmanagementsystem.entities.Permission;
+import vn.unistock.unistockmanagementsystem.entities.Role;
+import vn.unistock.unistockmanagementsystem.security.metrics.SecurityMetrics;
+import vn.unistock.unistockmanagementsystem.security.metrics.SecurityMetrics.Decision;
+import vn.unistock.unistockmanagementsystem.security.metrics.SecurityTraceSampler;
+import vn.unistock.unistockmanagementsystem.utils.storage.LocalFileStorageService;
 
 import java.io.IOException;
 
@@ -19,7 +22,9 @@ import java.io.IOException;
 @RequiredArgsConstructor
 public class DynamicAuthorizationFilter extends OncePerRequestFilter {
 
-    private final AntPathMatcher antPathMatcher = new AntPathMatcher();
+    private final RolePermissionMatcherCache rolePermissionMatcherCache;
+    private final SecurityMetrics securityMetrics;
+    private final SecurityTraceSampler traceSampler;
 
     @Override
     protected void doFilterInternal(
@@ -35,7 +40,10 @@ public class DynamicAuthorizationFilter extends OncePerRequestFilter {
                 || request.getRequestURI().equals("/api/unistock/profile")
                 || request.getRequestURI().equals("/api/unistock/profile/change-password")
                 || request.getRequestURI().equals("/api/unistock/profile/avatar")
-                || request.getRequestURI().equals("/api/unistock/user/notification/unread")) {
+                || request.getRequestURI().equals("/api/unistock/user/notification/unread")
+                || request.getRequestURI().equals("/api/unistock/user/notification/stream")
+                || request.getRequestURI().startsWith(LocalFileStorageService.URL_PREFIX)) {
+            record(request, Decision.WHITELISTED);
             filterChain.doFilter(request, response);
             return;
         }
@@ -43,6 +51,7 @@ public class DynamicAuthorizationFilter extends OncePerRequestFilter {
 
         // Nếu chưa đăng nhập hoặc anonymous => cho qua
         if (authentication == null || !authentication.isAuthenticated()) {
+            record(request, Decision.ANONYMOUS);
             filterChain.doFilter(request, response);
             return;
         }
@@ -50,6 +59,7 @@ public class DynamicAuthorizationFilter extends OncePerRequestFilter {
         // 2) Principal phải là CustomUserDetails
         Object principal = authentication.getPrincipal();
         if (!(principal instanceof CustomUserDetails userDetails)) {
+            record(request, Decision.ANONYMOUS);
             filterChain.doFilter(request, response);
             return;
         }
@@ -58,48 +68,44 @@ public class DynamicAuthorizationFilter extends OncePerRequestFilter {
         String method = request.getMethod();        // GET, POST, ...
         String uri = request.getRequestURI();       // /api/xxx
 
-        // In ra console để debug
-        System.out.println("=== DynamicAuthorizationFilter: Checking permission for "
-                + method + " " + uri + " ===");
-
         // 4) Kiểm tra xem user có Permission khớp (method, uri) không
-        boolean isAllowed = checkPermission(userDetails, method, uri);
+        //    Endpoint actuator (metrics, trace...) không được scan => chỉ dành cho ADMIN
+        boolean isAllowed = securityMetrics.authorizationCheck().record(() -> uri.startsWith("/actuator/")
+                ? hasRole(userDetails, "ADMIN")
+                : checkPermission(userDetails, method, uri));
 
         if (!isAllowed) {
             // 403 Forbidden
-            System.out.println(">>> No matching permission => 403 Forbidden");
+            record(request, Decision.DENIED);
             response.sendError(HttpServletResponse.SC_FORBIDDEN, "Forbidden");
             return;
         }
 
         // 5) Nếu đủ quyền => cho request đi tiếp
+        record(request, Decision.ALLOWED);
         filterChain.doFilter(request, response);
     }
 
-    private boolean checkPermission(CustomUserDetails userDetails, String method, String uri) {
-        // Lấy danh sách Permission của user
-        for (Permission p : userDetails.getAllPermissions()) {
-
-            // Log permission đang so sánh
-            System.out.println("  Checking Permission: "
-                    + p.getHttpMethod() + " " + p.getUrlPattern());
-
-            // So khớp method
-            if (p.getHttpMethod().equalsIgnoreCase(method)
-                    || p.getHttpMethod().equalsIgnoreCase("ALL")) {
-
-                // So khớp urlPattern
-                boolean matched = antPathMatcher.match(p.getUrlPattern(), uri);
-
-                System.out.println("    antPathMatcher.match(\""
-                        + p.getUrlPattern() + "\", \"" + uri + "\") => " + matched);
+    private void record(HttpServletRequest request, Decision decision) {
+        securityMetrics.decision(decision);
+        if (traceSampler.shouldTrace(request)) {
+            logger.info("[trace] " + request.getMethod() + " " + request.getRequestURI()
+                    + " authorization=" + decision);
+        }
+    }
 
-                if (matched) {
-                    System.out.println("    => FOUND matching permission, allow");
-                    return true; // Tìm thấy permission khớp => cho qua
-                }
+    private boolean checkPermission(CustomUserDetails userDetails, String method, String uri) {
+        // So khớp trên matcher đã biên dịch sẵn của từng role
+        for (Role role : userDetails.getUser().getRoles()) {
+            if (rolePermissionMatcherCache.getMatcher(role).matches(method, uri)) {
+                return true;
             }
         }
         return false; // Không tìm thấy permission phù hợp
     }
-}
\ No newline at end of file
+
+    private boolean hasRole(CustomUserDetails userDetails, String roleName) {
+        return userDetails.getUser().getRoles().stream()
+                .anyMatch(role -> roleName.equals(role.getRoleName()));
+    }
+}
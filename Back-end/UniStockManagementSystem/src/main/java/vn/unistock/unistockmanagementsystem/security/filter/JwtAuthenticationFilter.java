@@ -1,5 +1,6 @@
 package vn.unistock.unistockmanagementsystem.security.filter;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -12,16 +13,18 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import vn.unistock.unistockmanagementsystem.entities.User;
 import vn.unistock.unistockmanagementsystem.features.auth.login.LoginService;
 import vn.unistock.unistockmanagementsystem.security.Jwt;
+import vn.unistock.unistockmanagementsystem.security.metrics.SecurityTraceSampler;
 
 import java.io.IOException;
-import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final Jwt jwtUtil;           // Class parse/generate token
-    private final LoginService loginService; // Để load User từ DB
+    private final LoginService loginService; // Để load User từ DB khi cache chưa có
+    private final PrincipalCache principalCache;
+    private final SecurityTraceSampler traceSampler;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -29,63 +32,58 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain)
             throws ServletException, IOException {
 
-        // In ra để biết filter đã được gọi
-        System.out.println("=== JwtAuthenticationFilter: doFilterInternal START ===");
-
         // 1) Lấy header Authorization
         String authHeader = request.getHeader("Authorization");
-        System.out.println("JwtAuthenticationFilter: Authorization header = " + authHeader);
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7); // Bỏ "Bearer "
-            System.out.println("JwtAuthenticationFilter: Extracted token = " + token);
 
             try {
-                // 2) Giải mã token => lấy email, userId, roles
-                String email = jwtUtil.extractEmail(token);
-                Long userId = jwtUtil.extractUserId(token);
-                List<String> roles = jwtUtil.extractRoles(token);
-
-                System.out.println("JwtAuthenticationFilter: email=" + email
-                        + ", userId=" + userId
-                        + ", roles=" + roles);
-
-                // (Tuỳ chọn) Kiểm tra token hợp lệ
-                if (!jwtUtil.validateToken(token, email)) {
-                    System.out.println("JwtAuthenticationFilter: Token invalid or expired => skip authentication");
-                    filterChain.doFilter(request, response);
-                    return;
-                }
-
-                // 3) Load user từ DB (bằng email)
-                User user = loginService.loadUserByEmail(email);
-                System.out.println("JwtAuthenticationFilter: Loaded user from DB = " + user);
-
-                if (user != null) {
-                    // 4) Tạo CustomUserDetails
-                    CustomUserDetails userDetails = new CustomUserDetails(user);
-                    System.out.println("JwtAuthenticationFilter: Created CustomUserDetails");
-
-                    // 5) Tạo Authentication và set vào SecurityContext
+                // 2) Giải mã token một lần (hết hạn/sai chữ ký => exception)
+                Claims claims = jwtUtil.extractClaims(token);
+                String email = claims.get("email", String.class);
+                Long userId = claims.get("userId", Long.class);
+                int tokenVersion = jwtUtil.extractTokenVersion(claims);
+
+                // 3) Lấy principal từ cache, chỉ truy vấn DB khi chưa có
+                CustomUserDetails userDetails = email == null || userId == null ? null
+                        : principalCache.get(userId, tokenVersion, () -> loadPrincipal(userId, email, tokenVersion));
+
+                if (userDetails != null) {
+                    // 4) Tạo Authentication và set vào SecurityContext
                     UsernamePasswordAuthenticationToken auth =
                             new UsernamePasswordAuthenticationToken(
                                     userDetails, null, userDetails.getAuthorities()
                             );
                     SecurityContextHolder.getContext().setAuthentication(auth);
-
-                    System.out.println("JwtAuthenticationFilter: Set authentication into SecurityContext");
+                }
+                if (traceSampler.shouldTrace(request)) {
+                    logger.info("[trace] " + request.getMethod() + " " + request.getRequestURI()
+                            + " userId=" + userId + " tokenVersion=" + tokenVersion
+                            + " authenticated=" + (userDetails != null));
                 }
             } catch (Exception e) {
-                // Token không hợp lệ => có thể log hoặc bỏ qua
-                System.out.println("JwtAuthenticationFilter: Exception while parsing token => " + e.getMessage());
-                // Ở đây ta cho qua, vẫn gọi filterChain.doFilter()
+                // Token không hợp lệ => bỏ qua, vẫn gọi filterChain.doFilter()
+                if (traceSampler.shouldTrace(request)) {
+                    logger.info("[trace] " + request.getMethod() + " " + request.getRequestURI()
+                            + " invalid token: " + e.getMessage());
+                }
             }
-        } else {
-            System.out.println("JwtAuthenticationFilter: No Bearer token found => skip authentication");
         }
 
-        // 6) Cho request đi tiếp
-        System.out.println("=== JwtAuthenticationFilter: doFilterInternal END ===\n");
+        // 5) Cho request đi tiếp
         filterChain.doFilter(request, response);
     }
+
+    private CustomUserDetails loadPrincipal(Long userId, String email, int tokenVersion) {
+        User user = loginService.loadUserById(userId);
+        // Token đã bị thu hồi (đổi mật khẩu, khóa tài khoản...) hoặc không còn khớp user
+        if (user == null
+                || !email.equals(user.getEmail())
+                || !Boolean.TRUE.equals(user.getIsActive())
+                || user.currentTokenVersion() != tokenVersion) {
+            return null;
+        }
+        return new CustomUserDetails(user);
+    }
 }
@@ -0,0 +1,101 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vn.unistock.unistockmanagementsystem.features.auth.login.LoginService;
+import vn.unistock.unistockmanagementsystem.security.metrics.SecurityMetrics;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache principal (CustomUserDetails) theo (userId, tokenVersion) để JwtAuthenticationFilter
+ * không phải truy vấn DB ở mỗi request.
+ * - Giới hạn số phần tử và có thời gian sống (ttl), dùng Caffeine.
+ * - Khi user/role/profile thay đổi thì gọi evictUser/evictAll để nạp lại; hai hàm này chỉ xóa cache của node hiện tại.
+ * - Để thu hồi token có hiệu lực trên mọi node: principal đã nằm trong cache quá revalidate-after thì kiểm tra lại
+ *   tokenVersion/trạng thái hoạt động trong DB (một truy vấn nhỏ) => đổi mật khẩu, khóa tài khoản, đăng xuất
+ *   có hiệu lực trên node khác chậm nhất sau revalidate-after.
+ * - Các thay đổi khác (role, quyền, hồ sơ) do node khác thực hiện chỉ được thấy khi hết ttl.
+ */
+@Component
+public class PrincipalCache {
+
+    private record Key(Long userId, int tokenVersion) {}
+
+    private record Entry(CustomUserDetails principal, long validatedAt) {}
+
+    private final long revalidateMillis;
+    private final Cache<Key, Entry> entries;
+    private final LoginService loginService;
+    private final SecurityMetrics securityMetrics;
+
+    // Tăng mỗi lần evict => bỏ qua kết quả nạp từ DB đã bắt đầu trước khi evict
+    private final AtomicLong generation = new AtomicLong();
+
+    public PrincipalCache(@Value("${security.principal-cache.max-size:1000}") int maxSize,
+                          @Value("${security.principal-cache.ttl:PT10M}") Duration ttl,
+                          @Value("${security.principal-cache.revalidate-after:PT30S}") Duration revalidateAfter,
+                          LoginService loginService,
+                          SecurityMetrics securityMetrics) {
+        this.revalidateMillis = revalidateAfter.toMillis();
+        this.loginService = loginService;
+        this.securityMetrics = securityMetrics;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Lấy principal trong cache; nếu chưa có hoặc đã hết hạn thì gọi loader rồi lưu lại.
+     * Loader trả về null => không cache, trả về null.
+     */
+    public CustomUserDetails get(Long userId, int tokenVersion, Supplier<CustomUserDetails> loader) {
+        Key key = new Key(userId, tokenVersion);
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null) {
+            long now = System.currentTimeMillis();
+            if (now - entry.validatedAt() < revalidateMillis) {
+                securityMetrics.principalCacheHit();
+                return entry.principal();
+            }
+            // Token có thể đã bị thu hồi ở node khác
+            if (Objects.equals(loginService.loadActiveTokenVersion(userId), tokenVersion)) {
+                entries.asMap().replace(key, entry, new Entry(entry.principal(), now));
+                securityMetrics.principalCacheHit();
+                return entry.principal();
+            }
+            entries.invalidate(key);
+            return null;
+        }
+        securityMetrics.principalCacheMiss();
+
+        long loadGeneration = generation.get();
+        CustomUserDetails principal = loader.get();
+        if (principal != null && loadGeneration == generation.get()) {
+            entries.put(key, new Entry(principal, System.currentTimeMillis()));
+            // evict chèn vào giữa get() và put() ở trên => bỏ bản vừa nạp
+            if (loadGeneration != generation.get()) {
+                entries.invalidate(key);
+            }
+        }
+        return principal;
+    }
+
+    // Xóa mọi phiên bản principal của 1 user (đổi thông tin, mật khẩu, trạng thái...)
+    public void evictUser(Long userId) {
+        generation.incrementAndGet();
+        entries.asMap().keySet().removeIf(key -> key.userId().equals(userId));
+    }
+
+    // Xóa toàn bộ (khi role/permission thay đổi)
+    public void evictAll() {
+        generation.incrementAndGet();
+        entries.invalidateAll();
+    }
+}
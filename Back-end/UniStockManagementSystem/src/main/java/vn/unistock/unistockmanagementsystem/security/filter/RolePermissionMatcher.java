@@ -0,0 +1,167 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import vn.unistock.unistockmanagementsystem.entities.Permission;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tập permission của một role, được biên dịch sẵn thành cây theo từng đoạn URL cho mỗi HTTP method.
+ * Đoạn cố định đi theo map, đoạn biến ({id}, *) đi theo nhánh wildcard, "**" ở cuối khớp mọi phần còn lại.
+ * Pattern phức tạp hơn (regex, ghép chữ + biến) được so khớp riêng bằng AntPathMatcher như trước.
+ * Cây giữ đúng quy tắc của AntPathMatcher: dấu "/" cuối URL phải khớp với pattern, trừ "/x/*" và "/x/**".
+ */
+@Slf4j
+public class RolePermissionMatcher {
+
+    private static final String ALL_METHODS = "ALL";
+    private static final CompilingAntPathMatcher ANT_MATCHER = new CompilingAntPathMatcher();
+
+    private final Map<String, Node> roots = new HashMap<>();
+    private final Map<String, List<String>> fallbackPatterns = new HashMap<>();
+
+    public RolePermissionMatcher(Collection<Permission> permissions) {
+        for (Permission permission : permissions) {
+            if (permission.getHttpMethod() == null || permission.getUrlPattern() == null) {
+                continue;
+            }
+            String method = permission.getHttpMethod().toUpperCase();
+            String pattern = permission.getUrlPattern();
+            if (isSimple(pattern)) {
+                insert(roots.computeIfAbsent(method, m -> new Node()), split(pattern), pattern.endsWith("/"));
+            } else if (ANT_MATCHER.compiles(pattern)) {
+                fallbackPatterns.computeIfAbsent(method, m -> new ArrayList<>()).add(pattern);
+            } else {
+                // Một pattern lỗi không được làm hỏng cả role: bỏ qua và ghi log
+                log.warn("Skipping invalid permission pattern {} {}", method, pattern);
+            }
+        }
+    }
+
+    public boolean matches(String method, String uri) {
+        String[] segments = split(uri);
+        boolean trailingSlash = uri.endsWith("/");
+        String upperMethod = method.toUpperCase();
+        if (matches(roots.get(upperMethod), segments, 0, trailingSlash)
+                || matches(roots.get(ALL_METHODS), segments, 0, trailingSlash)) {
+            return true;
+        }
+        return matchesFallback(fallbackPatterns.get(upperMethod), uri)
+                || matchesFallback(fallbackPatterns.get(ALL_METHODS), uri);
+    }
+
+    private static boolean matches(Node node, String[] segments, int index, boolean trailingSlash) {
+        if (node == null) {
+            return false;
+        }
+        if (node.catchAll) {
+            return true;
+        }
+        if (index == segments.length) {
+            // "/x/*" khớp cả "/x/" (giống AntPathMatcher)
+            return trailingSlash ? node.terminalWithSlash || node.starChild : node.terminal;
+        }
+        return matches(node.literals.get(segments[index]), segments, index + 1, trailingSlash)
+                || matches(node.variable, segments, index + 1, trailingSlash);
+    }
+
+    private static boolean matchesFallback(List<String> patterns, String uri) {
+        if (patterns == null) {
+            return false;
+        }
+        for (String pattern : patterns) {
+            if (ANT_MATCHER.match(pattern, uri)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void insert(Node root, String[] segments, boolean trailingSlash) {
+        Node node = root;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.equals("**") && i == segments.length - 1) {
+                node.catchAll = true;
+                return;
+            }
+            if (segment.equals("*") && i == segments.length - 1) {
+                node.starChild = true;
+            }
+            if (isVariable(segment)) {
+                if (node.variable == null) {
+                    node.variable = new Node();
+                }
+                node = node.variable;
+            } else {
+                node = node.literals.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+        if (trailingSlash) {
+            node.terminalWithSlash = true;
+        } else {
+            node.terminal = true;
+        }
+    }
+
+    // Pattern chỉ gồm đoạn cố định, {biến}, * và ** ở cuối thì đưa được vào cây
+    private static boolean isSimple(String pattern) {
+        String[] segments = split(pattern);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.equals("**")) {
+                if (i != segments.length - 1) {
+                    return false;
+                }
+            } else if (!isVariable(segment) && containsWildcard(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isVariable(String segment) {
+        return segment.equals("*")
+                || (segment.startsWith("{") && segment.endsWith("}")
+                && segment.indexOf(':') < 0 && segment.indexOf('*') < 0
+                && segment.indexOf('{', 1) < 0);
+    }
+
+    private static boolean containsWildcard(String segment) {
+        return segment.indexOf('{') >= 0 || segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0;
+    }
+
+    private static String[] split(String path) {
+        // Không trim từng đoạn, giống cách AntPathMatcher tách đường dẫn
+        return StringUtils.tokenizeToStringArray(path, "/", false, true);
+    }
+
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<>();
+        private Node variable;
+        private boolean terminal;
+        private boolean terminalWithSlash;
+        private boolean starChild;
+        private boolean catchAll;
+    }
+
+    // Biên dịch trước từng đoạn của pattern để phát hiện regex lỗi ngay khi dựng matcher
+    private static final class CompilingAntPathMatcher extends AntPathMatcher {
+        boolean compiles(String pattern) {
+            try {
+                for (String token : tokenizePattern(pattern)) {
+                    getStringMatcher(token);
+                }
+                return true;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Component;
+import vn.unistock.unistockmanagementsystem.entities.Role;
+import vn.unistock.unistockmanagementsystem.entities.RolePermission;
+
+/**
+ * Giữ RolePermissionMatcher đã biên dịch theo roleId.
+ * Cache "rolePermissionMatchers" được xóa trong RoleService mỗi khi quyền của role thay đổi.
+ */
+@Component
+public class RolePermissionMatcherCache {
+
+    @Cacheable(value = "rolePermissionMatchers", key = "#role.roleId")
+    public RolePermissionMatcher getMatcher(Role role) {
+        return new RolePermissionMatcher(role.getRolePermissions().stream()
+                .map(RolePermission::getPermission)
+                .toList());
+    }
+}
@@ -0,0 +1,60 @@
+package vn.unistock.unistockmanagementsystem.security.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Các chỉ số của tầng security, xem qua /actuator/metrics/{tên}:
+ * - security.principal.cache   : số lần hit/miss của PrincipalCache (tag result)
+ * - security.authorization     : số quyết định phân quyền (tag decision)
+ * - security.authorization.check : thời gian so khớp permission
+ * Độ trễ theo từng endpoint lấy từ http.server.requests (có histogram).
+ */
+@Component
+public class SecurityMetrics {
+
+    public enum Decision { ALLOWED, DENIED, WHITELISTED, ANONYMOUS }
+
+    private final Counter principalCacheHits;
+    private final Counter principalCacheMisses;
+    private final Map<Decision, Counter> decisions = new EnumMap<>(Decision.class);
+    private final Timer authorizationCheck;
+
+    public SecurityMetrics(MeterRegistry registry) {
+        this.principalCacheHits = Counter.builder("security.principal.cache")
+                .tag("result", "hit")
+                .register(registry);
+        this.principalCacheMisses = Counter.builder("security.principal.cache")
+                .tag("result", "miss")
+                .register(registry);
+        for (Decision decision : Decision.values()) {
+            decisions.put(decision, Counter.builder("security.authorization")
+                    .tag("decision", decision.name().toLowerCase())
+                    .register(registry));
+        }
+        this.authorizationCheck = Timer.builder("security.authorization.check")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public void principalCacheHit() {
+        principalCacheHits.increment();
+    }
+
+    public void principalCacheMiss() {
+        principalCacheMisses.increment();
+    }
+
+    public void decision(Decision decision) {
+        decisions.get(decision).increment();
+    }
+
+    public Timer authorizationCheck() {
+        return authorizationCheck;
+    }
+}
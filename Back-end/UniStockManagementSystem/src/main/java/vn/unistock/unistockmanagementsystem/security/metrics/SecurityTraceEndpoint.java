@@ -0,0 +1,32 @@
+package vn.unistock.unistockmanagementsystem.security.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * GET  /actuator/securitytrace                      => xem tỉ lệ lấy mẫu hiện tại
+ * POST /actuator/securitytrace {"sampleRate": 0.05} => bật/tắt trace mà không cần restart
+ */
+@Component
+@Endpoint(id = "securitytrace")
+@RequiredArgsConstructor
+public class SecurityTraceEndpoint {
+
+    private final SecurityTraceSampler sampler;
+
+    @ReadOperation
+    public Map<String, Object> sampleRate() {
+        return Map.of("sampleRate", sampler.getSampleRate());
+    }
+
+    @WriteOperation
+    public Map<String, Object> updateSampleRate(double sampleRate) {
+        sampler.setSampleRate(sampleRate);
+        return sampleRate();
+    }
+}
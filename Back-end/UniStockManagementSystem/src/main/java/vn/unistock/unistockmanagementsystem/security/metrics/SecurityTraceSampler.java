@@ -0,0 +1,47 @@
+package vn.unistock.unistockmanagementsystem.security.metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Quyết định request nào được ghi log chi tiết trong các security filter.
+ * Tỉ lệ lấy mẫu đổi được lúc chạy qua endpoint /actuator/securitytrace.
+ */
+@Component
+public class SecurityTraceSampler {
+
+    private static final String TRACE_ATTRIBUTE = SecurityTraceSampler.class.getName() + ".TRACE";
+
+    private volatile double sampleRate;
+
+    public SecurityTraceSampler(@Value("${security.trace.sample-rate:0.0}") double sampleRate) {
+        setSampleRate(sampleRate);
+    }
+
+    /**
+     * Lấy mẫu một lần cho mỗi request (lưu vào attribute) để các filter trace cùng một request.
+     */
+    public boolean shouldTrace(HttpServletRequest request) {
+        Object sampled = request.getAttribute(TRACE_ATTRIBUTE);
+        if (sampled == null) {
+            double rate = sampleRate;
+            sampled = rate > 0 && (rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate);
+            request.setAttribute(TRACE_ATTRIBUTE, sampled);
+        }
+        return (Boolean) sampled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        if (Double.isNaN(sampleRate) || sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate phải nằm trong khoảng [0, 1]");
+        }
+        this.sampleRate = sampleRate;
+    }
+}
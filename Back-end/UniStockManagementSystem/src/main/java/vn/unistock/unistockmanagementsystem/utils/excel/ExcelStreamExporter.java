@@ -0,0 +1,140 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Xuất Excel dạng streaming: dữ liệu đọc lần lượt từ Stream của query, SXSSFWorkbook chỉ giữ
+ * WINDOW_SIZE dòng trên heap (phần còn lại được xả ra file tạm nén) và ghi thẳng vào output stream của response.
+ * Query nguồn nên trả projection (DTO) để persistence context không giữ entity trong suốt quá trình xuất.
+ */
+public final class ExcelStreamExporter {
+
+    /**
+     * Fetch size cho query xuất file. Với MySQL Connector/J, Integer.MIN_VALUE là chế độ streaming
+     * từng dòng; giá trị dương khác sẽ bị driver bỏ qua và đọc hết kết quả lên bộ nhớ.
+     */
+    public static final String STREAM_FETCH_SIZE = "" + Integer.MIN_VALUE;
+
+    private static final int WINDOW_SIZE = 100;
+    private static final int COLUMN_WIDTH = 20 * 256;
+    private static final int MAX_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+    private ExcelStreamExporter() {}
+
+    public record Column<T>(String header, Function<T, ?> value) {}
+
+    public static <T> Column<T> column(String header, Function<T, ?> value) {
+        return new Column<>(header, value);
+    }
+
+    /** Đặt header tải file; gọi trước khi ghi nội dung vào response. */
+    public static void prepareResponse(HttpServletResponse response, String fileName) {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
+    }
+
+    /**
+     * Ghi rows vào một sheet (tự sang sheet mới khi vượt giới hạn dòng của Excel).
+     * Caller chịu trách nhiệm đóng rows và giữ transaction mở trong lúc ghi.
+     */
+    public static <T> void write(OutputStream out, String sheetName, List<Column<T>> columns,
+                                 Stream<T> rows) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(WINDOW_SIZE);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle headerStyle = workbook.createCellStyle();
+            Font headerFont = workbook.createFont();
+            headerFont.setBold(true);
+            headerStyle.setFont(headerFont);
+
+            DataFormat dataFormat = workbook.getCreationHelper().createDataFormat();
+            CellStyle dateTimeStyle = workbook.createCellStyle();
+            dateTimeStyle.setDataFormat(dataFormat.getFormat("dd/mm/yyyy hh:mm"));
+            // Cột chỉ có ngày (LocalDate) không hiển thị 00:00
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(dataFormat.getFormat("dd/mm/yyyy"));
+
+            int sheetCount = 1;
+            Sheet sheet = createSheet(workbook, sheetName, columns, headerStyle);
+            int rowIdx = 1;
+
+            Iterator<T> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                if (rowIdx == MAX_ROWS_PER_SHEET) {
+                    sheet = createSheet(workbook, sheetName + " (" + ++sheetCount + ")", columns, headerStyle);
+                    rowIdx = 1;
+                }
+                T item = iterator.next();
+                Row row = sheet.createRow(rowIdx++);
+                for (int i = 0; i < columns.size(); i++) {
+                    setCellValue(row.createCell(i), columns.get(i).value().apply(item), dateTimeStyle, dateStyle);
+                }
+            }
+
+            workbook.write(out);
+            out.flush();
+        } finally {
+            // Xóa file tạm của SXSSF
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private static <T> Sheet createSheet(SXSSFWorkbook workbook, String name, List<Column<T>> columns,
+                                         CellStyle headerStyle) {
+        Sheet sheet = workbook.createSheet(name);
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < columns.size(); i++) {
+            Cell cell = header.createCell(i);
+            cell.setCellValue(columns.get(i).header());
+            cell.setCellStyle(headerStyle);
+            // SXSSF không autoSize được các dòng đã xả ra đĩa => dùng độ rộng cố định
+            sheet.setColumnWidth(i, COLUMN_WIDTH);
+        }
+        return sheet;
+    }
+
+    private static void setCellValue(Cell cell, Object value, CellStyle dateTimeStyle, CellStyle dateStyle) {
+        if (value == null) {
+            cell.setBlank();
+        } else if (value instanceof Number number) {
+            cell.setCellValue(number.doubleValue());
+        } else if (value instanceof Boolean bool) {
+            cell.setCellValue(bool);
+        } else if (value instanceof LocalDateTime dateTime) {
+            cell.setCellValue(dateTime);
+            cell.setCellStyle(dateTimeStyle);
+        } else if (value instanceof LocalDate date) {
+            cell.setCellValue(date);
+            cell.setCellStyle(dateStyle);
+        } else if (value instanceof java.sql.Date date) {
+            cell.setCellValue(date);
+            cell.setCellStyle(dateStyle);
+        } else if (value instanceof Date date) {
+            cell.setCellValue(date);
+            cell.setCellStyle(dateTimeStyle);
+        } else {
+            cell.setCellValue(value.toString());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportJobDTO {
+    private String jobId;
+    private String type;
+    private Status status;
+    private Phase phase;
+    private long totalRows;
+    private long processedRows;
+    private long invalidRows;
+    private long importedRows;
+    private String message;
+    private List<String> errors;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    public enum Phase {
+        VALIDATING, IMPORTING
+    }
+}
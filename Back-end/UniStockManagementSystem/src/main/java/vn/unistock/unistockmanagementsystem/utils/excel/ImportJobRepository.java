@@ -0,0 +1,33 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import vn.unistock.unistockmanagementsystem.entities.ImportJob;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface ImportJobRepository extends JpaRepository<ImportJob, String> {
+
+    // Node đang chạy job báo còn sống
+    @Modifying
+    @Query("UPDATE ImportJob j SET j.updatedAt = :now WHERE j.jobId IN :jobIds AND j.finishedAt IS NULL")
+    int touch(@Param("jobIds") Collection<String> jobIds, @Param("now") LocalDateTime now);
+
+    // Job chưa xong mà lâu không được cập nhật => node chạy nó đã dừng
+    @Modifying
+    @Query("""
+            UPDATE ImportJob j SET j.status = :failed, j.message = :message, j.finishedAt = :now, j.updatedAt = :now
+            WHERE j.finishedAt IS NULL AND j.updatedAt < :staleBefore
+            """)
+    int failStale(@Param("staleBefore") LocalDateTime staleBefore,
+                  @Param("failed") ImportJobDTO.Status failed,
+                  @Param("message") String message,
+                  @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM ImportJob j WHERE j.finishedAt < :cutoff")
+    int deleteFinishedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
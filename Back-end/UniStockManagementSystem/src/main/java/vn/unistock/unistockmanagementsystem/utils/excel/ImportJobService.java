@@ -0,0 +1,315 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import vn.unistock.unistockmanagementsystem.entities.ImportJob;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chạy import Excel ở luồng nền cho file lớn: request chỉ chép file ra đĩa rồi trả về jobId ngay,
+ * client poll trạng thái/tiến độ theo jobId.
+ * - Số job chạy đồng thời và hàng đợi đều có giới hạn (import.excel.job-concurrency, import.excel.job-queue-size);
+ *   hàng đợi đầy thì từ chối bằng 429.
+ * - Trạng thái job được ghi vào bảng import_job (lúc xếp hàng, đổi pha, định kỳ theo import.excel.job-progress-interval
+ *   và khi xong) để request poll rơi vào node khác vẫn đọc được; node đang chạy job trả trạng thái mới nhất từ bộ nhớ.
+ * - Job chưa xong mà quá import.excel.job-stale-after không được cập nhật (node chạy nó đã dừng) bị đánh dấu FAILED;
+ *   job đã xong bị dọn sau import.excel.job-retention.
+ */
+@Service
+public class ImportJobService {
+    private static final Logger logger = LoggerFactory.getLogger(ImportJobService.class);
+
+    // Chỉ giữ một số lỗi đầu tiên để trạng thái job không phình theo số dòng
+    private static final int MAX_ERRORS = 100;
+
+    @FunctionalInterface
+    public interface ImportTask {
+        /** Chạy import trên file tạm, báo tiến độ vào progress; trả về thông báo kết quả. */
+        String run(Path file, ImportProgress progress) throws Exception;
+    }
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ImportJobRepository importJobRepository;
+    private final TransactionTemplate requiresNew;
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+    private final Duration staleAfter;
+    private final long progressIntervalNanos;
+
+    public ImportJobService(ImportJobRepository importJobRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${import.excel.job-concurrency:1}") int concurrency,
+                            @Value("${import.excel.job-queue-size:10}") int queueSize,
+                            @Value("${import.excel.job-retention:PT1H}") Duration retention,
+                            @Value("${import.excel.job-stale-after:PT15M}") Duration staleAfter,
+                            @Value("${import.excel.job-progress-interval:PT1S}") Duration progressInterval) {
+        this.importJobRepository = importJobRepository;
+        // Task import thường chạy trong transaction riêng: trạng thái phải được commit ngay để node khác thấy
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "excel-import-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.retention = retention;
+        this.staleAfter = staleAfter;
+        this.progressIntervalNanos = progressInterval.toNanos();
+    }
+
+    public ImportJobDTO submit(String type, MultipartFile file, ImportTask task) throws IOException {
+        Path path = StreamingSheetReader.copyToTempFile(file);
+        Job job = new Job(UUID.randomUUID().toString(), type);
+        try {
+            persist(job);
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        jobs.put(job.jobId, job);
+        try {
+            executor.execute(() -> run(job, path, task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.jobId);
+            Files.deleteIfExists(path);
+            requiresNew.executeWithoutResult(status -> importJobRepository.deleteById(job.jobId));
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Đang có quá nhiều file import chờ xử lý, vui lòng thử lại sau");
+        }
+        logger.info("Queued {} import job {} ({} bytes)", type, job.jobId, file.getSize());
+        return job.toDTO();
+    }
+
+    public ImportJobDTO get(String type, String jobId) {
+        Job job = jobs.get(jobId);
+        if (job != null) {
+            if (!job.type.equals(type)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy job import: " + jobId);
+            }
+            return job.toDTO();
+        }
+        // Job chạy trên node khác
+        return importJobRepository.findById(jobId)
+                .filter(entity -> entity.getType().equals(type))
+                .map(ImportJobService::toDTO)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy job import: " + jobId));
+    }
+
+    @Scheduled(fixedDelayString = "${import.excel.job-cleanup-interval:PT5M}")
+    public void evictFinishedJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+        List<String> liveJobIds = jobs.values().stream()
+                .filter(job -> job.finishedAt == null)
+                .map(job -> job.jobId)
+                .toList();
+        try {
+            requiresNew.executeWithoutResult(status -> {
+                // Job đang chờ trong hàng đợi không ghi tiến độ, báo còn sống để không bị coi là mồ côi
+                if (!liveJobIds.isEmpty()) {
+                    importJobRepository.touch(liveJobIds, now);
+                }
+                int failed = importJobRepository.failStale(now.minus(staleAfter), ImportJobDTO.Status.FAILED,
+                        "Import bị gián đoạn do máy chủ dừng, vui lòng import lại", now);
+                if (failed > 0) {
+                    logger.warn("Marked {} orphaned import jobs as failed", failed);
+                }
+                importJobRepository.deleteFinishedBefore(cutoff);
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Could not clean up import jobs: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Job job, Path path, ImportTask task) {
+        job.status = ImportJobDTO.Status.RUNNING;
+        persistQuietly(job);
+        try {
+            job.message = task.run(path, job);
+            job.status = ImportJobDTO.Status.COMPLETED;
+        } catch (Exception e) {
+            logger.warn("Import job {} failed: {}", job.jobId, e.getMessage());
+            job.message = e.getMessage();
+            job.status = ImportJobDTO.Status.FAILED;
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            persistQuietly(job);
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("Could not delete import temp file {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private void persist(Job job) {
+        ImportJob entity = job.toEntity();
+        requiresNew.executeWithoutResult(status -> importJobRepository.save(entity));
+    }
+
+    // Lỗi ghi trạng thái không được làm hỏng job import; node khác chỉ thấy trạng thái cũ hơn
+    private void persistQuietly(Job job) {
+        try {
+            persist(job);
+        } catch (RuntimeException e) {
+            logger.warn("Could not save status of import job {}: {}", job.jobId, e.getMessage());
+        }
+    }
+
+    private static ImportJobDTO toDTO(ImportJob entity) {
+        return ImportJobDTO.builder()
+                .jobId(entity.getJobId())
+                .type(entity.getType())
+                .status(entity.getStatus())
+                .phase(entity.getPhase())
+                .totalRows(entity.getTotalRows())
+                .processedRows(entity.getProcessedRows())
+                .invalidRows(entity.getInvalidRows())
+                .importedRows(entity.getImportedRows())
+                .message(entity.getMessage())
+                .errors(entity.getErrors() == null || entity.getErrors().isEmpty()
+                        ? List.of() : Arrays.asList(entity.getErrors().split("\n")))
+                .createdAt(entity.getCreatedAt())
+                .finishedAt(entity.getFinishedAt())
+                .build();
+    }
+
+    // Chỉ luồng import ghi, request poll chỉ đọc => volatile là đủ
+    private class Job implements ImportProgress {
+        private final String jobId;
+        private final String type;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final List<String> errors = new ArrayList<>();
+        private volatile ImportJobDTO.Status status = ImportJobDTO.Status.QUEUED;
+        private volatile ImportJobDTO.Phase phase;
+        private volatile long totalRows;
+        private volatile long processedRows;
+        private volatile long invalidRows;
+        private volatile long importedRows;
+        private volatile String message;
+        private volatile LocalDateTime finishedAt;
+        private long lastPersistedNanos = System.nanoTime();
+
+        Job(String jobId, String type) {
+            this.jobId = jobId;
+            this.type = type;
+        }
+
+        @Override
+        public void startPhase(ImportJobDTO.Phase phase) {
+            this.phase = phase;
+            this.processedRows = 0;
+            persistProgress(true);
+        }
+
+        @Override
+        public void setTotalRows(long totalRows) {
+            this.totalRows = totalRows;
+        }
+
+        @Override
+        public void rowProcessed() {
+            processedRows++;
+            persistProgress(false);
+        }
+
+        @Override
+        public void rowInvalid(int rowIndex, String errorMessage) {
+            invalidRows++;
+            synchronized (errors) {
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add("Dòng " + rowIndex + ": " + errorMessage);
+                }
+            }
+        }
+
+        @Override
+        public void setImportedRows(long importedRows) {
+            this.importedRows = importedRows;
+        }
+
+        // Chỉ gọi từ luồng import
+        private void persistProgress(boolean force) {
+            long now = System.nanoTime();
+            if (force || now - lastPersistedNanos >= progressIntervalNanos) {
+                lastPersistedNanos = now;
+                persistQuietly(this);
+            }
+        }
+
+        private List<String> errorsCopy() {
+            synchronized (errors) {
+                return List.copyOf(errors);
+            }
+        }
+
+        ImportJob toEntity() {
+            return ImportJob.builder()
+                    .jobId(jobId)
+                    .type(type)
+                    .status(status)
+                    .phase(phase)
+                    .totalRows(totalRows)
+                    .processedRows(processedRows)
+                    .invalidRows(invalidRows)
+                    .importedRows(importedRows)
+                    .message(message)
+                    .errors(String.join("\n", errorsCopy()))
+                    .createdAt(createdAt)
+                    .updatedAt(LocalDateTime.now())
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+
+        ImportJobDTO toDTO() {
+            return ImportJobDTO.builder()
+                    .jobId(jobId)
+                    .type(type)
+                    .status(status)
+                    .phase(phase)
+                    .totalRows(totalRows)
+                    .processedRows(processedRows)
+                    .invalidRows(invalidRows)
+                    .importedRows(importedRows)
+                    .message(message)
+                    .errors(errorsCopy())
+                    .createdAt(createdAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+/**
+ * Nơi các bước import báo tiến độ. Import chạy đồng bộ dùng NONE,
+ * import chạy nền báo vào ImportJob để client poll.
+ */
+public interface ImportProgress {
+
+    ImportProgress NONE = new ImportProgress() {};
+
+    default void startPhase(ImportJobDTO.Phase phase) {}
+
+    default void setTotalRows(long totalRows) {}
+
+    default void rowProcessed() {}
+
+    default void rowInvalid(int rowIndex, String errorMessage) {}
+
+    default void setImportedRows(long importedRows) {}
+}
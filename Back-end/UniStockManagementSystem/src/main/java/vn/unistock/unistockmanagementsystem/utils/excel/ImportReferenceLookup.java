@@ -0,0 +1,68 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Tra cứu tham chiếu (mã, đơn vị, danh mục, nhà cung cấp) cho cả file import thay vì từng dòng:
+ * gom mọi giá trị trong file trước, truy vấn bằng vài câu IN, rồi so khớp trong bộ nhớ theo khóa chuẩn hóa.
+ * Khóa chuẩn hóa = trim + NFC + chữ thường, nên "Cái", "cái" và "cái" dạng tổ hợp (NFD, hay gặp khi
+ * copy từ macOS) đều khớp cùng một bản ghi.
+ */
+public final class ImportReferenceLookup {
+
+    // Giới hạn số tham số của một câu IN
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    private ImportReferenceLookup() {}
+
+    public static String key(String value) {
+        if (value == null || value.isBlank()) return null;
+        return Normalizer.normalize(value.trim(), Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+    }
+
+    /** Thêm các dạng của value (gốc và NFC) để truy vấn IN khớp cả khi file và DB khác dạng Unicode. */
+    public static void addCandidates(Set<String> candidates, String value, boolean lowerCase) {
+        if (value == null || value.isBlank()) return;
+        String trimmed = value.trim();
+        String nfc = Normalizer.normalize(trimmed, Normalizer.Form.NFC);
+        candidates.add(lowerCase ? trimmed.toLowerCase(Locale.ROOT) : trimmed);
+        candidates.add(lowerCase ? nfc.toLowerCase(Locale.ROOT) : nfc);
+    }
+
+    /** Chạy query theo từng lô IN_CHUNK_SIZE giá trị. */
+    public static <T> List<T> findIn(Collection<String> values, Function<Collection<String>, List<T>> query) {
+        List<T> result = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(Math.min(values.size(), IN_CHUNK_SIZE));
+        for (String value : values) {
+            chunk.add(value);
+            if (chunk.size() == IN_CHUNK_SIZE) {
+                result.addAll(query.apply(chunk));
+                chunk = new ArrayList<>(IN_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            result.addAll(query.apply(chunk));
+        }
+        return result;
+    }
+
+    /** Đánh chỉ mục theo khóa chuẩn hóa; trùng khóa thì giữ bản ghi đầu tiên. */
+    public static <T> Map<String, T> index(Collection<T> items, Function<T, String> name) {
+        Map<String, T> index = new HashMap<>();
+        for (T item : items) {
+            String key = key(name.apply(item));
+            if (key != null) {
+                index.putIfAbsent(key, item);
+            }
+        }
+        return index;
+    }
+}
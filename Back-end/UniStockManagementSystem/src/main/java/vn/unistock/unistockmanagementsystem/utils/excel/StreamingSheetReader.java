@@ -0,0 +1,138 @@
+package vn.unistock.unistockmanagementsystem.utils.excel;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Đọc sheet đầu tiên của file .xlsx theo kiểu SAX (XSSFReader), từng dòng một,
+ * thay cho new XSSFWorkbook(...) vốn dựng toàn bộ sheet thành DOM trong heap.
+ * Bộ nhớ dùng chỉ cỡ một dòng + bảng shared strings, không phụ thuộc số dòng.
+ */
+public final class StreamingSheetReader {
+
+    public interface RowListener {
+        /** Số dòng ước tính lấy từ thẻ dimension của sheet (nếu file có ghi). */
+        default void onDimension(int lastRowNumber) {}
+
+        /**
+         * @param rowNum chỉ số dòng bắt đầu từ 0 như Row#getRowNum
+         * @param cells  giá trị đã format và trim theo cột; ô trống là null.
+         *               List được dùng lại cho dòng sau, cần copy nếu muốn giữ
+         */
+        void onRow(int rowNum, List<String> cells);
+    }
+
+    private StreamingSheetReader() {}
+
+    public static void read(File file, RowListener listener) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new SheetHandler(styles, strings, listener));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Không đọc được file Excel: " + e.getMessage(), e);
+        }
+    }
+
+    /** OPCPackage đọc trực tiếp từ file mới stream được; file upload được chép ra file tạm (caller phải xóa). */
+    public static Path copyToTempFile(MultipartFile file) throws IOException {
+        Path path = Files.createTempFile("unistock-import-", ".xlsx");
+        try (InputStream inputStream = file.getInputStream()) {
+            Files.copy(inputStream, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return path;
+    }
+
+    private static class SheetHandler extends XSSFSheetXMLHandler {
+        private final RowListener listener;
+
+        SheetHandler(StylesTable styles, ReadOnlySharedStringsTable strings, RowListener listener) {
+            super(styles, null, strings, new RowCollector(listener), new DataFormatter(), false);
+            this.listener = listener;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if ("dimension".equals(localName)) {
+                String ref = attributes.getValue("ref");
+                if (ref != null) {
+                    String lastCell = ref.substring(ref.indexOf(':') + 1);
+                    listener.onDimension(new CellReference(lastCell).getRow());
+                }
+            }
+            super.startElement(uri, localName, qName, attributes);
+        }
+    }
+
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowListener listener;
+        private final List<String> cells = new ArrayList<>();
+        private int nextColumn;
+
+        RowCollector(RowListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+            nextColumn = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            listener.onRow(rowNum, cells);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : nextColumn;
+            while (cells.size() < column) {
+                cells.add(null);
+            }
+            String value = formattedValue != null ? formattedValue.trim() : null;
+            if (cells.size() == column) {
+                cells.add(value);
+            } else {
+                cells.set(column, value);
+            }
+            nextColumn = column + 1;
+        }
+    }
+}
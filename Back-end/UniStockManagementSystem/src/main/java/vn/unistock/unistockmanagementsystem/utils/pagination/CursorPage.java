@@ -0,0 +1,61 @@
+package vn.unistock.unistockmanagementsystem.utils.pagination;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Một trang của phân trang keyset (seek) theo id giảm dần: trang sau lọc "id < id cuối của trang trước"
+ * thay cho OFFSET, nên trang thứ 5000 tốn như trang đầu. Không đếm tổng trừ khi client yêu cầu.
+ * nextCursor là id cuối trang được mã hóa; null khi đã hết dữ liệu.
+ */
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    private final List<T> content;
+    private final String nextCursor;
+    private final boolean hasNext;
+    // null nếu không yêu cầu withTotal
+    private final Long totalElements;
+
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor không hợp lệ");
+        }
+    }
+
+    public static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Lấy dư một dòng để biết còn trang sau mà không cần COUNT. */
+    public static Pageable seek(int size, String idProperty) {
+        if (size < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size phải lớn hơn 0");
+        }
+        return PageRequest.of(0, size + 1, Sort.by(Sort.Direction.DESC, idProperty));
+    }
+
+    /** rows là kết quả của query dùng seek(size, ...): tối đa size + 1 dòng. */
+    public static <E, T> CursorPage<T> of(List<E> rows, int size, Function<E, Long> id, Function<E, T> mapper,
+                                          Long totalElements) {
+        boolean hasNext = rows.size() > size;
+        List<E> page = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? encodeCursor(id.apply(page.get(page.size() - 1))) : null;
+        return new CursorPage<>(page.stream().map(mapper).toList(), nextCursor, hasNext, totalElements);
+    }
+}
@@ -0,0 +1,194 @@
+package vn.unistock.unistockmanagementsystem.utils.search;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Chỉ mục đảo n-gram trong bộ nhớ cho tìm kiếm "chứa chuỗi" trên mã/tên.
+ * Mỗi trường được chuẩn hóa bằng fold() rồi tách thành các bigram và trigram. Mỗi bản ghi có một số thứ tự
+ * (ordinal) liền nhau, mỗi gram trỏ tới một BitSet các ordinal chứa nó => giao tập là phép AND theo từng word 64 bit.
+ * - Từ khóa >= 3 ký tự: AND các BitSet của trigram trong từ khóa, rồi kiểm tra lại contains trên các ứng viên.
+ * - Từ khóa 2 ký tự: đúng bằng tập id của bigram đó.
+ * - Từ khóa 1 ký tự: duyệt các bản ghi (kết quả gần như là toàn bộ danh mục).
+ * Gram không vắt qua hai trường, nên "ma" + "ten" không khớp nhầm "aten".
+ */
+public class NgramIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+    private final Map<String, BitSet> postings = new HashMap<>();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final List<Long> ids = new ArrayList<>();
+    private final List<String[]> documents = new ArrayList<>();
+    // Ordinal của bản ghi đã xóa, dùng lại cho bản ghi mới để BitSet không phình ra
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Chuẩn hóa để so khớp không phân biệt hoa thường và dấu tiếng Việt:
+     * NFC, bỏ dấu (NFD + xóa dấu tổ hợp), đ -> d, chữ thường, gộp khoảng trắng.
+     * "Bàn Gỗ", "ban go" và "BÀN  GỖ" (dạng NFD) đều thành "ban go".
+     */
+    public static String fold(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(Normalizer.normalize(value, Normalizer.Form.NFC), Normalizer.Form.NFD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D');
+        return WHITESPACES.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /** Thêm hoặc thay thế bản ghi id bằng các trường mới. */
+    public void put(Long id, String... fields) {
+        String[] folded = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            folded[i] = fold(fields[i]);
+        }
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(id);
+            int ordinal;
+            if (freeOrdinals.isEmpty()) {
+                ordinal = ids.size();
+                ids.add(id);
+                documents.add(folded);
+            } else {
+                ordinal = freeOrdinals.pop();
+                ids.set(ordinal, id);
+                documents.set(ordinal, folded);
+            }
+            ordinals.put(id, ordinal);
+            for (String gram : grams(folded)) {
+                postings.computeIfAbsent(gram, g -> new BitSet()).set(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Id các bản ghi có ít nhất một trường chứa query (sau khi chuẩn hóa), theo thứ tự tăng dần. */
+    public List<Long> search(String query) {
+        String folded = fold(query);
+        if (folded.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            List<Long> result = new ArrayList<>();
+            if (folded.length() == 1) {
+                for (int ordinal = 0; ordinal < documents.size(); ordinal++) {
+                    if (documents.get(ordinal) != null && containsIn(documents.get(ordinal), folded)) {
+                        result.add(ids.get(ordinal));
+                    }
+                }
+            } else if (folded.length() == 2) {
+                BitSet matches = postings.get(folded);
+                if (matches != null) {
+                    matches.stream().forEach(ordinal -> result.add(ids.get(ordinal)));
+                }
+            } else {
+                BitSet candidates = candidates(folded);
+                if (candidates != null) {
+                    // Đủ trigram chưa chắc đúng thứ tự liền nhau => kiểm tra lại trên chuỗi
+                    candidates.stream()
+                            .filter(ordinal -> containsIn(documents.get(ordinal), folded))
+                            .forEach(ordinal -> result.add(ids.get(ordinal)));
+                }
+            }
+            result.sort(null);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Giao các BitSet của mọi trigram trong từ khóa; null nếu có trigram không xuất hiện ở bản ghi nào
+    private BitSet candidates(String folded) {
+        BitSet candidates = null;
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            BitSet matches = postings.get(folded.substring(i, i + 3));
+            if (matches == null) {
+                return null;
+            }
+            if (candidates == null) {
+                candidates = (BitSet) matches.clone();
+            } else {
+                candidates.and(matches);
+            }
+        }
+        return candidates;
+    }
+
+    private void removeUnlocked(Long id) {
+        Integer ordinal = ordinals.remove(id);
+        if (ordinal == null) {
+            return;
+        }
+        for (String gram : grams(documents.get(ordinal))) {
+            BitSet matches = postings.get(gram);
+            if (matches != null) {
+                matches.clear(ordinal);
+                if (matches.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+        ids.set(ordinal, null);
+        documents.set(ordinal, null);
+        freeOrdinals.push(ordinal);
+    }
+
+    private static Set<String> grams(String[] fields) {
+        Set<String> grams = new HashSet<>();
+        for (String field : fields) {
+            for (int n = 2; n <= 3; n++) {
+                for (int i = 0; i + n <= field.length(); i++) {
+                    grams.add(field.substring(i, i + n));
+                }
+            }
+        }
+        return grams;
+    }
+
+    private static boolean containsIn(String[] fields, String folded) {
+        for (String field : fields) {
+            if (field.contains(folded)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
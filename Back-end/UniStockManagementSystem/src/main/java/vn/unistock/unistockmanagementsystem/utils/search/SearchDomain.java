@@ -0,0 +1,24 @@
+package vn.unistock.unistockmanagementsystem.utils.search;
+
+import lombok.Getter;
+
+/**
+ * Các danh mục có chỉ mục tìm kiếm theo mã/tên, kèm query nạp lại toàn bộ (id, các trường) khi khởi động
+ * và query nạp lại một số id (khi node khác báo thay đổi qua SearchIndexRelay).
+ */
+@Getter
+public enum SearchDomain {
+    PRODUCT("p.productId", "SELECT p.productId, p.productCode, p.productName FROM Product p"),
+    MATERIAL("m.materialId", "SELECT m.materialId, m.materialCode, m.materialName FROM Material m"),
+    PARTNER("p.partnerId", "SELECT p.partnerId, p.partnerName FROM Partner p"),
+    SALES_ORDER("s.orderId", "SELECT s.orderId, s.orderCode FROM SalesOrder s"),
+    ISSUE_NOTE("n.ginId", "SELECT n.ginId, n.ginCode FROM GoodIssueNote n");
+
+    private final String loadQuery;
+    private final String reloadQuery;
+
+    SearchDomain(String idPath, String loadQuery) {
+        this.loadQuery = loadQuery;
+        this.reloadQuery = loadQuery + " WHERE " + idPath + " IN :ids";
+    }
+}
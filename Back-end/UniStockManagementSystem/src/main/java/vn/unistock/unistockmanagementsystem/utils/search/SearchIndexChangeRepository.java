@@ -0,0 +1,21 @@
+package vn.unistock.unistockmanagementsystem.utils.search;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import vn.unistock.unistockmanagementsystem.entities.SearchIndexChange;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SearchIndexChangeRepository extends JpaRepository<SearchIndexChange, Long> {
+
+    List<SearchIndexChange> findByCreatedAtAfterOrderByIdAsc(LocalDateTime since);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM SearchIndexChange c WHERE c.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
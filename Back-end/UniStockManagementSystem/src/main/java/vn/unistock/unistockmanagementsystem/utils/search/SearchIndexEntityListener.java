@@ -0,0 +1,97 @@
+package vn.unistock.unistockmanagementsystem.utils.search;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.unistock.unistockmanagementsystem.entities.GoodIssueNote;
+import vn.unistock.unistockmanagementsystem.entities.Material;
+import vn.unistock.unistockmanagementsystem.entities.Partner;
+import vn.unistock.unistockmanagementsystem.entities.Product;
+import vn.unistock.unistockmanagementsystem.entities.SalesOrder;
+
+import java.util.function.Consumer;
+
+/**
+ * Cập nhật chỉ mục tìm kiếm khi entity được thêm/sửa/xóa.
+ * Thay đổi chỉ được áp dụng sau khi transaction commit, nên transaction rollback không làm lệch chỉ mục.
+ * Đồng thời ghi nhật ký cho node khác (SearchIndexRelay) trong cùng transaction.
+ * Hibernate tạo listener qua Spring (SpringBeanContainer) nên field được inject;
+ * ObjectProvider để không lỗi ở context không có SearchIndexService.
+ */
+public class SearchIndexEntityListener {
+
+    @Autowired
+    private ObjectProvider<SearchIndexService> searchIndexService;
+
+    @Autowired
+    private ObjectProvider<SearchIndexRelay> searchIndexRelay;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Object entity) {
+        if (entity instanceof Product product) {
+            changed(SearchDomain.PRODUCT, product.getProductId(), product.getProductCode(), product.getProductName());
+        } else if (entity instanceof Material material) {
+            changed(SearchDomain.MATERIAL, material.getMaterialId(), material.getMaterialCode(), material.getMaterialName());
+        } else if (entity instanceof Partner partner) {
+            changed(SearchDomain.PARTNER, partner.getPartnerId(), partner.getPartnerName());
+        } else if (entity instanceof SalesOrder order) {
+            changed(SearchDomain.SALES_ORDER, order.getOrderId(), order.getOrderCode());
+        } else if (entity instanceof GoodIssueNote note) {
+            changed(SearchDomain.ISSUE_NOTE, note.getGinId(), note.getGinCode());
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if (entity instanceof Product product) {
+            removed(SearchDomain.PRODUCT, product.getProductId());
+        } else if (entity instanceof Material material) {
+            removed(SearchDomain.MATERIAL, material.getMaterialId());
+        } else if (entity instanceof Partner partner) {
+            removed(SearchDomain.PARTNER, partner.getPartnerId());
+        } else if (entity instanceof SalesOrder order) {
+            removed(SearchDomain.SALES_ORDER, order.getOrderId());
+        } else if (entity instanceof GoodIssueNote note) {
+            removed(SearchDomain.ISSUE_NOTE, note.getGinId());
+        }
+    }
+
+    private void changed(SearchDomain domain, Long id, String... fields) {
+        record(domain, id);
+        afterCommit(service -> service.index(domain, id, fields));
+    }
+
+    private void removed(SearchDomain domain, Long id) {
+        record(domain, id);
+        afterCommit(service -> service.remove(domain, id));
+    }
+
+    private void record(SearchDomain domain, Long id) {
+        SearchIndexRelay relay = searchIndexRelay != null ? searchIndexRelay.getIfAvailable() : null;
+        if (relay != null) {
+            relay.record(domain, id);
+        }
+    }
+
+    private void afterCommit(Consumer<SearchIndexService> change) {
+        SearchIndexService service = searchIndexService != null ? searchIndexService.getIfAvailable() : null;
+        if (service == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.accept(service);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.accept(service);
+            }
+        });
+    }
+}
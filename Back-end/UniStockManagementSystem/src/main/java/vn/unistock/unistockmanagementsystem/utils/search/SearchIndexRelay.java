@@ -0,0 +1,113 @@
+package vn.unistock.unistockmanagementsystem.utils.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.unistock.unistockmanagementsystem.entities.SearchIndexChange;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Chuyển thay đổi chỉ mục tìm kiếm giữa các node: mỗi node giữ chỉ mục riêng trong bộ nhớ.
+ * - SearchIndexEntityListener ghi mỗi thay đổi entity vào bảng search_index_change cùng transaction, kèm id của node ghi.
+ * - Mỗi node đọc nhật ký sau mỗi relay-interval và nạp lại từ DB các bản ghi do node khác đổi
+ *   => tìm kiếm trên node khác thấy thay đổi chậm nhất khoảng relay-interval.
+ * Đọc lại cả cửa sổ relay-lookback (bù lệch giờ giữa các node và transaction commit muộn), bỏ các dòng đã xử lý;
+ * thay đổi lọt khỏi cửa sổ vẫn được lần nạp lại toàn bộ định kỳ (refresh-interval) sửa.
+ */
+@Component
+public class SearchIndexRelay {
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexRelay.class);
+
+    // Ghi bằng JDBC vì được gọi trong callback của entity lúc Hibernate đang flush (không dùng được EntityManager);
+    // JdbcTemplate dùng chung connection của transaction JPA nên dòng nhật ký commit/rollback cùng entity
+    private static final String INSERT_SQL =
+            "INSERT INTO search_index_change (search_domain, entity_id, origin, created_at) VALUES (?, ?, ?, ?)";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Duration lookback;
+    private final Duration retention;
+    private final JdbcTemplate jdbcTemplate;
+    private final SearchIndexChangeRepository changeRepository;
+    private final SearchIndexService searchIndexService;
+
+    // Dòng nhật ký đã xử lý trong cửa sổ đọc hiện tại (id -> createdAt)
+    private final Map<Long, LocalDateTime> relayed = new HashMap<>();
+
+    public SearchIndexRelay(@Value("${search.index.relay-lookback:PT30S}") Duration lookback,
+                            @Value("${search.index.relay-retention:PT10M}") Duration retention,
+                            JdbcTemplate jdbcTemplate,
+                            SearchIndexChangeRepository changeRepository,
+                            SearchIndexService searchIndexService) {
+        this.lookback = lookback;
+        this.retention = retention;
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeRepository = changeRepository;
+        this.searchIndexService = searchIndexService;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /** Ghi nhận entity của domain đã đổi; gọi trong transaction ghi entity. */
+    public void record(SearchDomain domain, Long id) {
+        if (id != null) {
+            jdbcTemplate.update(INSERT_SQL, domain.name(), id, nodeId, Timestamp.valueOf(LocalDateTime.now()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.relay-interval:PT2S}")
+    public synchronized void relay() {
+        LocalDateTime since = LocalDateTime.now().minus(lookback);
+        List<SearchIndexChange> changes;
+        try {
+            changes = changeRepository.findByCreatedAtAfterOrderByIdAsc(since);
+        } catch (RuntimeException e) {
+            logger.warn("Could not read search index changes: {}", e.getMessage());
+            return;
+        }
+        relayed.values().removeIf(createdAt -> !createdAt.isAfter(since));
+
+        Map<SearchDomain, List<SearchIndexChange>> pending = new EnumMap<>(SearchDomain.class);
+        changes.stream()
+                .filter(change -> !nodeId.equals(change.getOrigin()))
+                .filter(change -> !relayed.containsKey(change.getId()))
+                .forEach(change -> pending.computeIfAbsent(change.getDomain(), domain -> new ArrayList<>()).add(change));
+        pending.forEach((domain, domainChanges) -> {
+            // Đọc trạng thái hiện tại: nhiều thay đổi của cùng bản ghi chỉ cần nạp một lần
+            Set<Long> ids = new LinkedHashSet<>();
+            domainChanges.forEach(change -> ids.add(change.getEntityId()));
+            try {
+                searchIndexService.reload(domain, ids);
+            } catch (RuntimeException e) {
+                // Chưa đánh dấu đã xử lý => lần relay sau thử lại
+                logger.warn("Could not reload search index {} entries: {}", domain, e.getMessage());
+                return;
+            }
+            domainChanges.forEach(change -> relayed.put(change.getId(), change.getCreatedAt()));
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.relay-retention:PT10M}")
+    public void deleteExpired() {
+        try {
+            changeRepository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+        } catch (RuntimeException e) {
+            logger.warn("Could not clean up search index changes: {}", e.getMessage());
+        }
+    }
+}
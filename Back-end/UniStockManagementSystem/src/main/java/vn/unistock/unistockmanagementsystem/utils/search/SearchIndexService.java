@@ -0,0 +1,168 @@
+package vn.unistock.unistockmanagementsystem.utils.search;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Tìm kiếm mã/tên qua chỉ mục n-gram trong bộ nhớ thay cho LIKE '%...%' (không dùng được index của DB).
+ * Chỉ mục được nạp lại từ DB khi khởi động và cập nhật sau mỗi lần commit ghi entity (SearchIndexEntityListener).
+ * Thay đổi qua JPA của node khác đến qua bảng search_index_change (SearchIndexRelay), chậm khoảng relay-interval;
+ * thay đổi bằng SQL trực tiếp chỉ được thấy sau lần nạp lại định kỳ.
+ * Trong lúc nạp lại, thay đổi sau commit vừa ghi vào chỉ mục cũ vừa được ghi lại để áp lên chỉ mục mới trước khi thay,
+ * nên không bị mất giữa lúc đọc DB và lúc thay chỉ mục.
+ * Caller lấy kết quả match() rồi lọc bằng "id IN (...)" trong query của mình. Từ khóa ngắn hơn
+ * search.index.min-query-length hoặc khớp quá search.index.max-ids bản ghi thì danh sách id quá dài để đưa vào IN
+ * => không trả id, caller lọc bằng LIKE với likeTerm.
+ */
+@Service
+public class SearchIndexService implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexService.class);
+
+    // Chỉ mục hiện tại của một danh mục; pending khác null khi đang nạp lại
+    private static final class DomainIndex {
+        private volatile NgramIndex current = new NgramIndex();
+        private List<Consumer<NgramIndex>> pending;
+    }
+
+    private final Map<SearchDomain, DomainIndex> indexes = new EnumMap<>(SearchDomain.class);
+    private final TransactionTemplate readOnlyTransaction;
+    private final int minQueryLength;
+    private final int maxIds;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public SearchIndexService(PlatformTransactionManager transactionManager,
+                              @Value("${search.index.min-query-length:3}") int minQueryLength,
+                              @Value("${search.index.max-ids:1000}") int maxIds) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.minQueryLength = minQueryLength;
+        this.maxIds = maxIds;
+        for (SearchDomain domain : SearchDomain.values()) {
+            indexes.put(domain, new DomainIndex());
+        }
+    }
+
+    /**
+     * Bộ lọc theo từ khóa: ids để lọc "id IN (...)", hoặc likeTerm để lọc bằng LIKE; cả hai null = không lọc.
+     * ids rỗng = không bản ghi nào khớp, caller trả kết quả rỗng luôn thay vì chạy query.
+     */
+    public record Match(List<Long> ids, String likeTerm) {
+        private static final Match ALL = new Match(null, null);
+
+        public boolean isNone() {
+            return ids != null && ids.isEmpty();
+        }
+    }
+
+    /** Các bản ghi có mã/tên chứa search (không phân biệt hoa thường, dấu). */
+    public Match match(SearchDomain domain, String search) {
+        int length = NgramIndex.fold(search).length();
+        if (length == 0) {
+            return Match.ALL;
+        }
+        if (length < minQueryLength) {
+            return new Match(null, search.trim());
+        }
+        List<Long> ids = indexes.get(domain).current.search(search);
+        return ids.size() > maxIds ? new Match(null, search.trim()) : new Match(ids, null);
+    }
+
+    public void index(SearchDomain domain, Long id, String... fields) {
+        if (id != null) {
+            apply(domain, index -> index.put(id, fields));
+        }
+    }
+
+    public void remove(SearchDomain domain, Long id) {
+        if (id != null) {
+            apply(domain, index -> index.remove(id));
+        }
+    }
+
+    /** Đọc lại các bản ghi từ DB vào chỉ mục; id không còn trong DB bị gỡ khỏi chỉ mục. */
+    public void reload(SearchDomain domain, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Long, String[]> rows = new HashMap<>();
+        readOnlyTransaction.executeWithoutResult(status -> entityManager
+                .createQuery(domain.getReloadQuery(), Object[].class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .forEach(row -> rows.put((Long) row[0], Arrays.copyOfRange(row, 1, row.length, String[].class))));
+        for (Long id : ids) {
+            String[] fields = rows.get(id);
+            if (fields != null) {
+                index(domain, id, fields);
+            } else {
+                remove(domain, id);
+            }
+        }
+    }
+
+    private void apply(SearchDomain domain, Consumer<NgramIndex> change) {
+        DomainIndex domainIndex = indexes.get(domain);
+        synchronized (domainIndex) {
+            change.accept(domainIndex.current);
+            if (domainIndex.pending != null) {
+                domainIndex.pending.add(change);
+            }
+        }
+    }
+
+    // Nạp chỉ mục trước khi ứng dụng nhận request
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${search.index.refresh-interval:PT30M}",
+            fixedDelayString = "${search.index.refresh-interval:PT30M}")
+    public synchronized void rebuild() {
+        for (SearchDomain domain : SearchDomain.values()) {
+            DomainIndex domainIndex = indexes.get(domain);
+            // Bắt đầu ghi lại thay đổi trước khi đọc DB: thay đổi nào commit sau lúc đọc cũng được áp lại
+            synchronized (domainIndex) {
+                domainIndex.pending = new ArrayList<>();
+            }
+            NgramIndex index = new NgramIndex();
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> entityManager
+                        .createQuery(domain.getLoadQuery(), Object[].class)
+                        .getResultStream()
+                        .forEach(row -> index.put((Long) row[0], Arrays.copyOfRange(row, 1, row.length, String[].class))));
+            } catch (RuntimeException e) {
+                synchronized (domainIndex) {
+                    domainIndex.pending = null;
+                }
+                throw e;
+            }
+            // put/remove thay thế theo id nên áp lại thay đổi đã có trong dữ liệu vừa đọc cũng không sao
+            synchronized (domainIndex) {
+                domainIndex.pending.forEach(change -> change.accept(index));
+                domainIndex.current = index;
+                domainIndex.pending = null;
+            }
+            logger.debug("Search index {} loaded with {} entries", domain, index.size());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package vn.unistock.unistockmanagementsystem.utils.sequence;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cấp mã chứng từ (NK00001, XK00001, ...) theo kiểu hi/lo thay cho MAX(id) + 1.
+ * Mỗi node giữ một lô blockSize số trong bộ nhớ, lấy số chỉ là một phép tăng AtomicLong; hết lô mới xuống DB
+ * tăng document_sequence.next_value thêm blockSize (UPDATE khóa dòng nên các node không bao giờ nhận trùng lô).
+ * Mã chưa dùng của lô sẽ bị bỏ qua khi restart, nên dãy mã có thể không liên tục.
+ * Mã chỉ được cấp lúc lưu chứng từ (nextCode); form thêm mới chỉ hiển thị mã dự kiến (previewCode), không tiêu tốn số.
+ */
+@Service
+public class DocumentCodeService {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentCodeService.class);
+
+    private final DocumentSequenceRepository sequenceRepository;
+    private final TransactionTemplate requiresNew;
+    private final long blockSize;
+    private final Map<DocumentType, Allocator> allocators = new EnumMap<>(DocumentType.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public DocumentCodeService(DocumentSequenceRepository sequenceRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${document-code.block-size:20}") long blockSize) {
+        this.sequenceRepository = sequenceRepository;
+        // Lô phải được ghi nhận ngay cả khi transaction của caller rollback, nếu không node khác sẽ nhận lại lô này
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = blockSize;
+        for (DocumentType type : DocumentType.values()) {
+            allocators.put(type, new Allocator(type));
+        }
+    }
+
+    public String nextCode(DocumentType type) {
+        return type.format(allocators.get(type).next());
+    }
+
+    /**
+     * Mã dự kiến cho chứng từ tiếp theo, không cấp số. Request khác (hoặc node khác) có thể lưu trước,
+     * nên mã thật là mã trả về sau khi lưu.
+     */
+    public String previewCode(DocumentType type) {
+        Block block = allocators.get(type).current;
+        if (block != null) {
+            long value = block.next().get();
+            if (value < block.limit()) {
+                return type.format(value);
+            }
+        }
+        // Chưa có lô hoặc lô đã hết: lô kế tiếp bắt đầu từ next_value
+        Long nextValue = sequenceRepository.findNextValue(type.name());
+        return type.format(nextValue != null ? nextValue : firstValue(type));
+    }
+
+    // Dải số [next, limit) của lô hiện tại
+    private record Block(AtomicLong next, long limit) {}
+
+    private final class Allocator {
+        private final DocumentType type;
+        private volatile Block current;
+
+        private Allocator(DocumentType type) {
+            this.type = type;
+        }
+
+        long next() {
+            while (true) {
+                Block block = current;
+                if (block != null) {
+                    long value = block.next().getAndIncrement();
+                    if (value < block.limit()) {
+                        return value;
+                    }
+                }
+                // Chỉ một luồng xin lô mới, các luồng khác chờ rồi thử lại trên lô đó
+                synchronized (this) {
+                    if (current == block) {
+                        current = reserveBlock(type);
+                    }
+                }
+            }
+        }
+    }
+
+    private Block reserveBlock(DocumentType type) {
+        Long high = requiresNew.execute(status -> {
+            if (sequenceRepository.advance(type.name(), blockSize) == 0) {
+                sequenceRepository.insertIfAbsent(type.name(), firstValue(type));
+                sequenceRepository.advance(type.name(), blockSize);
+            }
+            return sequenceRepository.findNextValue(type.name());
+        });
+        logger.debug("Reserved {} codes [{}, {})", type, high - blockSize, high);
+        return new Block(new AtomicLong(high - blockSize), high);
+    }
+
+    // Lần đầu dùng bộ đếm: bắt đầu sau cả id lớn nhất (cách sinh mã cũ) lẫn số lớn nhất trong các mã đã có
+    private long firstValue(DocumentType type) {
+        Long maxId = entityManager.createQuery(
+                "SELECT MAX(e." + type.getIdField() + ") FROM " + type.getEntity() + " e", Long.class)
+                .getSingleResult();
+        long max = maxId != null ? maxId : 0;
+
+        List<String> codes = entityManager.createQuery(
+                "SELECT e." + type.getCodeField() + " FROM " + type.getEntity() + " e"
+                        + " WHERE e." + type.getCodeField() + " LIKE :prefix"
+                        + " ORDER BY LENGTH(e." + type.getCodeField() + ") DESC, e." + type.getCodeField() + " DESC",
+                String.class)
+                .setParameter("prefix", type.getPrefix() + "%")
+                .setMaxResults(1)
+                .getResultList();
+        if (!codes.isEmpty()) {
+            try {
+                max = Math.max(max, Long.parseLong(codes.get(0).substring(type.getPrefix().length())));
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring non-numeric {} code {}", type, codes.get(0));
+            }
+        }
+        return max + 1;
+    }
+}
@@ -0,0 +1,24 @@
+package vn.unistock.unistockmanagementsystem.utils.sequence;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import vn.unistock.unistockmanagementsystem.entities.DocumentSequence;
+
+public interface DocumentSequenceRepository extends JpaRepository<DocumentSequence, String> {
+
+    // Khóa dòng tới hết transaction => các node cùng xin lô sẽ lần lượt nhận các khoảng không giao nhau
+    @Modifying
+    @Query("UPDATE DocumentSequence s SET s.nextValue = s.nextValue + :blockSize WHERE s.sequenceName = :name")
+    int advance(@Param("name") String name, @Param("blockSize") long blockSize);
+
+    @Query("SELECT s.nextValue FROM DocumentSequence s WHERE s.sequenceName = :name")
+    Long findNextValue(@Param("name") String name);
+
+    // Hai node cùng khởi tạo bộ đếm: node sau bỏ qua, không lỗi trùng khóa
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO document_sequence (sequence_name, next_value) VALUES (:name, :nextValue)",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("name") String name, @Param("nextValue") long nextValue);
+}
@@ -0,0 +1,27 @@
+package vn.unistock.unistockmanagementsystem.utils.sequence;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Các loại chứng từ có mã tự sinh. entity/idField/codeField chỉ dùng một lần để khởi tạo bộ đếm
+ * vượt qua dữ liệu đã có.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum DocumentType {
+    RECEIPT_NOTE("NK", "GoodReceiptNote", "grnId", "grnCode"),
+    ISSUE_NOTE("XK", "GoodIssueNote", "ginId", "ginCode"),
+    SALES_ORDER("ĐH", "SalesOrder", "orderId", "orderCode"),
+    PURCHASE_REQUEST("YC", "PurchaseRequest", "purchaseRequestId", "purchaseRequestCode"),
+    PURCHASE_ORDER("MH", "PurchaseOrder", "poId", "poCode");
+
+    private final String prefix;
+    private final String entity;
+    private final String idField;
+    private final String codeField;
+
+    public String format(long value) {
+        return String.format("%s%05d", prefix, value);
+    }
+}
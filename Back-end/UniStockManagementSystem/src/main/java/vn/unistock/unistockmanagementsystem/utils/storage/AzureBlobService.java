@@ -1,58 +1,110 @@
 package vn.unistock.unistockmanagementsystem.utils.storage;
 
 
+import com.azure.core.util.BinaryData;
+import com.azure.core.util.Context;
 import com.azure.storage.blob.*;
 import com.azure.storage.blob.models.*;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Lưu file trên Azure Blob Storage.
+ * - Client (HTTP pipeline, connection pool) được tạo một lần và dùng chung cho mọi request.
+ * - File lớn (ảnh scan chứng từ) được chia block và upload song song theo ParallelTransferOptions.
+ * - Xóa nhiều file dùng async client, chạy song song ở luồng nền.
+ */
 @Service
-public class AzureBlobService {
-    @Value("${azure.storage.connection-string}")
-    private String connectionString;
+@ConditionalOnProperty(name = "storage.type", havingValue = "azure", matchIfMissing = true)
+public class AzureBlobService implements FileStorageService {
+    private static final Logger logger = LoggerFactory.getLogger(AzureBlobService.class);
 
-    @Value("${azure.storage.container-name}")
-    private String containerName;
+    private final BlobContainerClient containerClient;
+    private final BlobContainerAsyncClient containerAsyncClient;
+    private final ParallelTransferOptions transferOptions;
+    private final int deleteConcurrency;
 
+    public AzureBlobService(@Value("${azure.storage.connection-string}") String connectionString,
+                            @Value("${azure.storage.container-name}") String containerName,
+                            @Value("${storage.azure.block-size:4MB}") DataSize blockSize,
+                            @Value("${storage.azure.max-concurrency:4}") int maxConcurrency) {
+        BlobServiceClientBuilder builder = new BlobServiceClientBuilder().connectionString(connectionString);
+        this.containerClient = builder.buildClient().getBlobContainerClient(containerName);
+        this.containerAsyncClient = builder.buildAsyncClient().getBlobContainerAsyncClient(containerName);
+        // File nhỏ hơn một block vẫn upload một lần; lớn hơn thì chia block và gửi song song
+        this.transferOptions = new ParallelTransferOptions()
+                .setBlockSizeLong(blockSize.toBytes())
+                .setMaxSingleUploadSizeLong(blockSize.toBytes())
+                .setMaxConcurrency(maxConcurrency);
+        this.deleteConcurrency = maxConcurrency;
+    }
+
+    @Override
     public String uploadFile(MultipartFile file) throws IOException {
         // ✅ Tạo tên file ngẫu nhiên để tránh trùng lặp
         String fileName = UUID.randomUUID().toString() + "-" + file.getOriginalFilename();
-
-        // ✅ Khởi tạo Blob Client để upload file
-        BlobServiceClient blobServiceClient = new BlobServiceClientBuilder()
-                .connectionString(connectionString)
-                .buildClient();
-        BlobContainerClient containerClient = blobServiceClient.getBlobContainerClient(containerName);
         BlobClient blobClient = containerClient.getBlobClient(fileName);
 
-        // ✅ Upload file lên Azure
-        blobClient.upload(file.getInputStream(), file.getSize(), true);
+        // ✅ Upload file lên Azure (chia block song song với file lớn)
+        try (InputStream inputStream = file.getInputStream()) {
+            blobClient.uploadWithResponse(new BlobParallelUploadOptions(inputStream)
+                            .setParallelTransferOptions(transferOptions)
+                            .setHeaders(new BlobHttpHeaders().setContentType(file.getContentType())),
+                    null, Context.NONE);
+        }
 
         // ✅ Trả về URL file đã upload
         return blobClient.getBlobUrl();
     }
 
+    @Override
+    public String upload(String fileName, byte[] content, String contentType) {
+        BlobClient blobClient = containerClient.getBlobClient(fileName);
+        blobClient.uploadWithResponse(new BlobParallelUploadOptions(BinaryData.fromBytes(content))
+                        .setParallelTransferOptions(transferOptions)
+                        .setHeaders(new BlobHttpHeaders().setContentType(contentType)),
+                null, Context.NONE);
+        return blobClient.getBlobUrl();
+    }
 
-    public void deleteFile(String imageUrl) {
+    @Override
+    public void deleteFile(String fileUrl) {
         try {
-            // Lấy tên file từ URL
-            String fileName = imageUrl.substring(imageUrl.lastIndexOf("/") + 1);
-
-            BlobServiceClient blobServiceClient = new BlobServiceClientBuilder()
-                    .connectionString(connectionString)
-                    .buildClient();
-            BlobContainerClient containerClient = blobServiceClient.getBlobContainerClient(containerName);
-            BlobClient blobClient = containerClient.getBlobClient(fileName);
-
-            // Xóa file cũ
-            blobClient.delete();
+            containerClient.getBlobClient(blobName(fileUrl)).deleteIfExists();
         } catch (Exception e) {
             // Log error nhưng không throw exception
-            System.out.println("Error deleting old image: " + e.getMessage());
+            logger.warn("Error deleting blob {}: {}", fileUrl, e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public CompletableFuture<Void> deleteFilesAsync(Collection<String> fileUrls) {
+        return Flux.fromIterable(fileUrls)
+                .flatMap(fileUrl -> Mono.defer(() -> containerAsyncClient.getBlobAsyncClient(blobName(fileUrl)).deleteIfExists())
+                        .onErrorResume(e -> {
+                            logger.warn("Error deleting blob {}: {}", fileUrl, e.getMessage());
+                            return Mono.just(false);
+                        }), deleteConcurrency)
+                .then()
+                .toFuture();
+    }
+
+    // Tên blob (đã decode) lấy từ URL do uploadFile trả về
+    private static String blobName(String fileUrl) {
+        return BlobUrlParts.parse(fileUrl).getBlobName();
+    }
+}
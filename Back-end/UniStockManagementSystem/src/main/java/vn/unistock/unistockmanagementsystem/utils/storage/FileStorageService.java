@@ -0,0 +1,29 @@
+package vn.unistock.unistockmanagementsystem.utils.storage;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Lưu trữ file (ảnh sản phẩm/vật tư, avatar, chứng từ giấy).
+ * Chọn triển khai theo storage.type: azure (mặc định) hoặc local (dev/test không cần mạng).
+ */
+public interface FileStorageService {
+
+    /** Lưu file và trả về URL công khai để hiển thị/tải về. */
+    String uploadFile(MultipartFile file) throws IOException;
+
+    /**
+     * Lưu nội dung với đúng tên fileName (không thêm tiền tố ngẫu nhiên), ghi đè nếu đã tồn tại.
+     * Dùng cho file đặt tên theo hash nội dung.
+     */
+    String upload(String fileName, byte[] content, String contentType) throws IOException;
+
+    /** Xóa file theo URL đã trả về từ uploadFile; lỗi chỉ được ghi log. */
+    void deleteFile(String fileUrl);
+
+    /** Xóa nhiều file ở luồng nền; caller không phải chờ. */
+    CompletableFuture<Void> deleteFilesAsync(Collection<String> fileUrls);
+}
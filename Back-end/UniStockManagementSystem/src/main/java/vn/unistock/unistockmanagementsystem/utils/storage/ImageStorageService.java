@@ -0,0 +1,205 @@
+package vn.unistock.unistockmanagementsystem.utils.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+import vn.unistock.unistockmanagementsystem.entities.StoredImage;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Lưu ảnh sản phẩm/vật tư:
+ * - Ảnh được định danh theo SHA-256 nội dung; ảnh đã có (bảng stored_image) thì dùng lại, không upload lần nữa.
+ * - Khi upload lần đầu, tạo thêm thumbnail cạnh dài tối đa storage.thumbnail.size px cho các trang danh sách.
+ * - Ảnh chỉ bị xóa khi không còn sản phẩm/vật tư nào dùng, và chỉ sau khi transaction commit.
+ * - File vừa upload bị xóa nếu transaction rollback hoặc request khác đã lưu cùng ảnh trước.
+ * Dòng stored_image là khóa giữa dùng lại và xóa: store() giữ FOR SHARE, việc xóa giữ FOR UPDATE.
+ * Tên file có hậu tố ngẫu nhiên nên ảnh upload lại không bao giờ trùng tên với file cũ đang chờ xóa.
+ */
+@Service
+public class ImageStorageService {
+    private static final Logger logger = LoggerFactory.getLogger(ImageStorageService.class);
+
+    private final StoredImageRepository storedImageRepository;
+    private final FileStorageService fileStorageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int thumbnailSize;
+
+    public ImageStorageService(StoredImageRepository storedImageRepository,
+                               FileStorageService fileStorageService,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${storage.thumbnail.size:200}") int thumbnailSize) {
+        this.storedImageRepository = storedImageRepository;
+        this.fileStorageService = fileStorageService;
+        this.eventPublisher = eventPublisher;
+        this.thumbnailSize = thumbnailSize;
+    }
+
+    @Transactional
+    public StoredImage store(MultipartFile image) throws IOException {
+        byte[] content = image.getBytes();
+        String contentHash = sha256(content);
+
+        // Đọc thường cho nhanh; dòng tìm thấy được khóa lại đến hết transaction để việc xóa ảnh phải chờ
+        if (storedImageRepository.findByContentHash(contentHash).isPresent()) {
+            Optional<StoredImage> existing = storedImageRepository.lockByContentHash(contentHash);
+            if (existing.isPresent()) {
+                logger.debug("Reusing stored image {} for {}", existing.get().getImageUrl(), image.getOriginalFilename());
+                return existing.get();
+            }
+            // Vừa bị xóa vì không còn ai dùng => upload lại
+        }
+
+        String fileName = "img-" + contentHash + "-" + UUID.randomUUID().toString().substring(0, 8);
+        String imageUrl = fileStorageService.upload(
+                fileName + extension(image.getOriginalFilename()), content, image.getContentType());
+        String thumbnailUrl = uploadThumbnail(fileName, content, imageUrl);
+        List<String> uploadedUrls = fileUrls(imageUrl, thumbnailUrl);
+        eventPublisher.publishEvent(new StoredImagesUploadedEvent(uploadedUrls));
+
+        int inserted = storedImageRepository.insertIfAbsent(contentHash, imageUrl, thumbnailUrl, LocalDateTime.now());
+        // Đọc có khóa: dưới REPEATABLE READ, đọc thường không thấy dòng mà transaction khác vừa commit làm INSERT IGNORE bỏ qua
+        StoredImage storedImage = storedImageRepository.lockByContentHash(contentHash)
+                .orElseThrow(() -> new IllegalStateException("Không lưu được ảnh " + image.getOriginalFilename()));
+        if (inserted == 0) {
+            // Request khác đã lưu cùng ảnh trước => bỏ file vừa upload
+            logger.debug("Image {} was stored concurrently, dropping {}", contentHash, uploadedUrls);
+            fileStorageService.deleteFilesAsync(uploadedUrls);
+        }
+        return storedImage;
+    }
+
+    /**
+     * Gọi sau khi item đã bỏ ảnh cũ (đã set imageUrl mới hoặc null).
+     * Ảnh cũ chỉ bị xóa nếu không còn item nào khác dùng chung; việc kiểm tra chạy sau khi transaction của caller commit.
+     */
+    public void release(String imageUrl) {
+        if (imageUrl != null) {
+            eventPublisher.publishEvent(new StoredImageReleaseRequestedEvent(imageUrl));
+        }
+    }
+
+    /**
+     * Khóa FOR UPDATE dòng stored_image rồi mới đếm số item đang dùng, trong transaction mới sau khi caller commit.
+     * store() dùng lại ảnh giữ khóa FOR SHARE đến khi commit nên lần đếm luôn thấy item vừa gán ảnh đó;
+     * store() chạy sau thì thấy dòng đã bị xóa và upload file mới.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onImageReleaseRequested(StoredImageReleaseRequestedEvent event) {
+        String imageUrl = event.imageUrl();
+        Optional<StoredImage> storedImage = storedImageRepository.lockByImageUrl(imageUrl);
+        if (storedImageRepository.countProductsByImageUrl(imageUrl)
+                + storedImageRepository.countMaterialsByImageUrl(imageUrl) > 0) {
+            return;
+        }
+
+        // Ảnh upload trước khi có stored_image không có dòng nào ở đây, chỉ cần xóa file
+        List<String> fileUrls = storedImage
+                .map(stored -> fileUrls(imageUrl, stored.getThumbnailUrl()))
+                .orElseGet(() -> List.of(imageUrl));
+        storedImage.ifPresent(storedImageRepository::delete);
+        eventPublisher.publishEvent(new StoredImagesReleasedEvent(fileUrls));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onImagesReleased(StoredImagesReleasedEvent event) {
+        fileStorageService.deleteFilesAsync(event.fileUrls());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onUploadRolledBack(StoredImagesUploadedEvent event) {
+        logger.debug("Transaction rolled back, deleting uploaded images {}", event.fileUrls());
+        fileStorageService.deleteFilesAsync(event.fileUrls());
+    }
+
+    // Ảnh gốc kèm thumbnail nếu thumbnail là file riêng
+    private static List<String> fileUrls(String imageUrl, String thumbnailUrl) {
+        List<String> fileUrls = new ArrayList<>(List.of(imageUrl));
+        if (thumbnailUrl != null && !thumbnailUrl.equals(imageUrl)) {
+            fileUrls.add(thumbnailUrl);
+        }
+        return fileUrls;
+    }
+
+    // Trả về URL thumbnail; ảnh đã đủ nhỏ thì dùng luôn ảnh gốc, định dạng không đọc được thì null
+    private String uploadThumbnail(String fileName, byte[] content, String imageUrl) {
+        try {
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(content));
+            if (source == null) {
+                return null;
+            }
+            if (source.getWidth() <= thumbnailSize && source.getHeight() <= thumbnailSize) {
+                return imageUrl;
+            }
+
+            boolean hasAlpha = source.getColorModel().hasAlpha();
+            String format = hasAlpha ? "png" : "jpg";
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ImageIO.write(scaleToFit(source, hasAlpha), format, output);
+            return fileStorageService.upload(fileName + "-thumb." + format,
+                    output.toByteArray(), hasAlpha ? "image/png" : "image/jpeg");
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not create thumbnail for image {}: {}", imageUrl, e.getMessage());
+            return null;
+        }
+    }
+
+    // Thu nhỏ từng bước một nửa để ảnh lớn không bị răng cưa khi nội suy bilinear
+    private BufferedImage scaleToFit(BufferedImage source, boolean hasAlpha) {
+        double scale = Math.min((double) thumbnailSize / source.getWidth(), (double) thumbnailSize / source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height,
+                    hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static String extension(String originalFilename) {
+        String extension = StringUtils.getFilenameExtension(originalFilename);
+        return extension != null && extension.matches("[A-Za-z0-9]{1,5}") ? "." + extension.toLowerCase() : "";
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package vn.unistock.unistockmanagementsystem.utils.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Lưu file trên ổ đĩa local cho môi trường dev/test không có Azure (storage.type=local).
+ * File được phục vụ lại qua {@value #URL_PREFIX}** bằng resource handler của Spring MVC.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+public class LocalFileStorageService implements FileStorageService, WebMvcConfigurer {
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileStorageService.class);
+
+    public static final String URL_PREFIX = "/files/";
+
+    private final Path directory;
+    private final String baseUrl;
+
+    public LocalFileStorageService(@Value("${storage.local.directory:uploads}") String directory,
+                                   @Value("${storage.local.base-url:}") String baseUrl) throws IOException {
+        this.directory = Path.of(directory).toAbsolutePath().normalize();
+        this.baseUrl = StringUtils.trimTrailingCharacter(baseUrl, '/');
+        Files.createDirectories(this.directory);
+    }
+
+    @Override
+    public String uploadFile(MultipartFile file) throws IOException {
+        // Chỉ giữ phần tên file, bỏ mọi đường dẫn client gửi lên
+        String originalName = StringUtils.getFilename(StringUtils.cleanPath(
+                file.getOriginalFilename() != null ? file.getOriginalFilename() : "file"));
+        String fileName = UUID.randomUUID() + "-" + originalName;
+
+        try (InputStream inputStream = file.getInputStream()) {
+            Files.copy(inputStream, resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return baseUrl + URL_PREFIX + fileName;
+    }
+
+    @Override
+    public String upload(String fileName, byte[] content, String contentType) throws IOException {
+        Files.write(resolve(fileName), content);
+        return baseUrl + URL_PREFIX + fileName;
+    }
+
+    @Override
+    public void deleteFile(String fileUrl) {
+        try {
+            Files.deleteIfExists(resolve(fileUrl.substring(fileUrl.lastIndexOf('/') + 1)));
+        } catch (Exception e) {
+            logger.warn("Error deleting local file {}: {}", fileUrl, e.getMessage());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFilesAsync(Collection<String> fileUrls) {
+        return CompletableFuture.runAsync(() -> fileUrls.forEach(this::deleteFile));
+    }
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        registry.addResourceHandler(URL_PREFIX + "**")
+                .addResourceLocations(directory.toUri().toString());
+    }
+
+    private Path resolve(String fileName) throws IOException {
+        Path path = directory.resolve(fileName).normalize();
+        if (!path.getParent().equals(directory)) {
+            throw new IOException("Invalid file name: " + fileName);
+        }
+        return path;
+    }
+}
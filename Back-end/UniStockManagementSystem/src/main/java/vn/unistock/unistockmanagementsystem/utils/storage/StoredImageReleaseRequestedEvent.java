@@ -0,0 +1,4 @@
+package vn.unistock.unistockmanagementsystem.utils.storage;
+
+/** Một item đã bỏ ảnh imageUrl; sau khi commit mới kiểm tra ảnh còn được dùng hay không. */
+public record StoredImageReleaseRequestedEvent(String imageUrl) {}
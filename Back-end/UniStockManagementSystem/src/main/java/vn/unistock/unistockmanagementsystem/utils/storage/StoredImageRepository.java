@@ -0,0 +1,43 @@
+package vn.unistock.unistockmanagementsystem.utils.storage;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import vn.unistock.unistockmanagementsystem.entities.StoredImage;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface StoredImageRepository extends JpaRepository<StoredImage, Long> {
+
+    Optional<StoredImage> findByContentHash(String contentHash);
+
+    // Đọc có khóa FOR SHARE: thấy bản đã commit mới nhất và giữ dòng đến hết transaction
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT s FROM StoredImage s WHERE s.contentHash = :contentHash")
+    Optional<StoredImage> lockByContentHash(@Param("contentHash") String contentHash);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM StoredImage s WHERE s.imageUrl = :imageUrl")
+    Optional<StoredImage> lockByImageUrl(@Param("imageUrl") String imageUrl);
+
+    // Hai request upload cùng một ảnh đồng thời: request sau bỏ qua, không lỗi unique key
+    @Modifying
+    @Query(value = """
+            INSERT IGNORE INTO stored_image (content_hash, image_url, thumbnail_url, created_at)
+            VALUES (:contentHash, :imageUrl, :thumbnailUrl, :createdAt)
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("contentHash") String contentHash,
+                       @Param("imageUrl") String imageUrl,
+                       @Param("thumbnailUrl") String thumbnailUrl,
+                       @Param("createdAt") LocalDateTime createdAt);
+
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.imageUrl = :imageUrl")
+    long countProductsByImageUrl(@Param("imageUrl") String imageUrl);
+
+    @Query("SELECT COUNT(m) FROM Material m WHERE m.imageUrl = :imageUrl")
+    long countMaterialsByImageUrl(@Param("imageUrl") String imageUrl);
+}
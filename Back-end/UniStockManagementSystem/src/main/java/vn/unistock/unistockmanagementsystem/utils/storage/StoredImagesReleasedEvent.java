@@ -0,0 +1,6 @@
+package vn.unistock.unistockmanagementsystem.utils.storage;
+
+import java.util.List;
+
+/** Các file ảnh không còn item nào dùng; chỉ xóa khỏi storage sau khi transaction commit. */
+public record StoredImagesReleasedEvent(List<String> fileUrls) {}
@@ -0,0 +1,6 @@
+package vn.unistock.unistockmanagementsystem.utils.storage;
+
+import java.util.List;
+
+/** Các file ảnh vừa upload trong transaction; bị xóa khỏi storage nếu transaction rollback. */
+public record StoredImagesUploadedEvent(List<String> fileUrls) {}
@@ -0,0 +1,134 @@
+package vn.unistock.unistockmanagementsystem.security.filter;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import vn.unistock.unistockmanagementsystem.entities.Permission;
+
+import java.lang.reflect.Method;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * So sánh RolePermissionMatcher với AntPathMatcher (cách so khớp cũ của DynamicAuthorizationFilter)
+ * trên toàn bộ endpoint mà EndpointScanner lưu thành Permission.
+ */
+class RolePermissionMatcherTest {
+
+    private static final String BASE_PACKAGE = "vn.unistock.unistockmanagementsystem";
+    private static final List<String> METHODS = List.of("GET", "POST", "PUT", "DELETE", "PATCH");
+
+    private static final AntPathMatcher ANT_MATCHER = new AntPathMatcher();
+    private static List<Permission> scannedPermissions;
+    private static Set<String> sampleUris;
+
+    @BeforeAll
+    static void scanEndpoints() throws ClassNotFoundException {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Controller.class));
+
+        scannedPermissions = new ArrayList<>();
+        for (BeanDefinition definition : scanner.findCandidateComponents(BASE_PACKAGE)) {
+            Class<?> controller = ClassUtils.forName(definition.getBeanClassName(), null);
+            RequestMapping classMapping = AnnotatedElementUtils.findMergedAnnotation(controller, RequestMapping.class);
+            String[] prefixes = classMapping != null && classMapping.path().length > 0
+                    ? classMapping.path() : new String[]{""};
+            for (Method method : controller.getDeclaredMethods()) {
+                RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class);
+                if (mapping == null) {
+                    continue;
+                }
+                String[] paths = mapping.path().length > 0 ? mapping.path() : new String[]{""};
+                for (String prefix : prefixes) {
+                    for (String path : paths) {
+                        String pattern = ANT_MATCHER.combine(prefix, path);
+                        if (mapping.method().length == 0) {
+                            scannedPermissions.add(permission("ALL", pattern));
+                        }
+                        for (RequestMethod requestMethod : mapping.method()) {
+                            scannedPermissions.add(permission(requestMethod.name(), pattern));
+                        }
+                    }
+                }
+            }
+        }
+        assertFalse(scannedPermissions.isEmpty());
+
+        // URL mẫu: thay biến bằng giá trị cụ thể, kèm biến thể có "/" cuối và đường dẫn cha
+        sampleUris = new TreeSet<>();
+        for (Permission permission : scannedPermissions) {
+            String uri = permission.getUrlPattern().replaceAll("\\{[^}]*}", "1").replace("**", "a/b").replace("*", "x");
+            sampleUris.add(uri);
+            sampleUris.add(uri + "/");
+            sampleUris.add(uri + "/extra");
+            String parent = uri.substring(0, Math.max(uri.lastIndexOf('/'), 1));
+            sampleUris.add(parent);
+            sampleUris.add(parent + "/");
+        }
+    }
+
+    @Test
+    void matchesLikeAntPathMatcherForScannedEndpoints() {
+        for (Permission permission : scannedPermissions) {
+            RolePermissionMatcher matcher = new RolePermissionMatcher(List.of(permission));
+            for (String method : METHODS) {
+                boolean methodMatches = permission.getHttpMethod().equals("ALL")
+                        || permission.getHttpMethod().equals(method);
+                for (String uri : sampleUris) {
+                    boolean expected = methodMatches && ANT_MATCHER.match(permission.getUrlPattern(), uri);
+                    assertEquals(expected, matcher.matches(method, uri),
+                            () -> permission.getHttpMethod() + " " + permission.getUrlPattern() + " vs " + method + " " + uri);
+                }
+            }
+        }
+    }
+
+    @Test
+    void matchesLikeAntPathMatcherForWholeRole() {
+        RolePermissionMatcher matcher = new RolePermissionMatcher(scannedPermissions);
+        for (String method : METHODS) {
+            for (String uri : sampleUris) {
+                boolean expected = scannedPermissions.stream()
+                        .anyMatch(p -> (p.getHttpMethod().equals("ALL") || p.getHttpMethod().equals(method))
+                                && ANT_MATCHER.match(p.getUrlPattern(), uri));
+                assertEquals(expected, matcher.matches(method, uri), () -> method + " " + uri);
+            }
+        }
+    }
+
+    @Test
+    void trailingSlashFollowsAntPathMatcher() {
+        List<String> patterns = List.of("/api/items", "/api/items/", "/api/items/{id}", "/api/items/*", "/api/items/**",
+                "/api/list/type={typeId}", "/api/{id:\\d+}");
+        List<String> uris = List.of("/api/items", "/api/items/", "/api/items/5", "/api/items/5/", "/api/items/5/x",
+                "/api/list/type=3", "/api/list/type=3/", "/api/12", "/api/12/", "/api/ab");
+        for (String pattern : patterns) {
+            RolePermissionMatcher matcher = new RolePermissionMatcher(List.of(permission("GET", pattern)));
+            for (String uri : uris) {
+                assertEquals(ANT_MATCHER.match(pattern, uri), matcher.matches("GET", uri), () -> pattern + " vs " + uri);
+            }
+        }
+    }
+
+    @Test
+    void invalidPatternIsSkippedWithoutBreakingRole() {
+        RolePermissionMatcher matcher = assertDoesNotThrow(() -> new RolePermissionMatcher(List.of(
+                permission("GET", "/api/items/{id:[}"),
+                permission("GET", "/api/items"))));
+        assertTrue(matcher.matches("GET", "/api/items"));
+        assertFalse(matcher.matches("GET", "/api/items/1"));
+    }
+
+    private static Permission permission(String method, String pattern) {
+        return Permission.builder().httpMethod(method).urlPattern(pattern).build();
+    }
+}
@@ -82,21 +82,8 @@ export function Navbar({ brandName, routes }) {
   const { pathname } = useLocation();
   const { layoutName, pageName, subPageName } = getPageInfo(pathname);
 
-  const { notifications, markAsRead, fetchNotifications } = useNotifications();
-  console.log(">>> Notifications in Navbar:", notifications);
-
-  useEffect(() => {
-    const handleRefreshNotifications = () => {
-      console.log("📢 Received refreshNotifications event in Navbar!");
-      fetchNotifications();
-    };
-
-    window.addEventListener("refreshNotifications", handleRefreshNotifications);
-
-    return () => {
-      window.removeEventListener("refreshNotifications", handleRefreshNotifications);
-    };
-  }, []);
+  // Danh sách thông báo được server đẩy qua SSE, không cần tải lại sau mỗi thao tác
+  const { notifications, markAsRead } = useNotifications();
 
   const handleLogout = () => {
     logout();
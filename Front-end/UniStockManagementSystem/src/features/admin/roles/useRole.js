@@ -25,6 +25,8 @@ const PERMISSION_HIERARCHY = {
     "checkProductCode",
     "toggleProductionStatus",
     "importProducts",
+    "startImportProducts",
+    "getImportProductsStatus",
     "createProduct",
     "getAllProductTypes",
     "getActiveUnits",
@@ -76,6 +78,8 @@ const PERMISSION_HIERARCHY = {
     "previewImport",
     "toggleUsingStatusMaterial",
     "importMaterials",
+    "startImportMaterials",
+    "getImportMaterialsStatus",
     "getActiveUnits",
     "getPartnersByType",
     "getActiveMaterialTypes",
@@ -89,10 +93,13 @@ const PERMISSION_HIERARCHY = {
     "toggleStatusMaterialType",
     "checkName",
   ],
-  viewSaleOrder: ["getFilteredOrders", "getOrderById", "getMaterialsByProduct", "getInventoryDetailsByWarehouse",
+  viewSaleOrder: ["getFilteredOrders", "getOrderSummaries", "scrollOrders", "getMaterialShortages", "getOrderById", "getMaterialsByProduct", "getInventoryDetailsByWarehouse",
      "getInventoryDetailsByWarehouseM", "getActiveProducts", "getPartnersByType"],
   manageSaleOrder: [
     "getFilteredOrders",
+    "getOrderSummaries",
+    "scrollOrders",
+    "getMaterialShortages",
     "getOrderById",
     "getMaterialsByProduct",
     "getInventoryDetailsByWarehouse",
@@ -110,10 +117,12 @@ const PERMISSION_HIERARCHY = {
     "getInventoryDetailsByWarehouseM",
     "getActiveProducts",
   ],
-  viewPurchaseRequest: ["getAllPurchaseRequests", "getPurchaseRequestById"],
+  viewPurchaseRequest: ["getAllPurchaseRequests", "scrollPurchaseRequests", "getPurchaseRequestById"],
   managePurchaseRequest: [
     "getAllPurchaseRequests",
+    "scrollPurchaseRequests",
     "getPurchaseRequestById",
+    "getMaterialShortages",
     "getPartnersByMaterial",
     "getNextRequestCode",
     "createManualPurchaseRequest",
@@ -141,17 +150,22 @@ const PERMISSION_HIERARCHY = {
   ],
   viewReport: [
     "getInventoryReport",
+    "downloadInventoryReport",
     "getAllActiveWarehouses",
     "getActiveProductTypes",
     "getActiveMaterialTypes",
 
     "getStockMovementReport",
+    "downloadStockMovementReport",
     "getImportReportPaginated",
+    "downloadImportReport",
     "getExportReport",
+    "downloadExportReport",
   ],
-  viewReceiptNote: ["getAllGoodReceipts", "getGoodReceiptById", "getIssueNoteById", "getPurchaseOrderById"],
+  viewReceiptNote: ["getAllGoodReceipts", "scrollGoodReceipts", "getGoodReceiptById", "getIssueNoteById", "getPurchaseOrderById"],
   manageReceiptNote: [
     "getAllGoodReceipts",
+    "scrollGoodReceipts",
     "getGoodReceiptById",
     "getIssueNoteById",
     "getPurchaseOrderById",
@@ -169,7 +183,7 @@ const PERMISSION_HIERARCHY = {
     "getFilteredOrders",
     "getAllMaterials"
   ],
-  viewIssueNote: ["getAllIssueNotes", "getIssueNoteById", "getOrderById", 
+  viewIssueNote: ["getAllIssueNotes", "scrollIssueNotes", "getIssueNoteById", "getOrderById", 
                 "getMaterialsByProduct",
                 "getInventoryDetailsByWarehouse",
                 "getInventoryDetailsByWarehouseM",
@@ -177,6 +191,7 @@ const PERMISSION_HIERARCHY = {
                 "getPartnersByType"],
   manageIssueNote: [
     "getAllIssueNotes",
+    "scrollIssueNotes",
     "getIssueNoteById",
     "getOrderById",
                 "getMaterialsByProduct",
@@ -210,9 +225,13 @@ const API_TO_FE_KEY = {
   updateSaleOrder: "manageSaleOrder",
   createSaleOrder: "manageSaleOrder",
   getFilteredOrders: "viewSaleOrder",
+  getOrderSummaries: "viewSaleOrder",
+  scrollOrders: "viewSaleOrder",
+  getMaterialShortages: "viewSaleOrder",
   getOrderById: "viewSaleOrder",
   // Yêu cầu mua
   getAllPurchaseRequests: "viewPurchaseRequest",
+  scrollPurchaseRequests: "viewPurchaseRequest",
   getPurchaseRequestById: "viewPurchaseRequest",
   getNextRequestCode: "managePurchaseRequest",
   createManualPurchaseRequest: "managePurchaseRequest",
@@ -233,8 +252,13 @@ const API_TO_FE_KEY = {
   getStockMovementReport: "viewReport",
   getImportReportPaginated: "viewReport",
   getExportReport: "viewReport",
+  downloadInventoryReport: "viewReport",
+  downloadStockMovementReport: "viewReport",
+  downloadImportReport: "viewReport",
+  downloadExportReport: "viewReport",
   // Phiếu nhập kho
   getAllGoodReceipts: "viewReceiptNote",
+  scrollGoodReceipts: "viewReceiptNote",
   getGoodReceiptById: "viewReceiptNote",
   createGoodReceipt: "manageReceiptNote",
   getNextNoteCode: "manageReceiptNote",
@@ -247,6 +271,7 @@ const API_TO_FE_KEY = {
   getPartnersByCodePrefix: "manageReceiptNote",
   // Phiếu xuất kho
   getAllIssueNotes: "viewIssueNote",
+  scrollIssueNotes: "viewIssueNote",
   getIssueNoteById: "viewIssueNote",
   createIssueNote: "manageIssueNote",
   getNextIssueCode: "manageIssueNote",
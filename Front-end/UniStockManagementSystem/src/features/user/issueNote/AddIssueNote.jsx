@@ -35,6 +35,7 @@ import dayjs from "dayjs";
 import "dayjs/locale/vi"; // Import Tiếng Việt
 
 import FileUploadBox from "@/components/FileUploadBox";
+import ConfirmDialog from "@/components/ConfirmDialog";
 import ModalAddPartner from "./ModalAddPartner";
 import ModalChooseOrder from "./ModalChooseOrder";
 import TableSearch from "@/components/TableSearch";
@@ -48,7 +49,6 @@ import { getWarehouseList } from "../warehouse/warehouseService";
 import { getAllActiveMaterials } from '../materials/materialService';
 
 import useIssueNote from "./useIssueNote";
-import { useNotifications } from "../notification/useNotifications";
 
 
 const OUTSOURCE_TYPE_ID = 3;
@@ -134,7 +134,6 @@ const buildMaterialRows = async (materials, orderId) => {
 // 🔄 END PATCH
 
 const AddIssueNote = () => {
-  const { fetchNotifications } = useNotifications();
   const navigate = useNavigate();
   const { fetchNextCode, addIssueNote, materials } = useIssueNote();
 
@@ -153,6 +152,8 @@ const AddIssueNote = () => {
   const [soId, setSoId] = useState(null);
   const [isSaving, setIsSaving] = useState(false); // Thêm state cho loading
   const [loading, setLoading] = useState(true);
+  // Phiếu đã lưu nhưng còn file đính kèm tải lên lỗi: { ginId, ginCode, files, failedFiles }
+  const [failedUpload, setFailedUpload] = useState(null);
 
   //State hiển thị lỗi
   const [issueCategoryError, setIssueCategoryError] = useState("");
@@ -1523,21 +1524,16 @@ const AddIssueNote = () => {
 
       const result = await addIssueNote(payload);
       if (result) {
-        window.dispatchEvent(new Event("refreshNotifications"));
         if (files && files.length > 0) {
-          try {
-            const uploadResult = await uploadPaperEvidence(
-              result.ginId,
-              "GOOD_ISSUE_NOTE",
-              files
-            );
-            console.log("Upload result:", uploadResult);
-          } catch (uploadError) {
-            console.error("Error uploading paper evidence:", uploadError);
-            console.log("Lưu phiếu xuất thành công, nhưng lỗi khi tải file đính kèm!");
+          const failedFiles = await uploadEvidenceFiles(result.ginId, files);
+          if (failedFiles.length > 0) {
+            // Phiếu đã lưu => không lưu lại, chỉ cho tải lại các file lỗi
+            setFailedUpload({ ginId: result.ginId, ginCode: result.ginCode, files, failedFiles });
+            return;
           }
         }
-        navigate("/user/issueNote", { state: { successMessage: "Tạo phiếu xuất kho thành công!" } });
+        // Mã trên form chỉ là mã dự kiến, mã thật do server cấp khi lưu
+        navigate("/user/issueNote", { state: { successMessage: `Tạo phiếu xuất kho ${result.ginCode} thành công!` } });
       }
     } catch (error) {
       console.error("Lỗi khi thêm phiếu xuất:", error);
@@ -1558,6 +1554,41 @@ const AddIssueNote = () => {
     }
   };
 
+  // Tải file đính kèm, trả về danh sách file lỗi (server trả 207 kèm failedFiles khi chỉ một phần thành công)
+  const uploadEvidenceFiles = async (ginId, uploadFiles) => {
+    try {
+      const uploadResult = await uploadPaperEvidence(ginId, "GOOD_ISSUE_NOTE", uploadFiles);
+      return uploadResult?.failedFiles || [];
+    } catch (uploadError) {
+      console.error("Error uploading paper evidence:", uploadError);
+      const message = uploadError?.response?.data?.message || uploadError.message || "Lỗi không xác định";
+      return uploadFiles.map((file) => ({ fileName: file.name, error: message }));
+    }
+  };
+
+  const handleRetryUpload = async () => {
+    const { ginId, ginCode, files: savedFiles, failedFiles } = failedUpload;
+    const failedNames = failedFiles.map((file) => file.fileName);
+    const retryFiles = savedFiles.filter((file) => failedNames.includes(file.name));
+    setIsSaving(true);
+    const stillFailed = await uploadEvidenceFiles(ginId, retryFiles);
+    setIsSaving(false);
+    if (stillFailed.length > 0) {
+      setFailedUpload({ ...failedUpload, failedFiles: stillFailed });
+      return;
+    }
+    navigate("/user/issueNote", { state: { successMessage: `Tạo phiếu xuất kho ${ginCode} thành công!` } });
+  };
+
+  const handleSkipFailedUpload = () => {
+    const { ginCode, failedFiles } = failedUpload;
+    navigate("/user/issueNote", {
+      state: {
+        successMessage: `Tạo phiếu xuất kho ${ginCode} thành công! Chưa tải lên được ${failedFiles.length} tệp đính kèm.`
+      }
+    });
+  };
+
   const [dotCount, setDotCount] = useState(0);
 
   useEffect(() => {
@@ -2382,6 +2413,18 @@ const AddIssueNote = () => {
           onOrderSelected={handleOrderSelected}
         />
       )}
+
+      <ConfirmDialog
+        open={!!failedUpload}
+        onClose={handleSkipFailedUpload}
+        onConfirm={isSaving ? undefined : handleRetryUpload}
+        message={`Đã lưu phiếu ${failedUpload?.ginCode || ""}, nhưng một số tệp chưa tải lên được`}
+        subMessage={(failedUpload?.failedFiles || [])
+          .map((file) => `${file.fileName}: ${file.error}`)
+          .join("; ")}
+        confirmText={isSaving ? "Đang tải..." : "Thử lại"}
+        cancelText="Bỏ qua"
+      />
     </div>
   );
 };
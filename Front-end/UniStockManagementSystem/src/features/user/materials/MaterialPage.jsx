@@ -303,7 +303,7 @@ const MaterialPage = () => {
         unitName: material.unitName || "N/A",
         materialTypeName: materialCategories.find(cat => cat.materialTypeId === material.typeId)?.name || material.typeName || "Không có danh mục",
         lowStockThreshold: material.lowStockThreshold || 'N/A', // Thêm cột mới
-        imageUrl: material.imageUrl,
+        imageUrl: material.thumbnailUrl || material.imageUrl,
         isUsing: material.isUsing,
     }));
 
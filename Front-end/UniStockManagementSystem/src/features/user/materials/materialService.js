@@ -213,14 +213,14 @@ export const previewImport = async (file) => {
   }
 };
 
-// Import Excel
-export const importExcel = async (file) => {
+// Import Excel: import chạy nền phía server, poll tiến độ tới khi xong
+export const importExcel = async (file, onProgress) => {
   try {
     const formData = new FormData();
     formData.append("file", file);
 
     const response = await axios.post(
-      `${API_URL}/import`,
+      `${API_URL}/import-jobs`,
       formData,
       {
         headers: {
@@ -230,11 +230,23 @@ export const importExcel = async (file) => {
       }
     );
 
-    console.log("✅ [importExcel] Import thành công:", response.data);
-    return response.data;
+    let job = response.data;
+    while (job.status === "QUEUED" || job.status === "RUNNING") {
+      onProgress?.(job);
+      await new Promise((resolve) => setTimeout(resolve, 1000));
+      const status = await axios.get(`${API_URL}/import-jobs/${job.jobId}`, { headers: authHeader() });
+      job = status.data;
+    }
+    onProgress?.(job);
+    if (job.status === "FAILED") {
+      throw new Error(job.message || "Lỗi khi import file");
+    }
+
+    console.log("✅ [importExcel] Import thành công:", job.message);
+    return job.message;
   } catch (error) {
     console.error("❌ Lỗi khi import file:", error.response?.data || error.message);
-    throw new Error(error.response?.data?.message || "Lỗi khi import file");
+    throw new Error(error.response?.data?.message || error.message || "Lỗi khi import file");
   }
 };
 
@@ -7,18 +7,25 @@ const authHeader = () => {
     return token ? { Authorization: `Bearer ${token}` } : {};
 };
 
-// Lấy danh sách thông báo chưa đọc
-export const fetchUnreadNotifications = async () => {
-    try {
-        const response = await axios.get(`${API_URL}/unread`, {
-            headers: authHeader(),
-        });
-        console.log("✅ [fetchUnreadNotifications] API Response:", response.data);
-        return response.data;
-    } catch (error) {
-        console.error("❌ Lỗi khi lấy thông báo chưa đọc:", error.response?.data || error.message);
-        throw error;
-    }
+// Mở kênh SSE nhận thông báo thay cho poll /unread:
+// "snapshot" = toàn bộ thông báo chưa đọc (khi kết nối), "upsert" = thông báo mới/cập nhật, "read" = đã đọc.
+// EventSource tự kết nối lại kèm Last-Event-ID để server phát bù các sự kiện bị lỡ.
+export const openNotificationStream = ({ onSnapshot, onUpsert, onRead }) => {
+    const source = new EventSource(`${API_URL}/stream`);
+    const handle = (callback) => (event) => {
+        try {
+            callback(JSON.parse(event.data));
+        } catch (error) {
+            console.error("❌ Lỗi khi đọc sự kiện thông báo:", error);
+        }
+    };
+    source.addEventListener("snapshot", handle(onSnapshot));
+    source.addEventListener("upsert", handle(onUpsert));
+    source.addEventListener("read", handle(onRead));
+    source.onerror = () => {
+        console.warn("⚠️ Mất kết nối kênh thông báo, đang kết nối lại...");
+    };
+    return source;
 };
 
 // Đánh dấu thông báo là đã đọc
@@ -1,26 +1,31 @@
 import { useState, useEffect } from "react";
-import { fetchUnreadNotifications, markNotificationAsRead } from "../notification/notificationService";
-import { useAuth } from "@/context/AuthContext";
+import { openNotificationStream, markNotificationAsRead } from "../notification/notificationService";
 
 export const useNotifications = () => {
     const [notifications, setNotifications] = useState([]);
-    const [loading, setLoading] = useState(false);
-    const { user } = useAuth();
-
-    const fetchNotifications = async () => {
-        console.log("🔄 Fetching notifications...");
-        setLoading(true);
-        try {
-            const data = await fetchUnreadNotifications();
-            console.log("✅ Data fetched:", data);
-            setNotifications(data);
-        } catch (err) {
-            console.error("Failed to fetch notifications", err);
-        } finally {
-            setLoading(false);
-        }
-    };
+    const [loading, setLoading] = useState(true);
 
+    // Nhận thông báo qua SSE: snapshot khi kết nối, sau đó server tự đẩy thay đổi (không poll)
+    useEffect(() => {
+        const source = openNotificationStream({
+            onSnapshot: (data) => {
+                setNotifications(data);
+                setLoading(false);
+            },
+            onUpsert: (notification) => {
+                // Cập nhật tại chỗ nếu đã có, thông báo mới thêm vào cuối như thứ tự của snapshot
+                setNotifications((prev) =>
+                    prev.some((n) => n.notificationId === notification.notificationId)
+                        ? prev.map((n) => (n.notificationId === notification.notificationId ? notification : n))
+                        : [...prev, notification]
+                );
+            },
+            onRead: (notification) => {
+                setNotifications((prev) => prev.filter((n) => n.notificationId !== notification.notificationId));
+            },
+        });
+        return () => source.close();
+    }, []);
 
     const markAsRead = async (notificationId) => {
         try {
@@ -31,16 +36,10 @@ export const useNotifications = () => {
         }
     };
 
-    useEffect(() => {
-        console.log("🔍 Fetching notifications (no token dep)...");
-        fetchNotifications();
-    }, []);
-
     return {
         notifications,
         unreadCount: notifications.length,
         loading,
-        fetchNotifications,
         markAsRead,
     };
 };
@@ -364,7 +364,7 @@ useEffect(() => {
     productName: product.productName,
     unitName: product.unitName || "-",
     productTypeName: productTypes.find(type => type.typeId === product.typeId)?.typeName || product.typeName || "-",
-    imageUrl: product.imageUrl || "-",
+    imageUrl: product.thumbnailUrl || product.imageUrl || "-",
     isProductionActive: !!product.isProductionActive,
   }));
 
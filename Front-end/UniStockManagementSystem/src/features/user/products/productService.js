@@ -190,13 +190,14 @@ export const checkProductCodeExists = async (productCode, excludeId = null) => {
   }
 };
 
-export const importExcel = async (file) => {
+// Import chạy nền phía server, poll tiến độ tới khi xong
+export const importExcel = async (file, onProgress) => {
   try {
     const formData = new FormData();
     formData.append("file", file);
 
     const response = await axios.post(
-      `${API_URL}/products/import`,
+      `${API_URL}/products/import-jobs`,
       formData,
       {
         headers: {
@@ -206,11 +207,23 @@ export const importExcel = async (file) => {
       }
     );
 
-    console.log("✅ [importExcel] Nhập dữ liệu thành công:", response.data);
-    return response.data;
+    let job = response.data;
+    while (job.status === "QUEUED" || job.status === "RUNNING") {
+      onProgress?.(job);
+      await new Promise((resolve) => setTimeout(resolve, 1000));
+      const status = await axios.get(`${API_URL}/products/import-jobs/${job.jobId}`, { headers: authHeader() });
+      job = status.data;
+    }
+    onProgress?.(job);
+    if (job.status === "FAILED") {
+      throw new Error(job.message || "Lỗi khi nhập dữ liệu từ file");
+    }
+
+    console.log("✅ [importExcel] Nhập dữ liệu thành công:", job.message);
+    return job.message;
   } catch (error) {
     console.error("❌ Lỗi khi nhập dữ liệu:", error.response?.data || error.message);
-    throw new Error(error.response?.data || "Lỗi khi nhập dữ liệu từ file");
+    throw new Error(error.response?.data?.message || error.message || "Lỗi khi nhập dữ liệu từ file");
   }
 };
 
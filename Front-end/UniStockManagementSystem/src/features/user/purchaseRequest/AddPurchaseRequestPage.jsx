@@ -379,8 +379,9 @@ const AddPurchaseRequestPage = () => {
 
       console.log("🔍 Payload sent to createPurchaseRequest:", JSON.stringify(payload, null, 2));
 
-      await createPurchaseRequest(payload);
-      navigate("/user/purchase-request", { state: { refresh: true, successMessage: "Tạo yêu cầu mua vật tư thành công!" } });
+      // Mã trên form chỉ là mã dự kiến, mã thật do server cấp khi lưu
+      const created = await createPurchaseRequest(payload);
+      navigate("/user/purchase-request", { state: { refresh: true, successMessage: `Tạo yêu cầu mua vật tư ${created.purchaseRequestCode} thành công!` } });
     } catch (error) {
       console.error("🔍 Lỗi khi lưu yêu cầu:", error);
       const errorMessage = error.response?.data?.message || "Có lỗi xảy ra khi lưu yêu cầu. Vui lòng thử lại!";
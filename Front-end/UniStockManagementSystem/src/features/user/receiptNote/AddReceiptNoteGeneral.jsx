@@ -33,6 +33,7 @@ import { AdapterDayjs } from "@mui/x-date-pickers/AdapterDayjs";
 import CircularProgress from '@mui/material/CircularProgress';
 import PageHeader from '@/components/PageHeader';
 import FileUploadBox from '@/components/FileUploadBox';
+import ConfirmDialog from '@/components/ConfirmDialog';
 import TableSearch from '@/components/TableSearch';
 import Table from "@/components/Table";
 import ProductRow from "./ProductRow";
@@ -106,6 +107,8 @@ const AddReceiptNoteGeneral = () => {
 
   // ----- Trạng thái gọi API, validate, v.v. -----
   const [isSaving, setIsSaving] = useState(false);
+  // Phiếu đã lưu nhưng còn file đính kèm tải lên lỗi: { grnId, grnCode, files, failedFiles }
+  const [failedUpload, setFailedUpload] = useState(null);
   const [quantityErrors, setQuantityErrors] = useState({
     product: {},
     warehouse: {},
@@ -613,15 +616,18 @@ const getAvailableProducts = (currentRowId) => {
       // Gọi API tạo phiếu nhập
       const response = await createReceiptNote(payload);
 
-      window.dispatchEvent(new Event("refreshNotifications"));
-
-
       // Upload file đính kèm nếu có
       if (files.length > 0) {
-        await uploadPaperEvidence(response.grnId, "GOOD_RECEIPT_NOTE", files);
+        const failedFiles = await uploadEvidenceFiles(response.grnId, files);
+        if (failedFiles.length > 0) {
+          // Phiếu đã lưu => không lưu lại, chỉ cho tải lại các file lỗi
+          setFailedUpload({ grnId: response.grnId, grnCode: response.grnCode, files, failedFiles });
+          return;
+        }
       }
 
-      navigate("/user/receiptNote", { state: { successMessage: "Tạo phiếu nhập thành công", refresh: true } });
+      // Mã trên form chỉ là mã dự kiến, mã thật do server cấp khi lưu
+      navigate("/user/receiptNote", { state: { successMessage: `Tạo phiếu nhập ${response.grnCode} thành công`, refresh: true } });
     } catch (err) {
       console.error("❌ Lỗi khi lưu phiếu nhập:", err);
       let msg = err?.response?.data?.message || err.message || "Lỗi không xác định!";
@@ -897,6 +903,42 @@ const getAvailableProducts = (currentRowId) => {
     }
   };
 
+  // Tải file đính kèm, trả về danh sách file lỗi (server trả 207 kèm failedFiles khi chỉ một phần thành công)
+  const uploadEvidenceFiles = async (grnId, uploadFiles) => {
+    try {
+      const uploadResult = await uploadPaperEvidence(grnId, "GOOD_RECEIPT_NOTE", uploadFiles);
+      return uploadResult?.failedFiles || [];
+    } catch (uploadError) {
+      console.error("Error uploading paper evidence:", uploadError);
+      const message = uploadError?.response?.data?.message || uploadError.message || "Lỗi không xác định";
+      return uploadFiles.map((file) => ({ fileName: file.name, error: message }));
+    }
+  };
+
+  const handleRetryUpload = async () => {
+    const { grnId, grnCode, files: savedFiles, failedFiles } = failedUpload;
+    const failedNames = failedFiles.map((file) => file.fileName);
+    const retryFiles = savedFiles.filter((file) => failedNames.includes(file.name));
+    setIsSaving(true);
+    const stillFailed = await uploadEvidenceFiles(grnId, retryFiles);
+    setIsSaving(false);
+    if (stillFailed.length > 0) {
+      setFailedUpload({ ...failedUpload, failedFiles: stillFailed });
+      return;
+    }
+    navigate("/user/receiptNote", { state: { successMessage: `Tạo phiếu nhập ${grnCode} thành công`, refresh: true } });
+  };
+
+  const handleSkipFailedUpload = () => {
+    const { grnCode, failedFiles } = failedUpload;
+    navigate("/user/receiptNote", {
+      state: {
+        successMessage: `Tạo phiếu nhập ${grnCode} thành công. Chưa tải lên được ${failedFiles.length} tệp đính kèm.`,
+        refresh: true
+      }
+    });
+  };
+
   const [dotCount, setDotCount] = useState(0);
   useEffect(() => {
     const interval = setInterval(() => {
@@ -1589,6 +1631,18 @@ const getAvailableProducts = (currentRowId) => {
           category={category}
         />
       )}
+
+      <ConfirmDialog
+        open={!!failedUpload}
+        onClose={handleSkipFailedUpload}
+        onConfirm={isSaving ? undefined : handleRetryUpload}
+        message={`Đã lưu phiếu ${failedUpload?.grnCode || ""}, nhưng một số tệp chưa tải lên được`}
+        subMessage={(failedUpload?.failedFiles || [])
+          .map((file) => `${file.fileName}: ${file.error}`)
+          .join("; ")}
+        confirmText={isSaving ? "Đang tải..." : "Thử lại"}
+        cancelText="Bỏ qua"
+      />
     </div>
   );
 };
@@ -126,6 +126,11 @@ const useReceiptNote = () => {
     setError(null);
     try {
       const response = await uploadPaperEvidence(noteId, noteType, files);
+      // 207: một số file lỗi, các file còn lại đã lưu => báo tên file lỗi để người dùng tải lại
+      const failedFiles = response?.failedFiles || [];
+      if (failedFiles.length > 0) {
+        setError("Không thể tải lên: " + failedFiles.map((file) => `${file.fileName} (${file.error})`).join(", "));
+      }
       return response;
     } catch (error) {
       console.error("Error uploading files:", error);
@@ -267,9 +267,10 @@ const AddSaleOrderPage = () => {
     console.log("Dữ liệu gửi lên BE:", payload);
 
     try {
-      await addOrder(payload);
+      // Mã trên form chỉ là mã dự kiến, mã thật do server cấp khi lưu
+      const created = await addOrder(payload);
       navigate("/user/sale-orders", {
-        state: { successMessage: "Tạo đơn bán hàng thành công!" },
+        state: { successMessage: `Tạo đơn bán hàng ${created.orderCode} thành công!` },
       });
     } catch (error) {
       console.error("Lỗi khi lưu đơn hàng:", error);
@@ -8,7 +8,7 @@ const authHeader = () => {
   return token ? { Authorization: `Bearer ${token}` } : {};
 };
 
-// 🟢 **Lấy danh sách Sale Orders (Hỗ trợ phân trang)**
+// 🟢 **Lấy danh sách Sale Orders (Hỗ trợ phân trang)** - chỉ các cột của bảng danh sách
 export const getSaleOrders = async (page, size, searchTerm, statuses, startDate, endDate) => {
   try {
     const params = {
@@ -20,7 +20,7 @@ export const getSaleOrders = async (page, size, searchTerm, statuses, startDate,
       ...(endDate && { endDate: dayjs(endDate).format('YYYY-MM-DD') }),
     };
 
-    const response = await axios.get(API_URL, {
+    const response = await axios.get(`${API_URL}/summary`, {
       params,
       headers: authHeader(),
     });